@@ -0,0 +1,76 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.benchmarks;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.threeten.extra.scale.UtcInstant;
+import com.stevenpaligo.spacetrack.client.util.SpaceTrackDateTimeFormatter;
+
+/**
+ * Measures formatting date/times for query predicates
+ *
+ * @author Steven Paligo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeFormatterBenchmark {
+
+  private final Instant instant = Instant.parse("2020-02-29T23:59:59.123456Z");
+  private final UtcInstant utcInstant = UtcInstant.of(instant);
+  private final UtcInstant leapSecond = UtcInstant.parse("2016-12-31T23:59:60.5Z");
+  private final Date date = Date.from(instant);
+
+
+  @Benchmark
+  public String formatInstant() {
+
+    return SpaceTrackDateTimeFormatter.format(instant);
+  }
+
+
+  @Benchmark
+  public String formatUtcInstant() {
+
+    return SpaceTrackDateTimeFormatter.format(utcInstant);
+  }
+
+
+  @Benchmark
+  public String formatLeapSecond() {
+
+    return SpaceTrackDateTimeFormatter.format(leapSecond);
+  }
+
+
+  @Benchmark
+  public String formatDate() {
+
+    return SpaceTrackDateTimeFormatter.format(date);
+  }
+}
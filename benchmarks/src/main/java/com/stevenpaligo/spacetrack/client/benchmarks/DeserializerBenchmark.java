@@ -0,0 +1,163 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.threeten.extra.scale.UtcInstant;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.stevenpaligo.spacetrack.client.util.DecimalToBooleanDeserializer;
+import com.stevenpaligo.spacetrack.client.util.OptionalDateTimeToUtcInstantDeserializer;
+import com.stevenpaligo.spacetrack.client.util.OptionalTinyIntToBooleanDeserializer;
+import com.stevenpaligo.spacetrack.client.util.OptionalYesNoEnumToBooleanDeserializer;
+import com.stevenpaligo.spacetrack.client.util.UtcInstantDeserializer;
+import com.stevenpaligo.spacetrack.client.util.YesNoEnumToBooleanDeserializer;
+
+/**
+ * Measures the custom deserializers in the util package, one field per deserializer, using the values Space-Track.org returns
+ *
+ * @author Steven Paligo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeserializerBenchmark {
+
+  public static class DecimalToBooleanValue {
+
+    @JsonProperty("VALUE")
+    @JsonDeserialize(using = DecimalToBooleanDeserializer.class)
+    public Boolean value;
+  }
+
+
+  public static class OptionalDateTimeToUtcInstantValue {
+
+    @JsonProperty("VALUE")
+    @JsonDeserialize(using = OptionalDateTimeToUtcInstantDeserializer.class)
+    public Optional<UtcInstant> value;
+  }
+
+
+  public static class OptionalTinyIntToBooleanValue {
+
+    @JsonProperty("VALUE")
+    @JsonDeserialize(using = OptionalTinyIntToBooleanDeserializer.class)
+    public Optional<Boolean> value;
+  }
+
+
+  public static class OptionalYesNoEnumToBooleanValue {
+
+    @JsonProperty("VALUE")
+    @JsonDeserialize(using = OptionalYesNoEnumToBooleanDeserializer.class)
+    public Optional<Boolean> value;
+  }
+
+
+  public static class UtcInstantValue {
+
+    @JsonProperty("VALUE")
+    @JsonDeserialize(using = UtcInstantDeserializer.class)
+    public UtcInstant value;
+  }
+
+
+  public static class YesNoEnumToBooleanValue {
+
+    @JsonProperty("VALUE")
+    @JsonDeserialize(using = YesNoEnumToBooleanDeserializer.class)
+    public Boolean value;
+  }
+
+
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+  private final byte[] decimalJson = json("1.000000");
+  private final byte[] dateTimeJson = json("2020-02-29 23:59:59.123456");
+  private final byte[] tinyIntJson = json("1");
+  private final byte[] yesNoJson = json("Y");
+
+  private final ObjectReader decimalToBooleanReader = jsonMapper.readerFor(DecimalToBooleanValue.class);
+  private final ObjectReader optionalDateTimeToUtcInstantReader = jsonMapper.readerFor(OptionalDateTimeToUtcInstantValue.class);
+  private final ObjectReader optionalTinyIntToBooleanReader = jsonMapper.readerFor(OptionalTinyIntToBooleanValue.class);
+  private final ObjectReader optionalYesNoEnumToBooleanReader = jsonMapper.readerFor(OptionalYesNoEnumToBooleanValue.class);
+  private final ObjectReader utcInstantReader = jsonMapper.readerFor(UtcInstantValue.class);
+  private final ObjectReader yesNoEnumToBooleanReader = jsonMapper.readerFor(YesNoEnumToBooleanValue.class);
+
+
+  private static byte[] json(String value) {
+
+    return ("{\"VALUE\":\"" + value + "\"}").getBytes(StandardCharsets.UTF_8);
+  }
+
+
+  @Benchmark
+  public DecimalToBooleanValue decimalToBoolean() throws IOException {
+
+    return decimalToBooleanReader.readValue(decimalJson);
+  }
+
+
+  @Benchmark
+  public OptionalDateTimeToUtcInstantValue optionalDateTimeToUtcInstant() throws IOException {
+
+    return optionalDateTimeToUtcInstantReader.readValue(dateTimeJson);
+  }
+
+
+  @Benchmark
+  public OptionalTinyIntToBooleanValue optionalTinyIntToBoolean() throws IOException {
+
+    return optionalTinyIntToBooleanReader.readValue(tinyIntJson);
+  }
+
+
+  @Benchmark
+  public OptionalYesNoEnumToBooleanValue optionalYesNoEnumToBoolean() throws IOException {
+
+    return optionalYesNoEnumToBooleanReader.readValue(yesNoJson);
+  }
+
+
+  @Benchmark
+  public UtcInstantValue utcInstant() throws IOException {
+
+    return utcInstantReader.readValue(dateTimeJson);
+  }
+
+
+  @Benchmark
+  public YesNoEnumToBooleanValue yesNoEnumToBoolean() throws IOException {
+
+    return yesNoEnumToBooleanReader.readValue(yesNoJson);
+  }
+}
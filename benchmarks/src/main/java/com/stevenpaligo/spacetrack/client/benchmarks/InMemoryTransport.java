@@ -0,0 +1,98 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackRequest;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackRequest.Method;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackResponse;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackTransport;
+
+/**
+ * A transport that answers every request from memory, so that benchmarks measure the client rather than the network. Logins always succeed, and each query is answered with the payload
+ * registered for its query class.
+ *
+ * @author Steven Paligo
+ */
+public class InMemoryTransport implements SpaceTrackTransport {
+
+  private static final String QUERY_PATH = "/basicspacedata/query/class/";
+  private static final byte[] EMPTY_STRING = "\"\"".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+  private static final Map<String, List<String>> LOGIN_HEADERS = Collections.singletonMap("Set-Cookie", Collections.singletonList("chocolatechip=1; path=/"));
+
+  private final Map<String, byte[]> payloadsByQueryClass = new ConcurrentHashMap<>();
+
+
+  /**
+   * Registers the response to every query of a query class
+   *
+   * @param queryClass The Space-Track.org query class (e.g. "tle")
+   * @param payload The JSON response
+   * @return This transport
+   */
+  public InMemoryTransport setPayload(String queryClass, byte[] payload) {
+
+    payloadsByQueryClass.put(queryClass, payload);
+    return this;
+  }
+
+
+  @Override
+  public SpaceTrackResponse send(SpaceTrackRequest request) throws IOException {
+
+    String path = request.getUri().getPath();
+
+    if (request.getMethod() == Method.POST) {
+
+      // a login, which may carry the first query in the form
+      for (String parameter : new String(request.getBody().get(), StandardCharsets.UTF_8).split("&")) {
+
+        if (parameter.startsWith("query=")) {
+
+          return respond(getPayload(URLDecoder.decode(parameter.substring("query=".length()), "UTF-8")), LOGIN_HEADERS);
+        }
+      }
+
+      return respond(EMPTY_STRING, LOGIN_HEADERS);
+
+    } else if (path.contains(QUERY_PATH)) {
+
+      return respond(getPayload(path), Collections.emptyMap());
+    }
+
+    return respond(EMPTY_STRING, Collections.emptyMap());
+  }
+
+
+  private byte[] getPayload(String queryUrl) {
+
+    int classStart = queryUrl.indexOf(QUERY_PATH) + QUERY_PATH.length();
+    String queryClass = queryUrl.substring(classStart).split("/", 2)[0];
+    return payloadsByQueryClass.getOrDefault(queryClass, EMPTY_ARRAY);
+  }
+
+
+  private static SpaceTrackResponse respond(byte[] body, Map<String, List<String>> headers) {
+
+    return new SpaceTrackResponse(200, "OK", headers, new ByteArrayInputStream(body));
+  }
+}
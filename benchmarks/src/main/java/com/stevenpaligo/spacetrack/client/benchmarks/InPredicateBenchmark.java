@@ -0,0 +1,77 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCatQueryField;
+import com.stevenpaligo.spacetrack.client.predicate.In;
+
+/**
+ * Measures building an In predicate (and its query parameter) from a large set of catalog numbers, with and without range compaction
+ *
+ * @author Steven Paligo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InPredicateBenchmark {
+
+  @Param({"10", "1000", "10000"})
+  public int valueCount;
+
+  @Param({"false", "true"})
+  public boolean compactRanges;
+
+  private List<Integer> catalogNumbers;
+
+
+  @Setup
+  public void setUp() {
+
+    // mostly consecutive catalog numbers with random gaps, like a slice of the catalog
+    catalogNumbers = new ArrayList<>(valueCount);
+    Random random = new Random(42);
+    int catalogNumber = 1;
+
+    for (int i = 0; i < valueCount; i++) {
+
+      catalogNumber += (random.nextInt(4) == 0 ? 2 + random.nextInt(10) : 1);
+      catalogNumbers.add(catalogNumber);
+    }
+  }
+
+
+  @Benchmark
+  public String toQueryParameter() {
+
+    return new In<>(SatCatQueryField.CATALOG_NUMBER, catalogNumbers, Integer.class, compactRanges).toQueryParameter();
+  }
+}
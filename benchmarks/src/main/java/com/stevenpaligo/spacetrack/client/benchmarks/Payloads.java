@@ -0,0 +1,78 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builds query responses of any size from the recorded records in "/payloads" (one Space-Track.org record per query class)
+ *
+ * @author Steven Paligo
+ */
+public class Payloads {
+
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+
+  private Payloads() {
+
+    // static methods only
+  }
+
+
+  /**
+   * Builds a response by repeating the recorded record of a query class with consecutive catalog numbers
+   *
+   * @param queryClass The Space-Track.org query class (e.g. "tle", "satcat", or "omm")
+   * @param resultCount The number of records in the response
+   * @return The response as UTF-8 JSON
+   */
+  public static byte[] generate(String queryClass, int resultCount) {
+
+    try (InputStream recording = Payloads.class.getResourceAsStream("/payloads/" + queryClass + ".json")) {
+
+      if (recording == null) {
+
+        throw new IllegalArgumentException("There is no recorded payload for the query class: " + queryClass);
+      }
+
+      ObjectNode record = (ObjectNode) jsonMapper.readTree(recording).get(0);
+      ArrayNode response = jsonMapper.createArrayNode();
+
+      for (int i = 0; i < resultCount; i++) {
+
+        ObjectNode copy = record.deepCopy();
+        copy.put("NORAD_CAT_ID", Integer.toString(i + 1));
+
+        if (copy.has("OBJECT_NUMBER")) {
+
+          copy.put("OBJECT_NUMBER", Integer.toString(i + 1));
+        }
+
+        response.add(copy);
+      }
+
+      return jsonMapper.writeValueAsBytes(response);
+
+    } catch (IOException e) {
+
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.benchmarks;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.stevenpaligo.spacetrack.client.TleQuery;
+import com.stevenpaligo.spacetrack.client.TleQuery.TleQueryField;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.predicate.GreaterThan;
+import com.stevenpaligo.spacetrack.client.predicate.InclusiveRange;
+import com.stevenpaligo.spacetrack.client.predicate.LessThan;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import com.stevenpaligo.spacetrack.client.query.Sort;
+import com.stevenpaligo.spacetrack.client.query.Sort.Direction;
+
+/**
+ * Measures building the query string of a query with many predicates
+ *
+ * @author Steven Paligo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryStringBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int predicateCount;
+
+  private TleQuery query;
+
+
+  @Setup
+  public void setUp() {
+
+    query = new TleQuery();
+    Instant epoch = Instant.parse("2020-01-01T00:00:00Z");
+
+    for (int i = 0; i < predicateCount; i++) {
+
+      // cycle through the predicate types, including the date formatting ones
+      switch (i % 4) {
+
+        case 0:
+          query.addPredicate(new Equal<>(TleQueryField.CATALOG_NUMBER, i + 1));
+          break;
+
+        case 1:
+          query.addPredicate(new GreaterThan<>(TleQueryField.EPOCH_YMD_HMS, epoch.plusSeconds(i)));
+          break;
+
+        case 2:
+          query.addPredicate(new LessThan<>(TleQueryField.ECCENTRICITY, 0.25));
+          break;
+
+        default:
+          query.addPredicate(new InclusiveRange<>(TleQueryField.MEAN_MOTION_REVS_PER_DAY, 11.25, 17.0));
+          break;
+      }
+    }
+
+    query.addSort(new Sort<>(TleQueryField.EPOCH_YMD_HMS, Direction.DESC)).setLimit(new Limit(1000));
+  }
+
+
+  @Benchmark
+  public String getQueryString() {
+
+    return query.getQueryString();
+  }
+}
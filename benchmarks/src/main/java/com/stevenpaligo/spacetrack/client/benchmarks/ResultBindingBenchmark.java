@@ -0,0 +1,105 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import com.stevenpaligo.spacetrack.client.OrbitMeanElementsMessageQuery;
+import com.stevenpaligo.spacetrack.client.OrbitMeanElementsMessageQuery.OrbitMeanElementsMessage;
+import com.stevenpaligo.spacetrack.client.SatCatQuery;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession;
+import com.stevenpaligo.spacetrack.client.TleQuery;
+import com.stevenpaligo.spacetrack.client.TleQuery.Tle;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+
+/**
+ * Measures executing queries end to end (request, response, and JSON binding) against recorded Space-Track.org payloads served from memory
+ *
+ * @author Steven Paligo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultBindingBenchmark {
+
+  @Param({"1", "100", "10000"})
+  public int resultCount;
+
+  private SpaceTrackSession session;
+
+
+  @Setup
+  public void setUp() throws IOException {
+
+    InMemoryTransport transport = new InMemoryTransport().setPayload("tle", Payloads.generate("tle", resultCount)).setPayload("satcat", Payloads.generate("satcat", resultCount))
+        .setPayload("omm", Payloads.generate("omm", resultCount));
+
+    session = new SpaceTrackSession(new DefaultCredentialProvider("user", "password")).setTransport(transport).setRequestScheduler(RequestScheduler.unlimited());
+    session.login();
+  }
+
+
+  @Benchmark
+  public List<Tle> tle() throws IOException {
+
+    return new TleQuery().setSession(session).execute();
+  }
+
+
+  @Benchmark
+  public List<CompactElementSet> tleCompact() throws IOException {
+
+    return new TleQuery().asCompact().setSession(session).execute();
+  }
+
+
+  @Benchmark
+  public ElementSetColumns tleColumns() throws IOException {
+
+    return new TleQuery().asCompact().setSession(session).executeColumns();
+  }
+
+
+  @Benchmark
+  public List<SatCat> satCat() throws IOException {
+
+    return new SatCatQuery().setSession(session).execute();
+  }
+
+
+  @Benchmark
+  public List<OrbitMeanElementsMessage> orbitMeanElementsMessage() throws IOException {
+
+    return new OrbitMeanElementsMessageQuery().setSession(session).execute();
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * A compact, read-only element set returned by the compact forms of element set queries (see {@link TleQuery#asCompact()}, {@link LatestTleQuery#asCompact()}, and
+ * {@link OrbitMeanElementsMessageQuery#asCompact()}). All numeric values are stored as primitives, which makes an element set several times smaller than the corresponding {@link TleQuery.Tle},
+ * {@link LatestTleQuery.LatestTle}, or {@link OrbitMeanElementsMessageQuery.OrbitMeanElementsMessage}. Fields that are rarely needed for orbit propagation (e.g. the comment and originator) are
+ * not kept.
+ * 
+ * <p>
+ * Missing values are represented by sentinels instead of {@link java.util.Optional}s: {@link Double#NaN} for floating-point values, {@link #MISSING_INT} for integers, {@link #MISSING_EPOCH} for
+ * the epoch, <code>'\0'</code> for the classification, and <code>null</code> for strings.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+@Getter
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CompactElementSet {
+
+  /**
+   * The value of integer fields that are missing from the result
+   */
+  public static final int MISSING_INT = -1;
+
+  /**
+   * The value of {@link #getEpochMicros()} if the epoch is missing from the result
+   */
+  public static final long MISSING_EPOCH = Long.MIN_VALUE;
+
+
+  private static final String CATALOG_NUMBER_JSON_PROPERTY = "NORAD_CAT_ID";
+  private static final String OBJECT_NAME_JSON_PROPERTY = "OBJECT_NAME";
+  private static final String OBJECT_ID_JSON_PROPERTY = "OBJECT_ID";
+  private static final String OBJECT_TYPE_JSON_PROPERTY = "OBJECT_TYPE";
+  private static final String CLASSIFICATION_JSON_PROPERTY = "CLASSIFICATION_TYPE";
+  private static final String EPOCH_JSON_PROPERTY = "EPOCH";
+  private static final String EPOCH_MICROSECONDS_JSON_PROPERTY = "EPOCH_MICROSECONDS";
+  private static final String MEAN_MOTION_JSON_PROPERTY = "MEAN_MOTION";
+  private static final String ECCENTRICITY_JSON_PROPERTY = "ECCENTRICITY";
+  private static final String INCLINATION_JSON_PROPERTY = "INCLINATION";
+  private static final String RIGHT_ASC_OF_NODE_JSON_PROPERTY = "RA_OF_ASC_NODE";
+  private static final String ARG_OF_PERIGEE_JSON_PROPERTY = "ARG_OF_PERICENTER";
+  private static final String MEAN_ANOMALY_JSON_PROPERTY = "MEAN_ANOMALY";
+  private static final String EPHEMERIS_TYPE_JSON_PROPERTY = "EPHEMERIS_TYPE";
+  private static final String ELEMENT_SET_NUMBER_JSON_PROPERTY = "ELEMENT_SET_NO";
+  private static final String REV_NUMBER_JSON_PROPERTY = "REV_AT_EPOCH";
+  private static final String BSTAR_JSON_PROPERTY = "BSTAR";
+  private static final String MEAN_MOTION_DOT_JSON_PROPERTY = "MEAN_MOTION_DOT";
+  private static final String MEAN_MOTION_DOUBLE_DOT_JSON_PROPERTY = "MEAN_MOTION_DDOT";
+  private static final String TLE_LINE_1_JSON_PROPERTY = "TLE_LINE1";
+  private static final String TLE_LINE_2_JSON_PROPERTY = "TLE_LINE2";
+  private static final String SEMI_MAJOR_AXIS_JSON_PROPERTY = "SEMIMAJOR_AXIS";
+  private static final String PERIOD_JSON_PROPERTY = "PERIOD";
+  private static final String APOGEE_HEIGHT_JSON_PROPERTY = "APOGEE";
+  private static final String APOGEE_HEIGHT_OMM_JSON_PROPERTY = "APOAPSIS";
+  private static final String PERIGEE_HEIGHT_JSON_PROPERTY = "PERIGEE";
+  private static final String PERIGEE_HEIGHT_OMM_JSON_PROPERTY = "PERIAPSIS";
+  private static final String DECAYED_JSON_PROPERTY = "DECAYED";
+  private static final String FILE_NUMBER_JSON_PROPERTY = "FILE";
+
+
+  @JsonProperty(CATALOG_NUMBER_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private int catalogNumber = MISSING_INT;
+
+  @JsonProperty(OBJECT_NAME_JSON_PROPERTY)
+  private String objectName;
+
+  /**
+   * The international designator (e.g. "1998-067A")
+   */
+  @JsonProperty(OBJECT_ID_JSON_PROPERTY)
+  private String objectId;
+
+  private String objectType;
+
+  private char classification;
+
+  /**
+   * The epoch in microseconds since 1970-01-01T00:00:00Z, or {@link #MISSING_EPOCH}
+   */
+  private long epochMicros = MISSING_EPOCH;
+
+  @JsonProperty(MEAN_MOTION_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double meanMotionRevsPerDay = Double.NaN;
+
+  @JsonProperty(ECCENTRICITY_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double eccentricity = Double.NaN;
+
+  @JsonProperty(INCLINATION_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double inclinationDegrees = Double.NaN;
+
+  @JsonProperty(RIGHT_ASC_OF_NODE_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double rightAscOfNodeDegrees = Double.NaN;
+
+  @JsonProperty(ARG_OF_PERIGEE_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double argOfPerigeeDegrees = Double.NaN;
+
+  @JsonProperty(MEAN_ANOMALY_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double meanAnomalyDegrees = Double.NaN;
+
+  @JsonProperty(EPHEMERIS_TYPE_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private int ephemerisType = MISSING_INT;
+
+  @JsonProperty(ELEMENT_SET_NUMBER_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private int elementSetNumber = MISSING_INT;
+
+  @JsonProperty(REV_NUMBER_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private int revNumber = MISSING_INT;
+
+  @JsonProperty(BSTAR_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double bstar = Double.NaN;
+
+  @JsonProperty(MEAN_MOTION_DOT_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double meanMotionDot = Double.NaN;
+
+  @JsonProperty(MEAN_MOTION_DOUBLE_DOT_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double meanMotionDoubleDot = Double.NaN;
+
+  @JsonProperty(TLE_LINE_1_JSON_PROPERTY)
+  private String tleLine1;
+
+  @JsonProperty(TLE_LINE_2_JSON_PROPERTY)
+  private String tleLine2;
+
+  @JsonProperty(SEMI_MAJOR_AXIS_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double semiMajorAxisKilometers = Double.NaN;
+
+  @JsonProperty(PERIOD_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double periodMinutes = Double.NaN;
+
+  /**
+   * Approximate height of the apogee assuming two-body motion and a spherical Earth with radius 6378.135 km
+   */
+  @JsonProperty(APOGEE_HEIGHT_JSON_PROPERTY)
+  @JsonAlias(APOGEE_HEIGHT_OMM_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double apogeeHeightKilometers = Double.NaN;
+
+  /**
+   * Approximate height of the perigee assuming two-body motion and a spherical Earth with radius 6378.135 km
+   */
+  @JsonProperty(PERIGEE_HEIGHT_JSON_PROPERTY)
+  @JsonAlias(PERIGEE_HEIGHT_OMM_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private double perigeeHeightKilometers = Double.NaN;
+
+  private boolean decayed;
+
+  /**
+   * The number of the file the element set was published in (files are numbered in the order they are published, so a correction to an element set has a higher file number than the
+   * element set it corrects), or {@link #MISSING_INT}
+   */
+  @JsonProperty(FILE_NUMBER_JSON_PROPERTY)
+  @JsonSetter(nulls = Nulls.SKIP)
+  private int fileNumber = MISSING_INT;
+
+
+  /**
+   * Gets the epoch of the element set
+   * 
+   * @return The epoch, or null if it is missing
+   */
+  public Instant getEpoch() {
+
+    return (epochMicros == MISSING_EPOCH ? null : Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L), Math.floorMod(epochMicros, 1_000_000L) * 1_000L));
+  }
+
+
+  public double getApogeeRadiusKilometers() {
+
+    return apogeeHeightKilometers + 6378.135;
+  }
+
+
+  public double getPerigeeRadiusKilometers() {
+
+    return perigeeHeightKilometers + 6378.135;
+  }
+
+
+  @JsonProperty(OBJECT_TYPE_JSON_PROPERTY)
+  private void setObjectType(String objectType) {
+
+    // there are only a handful of object types, so share the strings
+    this.objectType = (objectType == null ? null : objectType.intern());
+  }
+
+
+  @JsonProperty(CLASSIFICATION_JSON_PROPERTY)
+  private void setClassification(String classification) {
+
+    this.classification = (classification == null || classification.isEmpty() ? '\0' : classification.charAt(0));
+  }
+
+
+  /**
+   * Sets the epoch from either "yyyy-MM-dd HH:mm:ss" (TLE results, with the fractional seconds in a separate field) or "yyyy-MM-ddTHH:mm:ss.SSSSSS" (OMM results)
+   */
+  @JsonProperty(EPOCH_JSON_PROPERTY)
+  private void setEpoch(String epoch) {
+
+    if (epoch != null && epoch.isEmpty() == false) {
+
+      Instant instant = LocalDateTime.parse(epoch.replace(' ', 'T')).toInstant(ZoneOffset.UTC);
+      addEpochMicros(ChronoUnit.MICROS.between(Instant.EPOCH, instant));
+    }
+  }
+
+
+  @JsonProperty(EPOCH_MICROSECONDS_JSON_PROPERTY)
+  private void setEpochMicroseconds(Integer epochMicroseconds) {
+
+    if (epochMicroseconds != null) {
+
+      addEpochMicros(epochMicroseconds);
+    }
+  }
+
+
+  @JsonProperty(DECAYED_JSON_PROPERTY)
+  private void setDecayed(String decayed) {
+
+    this.decayed = (decayed != null && decayed.isEmpty() == false && Integer.parseInt(decayed) != 0); // 0 = false, anything else = true
+  }
+
+
+  /**
+   * Adds to the epoch, which is assembled from two fields in TLE results that may arrive in either order
+   */
+  private void addEpochMicros(long micros) {
+
+    epochMicros = (epochMicros == MISSING_EPOCH ? 0 : epochMicros) + micros;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.io.IOException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.stevenpaligo.spacetrack.client.query.QueryField;
+import lombok.NonNull;
+
+/**
+ * The compact form of an element set query, which returns {@link CompactElementSet}s instead of the query's usual result type. Compact queries are created from element set queries with
+ * {@link TleQuery#asCompact()}, {@link LatestTleQuery#asCompact()}, or {@link OrbitMeanElementsMessageQuery#asCompact()}, and can be built further like any other query.
+ * 
+ * @author Steven Paligo
+ */
+public class CompactElementSetQuery<T extends QueryField> extends Query<T, CompactElementSet, CompactElementSetQuery<T>> {
+
+  CompactElementSetQuery(Query<T, ?, ?> source) {
+
+    super(source, CompactElementSet.class);
+  }
+
+
+  /**
+   * Executes the query and stores the results in new columns. See {@link #executeColumns(ElementSetColumns)}.
+   * 
+   * @return The results of the query, one row per element set in the order they were returned
+   * @throws IOException An error occurred while executing the query or reading the response
+   */
+  public ElementSetColumns executeColumns() throws IOException {
+
+    return executeColumns(new ElementSetColumns());
+  }
+
+
+  /**
+   * Executes the query and appends the results to existing columns. Values are parsed straight from the response into the columns as it arrives, so no object is created per element set;
+   * reusing the same columns (after {@link ElementSetColumns#clear()}) for repeated queries avoids allocating the arrays again.
+   * 
+   * <p>
+   * The query is executed like {@link #execute()}: responses are read from and added to the session's persistent cache, and queries that are split (see
+   * {@link SpaceTrackSession#setMaxQueryUrlLength(int)}) or that the session's cache could answer (see {@link SpaceTrackSession#setCache(com.stevenpaligo.spacetrack.client.cache.QueryCache)}) are
+   * executed by {@link #execute()} and the resulting element sets are copied into the columns. Responses parsed straight into the columns are never sanitized.
+   * </p>
+   * 
+   * @param columns The non-null columns to append the results to
+   * @return <code>columns</code>
+   * @throws IOException An error occurred while executing the query or reading the response (including a malformed number in the response), in which case no rows are appended
+   */
+  public ElementSetColumns executeColumns(@NonNull ElementSetColumns columns) throws IOException {
+
+    // a failure partway through leaves the columns as they were
+    int startSize = columns.size();
+
+    try {
+
+      executeRaw(response -> {
+
+        try (JsonParser parser = createParser(response)) {
+
+          columns.read(parser);
+        }
+      }, columns::addRow);
+
+    } catch (IOException | RuntimeException e) {
+
+      columns.truncate(startSize);
+      throw e;
+    }
+
+    return columns;
+  }
+}
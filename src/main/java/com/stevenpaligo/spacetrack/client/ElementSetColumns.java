@@ -0,0 +1,648 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.stevenpaligo.spacetrack.client.util.NumberParser;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Element sets stored column by column: one primitive array per field, with the element set at row <code>i</code> spread across index <code>i</code> of every array. Columns are filled directly
+ * from the JSON response by {@link CompactElementSetQuery#executeColumns()}, without creating an object per element set, and scanning a single column (e.g. finding every element set with a
+ * perigee below some height) touches only the memory that column occupies.
+ * 
+ * <p>
+ * The arrays returned by the getters are the backing arrays, not copies. They may be longer than {@link #size()}; only the first {@link #size()} entries are valid. The arrays are replaced when
+ * the columns grow, so they should be fetched again after more rows are added.
+ * </p>
+ * 
+ * <p>
+ * Missing values are represented by the same sentinels as {@link CompactElementSet}: {@link Double#NaN} for floating-point values, {@link CompactElementSet#MISSING_INT} for integers, and
+ * {@link CompactElementSet#MISSING_EPOCH} for the epoch. String fields (names, designators, and TLE lines) are not stored; use the catalog number to join the columns with other data.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+@Getter
+public class ElementSetColumns {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+
+  @Getter(AccessLevel.NONE)
+  private int size;
+
+  private int[] catalogNumber;
+
+  /**
+   * Epochs in microseconds since 1970-01-01T00:00:00Z
+   */
+  private long[] epochMicros;
+
+  private double[] meanMotionRevsPerDay;
+
+  private double[] eccentricity;
+
+  private double[] inclinationDegrees;
+
+  private double[] rightAscOfNodeDegrees;
+
+  private double[] argOfPerigeeDegrees;
+
+  private double[] meanAnomalyDegrees;
+
+  private int[] ephemerisType;
+
+  private int[] elementSetNumber;
+
+  private int[] revNumber;
+
+  private double[] bstar;
+
+  private double[] meanMotionDot;
+
+  private double[] meanMotionDoubleDot;
+
+  private double[] semiMajorAxisKilometers;
+
+  private double[] periodMinutes;
+
+  private double[] apogeeHeightKilometers;
+
+  private double[] perigeeHeightKilometers;
+
+
+  public ElementSetColumns() {
+
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+
+  /**
+   * Creates empty columns
+   * 
+   * @param initialCapacity The number of rows to allocate space for (the columns grow as needed)
+   * @throws IllegalArgumentException The initial capacity is negative
+   */
+  public ElementSetColumns(int initialCapacity) {
+
+    if (initialCapacity < 0) {
+
+      throw new IllegalArgumentException("The initial capacity is negative: " + initialCapacity);
+    }
+
+    catalogNumber = new int[initialCapacity];
+    epochMicros = new long[initialCapacity];
+    meanMotionRevsPerDay = new double[initialCapacity];
+    eccentricity = new double[initialCapacity];
+    inclinationDegrees = new double[initialCapacity];
+    rightAscOfNodeDegrees = new double[initialCapacity];
+    argOfPerigeeDegrees = new double[initialCapacity];
+    meanAnomalyDegrees = new double[initialCapacity];
+    ephemerisType = new int[initialCapacity];
+    elementSetNumber = new int[initialCapacity];
+    revNumber = new int[initialCapacity];
+    bstar = new double[initialCapacity];
+    meanMotionDot = new double[initialCapacity];
+    meanMotionDoubleDot = new double[initialCapacity];
+    semiMajorAxisKilometers = new double[initialCapacity];
+    periodMinutes = new double[initialCapacity];
+    apogeeHeightKilometers = new double[initialCapacity];
+    perigeeHeightKilometers = new double[initialCapacity];
+  }
+
+
+  /**
+   * Gets the number of rows (element sets) in the columns
+   * 
+   * @return The number of valid entries in each column
+   */
+  public int size() {
+
+    return size;
+  }
+
+
+  /**
+   * Removes all rows, keeping the allocated arrays so the columns can be refilled without allocating
+   */
+  public void clear() {
+
+    size = 0;
+  }
+
+
+  /**
+   * Gets the epoch of the element set in a row
+   * 
+   * @param row The row of the element set
+   * @return The epoch, or null if it is missing
+   * @throws IndexOutOfBoundsException The row is negative or not less than {@link #size()}
+   */
+  public Instant getEpoch(int row) {
+
+    checkRow(row);
+
+    long micros = epochMicros[row];
+
+    return (micros == CompactElementSet.MISSING_EPOCH ? null : Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L));
+  }
+
+
+  /**
+   * Finds the first row with a catalog number
+   * 
+   * @param catalogNumber The catalog number to look for
+   * @return The row, or -1 if no row has the catalog number
+   */
+  public int indexOf(int catalogNumber) {
+
+    int[] column = this.catalogNumber;
+
+    for (int row = 0; row < size; row++) {
+
+      if (column[row] == catalogNumber) {
+
+        return row;
+      }
+    }
+
+    return -1;
+  }
+
+
+  /**
+   * Copies a row from other columns (e.g. to select a subset of a catalog) and appends it
+   * 
+   * @param source The non-null columns to copy from
+   * @param sourceRow The row to copy
+   * @return The row the element set was copied to
+   * @throws IndexOutOfBoundsException The source row is negative or not less than the source's size
+   */
+  public int addRow(@NonNull ElementSetColumns source, int sourceRow) {
+
+    source.checkRow(sourceRow);
+
+
+    int row = addRow();
+
+    catalogNumber[row] = source.catalogNumber[sourceRow];
+    epochMicros[row] = source.epochMicros[sourceRow];
+    meanMotionRevsPerDay[row] = source.meanMotionRevsPerDay[sourceRow];
+    eccentricity[row] = source.eccentricity[sourceRow];
+    inclinationDegrees[row] = source.inclinationDegrees[sourceRow];
+    rightAscOfNodeDegrees[row] = source.rightAscOfNodeDegrees[sourceRow];
+    argOfPerigeeDegrees[row] = source.argOfPerigeeDegrees[sourceRow];
+    meanAnomalyDegrees[row] = source.meanAnomalyDegrees[sourceRow];
+    ephemerisType[row] = source.ephemerisType[sourceRow];
+    elementSetNumber[row] = source.elementSetNumber[sourceRow];
+    revNumber[row] = source.revNumber[sourceRow];
+    bstar[row] = source.bstar[sourceRow];
+    meanMotionDot[row] = source.meanMotionDot[sourceRow];
+    meanMotionDoubleDot[row] = source.meanMotionDoubleDot[sourceRow];
+    semiMajorAxisKilometers[row] = source.semiMajorAxisKilometers[sourceRow];
+    periodMinutes[row] = source.periodMinutes[sourceRow];
+    apogeeHeightKilometers[row] = source.apogeeHeightKilometers[sourceRow];
+    perigeeHeightKilometers[row] = source.perigeeHeightKilometers[sourceRow];
+
+    return row;
+  }
+
+
+  /**
+   * Copies an element set into a new row
+   * 
+   * @param elementSet The non-null element set to copy
+   * @return The row the element set was copied to
+   */
+  public int addRow(@NonNull CompactElementSet elementSet) {
+
+    int row = addRow();
+
+    catalogNumber[row] = elementSet.getCatalogNumber();
+    epochMicros[row] = elementSet.getEpochMicros();
+    meanMotionRevsPerDay[row] = elementSet.getMeanMotionRevsPerDay();
+    eccentricity[row] = elementSet.getEccentricity();
+    inclinationDegrees[row] = elementSet.getInclinationDegrees();
+    rightAscOfNodeDegrees[row] = elementSet.getRightAscOfNodeDegrees();
+    argOfPerigeeDegrees[row] = elementSet.getArgOfPerigeeDegrees();
+    meanAnomalyDegrees[row] = elementSet.getMeanAnomalyDegrees();
+    ephemerisType[row] = elementSet.getEphemerisType();
+    elementSetNumber[row] = elementSet.getElementSetNumber();
+    revNumber[row] = elementSet.getRevNumber();
+    bstar[row] = elementSet.getBstar();
+    meanMotionDot[row] = elementSet.getMeanMotionDot();
+    meanMotionDoubleDot[row] = elementSet.getMeanMotionDoubleDot();
+    semiMajorAxisKilometers[row] = elementSet.getSemiMajorAxisKilometers();
+    periodMinutes[row] = elementSet.getPeriodMinutes();
+    apogeeHeightKilometers[row] = elementSet.getApogeeHeightKilometers();
+    perigeeHeightKilometers[row] = elementSet.getPerigeeHeightKilometers();
+
+    return row;
+  }
+
+
+  @Override
+  public String toString() {
+
+    return "ElementSetColumns(size=" + size + ")";
+  }
+
+
+  /**
+   * Appends the element sets in a JSON array to the columns, reading the array one token at a time. If the JSON is malformed, no rows are appended.
+   * 
+   * @param parser A parser positioned before the start of the array
+   * @return The number of rows added
+   * @throws IOException The JSON could not be read or is not an array of objects
+   * @throws JsonParseException A value could not be parsed (the message names the field and the index of the result in the array)
+   */
+  int read(JsonParser parser) throws IOException {
+
+    JsonToken token = parser.nextToken();
+
+    if (token == null) {
+
+      throw new IOException("SpaceTrack returned an empty response");
+
+    } else if (token != JsonToken.START_ARRAY) {
+
+      throw new IOException("SpaceTrack returned an unexpected response (unexpected token: " + token + ")");
+    }
+
+    // rows already read (and the one being filled) are removed if the response turns out to be malformed
+    int startSize = size;
+
+    try {
+
+      while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+
+        int row = addRow();
+
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+
+          String fieldName = parser.getCurrentName();
+          JsonToken valueToken = parser.nextToken();
+
+          if (valueToken == JsonToken.START_OBJECT || valueToken == JsonToken.START_ARRAY) {
+
+            parser.skipChildren();
+
+          } else if (valueToken != JsonToken.VALUE_NULL && (valueToken != JsonToken.VALUE_STRING || parser.getTextLength() > 0)) {
+
+            try {
+
+              readValue(parser, fieldName, row);
+
+            } catch (NumberFormatException | DateTimeParseException e) {
+
+              throw new JsonParseException(parser, "SpaceTrack returned a malformed value (field: " + fieldName + ", result: " + (row - startSize) + ", value: " + parser.getText() + ")", e);
+            }
+          }
+        }
+
+        if (token != JsonToken.END_OBJECT) {
+
+          throw new IOException("SpaceTrack returned a malformed response (unexpected token: " + token + ")");
+        }
+      }
+
+      if (token != JsonToken.END_ARRAY) {
+
+        throw new IOException("SpaceTrack returned a malformed response (unexpected token: " + token + ")");
+      }
+
+    } catch (IOException | RuntimeException e) {
+
+      truncate(startSize);
+      throw e;
+    }
+
+    return size - startSize;
+  }
+
+
+  /**
+   * Stores the current (non-empty) value of the parser in a row
+   */
+  private void readValue(JsonParser parser, String fieldName, int row) throws IOException {
+
+    switch (fieldName) {
+
+      case "NORAD_CAT_ID":
+        catalogNumber[row] = readInt(parser);
+        break;
+
+      case "EPOCH":
+        addEpochMicros(row, readEpochMicros(parser));
+        break;
+
+      case "EPOCH_MICROSECONDS":
+        addEpochMicros(row, readInt(parser));
+        break;
+
+      case "MEAN_MOTION":
+        meanMotionRevsPerDay[row] = readDouble(parser);
+        break;
+
+      case "ECCENTRICITY":
+        eccentricity[row] = readDouble(parser);
+        break;
+
+      case "INCLINATION":
+        inclinationDegrees[row] = readDouble(parser);
+        break;
+
+      case "RA_OF_ASC_NODE":
+        rightAscOfNodeDegrees[row] = readDouble(parser);
+        break;
+
+      case "ARG_OF_PERICENTER":
+        argOfPerigeeDegrees[row] = readDouble(parser);
+        break;
+
+      case "MEAN_ANOMALY":
+        meanAnomalyDegrees[row] = readDouble(parser);
+        break;
+
+      case "EPHEMERIS_TYPE":
+        ephemerisType[row] = readInt(parser);
+        break;
+
+      case "ELEMENT_SET_NO":
+        elementSetNumber[row] = readInt(parser);
+        break;
+
+      case "REV_AT_EPOCH":
+        revNumber[row] = readInt(parser);
+        break;
+
+      case "BSTAR":
+        bstar[row] = readDouble(parser);
+        break;
+
+      case "MEAN_MOTION_DOT":
+        meanMotionDot[row] = readDouble(parser);
+        break;
+
+      case "MEAN_MOTION_DDOT":
+        meanMotionDoubleDot[row] = readDouble(parser);
+        break;
+
+      case "SEMIMAJOR_AXIS":
+        semiMajorAxisKilometers[row] = readDouble(parser);
+        break;
+
+      case "PERIOD":
+        periodMinutes[row] = readDouble(parser);
+        break;
+
+      case "APOGEE":
+      case "APOAPSIS":
+        apogeeHeightKilometers[row] = readDouble(parser);
+        break;
+
+      case "PERIGEE":
+      case "PERIAPSIS":
+        perigeeHeightKilometers[row] = readDouble(parser);
+        break;
+
+      default:
+        // not stored in a column
+        break;
+    }
+  }
+
+
+  /**
+   * Adds a row filled with missing values, growing the columns if necessary
+   */
+  int addRow() {
+
+    if (size == catalogNumber.length) {
+
+      grow();
+    }
+
+    int row = size++;
+
+    catalogNumber[row] = CompactElementSet.MISSING_INT;
+    epochMicros[row] = CompactElementSet.MISSING_EPOCH;
+    meanMotionRevsPerDay[row] = Double.NaN;
+    eccentricity[row] = Double.NaN;
+    inclinationDegrees[row] = Double.NaN;
+    rightAscOfNodeDegrees[row] = Double.NaN;
+    argOfPerigeeDegrees[row] = Double.NaN;
+    meanAnomalyDegrees[row] = Double.NaN;
+    ephemerisType[row] = CompactElementSet.MISSING_INT;
+    elementSetNumber[row] = CompactElementSet.MISSING_INT;
+    revNumber[row] = CompactElementSet.MISSING_INT;
+    bstar[row] = Double.NaN;
+    meanMotionDot[row] = Double.NaN;
+    meanMotionDoubleDot[row] = Double.NaN;
+    semiMajorAxisKilometers[row] = Double.NaN;
+    periodMinutes[row] = Double.NaN;
+    apogeeHeightKilometers[row] = Double.NaN;
+    perigeeHeightKilometers[row] = Double.NaN;
+
+    return row;
+  }
+
+
+  /**
+   * Removes the last row (e.g. one that turned out to be malformed while it was being filled)
+   */
+  void removeLastRow() {
+
+    if (size > 0) {
+
+      size--;
+    }
+  }
+
+
+  /**
+   * Removes the rows after the first <code>size</code> rows (e.g. those read from a response that turned out to be malformed)
+   */
+  void truncate(int size) {
+
+    if (size < 0 || size > this.size) {
+
+      throw new IndexOutOfBoundsException("The size is out of range: " + size);
+    }
+
+    this.size = size;
+  }
+
+
+  private void grow() {
+
+    int capacity = Math.max(16, catalogNumber.length + (catalogNumber.length >> 1));
+
+    catalogNumber = Arrays.copyOf(catalogNumber, capacity);
+    epochMicros = Arrays.copyOf(epochMicros, capacity);
+    meanMotionRevsPerDay = Arrays.copyOf(meanMotionRevsPerDay, capacity);
+    eccentricity = Arrays.copyOf(eccentricity, capacity);
+    inclinationDegrees = Arrays.copyOf(inclinationDegrees, capacity);
+    rightAscOfNodeDegrees = Arrays.copyOf(rightAscOfNodeDegrees, capacity);
+    argOfPerigeeDegrees = Arrays.copyOf(argOfPerigeeDegrees, capacity);
+    meanAnomalyDegrees = Arrays.copyOf(meanAnomalyDegrees, capacity);
+    ephemerisType = Arrays.copyOf(ephemerisType, capacity);
+    elementSetNumber = Arrays.copyOf(elementSetNumber, capacity);
+    revNumber = Arrays.copyOf(revNumber, capacity);
+    bstar = Arrays.copyOf(bstar, capacity);
+    meanMotionDot = Arrays.copyOf(meanMotionDot, capacity);
+    meanMotionDoubleDot = Arrays.copyOf(meanMotionDoubleDot, capacity);
+    semiMajorAxisKilometers = Arrays.copyOf(semiMajorAxisKilometers, capacity);
+    periodMinutes = Arrays.copyOf(periodMinutes, capacity);
+    apogeeHeightKilometers = Arrays.copyOf(apogeeHeightKilometers, capacity);
+    perigeeHeightKilometers = Arrays.copyOf(perigeeHeightKilometers, capacity);
+  }
+
+
+  private void checkRow(int row) {
+
+    if (row < 0 || row >= size) {
+
+      throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+    }
+  }
+
+
+  /**
+   * Adds to the epoch of a row, which is assembled from two fields in TLE results that may arrive in either order
+   */
+  private void addEpochMicros(int row, long micros) {
+
+    epochMicros[row] = (epochMicros[row] == CompactElementSet.MISSING_EPOCH ? 0 : epochMicros[row]) + micros;
+  }
+
+
+  private static int readInt(JsonParser parser) throws IOException {
+
+    if (parser.currentToken() == JsonToken.VALUE_STRING) {
+
+      return NumberParser.parseInt(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+
+    } else {
+
+      return parser.getValueAsInt();
+    }
+  }
+
+
+  private static double readDouble(JsonParser parser) throws IOException {
+
+    if (parser.currentToken() == JsonToken.VALUE_STRING) {
+
+      return NumberParser.parseDouble(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+
+    } else {
+
+      return parser.getValueAsDouble();
+    }
+  }
+
+
+  /**
+   * Reads an epoch in either "yyyy-MM-dd HH:mm:ss" (TLE results, with the fractional seconds in a separate field) or "yyyy-MM-ddTHH:mm:ss.SSSSSS" (OMM results) without creating any objects
+   */
+  private static long readEpochMicros(JsonParser parser) throws IOException {
+
+    char[] chars = parser.getTextCharacters();
+    int offset = parser.getTextOffset();
+    int length = parser.getTextLength();
+
+    if (length < 19 || chars[offset + 4] != '-' || chars[offset + 7] != '-' || (chars[offset + 10] != ' ' && chars[offset + 10] != 'T') || chars[offset + 13] != ':'
+        || chars[offset + 16] != ':' || (length > 19 && (chars[offset + 19] != '.' || length > 26))) {
+
+      // some other format, so let the date/time parser deal with it
+      return parseEpochMicros(chars, offset, length);
+    }
+
+    int year = NumberParser.parseInt(chars, offset, 4);
+    int month = NumberParser.parseInt(chars, offset + 5, 2);
+    int day = NumberParser.parseInt(chars, offset + 8, 2);
+    int hour = NumberParser.parseInt(chars, offset + 11, 2);
+    int minute = NumberParser.parseInt(chars, offset + 14, 2);
+    int second = NumberParser.parseInt(chars, offset + 17, 2);
+
+    if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+
+      // out of range, so let the date/time parser reject it the same way
+      return parseEpochMicros(chars, offset, length);
+    }
+
+    long micros = 0;
+
+    if (length > 20) {
+
+      micros = NumberParser.parseInt(chars, offset + 20, length - 20);
+
+      for (int digits = length - 20; digits < 6; digits++) {
+
+        micros *= 10;
+      }
+    }
+
+    long seconds = daysSinceEpoch(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+
+    return seconds * 1_000_000L + micros;
+  }
+
+
+  private static long parseEpochMicros(char[] chars, int offset, int length) {
+
+    Instant instant = LocalDateTime.parse(new String(chars, offset, length).replace(' ', 'T')).toInstant(ZoneOffset.UTC);
+    return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+  }
+
+
+  private static int lengthOfMonth(int year, int month) {
+
+    if (month == 2) {
+
+      return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28);
+    }
+
+    return (month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31);
+  }
+
+
+  /**
+   * Counts the days from 1970-01-01 to a date in the proleptic Gregorian calendar
+   */
+  static long daysSinceEpoch(int year, int month, int day) {
+
+    // shift the year to start in March so the leap day is at the end
+    long y = (month <= 2 ? year - 1 : year);
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+    return era * 146_097 + dayOfEra - 719_468;
+  }
+}
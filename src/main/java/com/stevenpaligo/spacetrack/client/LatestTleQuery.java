@@ -42,6 +42,18 @@ public class LatestTleQuery extends Query<LatestTleQueryField, LatestTle, Latest
   }
 
 
+  /**
+   * Creates the compact form of this query, which returns {@link CompactElementSet}s with primitive fields instead of the usual results. The compact query is a copy of this query as it is now,
+   * so later changes to either query do not affect the other.
+   * 
+   * @return A new compact query with the same credentials, session, predicates, limit, sorts, and favorites
+   */
+  public CompactElementSetQuery<LatestTleQueryField> asCompact() {
+
+    return new CompactElementSetQuery<>(this);
+  }
+
+
   /**
    * Fields referenced in "latest TLE" queries on <a href="https://www.space-track.org/">Space-Track.org</a>.
    * 
@@ -0,0 +1,260 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Iterates over the results of a query that is fetched in pages (one query per {@link Limit}). Up to a fixed number of pages are fetched ahead of the consumer in parallel, and the results are
+ * returned in page order. Only the pages in flight are held in memory.
+ *
+ * @author Steven Paligo
+ */
+@Slf4j
+class PagedResultIterator<R> implements Iterator<R>, Closeable {
+
+  private final PageFetcher<R> pageFetcher;
+  private final Executor executor;
+  private final int pageSize;
+  private final int parallelism;
+  private final long endOffset;
+
+  private final Deque<Page<R>> pages = new ArrayDeque<>();
+  private long nextOffset;
+  private boolean lastPageFetched;
+  private Iterator<R> currentPage = Collections.emptyIterator();
+  private long pageCount;
+  private boolean closed;
+
+
+  /**
+   * Creates the iterator and waits for the first page
+   *
+   * @param pageFetcher The non-null function that fetches one page
+   * @param executor The non-null executor to fetch pages on
+   * @param pageSize The maximum number of results per page
+   * @param parallelism The maximum number of pages to fetch at the same time
+   * @param startOffset The offset of the first result
+   * @param endOffset The offset after the last result (at most {@link Integer#MAX_VALUE}, which fetches pages until one is not full)
+   * @throws IOException The first page was unable to be fetched
+   */
+  PagedResultIterator(@NonNull PageFetcher<R> pageFetcher, @NonNull Executor executor, int pageSize, int parallelism, long startOffset, long endOffset) throws IOException {
+
+    this.pageFetcher = pageFetcher;
+    this.executor = executor;
+    this.pageSize = pageSize;
+    this.parallelism = parallelism;
+    this.nextOffset = startOffset;
+    this.endOffset = endOffset;
+
+
+    // fail early if the query fails
+    try {
+
+      advance();
+
+    } catch (UncheckedIOException e) {
+
+      throw e.getCause();
+    }
+  }
+
+
+  @Override
+  public boolean hasNext() {
+
+    return currentPage.hasNext();
+  }
+
+
+  @Override
+  public R next() {
+
+    if (currentPage.hasNext() == false) {
+
+      throw new NoSuchElementException();
+    }
+
+
+    R result = currentPage.next();
+
+    if (currentPage.hasNext() == false) {
+
+      advance();
+    }
+
+    return result;
+  }
+
+
+  @Override
+  public void close() {
+
+    if (closed == false) {
+
+      closed = true;
+      currentPage = Collections.emptyIterator();
+
+      for (Page<R> page : pages) {
+
+        page.results.cancel(false);
+      }
+
+      pages.clear();
+    }
+  }
+
+
+  /**
+   * Waits for the next non-empty page, keeping the pages in flight topped up
+   */
+  private void advance() {
+
+    while (closed == false && currentPage.hasNext() == false) {
+
+      fetchPages();
+
+      if (pages.isEmpty()) {
+
+        log.debug("Fetched {} pages from SpaceTrack", pageCount);
+        close();
+        return;
+      }
+
+
+      // wait for the oldest page
+      Page<R> page = pages.removeFirst();
+      List<R> results;
+
+      try {
+
+        results = page.results.get();
+
+      } catch (InterruptedException e) {
+
+        Thread.currentThread().interrupt();
+        close();
+        throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for a page of SpaceTrack results"));
+
+      } catch (ExecutionException | CancellationException e) {
+
+        close();
+        Throwable cause = (e instanceof ExecutionException ? e.getCause() : e);
+
+        if (cause instanceof IOException) {
+
+          throw new UncheckedIOException((IOException) cause);
+
+        } else if (cause instanceof RuntimeException) {
+
+          throw (RuntimeException) cause;
+
+        } else if (cause instanceof Error) {
+
+          throw (Error) cause;
+
+        } else {
+
+          throw new UncheckedIOException(new IOException(cause));
+        }
+      }
+
+      pageCount++;
+
+
+      // a page that is not full is the last one
+      if (results.size() < page.limit.getMaxResults()) {
+
+        lastPageFetched = true;
+
+        for (Page<R> laterPage : pages) {
+
+          laterPage.results.cancel(false);
+        }
+
+        pages.clear();
+      }
+
+      currentPage = results.iterator();
+    }
+  }
+
+
+  /**
+   * Starts fetching pages until the maximum number of pages is in flight
+   */
+  private void fetchPages() {
+
+    while (lastPageFetched == false && pages.size() < parallelism && nextOffset < endOffset) {
+
+      Limit limit = new Limit((int) Math.min(pageSize, endOffset - nextOffset), (int) nextOffset);
+      nextOffset += limit.getMaxResults();
+
+      CompletableFuture<List<R>> results = CompletableFuture.supplyAsync(() -> {
+
+        try {
+
+          return pageFetcher.fetch(limit);
+
+        } catch (IOException e) {
+
+          throw new CompletionException(e);
+        }
+      }, executor);
+
+      pages.addLast(new Page<>(limit, results));
+    }
+  }
+
+
+  /**
+   * A function that fetches one page of results
+   */
+  @FunctionalInterface
+  interface PageFetcher<R> {
+
+    List<R> fetch(Limit limit) throws IOException;
+  }
+
+
+  private static class Page<R> {
+
+    private final Limit limit;
+    private final CompletableFuture<List<R>> results;
+
+
+    private Page(Limit limit, CompletableFuture<List<R>> results) {
+
+      this.limit = limit;
+      this.results = results;
+    }
+  }
+}
@@ -13,31 +13,59 @@
  */
 package com.stevenpaligo.spacetrack.client;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import javax.net.ssl.HttpsURLConnection;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.commons.io.IOUtils;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.json.JsonSanitizer;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession.SanitizationPolicy;
+import com.stevenpaligo.spacetrack.client.cache.DiskQueryCache;
+import com.stevenpaligo.spacetrack.client.cache.QueryCache;
 import com.stevenpaligo.spacetrack.client.credential.CredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.In;
 import com.stevenpaligo.spacetrack.client.predicate.Predicate;
 import com.stevenpaligo.spacetrack.client.query.Limit;
 import com.stevenpaligo.spacetrack.client.query.QueryField;
 import com.stevenpaligo.spacetrack.client.query.Sort;
+import com.stevenpaligo.spacetrack.client.query.Sort.Direction;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -54,6 +82,18 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
   private static final Charset charsetUtf8 = Charset.forName("UTF-8");
 
 
+  /**
+   * The default maximum number of pages fetched at the same time by {@link #streamPages(int)}
+   */
+  public static final int DEFAULT_PAGE_PARALLELISM = 2;
+
+
+  /**
+   * The length of the longest possible limit in a query URL ("/limit/" followed by two integers)
+   */
+  private static final int MAX_LIMIT_LENGTH = ("/limit/" + Integer.MAX_VALUE + "," + Integer.MAX_VALUE).length();
+
+
   static {
 
     // instantiate and configure the JSON mapper
@@ -63,7 +103,9 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
 
   private String queryClass;
   private Class<R> resultType;
+  private Class<?> sourceQueryClass;
   private CredentialProvider credentials;
+  private SpaceTrackSession session;
   private Collection<Predicate<T>> predicates = new LinkedList<>();
   private Optional<Limit> limit = Optional.empty();
   private List<Sort<T>> sorts = new LinkedList<>();
@@ -74,6 +116,27 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
 
     this.queryClass = queryClass;
     this.resultType = resultType;
+    this.sourceQueryClass = getClass();
+  }
+
+
+  /**
+   * Creates a query that is a copy of another query (same class, credentials, session, predicates, limit, sorts, and favorites) but returns a different type of result
+   * 
+   * @param source The non-null query to copy
+   * @param resultType The non-null result type
+   */
+  protected Query(@NonNull Query<T, ?, ?> source, @NonNull Class<R> resultType) {
+
+    this.queryClass = source.queryClass;
+    this.resultType = resultType;
+    this.sourceQueryClass = source.sourceQueryClass;
+    this.credentials = source.credentials;
+    this.session = source.session;
+    this.predicates.addAll(source.predicates);
+    this.limit = source.limit;
+    this.sorts.addAll(source.sorts);
+    this.favorites.addAll(source.favorites);
   }
 
 
@@ -91,6 +154,21 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
   }
 
 
+  /**
+   * Runs the query in a shared, already authenticated session instead of logging in on every call to {@link #execute()}. When a session is set, it takes precedence over the credentials
+   * set with {@link #setCredentials(CredentialProvider)}.
+   * 
+   * @param session A non-null session, usually shared by all queries for the same account
+   * @return This query, for use in the builder pattern
+   */
+  @SuppressWarnings("unchecked")
+  public Q setSession(@NonNull SpaceTrackSession session) {
+
+    this.session = session;
+    return (Q) this;
+  }
+
+
   /**
    * Removes any predicates that have been added to the query
    * 
@@ -243,7 +321,8 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
 
 
   /**
-   * Gets the <a href="https://www.space-track.org/">Space-Track.org</a> URL that represents this query. This URL is the same as what will be generated by invoking {@link #execute()}.
+   * Gets the <a href="https://www.space-track.org/">Space-Track.org</a> URL that represents this query. This URL is the same as what will be generated by invoking {@link #execute()}. The URL
+   * points at the endpoint of the query's session (see {@link SpaceTrackSession#setEndpoint(SpaceTrackEndpoint)}), or at {@link SpaceTrackEndpoint#DEFAULT} if no session has been set.
    * 
    * <p>
    * <strong>Note:</strong> This method does not need to be called prior to calling {@link #execute()}. That method will automatically generate the URL as necessary.
@@ -253,23 +332,43 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
    */
   public String getQueryString() {
 
+    return (session != null ? session.getEndpoint() : SpaceTrackEndpoint.DEFAULT).getQueryUrl(getQueryPath());
+  }
+
+
+  /**
+   * Gets the part of the query URL that follows the "basicspacedata/query" controller
+   */
+  String getQueryPath() {
+
+    return getQueryPathFunction().apply(limit);
+  }
+
+
+  /**
+   * Captures the query as it is now and returns a function that generates its query path with any given limit (e.g. for fetching the query in pages)
+   */
+  private Function<Optional<Limit>, String> getQueryPathFunction() {
+
+    return getQueryPathFunction(predicates);
+  }
+
+
+  private Function<Optional<Limit>, String> getQueryPathFunction(Collection<Predicate<T>> queryPredicates) {
+
     // query class
-    StringBuilder builder = new StringBuilder("https://www.space-track.org/basicspacedata/query");
+    StringBuilder builder = new StringBuilder();
     builder.append("/class/").append(queryClass);
 
 
     // predicates
-    for (Predicate<T> predicate : predicates) {
+    for (Predicate<T> predicate : queryPredicates) {
 
       builder.append("/").append(predicate.toQueryParameter());
     }
 
-
-    // limit
-    if (limit.isPresent()) {
-
-      builder.append("/limit/").append(limit.get().toQueryParameter());
-    }
+    String head = builder.toString();
+    builder.setLength(0);
 
 
     // sorts
@@ -295,13 +394,19 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
     // format
     builder.append("/format/json/emptyresult/show");
 
+    String tail = builder.toString();
+
 
-    return builder.toString();
+    // limit
+    return queryLimit -> (queryLimit.isPresent() ? head + "/limit/" + queryLimit.get().toQueryParameter() + tail : head + tail);
   }
 
 
   /**
-   * Executes the query against the <a href="https://www.space-track.org/">Space-Track.org</a> API and returns the results
+   * Executes the query against the <a href="https://www.space-track.org/">Space-Track.org</a> API and returns the results. If the query's session has a cache (see
+   * {@link SpaceTrackSession#setCache(QueryCache)}) or a persistent cache (see {@link SpaceTrackSession#setDiskCache(DiskQueryCache)}), repeated queries are answered from the cache. Identical queries that are executed concurrently in the same session share one request to Space-Track.org (see
+   * {@link SpaceTrackSession#setCoalescingQueries(boolean)}). Queries whose URL would be too long because of a large {@link In} predicate are split into several requests whose results are merged
+   * (see {@link SpaceTrackSession#setMaxQueryUrlLength(int)}).
    * 
    * @return The results from executing the query
    * @throws JsonParseException Space-Track.org returned results that are unable to be parsed
@@ -310,91 +415,741 @@ public abstract class Query<T extends QueryField, R, Q extends Query<T, R, Q>> {
    */
   public List<R> execute() throws JsonParseException, JsonMappingException, IOException {
 
-    // validate
-    if (credentials == null) {
+    return capture(getEffectiveSession()).execute(limit);
+  }
 
-      throw new IllegalStateException("The credentials have not been set");
+
+  /**
+   * Executes the query against the <a href="https://www.space-track.org/">Space-Track.org</a> API and streams the results. Unlike {@link #execute()}, the response is never held in memory as a
+   * whole: each result is bound from the response as the stream is consumed, so memory use stays flat regardless of the size of the result set. Responses in the session's persistent cache are
+   * streamed from the cache, but streamed responses are never added to a cache.
+   * 
+   * <p>
+   * <strong>Note:</strong> The returned stream holds an open connection and must be closed (e.g. with try-with-resources). Errors that occur while the stream is consumed are thrown as
+   * {@link UncheckedIOException}s.
+   * </p>
+   * 
+   * @return A sequential, ordered stream of the results from executing the query
+   * @throws IOException The Space-Track.org API was unable to be queried successfully
+   */
+  public Stream<R> stream() throws IOException {
+
+    return stream(getEffectiveSession(), getQueryPath());
+  }
+
+
+  /**
+   * Executes the query against the <a href="https://www.space-track.org/">Space-Track.org</a> API and passes each result to the given consumer as it is read from the response. See
+   * {@link #stream()}.
+   * 
+   * @param consumer A non-null consumer for the results
+   * @throws IOException The Space-Track.org API was unable to be queried successfully or the response was unable to be parsed
+   */
+  public void forEach(@NonNull Consumer<? super R> consumer) throws IOException {
+
+    // closed explicitly rather than with try-with-resources, whose generated null check SpotBugs reports as redundant
+    Stream<R> results = stream();
+
+    try {
+
+      results.forEachOrdered(consumer);
+
+    } catch (UncheckedIOException e) {
+
+      throw e.getCause();
+
+    } finally {
+
+      results.close();
     }
+  }
 
 
-    // execute the query
-    HttpsURLConnection connection = null;
-    OutputStream outputStream = null;
+  /**
+   * Executes the query in pages of a fixed size and streams the results in order. See {@link #streamPages(int, int)}.
+   * 
+   * @param pageSize The maximum number of results per page (must be positive)
+   * @return A sequential, ordered stream of the results from executing the query
+   * @throws IOException The first page was unable to be fetched
+   */
+  public Stream<R> streamPages(int pageSize) throws IOException {
+
+    return streamPages(pageSize, DEFAULT_PAGE_PARALLELISM);
+  }
+
+
+  /**
+   * Executes the query in pages of a fixed size (one query per page, using a {@link Limit} with an offset) and streams the results in order. Up to <code>parallelism</code> pages are fetched
+   * ahead of the consumer at the same time, on the executor of the query's session, and each page is subject to the session's rate limit. Only the pages in flight are held in memory, so
+   * result sets of any size can be processed without buffering one huge response.
+   * 
+   * <p>
+   * Pages are fetched until one is not full. If the query has a limit, only the results within the limit are fetched. The query should be sorted on a unique field (e.g. with
+   * {@link #addSort(Sort)}) so that the pages do not overlap if new results are published while the pages are fetched.
+   * </p>
+   * 
+   * <p>
+   * <strong>Note:</strong> The returned stream should be closed (e.g. with try-with-resources) so that pages that are no longer needed are cancelled. Errors that occur while the stream is consumed
+   * are thrown as {@link UncheckedIOException}s.
+   * </p>
+   * 
+   * @param pageSize The maximum number of results per page (must be positive)
+   * @param parallelism The maximum number of pages to fetch at the same time (must be positive)
+   * @return A sequential, ordered stream of the results from executing the query
+   * @throws IOException The first page was unable to be fetched
+   */
+  public Stream<R> streamPages(int pageSize, int parallelism) throws IOException {
+
+    // validation
+    if (pageSize <= 0) {
+
+      throw new IllegalArgumentException("The page size is not positive: " + pageSize);
+
+    } else if (parallelism <= 0) {
+
+      throw new IllegalArgumentException("The parallelism is not positive: " + parallelism);
+    }
+
+
+    // fetch the pages within the query's limit, if it has one
+    SpaceTrackSession session = getEffectiveSession();
+    CapturedQuery<R> query = capture(session);
+    long startOffset = (limit.isPresent() ? limit.get().getOffset().orElse(0) : 0);
+    long endOffset = (limit.isPresent() ? Math.min(startOffset + limit.get().getMaxResults(), Integer.MAX_VALUE) : Integer.MAX_VALUE);
+
+    PagedResultIterator<R> iterator = new PagedResultIterator<>(pageLimit -> query.execute(Optional.of(pageLimit)), session.getExecutor(), pageSize, parallelism,
+        startOffset, endOffset);
+
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+  }
+
+
+  /**
+   * Executes the query without blocking the calling thread, using the executor of the query's session (see {@link SpaceTrackSession#setExecutor(Executor)}). The query is captured as it is
+   * at the time of the call, so the builder may be modified or reused immediately afterwards.
+   * 
+   * @return A future that completes with the results of {@link #execute()}, or exceptionally with the exception it would have thrown
+   */
+  public CompletableFuture<List<R>> executeAsync() {
+
+    SpaceTrackSession session = getEffectiveSession();
+    return executeAsync(session, session.getExecutor());
+  }
+
+
+  /**
+   * Executes the query without blocking the calling thread. See {@link #executeAsync()}.
+   * 
+   * @param executor The non-null executor to run the query on
+   * @return A future that completes with the results of {@link #execute()}, or exceptionally with the exception it would have thrown
+   */
+  public CompletableFuture<List<R>> executeAsync(@NonNull Executor executor) {
+
+    return executeAsync(getEffectiveSession(), executor);
+  }
+
+
+  /**
+   * Starts streaming the query results without blocking the calling thread, using the executor of the query's session. The future completes once the response has started to arrive; the results
+   * are then read as the stream is consumed. See {@link #stream()}.
+   * 
+   * @return A future that completes with the stream returned by {@link #stream()}, or exceptionally with the exception it would have thrown
+   */
+  public CompletableFuture<Stream<R>> streamAsync() {
+
+    SpaceTrackSession session = getEffectiveSession();
+    return streamAsync(session, session.getExecutor());
+  }
+
+
+  /**
+   * Starts streaming the query results without blocking the calling thread. See {@link #streamAsync()}.
+   * 
+   * @param executor The non-null executor to start the query on
+   * @return A future that completes with the stream returned by {@link #stream()}, or exceptionally with the exception it would have thrown
+   */
+  public CompletableFuture<Stream<R>> streamAsync(@NonNull Executor executor) {
+
+    return streamAsync(getEffectiveSession(), executor);
+  }
+
+
+  private CompletableFuture<List<R>> executeAsync(SpaceTrackSession session, Executor executor) {
+
+    CapturedQuery<R> query = capture(session);
+    Optional<Limit> queryLimit = limit;
+
+    return CompletableFuture.supplyAsync(() -> {
+
+      try {
+
+        return query.execute(queryLimit);
+
+      } catch (IOException e) {
+
+        throw new CompletionException(e);
+      }
+    }, executor);
+  }
+
+
+  private CompletableFuture<Stream<R>> streamAsync(SpaceTrackSession session, Executor executor) {
+
+    String queryPath = getQueryPath();
+
+    return CompletableFuture.supplyAsync(() -> {
+
+      try {
+
+        return stream(session, queryPath);
+
+      } catch (IOException e) {
+
+        throw new CompletionException(e);
+      }
+    }, executor);
+  }
+
+
+  /**
+   * Captures the query as it is now and returns a function that executes it with any given limit, splitting it into several requests if its URL would be longer than the session allows (see
+   * {@link SpaceTrackSession#setMaxQueryUrlLength(int)})
+   */
+  private CapturedQuery<R> capture(SpaceTrackSession session) {
+
+    Function<Optional<Limit>, String> queryPathFunction = getQueryPathFunction();
+    Optional<List<Function<Optional<Limit>, String>>> splitQueryPathFunctions = getSplitQueryPathFunctions(session, queryPathFunction);
+
+    if (splitQueryPathFunctions.isPresent() == false) {
+
+      return queryLimit -> execute(session, queryPathFunction.apply(queryLimit));
+    }
+
+    Optional<Comparator<R>> resultOrder = getResultOrder();
+
+    return queryLimit -> executeSplit(session, queryPathFunction.apply(queryLimit), splitQueryPathFunctions.get(), resultOrder, queryLimit);
+  }
+
+
+  /**
+   * Splits the values of the query's largest {@link In} predicate so that each split query's URL fits in the session's maximum length
+   *
+   * @return The query path functions of the split queries, or empty if the query does not need to be (or cannot be) split
+   */
+  @SuppressWarnings("unchecked")
+  private Optional<List<Function<Optional<Limit>, String>>> getSplitQueryPathFunctions(SpaceTrackSession session, Function<Optional<Limit>, String> queryPathFunction) {
+
+    // measure the URL as it is sent (i.e. URL-encoded), leaving room for the longest possible limit
+    int urlLength = session.getEndpoint().getQueryUri(queryPathFunction.apply(Optional.empty())).toASCIIString().length() + MAX_LIMIT_LENGTH;
+    int maxUrlLength = session.getMaxQueryUrlLength();
+
+    if (urlLength <= maxUrlLength) {
+
+      return Optional.empty();
+    }
+
+
+    // find the predicate to split
+    In<T> largestIn = null;
+
+    for (Predicate<T> predicate : predicates) {
+
+      if (predicate instanceof In && (largestIn == null || ((In<T>) predicate).getEncodedValuesLength() > largestIn.getEncodedValuesLength())) {
+
+        largestIn = (In<T>) predicate;
+      }
+    }
+
+    if (largestIn == null) {
+
+      log.warn("A query URL is longer than the maximum length ({}) but has no In predicate to split (length: {})", maxUrlLength, urlLength);
+      return Optional.empty();
+    }
+
+    List<In<T>> splitIns;
 
     try {
 
-      String userName = credentials.getUserName();
-      String queryString = getQueryString();
-      log.debug("Querying SpaceTrack (user: {}, query: {})", userName, queryString);
+      splitIns = largestIn.split(maxUrlLength - (urlLength - largestIn.getEncodedValuesLength()));
 
+    } catch (IllegalArgumentException e) {
 
-      // connect to the SpaceTrack API
-      URL url = new URL("https://www.space-track.org/ajaxauth/login");
+      log.warn("A query URL is longer than the maximum length ({}) and cannot be split (length: {})", maxUrlLength, urlLength);
+      return Optional.empty();
+    }
 
-      connection = (HttpsURLConnection) url.openConnection();
-      connection.setDoOutput(true);
-      connection.setRequestMethod("POST");
 
+    // build the split queries, keeping the order of the predicates
+    List<Function<Optional<Limit>, String>> splitQueryPathFunctions = new ArrayList<>();
 
-      // send the request (log in and query at the same time)
-      String request = "identity=" + userName + "&password=" + credentials.getPassword() + "&query=" + queryString;
+    for (In<T> splitIn : splitIns) {
 
-      outputStream = connection.getOutputStream();
-      outputStream.write(request.getBytes(charsetUtf8));
-      outputStream.flush();
+      List<Predicate<T>> splitPredicates = new ArrayList<>(predicates);
+      splitPredicates.set(splitPredicates.indexOf(largestIn), splitIn);
+      splitQueryPathFunctions.add(getQueryPathFunction(splitPredicates));
+    }
 
+    log.debug("Split a query with a URL of {} characters into {} queries", urlLength, splitQueryPathFunctions.size());
 
-      // read the entire response
-      String response = IOUtils.toString(connection.getInputStream(), charsetUtf8);
-      log.debug("SpaceTrack response message: {}", connection.getResponseMessage());
-      log.debug("SpaceTrack response body: {}", response);
 
-      if (response.length() == 0) {
+    return Optional.of(splitQueryPathFunctions);
+  }
 
-        throw new IOException("SpaceTrack returned an empty response");
+
+  /**
+   * Gets a comparator that orders results the way the query's sorts order them on the server, by reading the sorted fields from the results
+   *
+   * @return The comparator, or empty if the query has no sorts or a sorted field is not a property of the result type
+   */
+  private Optional<Comparator<R>> getResultOrder() {
+
+    if (sorts.isEmpty()) {
+
+      return Optional.empty();
+    }
+
+    BeanDescription resultDescription = jsonMapper.getSerializationConfig().introspect(jsonMapper.constructType(resultType));
+    Comparator<R> resultOrder = null;
+
+    for (Sort<T> sort : sorts) {
+
+      String fieldName = sort.getField().getQueryFieldName();
+      AnnotatedMember accessor = null;
+
+      for (BeanPropertyDefinition property : resultDescription.findProperties()) {
+
+        if (property.getName().equals(fieldName)) {
+
+          accessor = (property.getAccessor() != null ? property.getAccessor() : property.getField());
+        }
       }
 
-      if (connection.getResponseCode() != HttpsURLConnection.HTTP_OK) {
+      if (accessor == null) {
 
-        throw new IOException("SpaceTrack returned an unsuccessful response: " + connection.getResponseMessage());
+        log.warn("The results of a split query cannot be merged in order because {} is not a property of {}", fieldName, resultType.getName());
+        return Optional.empty();
       }
 
+      accessor.fixAccess(true);
 
-      // ensure the response is well-formed JSON
-      String wellFormedResponse = JsonSanitizer.sanitize(response);
+      AnnotatedMember fieldAccessor = accessor;
+      Comparator<R> fieldOrder = Comparator.comparing(result -> unwrapOptional(fieldAccessor.getValue(result)), Comparator.nullsFirst(Query::compareValues));
 
+      if (sort.getDirection() == Direction.DESC) {
 
-      // convert the response to a list of the return data type
-      JavaType listType = jsonMapper.getTypeFactory().constructCollectionType(List.class, resultType);
-      List<R> results = jsonMapper.readValue(wellFormedResponse, listType);
+        fieldOrder = fieldOrder.reversed();
+      }
+
+      resultOrder = (resultOrder == null ? fieldOrder : resultOrder.thenComparing(fieldOrder));
+    }
+
+
+    return Optional.of(resultOrder);
+  }
+
+
+  private static Object unwrapOptional(Object value) {
+
+    return (value instanceof Optional ? ((Optional<?>) value).orElse(null) : value);
+  }
+
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static int compareValues(Object a, Object b) {
+
+    if (a instanceof Comparable && a.getClass() == b.getClass()) {
+
+      return ((Comparable) a).compareTo(b);
+    }
+
+    return a.toString().compareTo(b.toString());
+  }
+
+
+  /**
+   * Executes the split parts of a query concurrently and merges their results as if the query had been executed as a whole
+   */
+  @SuppressWarnings("unchecked")
+  private List<R> executeSplit(SpaceTrackSession session, String queryPath, List<Function<Optional<Limit>, String>> splitQueryPathFunctions, Optional<Comparator<R>> resultOrder,
+      Optional<Limit> queryLimit) throws IOException {
+
+    // answer the query from the cache, if possible
+    Optional<QueryCache> cache = session.getCache();
+    String queryString = session.getEndpoint().getQueryUrl(queryPath);
+
+    if (cache.isPresent()) {
+
+      Optional<List<?>> cachedResults = cache.get().get(queryString, resultType);
+
+      if (cachedResults.isPresent()) {
+
+        log.debug("Answered query from the cache (query: {})", queryString);
+        return new ArrayList<>((List<R>) cachedResults.get());
+      }
+    }
+
+
+    // each split query needs every result up to the end of the limit, because the offset applies to the merged results
+    Optional<Limit> splitLimit = queryLimit.map(l -> new Limit((int) Math.min((long) l.getMaxResults() + l.getOffset().orElse(0), Integer.MAX_VALUE)));
+    List<CompletableFuture<List<R>>> futures = new ArrayList<>();
+
+    for (Function<Optional<Limit>, String> splitQueryPathFunction : splitQueryPathFunctions) {
+
+      String splitQueryPath = splitQueryPathFunction.apply(splitLimit);
+
+      futures.add(CompletableFuture.supplyAsync(() -> {
+
+        try {
+
+          return execute(session, splitQueryPath);
+
+        } catch (IOException e) {
+
+          throw new CompletionException(e);
+        }
+      }, session.getExecutor()));
+    }
+
+
+    // merge the results, in the order of the sorts if there are any (each split query's results are already sorted)
+    List<R> results = new ArrayList<>();
+
+    try {
+
+      for (CompletableFuture<List<R>> future : futures) {
+
+        results.addAll(future.get());
+      }
+
+    } catch (InterruptedException e) {
+
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a split query");
+
+    } catch (ExecutionException e) {
+
+      futures.forEach(future -> future.cancel(true));
+      Throwable cause = e.getCause();
+
+      if (cause instanceof IOException) {
+
+        throw (IOException) cause;
+
+      } else if (cause instanceof RuntimeException) {
+
+        throw (RuntimeException) cause;
+
+      } else if (cause instanceof Error) {
+
+        throw (Error) cause;
+
+      } else {
+
+        throw new IOException(cause);
+      }
+    }
+
+    if (resultOrder.isPresent()) {
+
+      results.sort(resultOrder.get());
+    }
+
+    if (queryLimit.isPresent()) {
+
+      int offset = Math.min(queryLimit.get().getOffset().orElse(0), results.size());
+      int end = (int) Math.min((long) offset + queryLimit.get().getMaxResults(), results.size());
+      results = new ArrayList<>(results.subList(offset, end));
+    }
+
+    log.debug("Merged {} results from {} split queries (query: {})", results.size(), futures.size(), queryString);
+
+
+    // cache the merged results under the query as a whole
+    if (cache.isPresent()) {
+
+      cache.get().put(sourceQueryClass, queryString, resultType, results);
+    }
+
+
+    return results;
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private List<R> execute(SpaceTrackSession session, String queryPath) throws IOException {
+
+    // answer the query from the cache, if possible
+    Optional<QueryCache> cache = session.getCache();
+    String queryString = session.getEndpoint().getQueryUrl(queryPath);
+
+    if (cache.isPresent()) {
+
+      Optional<List<?>> cachedResults = cache.get().get(queryString, resultType);
+
+      if (cachedResults.isPresent()) {
+
+        log.debug("Answered query from the cache (query: {})", queryString);
+        return new ArrayList<>((List<R>) cachedResults.get());
+      }
+    }
+
+
+    // otherwise, fetch the results (sharing them with identical queries in flight)
+    List<?> results = session.coalesce(resultType.getName() + " " + queryString, () -> Collections.unmodifiableList(fetch(session, queryPath, queryString)));
+
+
+    return new ArrayList<>((List<R>) results);
+  }
+
+
+  /**
+   * Fetches the results of a query from the persistent cache or from Space-Track.org and adds them to the session's caches
+   */
+  private List<R> fetch(SpaceTrackSession session, String queryPath, String queryString) throws IOException {
+
+    // answer the query from the persistent cache, if possible
+    JavaType listType = jsonMapper.getTypeFactory().constructCollectionType(List.class, resultType);
+    Optional<QueryCache> cache = session.getCache();
+    Optional<DiskQueryCache> diskCache = session.getDiskCache();
+    Optional<ByteBuffer> cachedResponse = (diskCache.isPresent() ? diskCache.get().get(queryString) : Optional.empty());
+
+    if (cachedResponse.isPresent()) {
+
+      log.debug("Answered query from the persistent cache (query: {})", queryString);
+      List<R> results = jsonMapper.readValue(new ByteBufferBackedInputStream(cachedResponse.get()), listType);
+
+      if (cache.isPresent()) {
+
+        cache.get().put(sourceQueryClass, queryString, resultType, results);
+      }
+
+      return results;
+    }
+
+
+    // execute the query
+    log.debug("Querying SpaceTrack (user: {}, query: {})", session.getCredentials().getUserName(), queryString);
+
+    SanitizationPolicy sanitizationPolicy = session.getSanitizationPolicy();
+    ObjectReader strictReader = jsonMapper.readerFor(listType).with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+    if (sanitizationPolicy == SanitizationPolicy.NEVER && diskCache.isPresent() == false) {
+
+      // nothing needs the raw response, so parse it as it arrives
+      List<R> results;
+
+      try (InputStream responseStream = session.query(queryPath)) {
+
+        results = strictReader.readValue(responseStream);
+      }
 
       log.debug("SpaceTrack returned {} {} results", results.size(), queryClass);
 
+      if (cache.isPresent()) {
+
+        cache.get().put(sourceQueryClass, queryString, resultType, results);
+      }
 
       return results;
+    }
 
+    byte[] response;
 
-    } finally {
+    try (InputStream responseStream = session.query(queryPath)) {
 
+      response = IOUtils.toByteArray(responseStream);
+    }
+
+
+    // convert the response to a list of the return data type, sanitizing it first if necessary
+    List<R> results;
+
+    if (sanitizationPolicy == SanitizationPolicy.ALWAYS) {
+
+      response = sanitize(response);
+      results = jsonMapper.readValue(response, listType);
+
+    } else {
 
-      // clean up
       try {
 
-        outputStream.close();
+        results = strictReader.readValue(response);
+
+      } catch (JsonProcessingException e) {
 
-      } catch (Exception e) {
+        if (sanitizationPolicy == SanitizationPolicy.NEVER) {
 
-        log.error("An exception occurred while closing the SpaceTrack request stream", e);
+          throw e;
+        }
+
+        log.debug("Sanitizing a SpaceTrack response that failed to parse strictly (query: {}): {}", queryString, e.getOriginalMessage());
+        response = sanitize(response);
+        results = jsonMapper.readValue(response, listType);
       }
+    }
+
+    log.debug("SpaceTrack returned {} {} results", results.size(), queryClass);
+
+
+    // cache the results
+    if (cache.isPresent()) {
+
+      cache.get().put(sourceQueryClass, queryString, resultType, results);
+    }
 
+    if (diskCache.isPresent()) {
+
+      // the response has already been paid for, so a failure to cache it doesn't fail the query
       try {
 
-        connection.disconnect();
+        diskCache.get().put(sourceQueryClass, queryString, response);
 
-      } catch (Exception e) {
+      } catch (IOException e) {
 
-        log.error("An exception occurred while disconnecting from the SpaceTrack API", e);
+        log.warn("Unable to add a SpaceTrack response to the persistent cache (query: {})", queryString, e);
       }
     }
+
+
+    return results;
+  }
+
+
+  /**
+   * Converts a response to well-formed JSON
+   */
+  private static byte[] sanitize(byte[] response) {
+
+    return JsonSanitizer.sanitize(new String(response, charsetUtf8)).getBytes(charsetUtf8);
+  }
+
+
+  /**
+   * Executes the query like {@link #execute()}, but hands the raw JSON response to a reader instead of binding it to results whenever that bypasses nothing {@link #execute()} does. Queries that
+   * are split or that the session's cache could answer take the same path as {@link #execute()} and their results are passed to the consumer instead; otherwise, the response is read from the
+   * session's persistent cache if possible and added to it if not.
+   */
+  void executeRaw(ResponseReader reader, Consumer<? super R> resultConsumer) throws IOException {
+
+    SpaceTrackSession session = getEffectiveSession();
+    Function<Optional<Limit>, String> queryPathFunction = getQueryPathFunction();
+
+    if (session.getCache().isPresent() || getSplitQueryPathFunctions(session, queryPathFunction).isPresent()) {
+
+      capture(session).execute(limit).forEach(resultConsumer);
+      return;
+    }
+
+    try (InputStream response = openResponse(session, queryPathFunction.apply(limit), true)) {
+
+      reader.read(response);
+    }
+  }
+
+
+  private Stream<R> stream(SpaceTrackSession session, String queryPath) throws IOException {
+
+    QueryResultIterator<R> iterator = new QueryResultIterator<>(jsonMapper.readerFor(resultType), openResponse(session, queryPath, false));
+
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+  }
+
+
+  /**
+   * Opens the raw JSON response to a query for reading as it arrives, from the session's persistent cache if possible
+   *
+   * @param addToDiskCache Whether a response that isn't in the persistent cache is read in full and added to it
+   */
+  private InputStream openResponse(SpaceTrackSession session, String queryPath, boolean addToDiskCache) throws IOException {
+
+    // read the response from the persistent cache, if possible
+    String queryString = session.getEndpoint().getQueryUrl(queryPath);
+    Optional<DiskQueryCache> diskCache = session.getDiskCache();
+    Optional<ByteBuffer> cachedResponse = (diskCache.isPresent() ? diskCache.get().get(queryString) : Optional.empty());
+
+    if (cachedResponse.isPresent()) {
+
+      log.debug("Streaming from the persistent cache (query: {})", queryString);
+      return new ByteBufferBackedInputStream(cachedResponse.get());
+    }
+
+    log.debug("Streaming from SpaceTrack (user: {}, query: {})", session.getCredentials().getUserName(), queryString);
+
+    if (diskCache.isPresent() == false || addToDiskCache == false) {
+
+      return session.query(queryPath);
+    }
+
+
+    // otherwise, read the whole response so it can be cached
+    byte[] response;
+
+    try (InputStream responseStream = session.query(queryPath)) {
+
+      response = IOUtils.toByteArray(responseStream);
+    }
+
+    try {
+
+      diskCache.get().put(sourceQueryClass, queryString, response);
+
+    } catch (IOException e) {
+
+      log.warn("Unable to add a SpaceTrack response to the persistent cache (query: {})", queryString, e);
+    }
+
+    return new ByteArrayInputStream(response);
+  }
+
+
+  /**
+   * Creates a streaming parser for a JSON response, configured like the parsers used for query results
+   */
+  static JsonParser createParser(InputStream response) throws IOException {
+
+    return jsonMapper.getFactory().createParser(response);
+  }
+
+
+  /**
+   * Gets the session the query runs in: the session set with {@link #setSession(SpaceTrackSession)} or, failing that, a single-use session built from the credentials
+   */
+  private SpaceTrackSession getEffectiveSession() {
+
+    if (session != null) {
+
+      return session;
+
+    } else if (credentials != null) {
+
+      return new SpaceTrackSession(credentials);
+
+    } else {
+
+      throw new IllegalStateException("The credentials have not been set");
+    }
+  }
+
+
+  /**
+   * A query captured by {@link Query#capture(SpaceTrackSession)}, ready to be executed with any limit
+   */
+  @FunctionalInterface
+  private interface CapturedQuery<R> {
+
+    List<R> execute(Optional<Limit> queryLimit) throws IOException;
+  }
+
+
+  /**
+   * Reads a raw JSON response for {@link Query#executeRaw(ResponseReader, Consumer)}
+   */
+  @FunctionalInterface
+  interface ResponseReader {
+
+    void read(InputStream response) throws IOException;
   }
 }
@@ -0,0 +1,153 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Iterates over the elements of a JSON array of query results, binding one result at a time as the response is read. Only the current result is held in memory.
+ *
+ * @author Steven Paligo
+ */
+@Slf4j
+class QueryResultIterator<R> implements Iterator<R>, Closeable {
+
+  private final ObjectReader resultReader;
+  private final JsonParser parser;
+  private R nextResult;
+  private long count;
+  private boolean closed;
+
+
+  /**
+   * Creates the iterator and verifies the response is a JSON array
+   *
+   * @param resultReader A non-null reader for the result type
+   * @param response A non-null response body, which is closed when the iterator is closed
+   * @throws IOException The response is empty or is not a JSON array
+   */
+  QueryResultIterator(@NonNull ObjectReader resultReader, @NonNull InputStream response) throws IOException {
+
+    this.resultReader = resultReader;
+
+    try {
+
+      this.parser = resultReader.getFactory().createParser(response);
+      JsonToken firstToken = parser.nextToken();
+
+      if (firstToken == null) {
+
+        throw new IOException("SpaceTrack returned an empty response");
+
+      } else if (firstToken != JsonToken.START_ARRAY) {
+
+        throw new IOException("SpaceTrack returned an unexpected response: " + resultReader.readTree(parser));
+      }
+
+      advance();
+
+    } catch (IOException | RuntimeException e) {
+
+      response.close();
+      throw e;
+    }
+  }
+
+
+  @Override
+  public boolean hasNext() {
+
+    return (nextResult != null);
+  }
+
+
+  @Override
+  public R next() {
+
+    if (nextResult == null) {
+
+      throw new NoSuchElementException();
+    }
+
+
+    R result = nextResult;
+
+    try {
+
+      advance();
+
+    } catch (IOException e) {
+
+      close();
+      throw new UncheckedIOException(e);
+    }
+
+    return result;
+  }
+
+
+  @Override
+  public void close() {
+
+    if (closed == false) {
+
+      closed = true;
+      nextResult = null;
+
+      try {
+
+        parser.close();
+
+      } catch (IOException e) {
+
+        log.error("An exception occurred while closing the SpaceTrack response stream", e);
+      }
+    }
+  }
+
+
+  /**
+   * Reads the next result from the array, closing the response once the end of the array is reached
+   */
+  private void advance() throws IOException {
+
+    JsonToken token = (closed ? null : parser.nextToken());
+
+    if (token == JsonToken.START_OBJECT) {
+
+      nextResult = resultReader.readValue(parser);
+      count++;
+
+    } else if (token == JsonToken.END_ARRAY) {
+
+      log.debug("SpaceTrack returned {} streamed results", count);
+      close();
+
+    } else if (closed == false) {
+
+      close();
+      throw new IOException("SpaceTrack returned a malformed response (unexpected token: " + token + ")");
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.UnaryOperator;
+import lombok.NonNull;
+
+/**
+ * Collapses concurrent calls with the same key into one: the first caller runs the call, and callers that arrive while it is in flight wait for its outcome instead of running the call again.
+ * Calls that arrive after the outcome is known run the call again.
+ *
+ * <p>
+ * If the value is mutable, a copier can be given so that callers that share an outcome get their own copies of the value instead of the same one: the value the call returned is only handed
+ * out when no other caller waited for it.
+ * </p>
+ *
+ * @author Steven Paligo
+ */
+class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, Flight<V>> inFlightCalls = new ConcurrentHashMap<>();
+  private final UnaryOperator<V> copier;
+
+
+  /**
+   * Creates a single flight whose callers share the same value
+   */
+  SingleFlight() {
+
+    this(UnaryOperator.identity());
+  }
+
+
+  /**
+   * Creates a single flight whose callers each get their own copy of a shared value
+   *
+   * @param copier The non-null function that copies a value
+   */
+  SingleFlight(@NonNull UnaryOperator<V> copier) {
+
+    this.copier = copier;
+  }
+
+
+  /**
+   * Runs a call, or waits for an identical call that is already in flight
+   *
+   * @param key The non-null key identifying the call
+   * @param call The non-null call to run if no identical call is in flight
+   * @return The value returned by the call, or a copy of it if another caller waited for it
+   * @throws IOException The call threw an exception (the same exception is thrown to every caller that waited for it)
+   */
+  V execute(@NonNull K key, @NonNull Call<V> call) throws IOException {
+
+    // join the identical call in flight, or start a new one (the map serializes both with removing the call)
+    Flight<V> newFlight = new Flight<>();
+    Flight<V> flight = inFlightCalls.compute(key, (k, inFlight) -> {
+
+      if (inFlight == null) {
+
+        return newFlight;
+      }
+
+      inFlight.waiterCount++;
+      return inFlight;
+    });
+
+
+    // run the call if no identical call is in flight
+    if (flight == newFlight) {
+
+      V value;
+
+      try {
+
+        value = call.call();
+
+      } catch (IOException | RuntimeException | Error e) {
+
+        inFlightCalls.remove(key, flight);
+        flight.future.completeExceptionally(e);
+        throw e;
+      }
+
+
+      // no caller can join once the call is removed, and the waiters only ever see the value through copies
+      inFlightCalls.remove(key, flight);
+      boolean shared = (flight.waiterCount > 0);
+      flight.future.complete(value);
+
+      return (shared ? copier.apply(value) : value);
+    }
+
+
+    // otherwise, wait for the call in flight
+    try {
+
+      return copier.apply(flight.future.get());
+
+    } catch (InterruptedException e) {
+
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for an identical SpaceTrack query");
+
+    } catch (ExecutionException e) {
+
+      Throwable cause = e.getCause();
+
+      if (cause instanceof IOException) {
+
+        throw (IOException) cause;
+
+      } else if (cause instanceof RuntimeException) {
+
+        throw (RuntimeException) cause;
+
+      } else {
+
+        throw (Error) cause;
+      }
+    }
+  }
+
+
+  /**
+   * Gets the number of calls in flight
+   *
+   * @return The number of distinct keys with a call in flight
+   */
+  int size() {
+
+    return inFlightCalls.size();
+  }
+
+
+  private static class Flight<V> {
+
+    private final CompletableFuture<V> future = new CompletableFuture<>();
+    private volatile int waiterCount; // only changed while the map holds the flight's key
+  }
+
+
+  /**
+   * A call that may throw an {@link IOException}
+   */
+  @FunctionalInterface
+  interface Call<V> {
+
+    V call() throws IOException;
+  }
+}
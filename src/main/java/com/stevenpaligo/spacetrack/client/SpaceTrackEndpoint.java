@@ -0,0 +1,174 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The location of the <a href="https://www.space-track.org/">Space-Track.org</a> API. By default, queries run against {@link #DEFAULT}; a different endpoint (e.g. a local stand-in that replays
+ * recorded responses for load testing) can be set on a {@link SpaceTrackSession}, and every query run in that session then uses it.
+ * 
+ * @author Steven Paligo
+ */
+@Getter
+@EqualsAndHashCode
+public class SpaceTrackEndpoint {
+
+  /**
+   * The production <a href="https://www.space-track.org/">Space-Track.org</a> API
+   */
+  public static final SpaceTrackEndpoint DEFAULT = new SpaceTrackEndpoint("https", "www.space-track.org", -1);
+
+
+  private static final String LOGIN_PATH = "/ajaxauth/login";
+  private static final String LOGOUT_PATH = "/ajaxauth/logout";
+  private static final String QUERY_PATH = "/basicspacedata/query";
+
+
+  private String scheme;
+  private String host;
+  private int port;
+  private String basePath;
+
+
+  /**
+   * Creates an endpoint from its parts
+   * 
+   * @param scheme The non-null scheme ("http" or "https")
+   * @param host The non-null host name or address
+   * @param port The port, or -1 to use the scheme's default port
+   */
+  public SpaceTrackEndpoint(@NonNull String scheme, @NonNull String host, int port) {
+
+    this(scheme, host, port, "");
+  }
+
+
+  /**
+   * Creates an endpoint from a base URI such as <code>http://localhost:8080</code> or <code>http://localhost:8080/spacetrack</code>. The path of the URI (if any) is used as a prefix for all
+   * API paths.
+   * 
+   * @param baseUri The non-null base URI
+   */
+  public SpaceTrackEndpoint(URI baseUri) {
+
+    this(validate(baseUri).getScheme(), baseUri.getHost(), baseUri.getPort(), (baseUri.getPath() != null ? baseUri.getPath() : ""));
+  }
+
+
+  private SpaceTrackEndpoint(String scheme, String host, int port, String basePath) {
+
+    // more validation
+    if (scheme == null || (scheme.equalsIgnoreCase("http") == false && scheme.equalsIgnoreCase("https") == false)) {
+
+      throw new IllegalArgumentException("The scheme is not HTTP or HTTPS: " + scheme);
+
+    } else if (host == null || host.isEmpty()) {
+
+      throw new IllegalArgumentException("The host is missing");
+
+    } else if (port < -1 || port > 65535) {
+
+      throw new IllegalArgumentException("The port is not valid: " + port);
+    }
+
+
+    this.scheme = scheme.toLowerCase();
+    this.host = host;
+    this.port = port;
+    this.basePath = (basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath);
+  }
+
+
+  /**
+   * Gets the URI of the login controller
+   * 
+   * @return The non-null login URI
+   */
+  public URI getLoginUri() {
+
+    return toUri(LOGIN_PATH);
+  }
+
+
+  /**
+   * Gets the URI of the logout controller
+   * 
+   * @return The non-null logout URI
+   */
+  public URI getLogoutUri() {
+
+    return toUri(LOGOUT_PATH);
+  }
+
+
+  /**
+   * Gets the URL-encoded URI of a query
+   * 
+   * @param queryPath The non-null query path relative to the "basicspacedata/query" controller (e.g. "/class/satcat/...")
+   * @return The non-null query URI
+   */
+  public URI getQueryUri(@NonNull String queryPath) {
+
+    return toUri(QUERY_PATH + queryPath);
+  }
+
+
+  /**
+   * Gets the human-readable (i.e. not URL-encoded) URL of a query, as shown by {@link Query#getQueryString()}
+   * 
+   * @param queryPath The non-null query path relative to the "basicspacedata/query" controller (e.g. "/class/satcat/...")
+   * @return The non-null query URL
+   */
+  public String getQueryUrl(@NonNull String queryPath) {
+
+    return scheme + "://" + host + (port != -1 ? ":" + port : "") + basePath + QUERY_PATH + queryPath;
+  }
+
+
+  private static URI validate(URI baseUri) {
+
+    // checked here instead of with @NonNull, whose generated check would run after the delegating constructor call
+    if (baseUri == null) {
+
+      throw new IllegalArgumentException("baseUri is marked non-null but is null");
+    }
+
+    return baseUri;
+  }
+
+
+  private URI toUri(String path) {
+
+    try {
+
+      return new URI(scheme, null, host, port, basePath + path, null, null);
+
+    } catch (URISyntaxException e) {
+
+      throw new IllegalArgumentException("Unable to build a SpaceTrack URI for the path: " + path, e);
+    }
+  }
+
+
+  @Override
+  public String toString() {
+
+    return scheme + "://" + host + (port != -1 ? ":" + port : "") + basePath;
+  }
+}
@@ -0,0 +1,757 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpCookie;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import com.stevenpaligo.spacetrack.client.cache.DiskQueryCache;
+import com.stevenpaligo.spacetrack.client.cache.QueryCache;
+import com.stevenpaligo.spacetrack.client.credential.CredentialProvider;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+import com.stevenpaligo.spacetrack.client.transport.ContentEncoding;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackRequest;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackResponse;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackTransport;
+import com.stevenpaligo.spacetrack.client.transport.TransferStatistics;
+import com.stevenpaligo.spacetrack.client.transport.UrlConnectionTransport;
+import com.stevenpaligo.spacetrack.client.util.ResultCopier;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An authenticated, reusable connection context for <a href="https://www.space-track.org/">Space-Track.org</a>. The session logs in once, keeps the session cookie returned by
+ * Space-Track.org, and sends all later queries as plain GET requests that carry the cookie. When the session expires (either because it reached its maximum age or because Space-Track.org
+ * answered with "401 Unauthorized") it logs in again transparently.
+ *
+ * <p>
+ * A session is thread-safe and is meant to be shared by every query that uses the same account (see {@link Query#setSession(SpaceTrackSession)}). All HTTP traffic goes through the session's
+ * {@link SpaceTrackTransport}.
+ * </p>
+ *
+ * @author Steven Paligo
+ */
+@Slf4j
+public class SpaceTrackSession {
+
+  private static final Charset charsetUtf8 = Charset.forName("UTF-8");
+  private static final SpaceTrackTransport defaultTransport = new UrlConnectionTransport();
+  private static volatile Executor defaultExecutor;
+
+
+  /**
+   * The default maximum age of a session before it is renewed (Space-Track.org expires idle sessions after roughly two hours)
+   */
+  public static final Duration DEFAULT_MAX_SESSION_AGE = Duration.ofMinutes(90);
+
+
+  /**
+   * The default maximum length of a query URL before {@link Query#execute()} splits the query into several requests
+   */
+  public static final int DEFAULT_MAX_QUERY_URL_LENGTH = 4000;
+
+
+  /**
+   * When the responses to {@link Query#execute()} are passed through <a href="https://github.com/OWASP/json-sanitizer">JsonSanitizer</a> before they are parsed
+   */
+  public static enum SanitizationPolicy {
+
+    /**
+     * Every response is sanitized before it is parsed
+     */
+    ALWAYS,
+
+    /**
+     * Responses are parsed strictly, and only responses that fail to parse are sanitized and parsed again
+     */
+    ON_FAILURE,
+
+    /**
+     * Responses are parsed strictly and never sanitized
+     */
+    NEVER
+  }
+
+
+  @Getter
+  private final CredentialProvider credentials;
+
+  @Getter
+  private volatile Duration maxSessionAge = DEFAULT_MAX_SESSION_AGE;
+
+  @Getter
+  private volatile SpaceTrackTransport transport = defaultTransport;
+
+  @Getter
+  private volatile SpaceTrackEndpoint endpoint = SpaceTrackEndpoint.DEFAULT;
+
+  @Getter
+  private volatile RequestScheduler requestScheduler = RequestScheduler.getDefault();
+
+  @Getter
+  private volatile Optional<QueryCache> cache = Optional.empty();
+
+  @Getter
+  private volatile Optional<DiskQueryCache> diskCache = Optional.empty();
+
+  @Getter
+  private volatile boolean coalescingQueries = true;
+
+  @Getter
+  private volatile boolean compressionEnabled = true;
+
+  @Getter
+  private volatile int maxQueryUrlLength = DEFAULT_MAX_QUERY_URL_LENGTH;
+
+  @Getter
+  private volatile SanitizationPolicy sanitizationPolicy = SanitizationPolicy.ON_FAILURE;
+
+  @Getter
+  private volatile Optional<Consumer<TransferStatistics>> transferListener = Optional.empty();
+
+  private volatile Executor executor;
+  private final SingleFlight<String, List<?>> inFlightQueries = new SingleFlight<>(results -> ResultCopier.copyAll(results));
+
+  private final Object loginLock = new Object();
+  private volatile String cookieHeader;
+  private volatile Instant loginTime;
+
+
+  public SpaceTrackSession(@NonNull CredentialProvider credentials) {
+
+    this.credentials = credentials;
+  }
+
+
+  /**
+   * Sets the maximum age of the session. Once a session is older than this, the next query logs in again before running.
+   *
+   * @param maxSessionAge A non-null, positive duration
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setMaxSessionAge(@NonNull Duration maxSessionAge) {
+
+    // more validation
+    if (maxSessionAge.isNegative() || maxSessionAge.isZero()) {
+
+      throw new IllegalArgumentException("The maximum session age is not positive: " + maxSessionAge);
+    }
+
+
+    this.maxSessionAge = maxSessionAge;
+    return this;
+  }
+
+
+  /**
+   * Sets the HTTP transport used for all requests in this session. By default, all sessions share one {@link UrlConnectionTransport}.
+   *
+   * @param transport A non-null transport
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setTransport(@NonNull SpaceTrackTransport transport) {
+
+    this.transport = transport;
+    return this;
+  }
+
+
+  /**
+   * Sets the location of the API that all queries in this session run against. Changing the endpoint discards the current session cookie.
+   *
+   * @param endpoint A non-null endpoint
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setEndpoint(@NonNull SpaceTrackEndpoint endpoint) {
+
+    synchronized (loginLock) {
+
+      this.endpoint = endpoint;
+      cookieHeader = null;
+      loginTime = null;
+    }
+
+    return this;
+  }
+
+
+  /**
+   * Sets the scheduler that every request in this session waits on before it is sent. By default, all sessions share {@link RequestScheduler#getDefault()}, which enforces
+   * Space-Track.org's published rate limits.
+   *
+   * @param requestScheduler A non-null scheduler
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setRequestScheduler(@NonNull RequestScheduler requestScheduler) {
+
+    this.requestScheduler = requestScheduler;
+    return this;
+  }
+
+
+  /**
+   * Set or remove the cache that {@link Query#execute()} answers repeated queries from, based on whether or not the {@link Optional} is empty. By default, sessions have no cache.
+   *
+   * @param cache A non-null {@link Optional} that may or may not contain a {@link QueryCache}
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setCache(@NonNull Optional<QueryCache> cache) {
+
+    this.cache = cache;
+    return this;
+  }
+
+
+  /**
+   * Sets the cache that {@link Query#execute()} answers repeated queries from
+   *
+   * @param cache A non-null cache
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setCache(@NonNull QueryCache cache) {
+
+    this.cache = Optional.of(cache);
+    return this;
+  }
+
+
+  /**
+   * Set or remove the persistent cache that queries are answered from when the in-memory cache (see {@link #setCache(QueryCache)}) does not have the results, based on whether or not the
+   * {@link Optional} is empty. By default, sessions have no persistent cache.
+   *
+   * @param diskCache A non-null {@link Optional} that may or may not contain a {@link DiskQueryCache}
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setDiskCache(@NonNull Optional<DiskQueryCache> diskCache) {
+
+    this.diskCache = diskCache;
+    return this;
+  }
+
+
+  /**
+   * Sets the persistent cache that queries are answered from when the in-memory cache does not have the results
+   *
+   * @param diskCache A non-null cache
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setDiskCache(@NonNull DiskQueryCache diskCache) {
+
+    this.diskCache = Optional.of(diskCache);
+    return this;
+  }
+
+
+  /**
+   * Sets whether or not identical queries (i.e. queries with the same query string) that are executed concurrently share one request to Space-Track.org. By default, they do: the first query
+   * is sent, and the others wait for its results. Each caller gets its own copies of the results, so changing them doesn't affect the other callers.
+   *
+   * @param coalescingQueries True to share in-flight requests between identical queries
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setCoalescingQueries(boolean coalescingQueries) {
+
+    this.coalescingQueries = coalescingQueries;
+    return this;
+  }
+
+
+  /**
+   * Sets whether or not responses are requested in compressed form (gzip or deflate). By default, they are; compressed responses are decompressed as they are read.
+   *
+   * @param compressionEnabled True to send an "Accept-Encoding" header with every request
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setCompressionEnabled(boolean compressionEnabled) {
+
+    this.compressionEnabled = compressionEnabled;
+    return this;
+  }
+
+
+  /**
+   * Sets the maximum length of a query URL. When a query's URL would be longer, {@link Query#execute()} splits the values of its largest {@link com.stevenpaligo.spacetrack.client.predicate.In} predicate into several queries that are each
+   * short enough, runs them concurrently (within the limits of the session's {@link RequestScheduler}), and merges their results, keeping the order of the query's sorts.
+   *
+   * @param maxQueryUrlLength The maximum number of characters in a URL-encoded query URL
+   * @return This session, for use in the builder pattern
+   * @throws IllegalArgumentException The length is not positive
+   */
+  public SpaceTrackSession setMaxQueryUrlLength(int maxQueryUrlLength) {
+
+    // more validation
+    if (maxQueryUrlLength <= 0) {
+
+      throw new IllegalArgumentException("The maximum query URL length is not positive: " + maxQueryUrlLength);
+    }
+
+
+    this.maxQueryUrlLength = maxQueryUrlLength;
+    return this;
+  }
+
+
+  /**
+   * Sets when the responses to {@link Query#execute()} are sanitized before they are parsed. By default, responses are only sanitized if they fail to parse strictly, which avoids an extra pass
+   * over (and copy of) well-formed responses. Streamed responses (see {@link Query#stream()}) are always parsed strictly.
+   *
+   * @param sanitizationPolicy A non-null policy
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setSanitizationPolicy(@NonNull SanitizationPolicy sanitizationPolicy) {
+
+    this.sanitizationPolicy = sanitizationPolicy;
+    return this;
+  }
+
+
+  /**
+   * Sets a listener that is notified of the number of bytes transferred (before and after decompression) for every query response, once the response has been read and closed
+   *
+   * @param transferListener A non-null listener, which is called on the thread that closes the response
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setTransferListener(@NonNull Consumer<TransferStatistics> transferListener) {
+
+    this.transferListener = Optional.of(transferListener);
+    return this;
+  }
+
+
+  /**
+   * Sets the executor that asynchronous queries (e.g. {@link Query#executeAsync()}) run on when no executor is given explicitly
+   *
+   * @param executor A non-null executor
+   * @return This session, for use in the builder pattern
+   */
+  public SpaceTrackSession setExecutor(@NonNull Executor executor) {
+
+    this.executor = executor;
+    return this;
+  }
+
+
+  /**
+   * Gets the executor that asynchronous queries run on. Unless one has been set with {@link #setExecutor(Executor)}, this is a shared executor that starts a virtual thread per query on JDKs that
+   * support them (21+), and otherwise runs queries on a cached pool of daemon threads.
+   *
+   * @return The non-null executor
+   */
+  public Executor getExecutor() {
+
+    Executor result = executor;
+    return (result != null ? result : getDefaultExecutor());
+  }
+
+
+  /**
+   * Whether or not the session currently holds a session cookie that has not reached its maximum age
+   *
+   * @return True if a query can be sent without logging in first
+   */
+  public boolean isLoggedIn() {
+
+    String cookie = cookieHeader;
+    Instant time = loginTime;
+
+    return (cookie != null && time != null && time.plus(maxSessionAge).isAfter(Instant.now()));
+  }
+
+
+  /**
+   * Logs in to <a href="https://www.space-track.org/">Space-Track.org</a> and stores the session cookie. Calling this method is optional; the first query logs in automatically.
+   *
+   * @throws IOException The login request failed or was rejected
+   */
+  public void login() throws IOException {
+
+    synchronized (loginLock) {
+
+      postLogin(Optional.empty());
+    }
+  }
+
+
+  /**
+   * Logs out of <a href="https://www.space-track.org/">Space-Track.org</a> and discards the session cookie. The next query logs in again.
+   *
+   * @throws IOException The logout request failed
+   */
+  public void logout() throws IOException {
+
+    synchronized (loginLock) {
+
+      String cookie = cookieHeader;
+      cookieHeader = null;
+      loginTime = null;
+
+      if (cookie == null) {
+
+        return;
+      }
+
+
+      try (SpaceTrackResponse response = send(SpaceTrackRequest.get(endpoint.getLogoutUri()).setHeader("Cookie", cookie))) {
+
+        log.debug("SpaceTrack logout response: {}", response.getStatusCode());
+        IOUtils.consume(response.getBody());
+      }
+    }
+  }
+
+
+  private static Executor getDefaultExecutor() {
+
+    if (defaultExecutor == null) {
+
+      synchronized (SpaceTrackSession.class) {
+
+        if (defaultExecutor == null) {
+
+          // blocking HTTP calls are cheap on virtual threads, so prefer them where available
+          try {
+
+            defaultExecutor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.debug("Running asynchronous SpaceTrack queries on virtual threads");
+
+          } catch (ReflectiveOperationException e) {
+
+            AtomicInteger threadCount = new AtomicInteger();
+
+            defaultExecutor = Executors.newCachedThreadPool(runnable -> {
+
+              Thread thread = new Thread(runnable, "spacetrack-query-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+          }
+        }
+      }
+    }
+
+    return defaultExecutor;
+  }
+
+
+  /**
+   * Runs a query unless an identical query is already in flight, in which case its results are shared (see {@link #setCoalescingQueries(boolean)})
+   *
+   * @param queryKey The non-null key identifying the query (its query string and result type)
+   * @param query The non-null query to run
+   * @return The results of the query (copies of them if an identical query waited for them)
+   * @throws IOException The query failed
+   */
+  List<?> coalesce(@NonNull String queryKey, @NonNull SingleFlight.Call<List<?>> query) throws IOException {
+
+    if (coalescingQueries) {
+
+      return inFlightQueries.execute(queryKey, query);
+
+    } else {
+
+      return query.call();
+    }
+  }
+
+
+  /**
+   * Runs a query and opens the response body. The caller is responsible for closing the returned stream.
+   *
+   * @param queryPath The query path relative to the "basicspacedata/query" controller (e.g. "/class/satcat/...")
+   * @return The non-empty response body
+   * @throws IOException The query was unable to be run successfully
+   */
+  InputStream query(@NonNull String queryPath) throws IOException {
+
+    // log in first if necessary; the first login carries the query so it only costs one round trip
+    if (isLoggedIn() == false) {
+
+      synchronized (loginLock) {
+
+        if (isLoggedIn() == false) {
+
+          return postLogin(Optional.of(queryPath)).get();
+        }
+      }
+    }
+
+
+    // query with the session cookie and log in again if the session has expired on the server
+    String cookie = cookieHeader;
+    Optional<InputStream> response = get(queryPath, cookie);
+
+    if (response.isPresent()) {
+
+      return response.get();
+    }
+
+    log.debug("SpaceTrack session expired (user: {}), logging in again", credentials.getUserName());
+
+    synchronized (loginLock) {
+
+      if (cookie != null && cookie.equals(cookieHeader)) {
+
+        cookieHeader = null;
+        loginTime = null;
+      }
+
+      if (isLoggedIn() == false) {
+
+        return postLogin(Optional.of(queryPath)).get();
+      }
+
+      cookie = cookieHeader;
+    }
+
+    response = get(queryPath, cookie);
+
+    if (response.isPresent() == false) {
+
+      throw new IOException("SpaceTrack rejected the session immediately after logging in");
+    }
+
+    return response.get();
+  }
+
+
+  /**
+   * Sends a request (asking for a compressed response, if enabled) once the request scheduler allows it
+   */
+  private SpaceTrackResponse send(SpaceTrackRequest request) throws IOException {
+
+    if (compressionEnabled) {
+
+      request.setHeader("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+    }
+
+    requestScheduler.acquire();
+    return transport.send(request);
+  }
+
+
+  /**
+   * Posts the credentials (and optionally a query) to the login controller. Must be called while holding the login lock.
+   */
+  private Optional<InputStream> postLogin(Optional<String> queryPath) throws IOException {
+
+    String userName = credentials.getUserName();
+    log.debug("Logging in to SpaceTrack (user: {})", userName);
+
+
+    // send the request
+    StringBuilder request = new StringBuilder();
+    request.append("identity=").append(URLEncoder.encode(userName, "UTF-8"));
+    request.append("&password=").append(URLEncoder.encode(credentials.getPassword(), "UTF-8"));
+
+    if (queryPath.isPresent()) {
+
+      request.append("&query=").append(URLEncoder.encode(endpoint.getQueryUrl(queryPath.get()), "UTF-8"));
+    }
+
+    SpaceTrackResponse response = send(SpaceTrackRequest.postForm(endpoint.getLoginUri(), request.toString().getBytes(charsetUtf8)));
+    boolean responseReturned = false;
+
+    try {
+
+      // open the response and check for a failed login (reported in the body)
+      PushbackInputStream body = openBody(response, queryPath);
+
+      byte[] loginFailedPrefix = "{\"Login\"".getBytes(charsetUtf8);
+      byte[] prefix = new byte[loginFailedPrefix.length];
+      int prefixLength = IOUtils.read(body, prefix);
+      body.unread(prefix, 0, prefixLength);
+
+      if (prefixLength == prefix.length && Arrays.equals(prefix, loginFailedPrefix)) {
+
+        throw new IOException("SpaceTrack login failed (user: " + userName + "): " + IOUtils.toString(body, charsetUtf8));
+      }
+
+
+      // keep the session cookie
+      List<String> cookies = new LinkedList<>();
+
+      for (String value : response.getHeaderValues("Set-Cookie")) {
+
+        for (HttpCookie cookie : HttpCookie.parse(value)) {
+
+          if (cookie.hasExpired() == false) {
+
+            cookies.add(cookie.getName() + "=" + cookie.getValue());
+          }
+        }
+      }
+
+      if (cookies.isEmpty()) {
+
+        throw new IOException("SpaceTrack login failed (user: " + userName + ")");
+      }
+
+      cookieHeader = String.join("; ", cookies);
+      loginTime = Instant.now();
+
+
+      // hand over the query results, if any
+      if (queryPath.isPresent()) {
+
+        responseReturned = true;
+        return Optional.of(body);
+
+      } else {
+
+        IOUtils.consume(body);
+        return Optional.empty();
+      }
+
+
+    } finally {
+
+      if (responseReturned == false) {
+
+        response.close();
+      }
+    }
+  }
+
+
+  /**
+   * Runs a query with an existing session cookie. An empty result means the session was rejected.
+   */
+  private Optional<InputStream> get(String queryPath, String cookie) throws IOException {
+
+    SpaceTrackResponse response = send(SpaceTrackRequest.get(endpoint.getQueryUri(queryPath)).setHeader("Cookie", cookie));
+    boolean responseReturned = false;
+
+    try {
+
+      if (response.getStatusCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+
+        IOUtils.consume(response.getBody());
+        return Optional.empty();
+      }
+
+      InputStream body = openBody(response, Optional.of(queryPath));
+      responseReturned = true;
+
+      return Optional.of(body);
+
+
+    } finally {
+
+      if (responseReturned == false) {
+
+        response.close();
+      }
+    }
+  }
+
+
+  /**
+   * Opens the response body after verifying the response code and (for query responses) that the body is not empty. The body is decompressed as it is read, and the number of bytes
+   * transferred for a query is reported once its body is closed.
+   */
+  private PushbackInputStream openBody(SpaceTrackResponse response, Optional<String> queryPath) throws IOException {
+
+    log.debug("SpaceTrack response message: {} {}", response.getStatusCode(), response.getStatusMessage());
+
+    if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+
+      throw new IOException("SpaceTrack returned an unsuccessful response: " + response.getStatusMessage());
+    }
+
+
+    // decompress the body, counting the bytes before and after decompression
+    ContentEncoding contentEncoding = ContentEncoding.forHeaderValue(response.getHeaderValue("Content-Encoding"));
+    CountingInputStream compressedBody = new CountingInputStream(response.getBody());
+    InputStream decodedBody = contentEncoding.decode(compressedBody);
+
+    if (queryPath.isPresent()) {
+
+      String queryUrl = endpoint.getQueryUrl(queryPath.get());
+
+      decodedBody = new CountingInputStream(decodedBody) {
+
+        private boolean reported;
+
+
+        @Override
+        public void close() throws IOException {
+
+          try {
+
+            super.close();
+
+          } finally {
+
+            if (reported == false) {
+
+              reported = true;
+              reportTransfer(new TransferStatistics(queryUrl, contentEncoding, compressedBody.getByteCount(), getByteCount()));
+            }
+          }
+        }
+      };
+    }
+
+
+    PushbackInputStream body = new PushbackInputStream(decodedBody, 16);
+    int firstByte = body.read();
+
+    if (firstByte >= 0) {
+
+      body.unread(firstByte);
+
+    } else if (queryPath.isPresent()) {
+
+      throw new IOException("SpaceTrack returned an empty response");
+    }
+
+
+    return body;
+  }
+
+
+  private void reportTransfer(TransferStatistics statistics) {
+
+    log.debug("SpaceTrack transfer finished ({})", statistics);
+
+    if (transferListener.isPresent()) {
+
+      try {
+
+        transferListener.get().accept(statistics);
+
+      } catch (RuntimeException e) {
+
+        log.error("The SpaceTrack transfer listener threw an exception", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,492 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import com.stevenpaligo.spacetrack.client.util.NumberParser;
+import lombok.NonNull;
+
+/**
+ * Parses two-line element sets (TLEs) from their fixed-column text form (e.g. the lines returned by {@link PublishedTleQuery}) into {@link ElementSetColumns}. Fields are read straight from the
+ * characters of the lines: no strings or other objects are created per element set, so millions of lines can be parsed per second without producing garbage.
+ * 
+ * <p>
+ * Both checksums are verified, implied-decimal fields (e.g. a B* of "-11606-4") are decoded exactly, and catalog numbers may be in the Alpha-5 format (e.g. "A0001" for 100001). The semi-major
+ * axis, period, and apogee/perigee heights, which are not part of a TLE, are derived from the mean motion and eccentricity using the WGS-72 constants of the SGP4 model.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+public class TleParser {
+
+  /**
+   * The length of a TLE line, not counting any trailing characters
+   */
+  public static final int LINE_LENGTH = 69;
+
+  private static final double EARTH_RADIUS_KILOMETERS = 6378.135;
+  private static final double EARTH_GRAVITATIONAL_PARAMETER = 398600.8; // km^3/s^2
+  private static final long MICROS_PER_DAY = 86_400_000_000L;
+  private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L};
+  private static final String ALPHA_5_LETTERS = "ABCDEFGHJKLMNPQRSTUVWXYZ"; // "I" and "O" are skipped
+
+
+  private TleParser() {
+
+    // static methods only
+  }
+
+
+  /**
+   * Parses a TLE and appends it to columns
+   * 
+   * @param line1 The non-null first line
+   * @param line2 The non-null second line
+   * @param columns The non-null columns to append the element set to
+   * @return The row of the element set in the columns
+   * @throws IllegalArgumentException A line is too short, out of order, has an invalid checksum or field, or the lines have different catalog numbers
+   */
+  public static int parse(@NonNull CharSequence line1, @NonNull CharSequence line2, @NonNull ElementSetColumns columns) {
+
+    // validation
+    if (line1.length() < LINE_LENGTH) {
+
+      throw new IllegalArgumentException("The TLE line is too short: " + line1);
+
+    } else if (line2.length() < LINE_LENGTH) {
+
+      throw new IllegalArgumentException("The TLE line is too short: " + line2);
+    }
+
+
+    return parse(line1, 0, line2, 0, columns);
+  }
+
+
+  /**
+   * Parses every TLE in a block of text (e.g. a file read into a {@link java.nio.CharBuffer}) and appends them to columns. The TLEs may be in two-line or three-line (with a name line) format;
+   * blank lines and name lines are skipped.
+   * 
+   * @param text The non-null text
+   * @param columns The non-null columns to append the element sets to
+   * @return The number of element sets appended
+   * @throws IllegalArgumentException A TLE is not valid (see {@link #parse(CharSequence, CharSequence, ElementSetColumns)}) or a first line is not followed by a second line
+   */
+  public static int parseAll(@NonNull CharSequence text, @NonNull ElementSetColumns columns) {
+
+    int startSize = columns.size();
+    int length = text.length();
+    int line1Start = -1;
+    int lineStart = 0;
+
+    while (lineStart < length) {
+
+      // find the end of the line
+      int lineEnd = lineStart;
+
+      while (lineEnd < length && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+
+        lineEnd++;
+      }
+
+
+      // skip empty lines (including the second half of a "\r\n")
+      if (lineEnd == lineStart) {
+
+        lineStart = lineEnd + 1;
+        continue;
+      }
+
+
+      // parse the pair of lines once both have been found
+      char lineNumber = (lineEnd - lineStart >= LINE_LENGTH && text.charAt(lineStart + 1) == ' ' ? text.charAt(lineStart) : ' ');
+
+      if (line1Start >= 0 && lineNumber != '2') {
+
+        throw new IllegalArgumentException("The TLE line is not followed by a second line: " + text.subSequence(line1Start, line1Start + LINE_LENGTH));
+
+      } else if (lineNumber == '1') {
+
+        line1Start = lineStart;
+
+      } else if (lineNumber == '2') {
+
+        if (line1Start < 0) {
+
+          throw new IllegalArgumentException("The TLE line is not preceded by a first line: " + text.subSequence(lineStart, lineStart + LINE_LENGTH));
+        }
+
+        parse(text, line1Start, text, lineStart, columns);
+        line1Start = -1;
+      }
+
+      lineStart = lineEnd + 1;
+    }
+
+    if (line1Start >= 0) {
+
+      throw new IllegalArgumentException("The TLE line is not followed by a second line: " + text.subSequence(line1Start, line1Start + LINE_LENGTH));
+    }
+
+    return columns.size() - startSize;
+  }
+
+
+  /**
+   * Verifies the checksum of a TLE line: the last digit of the sum of its digits, with each minus sign counting as 1
+   * 
+   * @param line The non-null line
+   * @return True if the line is long enough and its checksum matches
+   */
+  public static boolean isChecksumValid(@NonNull CharSequence line) {
+
+    return (line.length() >= LINE_LENGTH && isChecksumValid(line, 0));
+  }
+
+
+  /**
+   * Decodes a catalog number in columns 3-7 of a TLE line, which may be in the Alpha-5 format (a letter for the ten-thousands, skipping "I" and "O", followed by four digits)
+   * 
+   * @param line The non-null line
+   * @return The catalog number
+   * @throws IllegalArgumentException The line is too short or the catalog number is not valid
+   */
+  public static int parseCatalogNumber(@NonNull CharSequence line) {
+
+    // validation
+    if (line.length() < 7) {
+
+      throw new IllegalArgumentException("The TLE line is too short: " + line);
+    }
+
+
+    return parseCatalogNumber(line, 0);
+  }
+
+
+  private static int parse(CharSequence line1, int offset1, CharSequence line2, int offset2, ElementSetColumns columns) {
+
+    // validation
+    if (line1.charAt(offset1) != '1') {
+
+      throw invalidLine(line1, offset1, "The TLE line is not a first line");
+
+    } else if (line2.charAt(offset2) != '2') {
+
+      throw invalidLine(line2, offset2, "The TLE line is not a second line");
+
+    } else if (isChecksumValid(line1, offset1) == false) {
+
+      throw invalidLine(line1, offset1, "The TLE line has an invalid checksum");
+
+    } else if (isChecksumValid(line2, offset2) == false) {
+
+      throw invalidLine(line2, offset2, "The TLE line has an invalid checksum");
+    }
+
+    int catalogNumber = parseCatalogNumber(line1, offset1);
+
+    if (parseCatalogNumber(line2, offset2) != catalogNumber) {
+
+      throw invalidLine(line2, offset2, "The TLE line has a different catalog number than its first line (" + catalogNumber + ")");
+    }
+
+
+    // fill a new row, removing it if a field turns out to be invalid
+    int row = columns.addRow();
+
+    try {
+
+      double meanMotion = parseDecimal(line2, offset2, 52, 63);
+
+      if ((meanMotion > 0.0) == false) {
+
+        throw invalidLine(line2, offset2, "The TLE line has a mean motion that is not positive (" + meanMotion + ")");
+      }
+
+      double eccentricity = parseImpliedDecimal(line2, offset2, 26, 33);
+      double periodMinutes = 1440.0 / meanMotion;
+      double meanMotionRadiansPerSecond = meanMotion * 2.0 * Math.PI / 86_400.0;
+      double semiMajorAxis = Math.cbrt(EARTH_GRAVITATIONAL_PARAMETER / (meanMotionRadiansPerSecond * meanMotionRadiansPerSecond));
+
+      columns.getCatalogNumber()[row] = catalogNumber;
+      columns.getEpochMicros()[row] = parseEpochMicros(line1, offset1);
+      columns.getMeanMotionDot()[row] = parseDecimal(line1, offset1, 33, 43);
+      columns.getMeanMotionDoubleDot()[row] = parseExponential(line1, offset1, 44, 52);
+      columns.getBstar()[row] = parseExponential(line1, offset1, 53, 61);
+      columns.getEphemerisType()[row] = parseInt(line1, offset1, 62, 63);
+      columns.getElementSetNumber()[row] = parseInt(line1, offset1, 64, 68);
+      columns.getInclinationDegrees()[row] = parseDecimal(line2, offset2, 8, 16);
+      columns.getRightAscOfNodeDegrees()[row] = parseDecimal(line2, offset2, 17, 25);
+      columns.getEccentricity()[row] = eccentricity;
+      columns.getArgOfPerigeeDegrees()[row] = parseDecimal(line2, offset2, 34, 42);
+      columns.getMeanAnomalyDegrees()[row] = parseDecimal(line2, offset2, 43, 51);
+      columns.getMeanMotionRevsPerDay()[row] = meanMotion;
+      columns.getRevNumber()[row] = parseInt(line2, offset2, 63, 68);
+      columns.getSemiMajorAxisKilometers()[row] = semiMajorAxis;
+      columns.getPeriodMinutes()[row] = periodMinutes;
+      columns.getApogeeHeightKilometers()[row] = semiMajorAxis * (1.0 + eccentricity) - EARTH_RADIUS_KILOMETERS;
+      columns.getPerigeeHeightKilometers()[row] = semiMajorAxis * (1.0 - eccentricity) - EARTH_RADIUS_KILOMETERS;
+
+    } catch (IllegalArgumentException e) {
+
+      columns.removeLastRow();
+      throw e;
+    }
+
+    return row;
+  }
+
+
+  private static boolean isChecksumValid(CharSequence line, int offset) {
+
+    int sum = 0;
+
+    for (int index = offset; index < offset + LINE_LENGTH - 1; index++) {
+
+      char c = line.charAt(index);
+
+      if (c >= '0' && c <= '9') {
+
+        sum += c - '0';
+
+      } else if (c == '-') {
+
+        sum++;
+      }
+    }
+
+    return (line.charAt(offset + LINE_LENGTH - 1) - '0' == sum % 10);
+  }
+
+
+  private static int parseCatalogNumber(CharSequence line, int offset) {
+
+    char first = line.charAt(offset + 2);
+
+    if (first >= 'A' && first <= 'Z') {
+
+      int letterValue = ALPHA_5_LETTERS.indexOf(first);
+
+      if (letterValue < 0) {
+
+        throw invalidField(line, offset, 2, 7);
+      }
+
+      return (letterValue + 10) * 10_000 + (int) parseDigits(line, offset, 3, 7);
+    }
+
+    int catalogNumber = (int) parseDigits(line, offset, 2, 7);
+
+    if (catalogNumber == 0 && line.charAt(offset + 6) != '0') {
+
+      throw invalidField(line, offset, 2, 7);
+    }
+
+    return catalogNumber;
+  }
+
+
+  /**
+   * Reads the two-digit year (1957-2056) and the day of the year with its fraction, exactly to the microsecond for the standard 8 decimal places
+   */
+  private static long parseEpochMicros(CharSequence line, int offset) {
+
+    int twoDigitYear = (int) parseDigits(line, offset, 18, 20);
+    int year = (twoDigitYear < 57 ? 2000 : 1900) + twoDigitYear;
+
+
+    // read the day as a whole number of units of 10^-decimals days
+    long dayUnits = 0;
+    int decimals = -1;
+
+    for (int index = 20; index < 32; index++) {
+
+      char c = line.charAt(offset + index);
+
+      if (c >= '0' && c <= '9') {
+
+        dayUnits = dayUnits * 10 + (c - '0');
+        decimals += (decimals >= 0 ? 1 : 0);
+
+      } else if (c == '.' && decimals < 0) {
+
+        decimals = 0;
+
+      } else if (c != ' ' || dayUnits != 0) {
+
+        throw invalidField(line, offset, 20, 32);
+      }
+    }
+
+    decimals = Math.max(decimals, 0);
+    double day = NumberParser.scale(dayUnits, -decimals);
+
+    if (day < 1.0) {
+
+      throw invalidField(line, offset, 20, 32); // before the first day of the year
+    }
+
+    long yearStartMicros = ElementSetColumns.daysSinceEpoch(year, 1, 1) * MICROS_PER_DAY;
+    long dayMicros = (decimals < POWERS_OF_TEN.length ? (dayUnits - POWERS_OF_TEN[decimals]) * (MICROS_PER_DAY / POWERS_OF_TEN[decimals]) : Math.round((day - 1.0) * MICROS_PER_DAY));
+
+    return yearStartMicros + dayMicros;
+  }
+
+
+  /**
+   * Reads a right-aligned decimal such as " 51.6416", "-.00002182", or " .00002182"
+   */
+  private static double parseDecimal(CharSequence line, int offset, int start, int end) {
+
+    int index = skipSpaces(line, offset, start, end);
+    boolean negative = false;
+
+    if (index < end && (line.charAt(offset + index) == '-' || line.charAt(offset + index) == '+')) {
+
+      negative = (line.charAt(offset + index) == '-');
+      index++;
+    }
+
+    long mantissa = 0;
+    int digitCount = 0;
+    int decimals = -1;
+
+    for (; index < end; index++) {
+
+      char c = line.charAt(offset + index);
+
+      if (c >= '0' && c <= '9') {
+
+        mantissa = mantissa * 10 + (c - '0');
+        digitCount++;
+        decimals += (decimals >= 0 ? 1 : 0);
+
+      } else if (c == '.' && decimals < 0) {
+
+        decimals = 0;
+
+      } else {
+
+        break;
+      }
+    }
+
+    if (digitCount == 0 || skipSpaces(line, offset, index, end) != end) {
+
+      throw invalidField(line, offset, start, end);
+    }
+
+    double value = NumberParser.scale(mantissa, -Math.max(decimals, 0));
+
+    return (negative ? -value : value);
+  }
+
+
+  /**
+   * Reads digits with an implied leading decimal point, such as the eccentricity "0006703" (0.0006703)
+   */
+  private static double parseImpliedDecimal(CharSequence line, int offset, int start, int end) {
+
+    return NumberParser.scale(parseDigits(line, offset, start, end), start - end);
+  }
+
+
+  /**
+   * Reads digits with an implied leading decimal point and a power-of-ten exponent, such as "-11606-4" (-0.11606e-4) or " 00000+0"
+   */
+  private static double parseExponential(CharSequence line, int offset, int start, int end) {
+
+    int index = skipSpaces(line, offset, start, end);
+    boolean negative = false;
+
+    if (index < end && (line.charAt(offset + index) == '-' || line.charAt(offset + index) == '+')) {
+
+      negative = (line.charAt(offset + index) == '-');
+      index++;
+    }
+
+    int exponentSign = end - 2;
+    char sign = line.charAt(offset + exponentSign);
+
+    if (index >= exponentSign || (sign != '-' && sign != '+')) {
+
+      throw invalidField(line, offset, start, end);
+    }
+
+    long mantissa = parseDigits(line, offset, index, exponentSign);
+    int exponent = (int) parseDigits(line, offset, end - 1, end);
+    double value = NumberParser.scale(mantissa, (sign == '-' ? -exponent : exponent) - (exponentSign - index));
+
+    return (negative ? -value : value);
+  }
+
+
+  /**
+   * Reads a right-aligned integer, where a blank field is zero
+   */
+  private static int parseInt(CharSequence line, int offset, int start, int end) {
+
+    int index = skipSpaces(line, offset, start, end);
+
+    return (index == end ? 0 : (int) parseDigits(line, offset, index, end));
+  }
+
+
+  /**
+   * Reads unsigned digits, allowing leading spaces
+   */
+  private static long parseDigits(CharSequence line, int offset, int start, int end) {
+
+    long value = 0;
+
+    for (int index = skipSpaces(line, offset, start, end); index < end; index++) {
+
+      int digit = line.charAt(offset + index) - '0';
+
+      if (digit < 0 || digit > 9) {
+
+        throw invalidField(line, offset, start, end);
+      }
+
+      value = value * 10 + digit;
+    }
+
+    return value;
+  }
+
+
+  private static int skipSpaces(CharSequence line, int offset, int start, int end) {
+
+    int index = start;
+
+    while (index < end && line.charAt(offset + index) == ' ') {
+
+      index++;
+    }
+
+    return index;
+  }
+
+
+  private static IllegalArgumentException invalidField(CharSequence line, int offset, int start, int end) {
+
+    return invalidLine(line, offset, "The TLE line has an invalid field in columns " + (start + 1) + "-" + end);
+  }
+
+
+  private static IllegalArgumentException invalidLine(CharSequence line, int offset, String message) {
+
+    return new IllegalArgumentException(message + ": " + line.subSequence(offset, Math.min(offset + LINE_LENGTH, line.length())));
+  }
+}
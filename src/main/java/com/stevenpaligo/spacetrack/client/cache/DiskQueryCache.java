@@ -0,0 +1,541 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import com.stevenpaligo.spacetrack.client.Query;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A persistent cache of raw query responses, stored as one file per query string in a directory. Unlike {@link QueryCache}, the cache survives restarts of the JVM, so a restarted application
+ * can answer queries (e.g. the full satellite catalog) without going back to Space-Track.org.
+ * 
+ * <p>
+ * Cached responses are read through memory-mapped files: the JSON is parsed straight from the operating system's page cache, without copying the response to the heap first. The time-to-live can
+ * be set per query class, and the total size of the cache is bounded: when the bound is exceeded, the oldest responses are deleted first. A cache is thread-safe, and several JVMs may share a
+ * directory because files are replaced atomically.
+ * </p>
+ * 
+ * @author Steven Paligo
+ * @see com.stevenpaligo.spacetrack.client.SpaceTrackSession#setDiskCache(DiskQueryCache)
+ */
+@Slf4j
+public class DiskQueryCache {
+
+  private static final Charset charsetUtf8 = Charset.forName("UTF-8");
+  private static final int MAGIC_NUMBER = 0x53545143; // "STQC"
+  private static final String FILE_EXTENSION = ".stqc";
+
+
+  /**
+   * The default time-to-live of a cached response
+   */
+  public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+
+
+  @Getter
+  private final Path directory;
+
+  @Getter
+  private final long maxBytes;
+
+  @Getter
+  private volatile Duration defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+
+  private final Map<Class<?>, Duration> timesToLive = new ConcurrentHashMap<>();
+  private final Clock clock;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  // the total size of the cached files, kept as they are written and deleted so that a put only lists the directory when the cache is over its bound (other JVMs sharing the directory make
+  // it an estimate, which is corrected whenever the directory is listed)
+  private final AtomicLong totalBytes = new AtomicLong();
+
+
+  /**
+   * Creates a cache in a directory, creating the directory if it does not exist. Responses cached by earlier runs are kept.
+   * 
+   * @param directory The non-null directory to store the cached responses in
+   * @param maxBytes The maximum total size of the cached responses (must be positive)
+   * @throws IOException The directory was unable to be created
+   */
+  public DiskQueryCache(@NonNull Path directory, long maxBytes) throws IOException {
+
+    this(directory, maxBytes, Clock.systemUTC());
+  }
+
+
+  DiskQueryCache(@NonNull Path directory, long maxBytes, @NonNull Clock clock) throws IOException {
+
+    // more validation
+    if (maxBytes <= 0) {
+
+      throw new IllegalArgumentException("The maximum number of bytes is not positive: " + maxBytes);
+    }
+
+
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+    this.clock = clock;
+    this.totalBytes.set(sizeOf(listFiles()));
+  }
+
+
+  /**
+   * Sets the time-to-live of responses to query classes that have no time-to-live of their own
+   * 
+   * @param defaultTimeToLive A non-null, non-negative duration (zero disables caching)
+   * @return This cache, for use in the builder pattern
+   */
+  public DiskQueryCache setDefaultTimeToLive(@NonNull Duration defaultTimeToLive) {
+
+    // more validation
+    if (defaultTimeToLive.isNegative()) {
+
+      throw new IllegalArgumentException("The time-to-live is negative: " + defaultTimeToLive);
+    }
+
+
+    this.defaultTimeToLive = defaultTimeToLive;
+    return this;
+  }
+
+
+  /**
+   * Sets the time-to-live of responses to one query class, overriding the default time-to-live
+   * 
+   * @param queryClass The non-null query class (e.g. <code>SatCatQuery.class</code>)
+   * @param timeToLive A non-null, non-negative duration (zero disables caching for the query class)
+   * @return This cache, for use in the builder pattern
+   */
+  public DiskQueryCache setTimeToLive(@NonNull Class<? extends Query<?, ?, ?>> queryClass, @NonNull Duration timeToLive) {
+
+    // more validation
+    if (timeToLive.isNegative()) {
+
+      throw new IllegalArgumentException("The time-to-live is negative: " + timeToLive);
+    }
+
+
+    timesToLive.put(queryClass, timeToLive);
+    return this;
+  }
+
+
+  /**
+   * Gets the time-to-live of responses to a query class
+   * 
+   * @param queryClass The non-null query class
+   * @return The query class's own time-to-live, or the default time-to-live if it has none
+   */
+  public Duration getTimeToLive(@NonNull Class<?> queryClass) {
+
+    return timesToLive.getOrDefault(queryClass, defaultTimeToLive);
+  }
+
+
+  /**
+   * Gets the cached response to a query, if there is one that has not expired. The response is memory-mapped; it remains valid even if the cached file is later replaced or deleted.
+   * 
+   * @param queryString The non-null query string
+   * @return A non-null, read-only buffer positioned at the start of the JSON response, or an empty {@link Optional} if the query is not cached
+   */
+  public Optional<ByteBuffer> get(@NonNull String queryString) {
+
+    Path file = getFile(queryString);
+    MappedByteBuffer mapped;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+    } catch (NoSuchFileException e) {
+
+      missCount.incrementAndGet();
+      return Optional.empty();
+
+    } catch (IOException e) {
+
+      log.warn("Unable to read the cached SpaceTrack response " + file, e);
+      missCount.incrementAndGet();
+      return Optional.empty();
+    }
+
+
+    // read the header: magic number, expiration time, query string
+    Optional<ByteBuffer> response = Optional.empty();
+
+    try {
+
+      if (mapped.getInt() == MAGIC_NUMBER) {
+
+        long expiresMillis = mapped.getLong();
+        byte[] cachedQueryString = new byte[mapped.getInt()];
+        mapped.get(cachedQueryString);
+
+        if (queryString.equals(new String(cachedQueryString, charsetUtf8)) && expiresMillis > clock.millis()) {
+
+          response = Optional.of(mapped.slice().asReadOnlyBuffer());
+
+        } else if (expiresMillis <= clock.millis()) {
+
+          delete(file);
+        }
+
+      } else {
+
+        log.warn("Deleting the invalid cached SpaceTrack response {}", file);
+        delete(file);
+      }
+
+    } catch (RuntimeException e) {
+
+      log.warn("Deleting the invalid cached SpaceTrack response " + file, e);
+      delete(file);
+    }
+
+
+    (response.isPresent() ? hitCount : missCount).incrementAndGet();
+    return response;
+  }
+
+
+  /**
+   * Caches the response to a query for the time-to-live of its query class, replacing any earlier response. Responses that are larger than the cache itself are not cached.
+   * 
+   * @param queryClass The non-null class of the query that was executed
+   * @param queryString The non-null query string
+   * @param response The non-null, well-formed JSON response
+   * @throws IOException The response was unable to be written
+   */
+  public void put(@NonNull Class<?> queryClass, @NonNull String queryString, @NonNull byte[] response) throws IOException {
+
+    Duration timeToLive = getTimeToLive(queryClass);
+    byte[] queryStringBytes = queryString.getBytes(charsetUtf8);
+    long size = 16L + queryStringBytes.length + response.length;
+
+    if (timeToLive.isZero() || size > maxBytes) {
+
+      return;
+    }
+
+
+    // write the response to a temporary file and move it into place, so readers never see a partial file
+    ByteBuffer header = ByteBuffer.allocate(16 + queryStringBytes.length);
+    header.putInt(MAGIC_NUMBER).putLong(clock.millis() + timeToLive.toMillis()).putInt(queryStringBytes.length).put(queryStringBytes);
+    header.flip();
+
+    String fileName = getFileName(queryString);
+    Path file = directory.resolve(fileName);
+    Path temporaryFile = Files.createTempFile(directory, fileName, ".tmp");
+
+    try {
+
+      try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+
+        ByteBuffer[] buffers = {header, ByteBuffer.wrap(response)};
+
+        while (buffers[1].hasRemaining()) {
+
+          channel.write(buffers);
+        }
+      }
+
+      long replacedSize = sizeOf(file);
+
+      try {
+
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+      } catch (AtomicMoveNotSupportedException e) {
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      totalBytes.addAndGet(size - replacedSize);
+
+    } finally {
+
+      Files.deleteIfExists(temporaryFile);
+    }
+
+    log.debug("Cached {} bytes on disk (query: {}, time-to-live: {})", response.length, queryString, timeToLive);
+
+
+    // delete the oldest responses until the cache is within its bound
+    if (totalBytes.get() > maxBytes) {
+
+      evict();
+    }
+  }
+
+
+  /**
+   * Removes the cached response to a query
+   * 
+   * @param queryString The non-null query string
+   */
+  public void invalidate(@NonNull String queryString) {
+
+    delete(getFile(queryString));
+  }
+
+
+  /**
+   * Removes all cached responses
+   * 
+   * @throws IOException The directory was unable to be read
+   */
+  public void invalidateAll() throws IOException {
+
+    for (CachedFile cachedFile : listFiles()) {
+
+      delete(cachedFile.path);
+    }
+  }
+
+
+  /**
+   * Gets the total size of the cached responses (including responses that have expired but have not been removed yet)
+   * 
+   * @return The size in bytes
+   * @throws IOException The directory was unable to be read
+   */
+  public long size() throws IOException {
+
+    return sizeOf(listFiles());
+  }
+
+
+  /**
+   * Gets a snapshot of the cache's statistics since it was created
+   * 
+   * @return The non-null statistics
+   */
+  public Statistics getStatistics() {
+
+    return new Statistics(hitCount.get(), missCount.get(), evictionCount.get());
+  }
+
+
+  private synchronized void evict() throws IOException {
+
+    // another put may have evicted already
+    if (totalBytes.get() <= maxBytes) {
+
+      return;
+    }
+
+    List<CachedFile> cachedFiles = listFiles();
+    long size = sizeOf(cachedFiles);
+    totalBytes.set(size);
+
+
+    cachedFiles.sort(Comparator.comparingLong(cachedFile -> cachedFile.lastModifiedMillis));
+
+    for (int i = 0; size > maxBytes && i < cachedFiles.size(); i++) {
+
+      delete(cachedFiles.get(i).path);
+      size -= cachedFiles.get(i).size;
+      evictionCount.incrementAndGet();
+    }
+  }
+
+
+  private static long sizeOf(List<CachedFile> cachedFiles) {
+
+    long size = 0;
+
+    for (CachedFile cachedFile : cachedFiles) {
+
+      size += cachedFile.size;
+    }
+
+    return size;
+  }
+
+
+  /**
+   * Gets the size of a file, or zero if it does not exist
+   */
+  private static long sizeOf(Path file) throws IOException {
+
+    try {
+
+      return Files.size(file);
+
+    } catch (NoSuchFileException e) {
+
+      return 0;
+    }
+  }
+
+
+  private List<CachedFile> listFiles() throws IOException {
+
+    List<CachedFile> cachedFiles = new ArrayList<>();
+
+    // closed explicitly rather than with try-with-resources, whose generated null check SpotBugs reports as redundant
+    DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION);
+
+    try {
+
+      for (Path path : paths) {
+
+        try {
+
+          BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+          cachedFiles.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+
+        } catch (NoSuchFileException e) {
+
+          // the file was deleted concurrently
+        }
+      }
+
+    } finally {
+
+      paths.close();
+    }
+
+    return cachedFiles;
+  }
+
+
+  /**
+   * Gets the file a query's response is stored in
+   */
+  private Path getFile(String queryString) {
+
+    return directory.resolve(getFileName(queryString));
+  }
+
+
+  /**
+   * Gets the name of the file a query's response is stored in, which is the SHA-256 hash of the query string
+   */
+  private String getFileName(String queryString) {
+
+    try {
+
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(queryString.getBytes(charsetUtf8));
+      StringBuilder fileName = new StringBuilder();
+
+      for (byte b : hash) {
+
+        fileName.append(String.format("%02x", b));
+      }
+
+      return fileName.append(FILE_EXTENSION).toString();
+
+    } catch (NoSuchAlgorithmException e) {
+
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+
+
+  private void delete(Path file) {
+
+    try {
+
+      long size = sizeOf(file);
+
+      if (Files.deleteIfExists(file)) {
+
+        totalBytes.addAndGet(-size);
+      }
+
+    } catch (IOException e) {
+
+      log.warn("Unable to delete the cached SpaceTrack response " + file, e);
+    }
+  }
+
+
+  /**
+   * A snapshot of a disk cache's statistics
+   * 
+   * @author Steven Paligo
+   */
+  @Getter
+  public static class Statistics {
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+
+    Statistics(long hitCount, long missCount, long evictionCount) {
+
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+    }
+
+
+    /**
+     * Gets the fraction of lookups that were answered from the cache
+     * 
+     * @return The hit rate, between 0 and 1 (0 if there have been no lookups)
+     */
+    public double getHitRate() {
+
+      long lookups = hitCount + missCount;
+      return (lookups == 0 ? 0 : (double) hitCount / lookups);
+    }
+  }
+
+
+  private static class CachedFile {
+
+    private final Path path;
+    private final long size;
+    private final long lastModifiedMillis;
+
+
+    private CachedFile(Path path, long size, long lastModifiedMillis) {
+
+      this.path = path;
+      this.size = size;
+      this.lastModifiedMillis = lastModifiedMillis;
+    }
+  }
+}
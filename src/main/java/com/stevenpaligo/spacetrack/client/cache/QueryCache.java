@@ -0,0 +1,356 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.cache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import com.stevenpaligo.spacetrack.client.Query;
+import com.stevenpaligo.spacetrack.client.util.ResultCopier;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An in-memory cache of query results, keyed by the query string (see {@link Query#getQueryString()}) and the result type. Identical queries that are executed within the time-to-live of a cached response are
+ * answered from memory instead of Space-Track.org.
+ * 
+ * <p>
+ * The time-to-live can be set per query class (e.g. launch sites rarely change, while TLEs are published continuously). Memory is bounded by the total number of cached results: when the bound is
+ * exceeded, the least recently used responses are evicted first. A cache is thread-safe and may be shared by several sessions.
+ * </p>
+ * 
+ * <p>
+ * The cache holds its own copies of the results, and every query that is answered from the cache gets copies of its own, so changing a result never changes what later queries get.
+ * </p>
+ * 
+ * @author Steven Paligo
+ * @see com.stevenpaligo.spacetrack.client.SpaceTrackSession#setCache(QueryCache)
+ */
+@Slf4j
+public class QueryCache {
+
+  /**
+   * The default time-to-live of a cached response
+   */
+  public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+
+  @Getter
+  private final int maxResults;
+
+  @Getter
+  private volatile Duration defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+
+  private final Map<Class<?>, Duration> timesToLive = new ConcurrentHashMap<>();
+  private final LongSupplier nanoClock;
+
+  private final LinkedHashMap<CacheKey, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long resultCount;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+
+  /**
+   * Creates an empty cache
+   * 
+   * @param maxResults The maximum total number of results to hold (must be positive)
+   */
+  public QueryCache(int maxResults) {
+
+    this(maxResults, System::nanoTime);
+  }
+
+
+  QueryCache(int maxResults, @NonNull LongSupplier nanoClock) {
+
+    // more validation
+    if (maxResults <= 0) {
+
+      throw new IllegalArgumentException("The maximum number of results is not positive: " + maxResults);
+    }
+
+
+    this.maxResults = maxResults;
+    this.nanoClock = nanoClock;
+  }
+
+
+  /**
+   * Sets the time-to-live of responses to query classes that have no time-to-live of their own
+   * 
+   * @param defaultTimeToLive A non-null, non-negative duration (zero disables caching)
+   * @return This cache, for use in the builder pattern
+   */
+  public QueryCache setDefaultTimeToLive(@NonNull Duration defaultTimeToLive) {
+
+    // more validation
+    if (defaultTimeToLive.isNegative()) {
+
+      throw new IllegalArgumentException("The time-to-live is negative: " + defaultTimeToLive);
+    }
+
+
+    this.defaultTimeToLive = defaultTimeToLive;
+    return this;
+  }
+
+
+  /**
+   * Sets the time-to-live of responses to one query class, overriding the default time-to-live
+   * 
+   * @param queryClass The non-null query class (e.g. <code>LaunchSiteQuery.class</code>)
+   * @param timeToLive A non-null, non-negative duration (zero disables caching for the query class)
+   * @return This cache, for use in the builder pattern
+   */
+  public QueryCache setTimeToLive(@NonNull Class<? extends Query<?, ?, ?>> queryClass, @NonNull Duration timeToLive) {
+
+    // more validation
+    if (timeToLive.isNegative()) {
+
+      throw new IllegalArgumentException("The time-to-live is negative: " + timeToLive);
+    }
+
+
+    timesToLive.put(queryClass, timeToLive);
+    return this;
+  }
+
+
+  /**
+   * Gets the time-to-live of responses to a query class
+   * 
+   * @param queryClass The non-null query class
+   * @return The query class's own time-to-live, or the default time-to-live if it has none
+   */
+  public Duration getTimeToLive(@NonNull Class<?> queryClass) {
+
+    return timesToLive.getOrDefault(queryClass, defaultTimeToLive);
+  }
+
+
+  /**
+   * Gets the cached results of a query, if there are any that have not expired
+   * 
+   * @param queryString The non-null query string
+   * @param resultType The non-null type of the results (the same query may be cached with different result types, e.g. for compact queries)
+   * @return A non-null, unmodifiable list of copies of the cached results, or an empty {@link Optional} if the query is not cached
+   */
+  public synchronized Optional<List<?>> get(@NonNull String queryString, @NonNull Class<?> resultType) {
+
+    CacheKey key = new CacheKey(queryString, resultType);
+    CacheEntry entry = entries.get(key);
+
+    if (entry == null) {
+
+      missCount++;
+      return Optional.empty();
+
+    } else if (entry.expiresNanos - nanoClock.getAsLong() <= 0) {
+
+      remove(key);
+      missCount++;
+      return Optional.empty();
+
+    } else {
+
+      hitCount++;
+      return Optional.of(ResultCopier.copyAll(entry.results));
+    }
+  }
+
+
+  /**
+   * Caches copies of the results of a query for the time-to-live of its query class. Responses that are larger than the cache itself are not cached.
+   * 
+   * @param queryClass The non-null class of the query that was executed
+   * @param queryString The non-null query string
+   * @param resultType The non-null type of the results
+   * @param results The non-null results of the query
+   */
+  public void put(@NonNull Class<?> queryClass, @NonNull String queryString, @NonNull Class<?> resultType, @NonNull List<?> results) {
+
+    Duration timeToLive = getTimeToLive(queryClass);
+
+    if (timeToLive.isZero() || results.size() > maxResults) {
+
+      return;
+    }
+
+
+    CacheEntry entry = new CacheEntry(ResultCopier.copyAll(results), nanoClock.getAsLong() + timeToLive.toNanos());
+
+    synchronized (this) {
+
+      CacheKey key = new CacheKey(queryString, resultType);
+      remove(key);
+
+      entries.put(key, entry);
+      resultCount += entry.results.size();
+
+
+      // evict the least recently used responses until the cache is within its bound
+      Iterator<CacheEntry> iterator = entries.values().iterator();
+
+      while (resultCount > maxResults && iterator.hasNext()) {
+
+        resultCount -= iterator.next().results.size();
+        iterator.remove();
+        evictionCount++;
+      }
+    }
+
+    log.debug("Cached {} results (query: {}, time-to-live: {})", results.size(), queryString, timeToLive);
+  }
+
+
+  /**
+   * Removes the cached results of a query (for all result types)
+   * 
+   * @param queryString The non-null query string
+   */
+  public synchronized void invalidate(@NonNull String queryString) {
+
+    Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = entries.entrySet().iterator();
+
+    while (iterator.hasNext()) {
+
+      Map.Entry<CacheKey, CacheEntry> entry = iterator.next();
+
+      if (entry.getKey().queryString.equals(queryString)) {
+
+        resultCount -= entry.getValue().results.size();
+        iterator.remove();
+      }
+    }
+  }
+
+
+  /**
+   * Removes all cached results
+   */
+  public synchronized void invalidateAll() {
+
+    entries.clear();
+    resultCount = 0;
+  }
+
+
+  /**
+   * Gets the number of cached responses (including responses that have expired but have not been removed yet)
+   * 
+   * @return The number of cached responses
+   */
+  public synchronized int size() {
+
+    return entries.size();
+  }
+
+
+  /**
+   * Gets a snapshot of the cache's statistics
+   * 
+   * @return The non-null statistics
+   */
+  public synchronized Statistics getStatistics() {
+
+    return new Statistics(hitCount, missCount, evictionCount, entries.size(), resultCount);
+  }
+
+
+  private void remove(CacheKey key) {
+
+    CacheEntry entry = entries.remove(key);
+
+    if (entry != null) {
+
+      resultCount -= entry.results.size();
+    }
+  }
+
+
+  /**
+   * A snapshot of a cache's statistics
+   * 
+   * @author Steven Paligo
+   */
+  @Getter
+  public static class Statistics {
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private int responseCount;
+    private long resultCount;
+
+
+    Statistics(long hitCount, long missCount, long evictionCount, int responseCount, long resultCount) {
+
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.responseCount = responseCount;
+      this.resultCount = resultCount;
+    }
+
+
+    /**
+     * Gets the fraction of lookups that were answered from the cache
+     * 
+     * @return The hit rate, between 0 and 1 (0 if there have been no lookups)
+     */
+    public double getHitRate() {
+
+      long lookups = hitCount + missCount;
+      return (lookups == 0 ? 0 : (double) hitCount / lookups);
+    }
+  }
+
+
+  @EqualsAndHashCode
+  private static class CacheKey {
+
+    private final String queryString;
+    private final Class<?> resultType;
+
+
+    private CacheKey(String queryString, Class<?> resultType) {
+
+      this.queryString = queryString;
+      this.resultType = resultType;
+    }
+  }
+
+
+  private static class CacheEntry {
+
+    private final List<?> results;
+    private final long expiresNanos;
+
+
+    private CacheEntry(List<?> results, long expiresNanos) {
+
+      this.results = results;
+      this.expiresNanos = expiresNanos;
+    }
+  }
+}
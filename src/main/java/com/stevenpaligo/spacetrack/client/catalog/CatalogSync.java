@@ -0,0 +1,539 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.catalog;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.threeten.extra.scale.UtcInstant;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery.LatestTleQueryField;
+import com.stevenpaligo.spacetrack.client.PublishedTleQuery;
+import com.stevenpaligo.spacetrack.client.PublishedTleQuery.PublishedTle;
+import com.stevenpaligo.spacetrack.client.PublishedTleQuery.PublishedTleQueryField;
+import com.stevenpaligo.spacetrack.client.SatCatChangeQuery;
+import com.stevenpaligo.spacetrack.client.SatCatChangeQuery.SatCatChange;
+import com.stevenpaligo.spacetrack.client.SatCatChangeQuery.SatCatChangeQueryField;
+import com.stevenpaligo.spacetrack.client.SatCatQuery;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCatQueryField;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.predicate.GreaterThan;
+import com.stevenpaligo.spacetrack.client.predicate.In;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import com.stevenpaligo.spacetrack.client.query.Sort;
+import com.stevenpaligo.spacetrack.client.query.Sort.Direction;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a local copy of the satellite catalog ({@link SatCat}s) and of the latest element set of every object ({@link CompactElementSet}s) up to date with
+ * <a href="https://www.space-track.org/">Space-Track.org</a>, transferring only what has changed.
+ * 
+ * <p>
+ * The first {@link #sync()} downloads both catalogs in full. Every later sync asks {@link SatCatChangeQuery} which satellites changed and {@link PublishedTleQuery} which element sets were
+ * published since the last sync (the high-water marks), then downloads the current records of just those objects. Each high-water mark is the latest update or publish time seen, and the
+ * next sync looks back a short {@link #getOverlap() overlap} before it so that records committed late with an earlier timestamp are not missed. Satellite catalog changes seen again in the
+ * overlap are skipped, and an element set only replaces one that was published before it, so no change is reported twice.
+ * </p>
+ * 
+ * <p>
+ * Objects leave the local catalogs when they decay (their element set is removed, and their satellite catalog record is kept with its decay date) or when Space-Track.org no longer has a
+ * satellite catalog record for them (both records are removed).
+ * </p>
+ * 
+ * <p>
+ * Listeners added with {@link #addListener(Consumer)} receive a {@link ChangeEvent} for each record that is added, replaced, or removed, on the thread that calls {@link #sync()}. The local
+ * catalogs can be read at any time from any thread; syncs are serialized.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+public class CatalogSync {
+
+  /**
+   * The default look-back before each high-water mark
+   */
+  public static final Duration DEFAULT_OVERLAP = Duration.ofMinutes(5);
+
+
+
+  public static enum ChangeType {
+
+    /**
+     * A satellite catalog record was added or replaced
+     */
+    SATCAT,
+
+    /**
+     * The latest element set of an object was added or replaced
+     */
+    ELEMENT_SET,
+
+    /**
+     * An object decayed or is no longer in the satellite catalog, and its records were removed (see {@link CatalogSync})
+     */
+    REMOVED
+  }
+
+
+  @Getter
+  private final SpaceTrackSession session;
+
+  @Getter
+  private volatile Duration overlap = DEFAULT_OVERLAP;
+
+  private final Map<Integer, SatCat> satCats = new ConcurrentHashMap<>();
+  private final Map<Integer, CompactElementSet> elementSets = new ConcurrentHashMap<>();
+  private final List<Consumer<ChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+  private final Set<Entry<Integer, UtcInstant>> appliedSatCatChanges = new HashSet<>(); // (catalog number, update time) of the changes the next sync's overlap still reaches
+
+  private volatile Optional<UtcInstant> satCatHighWaterMark = Optional.empty();
+  private volatile Optional<UtcInstant> elementSetHighWaterMark = Optional.empty();
+  private volatile boolean loaded;
+
+
+  public CatalogSync(@NonNull SpaceTrackSession session) {
+
+    this.session = session;
+  }
+
+
+  /**
+   * Sets the look-back before each high-water mark (the default is {@link #DEFAULT_OVERLAP})
+   * 
+   * @param overlap A non-null, non-negative duration
+   * @return This object
+   * @throws IllegalArgumentException The overlap is negative
+   */
+  public CatalogSync setOverlap(@NonNull Duration overlap) {
+
+    if (overlap.isNegative()) {
+
+      throw new IllegalArgumentException("The overlap is negative: " + overlap);
+    }
+
+    this.overlap = overlap;
+
+    return this;
+  }
+
+
+  public CatalogSync addListener(@NonNull Consumer<ChangeEvent> listener) {
+
+    listeners.add(listener);
+
+    return this;
+  }
+
+
+  public CatalogSync removeListener(@NonNull Consumer<ChangeEvent> listener) {
+
+    listeners.remove(listener);
+
+    return this;
+  }
+
+
+  /**
+   * Gets the latest satellite catalog update time applied to the local catalog
+   * 
+   * @return The high-water mark, or empty before the first sync or if Space-Track.org has reported no changes
+   */
+  public Optional<UtcInstant> getSatCatHighWaterMark() {
+
+    return satCatHighWaterMark;
+  }
+
+
+  /**
+   * Gets the latest element set publish time applied to the local catalog
+   * 
+   * @return The high-water mark, or empty before the first sync or if Space-Track.org has reported no published element sets
+   */
+  public Optional<UtcInstant> getElementSetHighWaterMark() {
+
+    return elementSetHighWaterMark;
+  }
+
+
+  public Optional<SatCat> getSatCat(int catalogNumber) {
+
+    return Optional.ofNullable(satCats.get(catalogNumber));
+  }
+
+
+  public Optional<CompactElementSet> getElementSet(int catalogNumber) {
+
+    return Optional.ofNullable(elementSets.get(catalogNumber));
+  }
+
+
+  /**
+   * Gets the local satellite catalog
+   * 
+   * @return An unmodifiable, live view of the satellite catalog records by catalog number
+   */
+  public Map<Integer, SatCat> getSatCats() {
+
+    return Collections.unmodifiableMap(satCats);
+  }
+
+
+  /**
+   * Gets the latest element set of every object (e.g. to refresh an {@link OffHeapElementCatalog} after a sync)
+   * 
+   * @return An unmodifiable, live view of the element sets by catalog number
+   */
+  public Map<Integer, CompactElementSet> getElementSets() {
+
+    return Collections.unmodifiableMap(elementSets);
+  }
+
+
+  /**
+   * Brings the local catalogs up to date: a full download on the first call, and only the changes since the high-water marks after that
+   * 
+   * @return The number of records added, replaced, or removed
+   * @throws IOException An error occurred while querying Space-Track.org (the high-water marks only advance past changes that were applied, so the next sync retries the rest)
+   */
+  public synchronized int sync() throws IOException {
+
+    return (loaded ? syncChanges() : loadAll());
+  }
+
+
+  /**
+   * Downloads both catalogs in full, recording the high-water marks first so that changes made during the download are picked up by the next sync
+   */
+  private int loadAll() throws IOException {
+
+    // record the high-water marks
+    List<SatCatChange> latestChange = new SatCatChangeQuery().setSession(session).addSort(new Sort<>(SatCatChangeQueryField.UPDATE_TIME, Direction.DESC)).setLimit(Limit.ONE).execute();
+    List<PublishedTle> latestPublished = new PublishedTleQuery().setSession(session).addSort(new Sort<>(PublishedTleQueryField.PUBLISH_TIME, Direction.DESC)).setLimit(Limit.ONE)
+        .execute();
+
+    Optional<UtcInstant> newSatCatHighWaterMark = (latestChange.isEmpty() ? Optional.empty() : latestChange.get(0).getUpdateTime());
+    Optional<UtcInstant> newElementSetHighWaterMark = (latestPublished.isEmpty() ? Optional.empty() : Optional.ofNullable(latestPublished.get(0).getPublishTime()));
+
+
+    // download the catalogs
+    int changeCount = applySatCats(new SatCatQuery().setSession(session).execute());
+    changeCount += applyElementSets(new LatestTleQuery().setSession(session).addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1)).asCompact().execute());
+
+    satCatHighWaterMark = newSatCatHighWaterMark;
+    elementSetHighWaterMark = newElementSetHighWaterMark;
+    loaded = true;
+
+    log.debug("Loaded the catalog ({} satellites, {} element sets)", satCats.size(), elementSets.size());
+
+
+    return changeCount;
+  }
+
+
+  /**
+   * Downloads the records that changed since the high-water marks
+   */
+  private int syncChanges() throws IOException {
+
+    int changeCount = 0;
+
+
+    // satellite catalog changes
+    SatCatChangeQuery changeQuery = new SatCatChangeQuery().setSession(session);
+
+    if (satCatHighWaterMark.isPresent()) {
+
+      changeQuery.addPredicate(new GreaterThan<>(SatCatChangeQueryField.UPDATE_TIME, lookBack(satCatHighWaterMark.get())));
+    }
+
+    List<SatCatChange> changes = changeQuery.execute();
+
+    if (changes.isEmpty() == false) {
+
+      // skip the changes that were applied by the previous sync and seen again in the overlap
+      SortedSet<Integer> catalogNumbers = new TreeSet<>();
+      Set<Entry<Integer, UtcInstant>> newChanges = new HashSet<>();
+      Optional<UtcInstant> newHighWaterMark = satCatHighWaterMark;
+
+      for (SatCatChange change : changes) {
+
+        if (change.getCatalogNumber().isPresent()) {
+
+          Entry<Integer, UtcInstant> appliedChange = new SimpleImmutableEntry<>(change.getCatalogNumber().get(), change.getUpdateTime().orElse(null));
+
+          if (appliedSatCatChanges.contains(appliedChange) == false) {
+
+            catalogNumbers.add(change.getCatalogNumber().get());
+            newChanges.add(appliedChange);
+          }
+        }
+
+        newHighWaterMark = later(newHighWaterMark, change.getUpdateTime());
+      }
+
+      if (catalogNumbers.isEmpty() == false) {
+
+        // long lists of catalog numbers are compacted into ranges, and split into several requests by the query if necessary
+        List<SatCat> satCatResults = new SatCatQuery().setSession(session).addPredicate(new In<>(SatCatQueryField.CATALOG_NUMBER, catalogNumbers, Integer.class, true)).execute();
+        changeCount += applySatCats(satCatResults);
+
+
+        // objects without a satellite catalog record any more have been removed
+        satCatResults.forEach(satCat -> satCat.getCatalogNumber().ifPresent(catalogNumbers::remove));
+
+        for (int catalogNumber : catalogNumbers) {
+
+          changeCount += remove(catalogNumber, true);
+        }
+      }
+
+      satCatHighWaterMark = newHighWaterMark;
+
+
+      // remember the changes the next sync's overlap will see again
+      if (newHighWaterMark.isPresent()) {
+
+        UtcInstant nextLookBack = lookBack(newHighWaterMark.get());
+
+        appliedSatCatChanges.addAll(newChanges);
+        appliedSatCatChanges.removeIf(appliedChange -> appliedChange.getValue() == null || appliedChange.getValue().isAfter(nextLookBack) == false);
+      }
+    }
+
+
+    // newly published element sets
+    PublishedTleQuery publishedQuery = new PublishedTleQuery().setSession(session);
+
+    if (elementSetHighWaterMark.isPresent()) {
+
+      publishedQuery.addPredicate(new GreaterThan<>(PublishedTleQueryField.PUBLISH_TIME, lookBack(elementSetHighWaterMark.get())));
+    }
+
+    List<PublishedTle> published = publishedQuery.execute();
+
+    if (published.isEmpty() == false) {
+
+      SortedSet<Integer> catalogNumbers = new TreeSet<>();
+      Optional<UtcInstant> newHighWaterMark = elementSetHighWaterMark;
+
+      for (PublishedTle tle : published) {
+
+        tle.getCatalogNumber().ifPresent(catalogNumbers::add);
+        newHighWaterMark = later(newHighWaterMark, Optional.ofNullable(tle.getPublishTime()));
+      }
+
+      changeCount += applyElementSets(new LatestTleQuery().setSession(session).addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1))
+          .addPredicate(new In<>(LatestTleQueryField.CATALOG_NUMBER, catalogNumbers, Integer.class, true)).asCompact().execute());
+
+      elementSetHighWaterMark = newHighWaterMark;
+    }
+
+    log.debug("Synchronized the catalog ({} satellite changes, {} published element sets, {} records replaced)", changes.size(), published.size(), changeCount);
+
+
+    return changeCount;
+  }
+
+
+  private int applySatCats(List<SatCat> results) {
+
+    int changeCount = 0;
+
+    for (SatCat satCat : results) {
+
+      if (satCat.getCatalogNumber().isPresent()) {
+
+        int catalogNumber = satCat.getCatalogNumber().get();
+
+        satCats.put(catalogNumber, satCat);
+        notifyListeners(new ChangeEvent(ChangeType.SATCAT, catalogNumber, Optional.of(satCat), Optional.empty()));
+        changeCount++;
+
+        if (satCat.getDecayDate().isPresent()) {
+
+          changeCount += remove(catalogNumber, false);
+        }
+      }
+    }
+
+    return changeCount;
+  }
+
+
+  /**
+   * Stores element sets, skipping any that do not supersede the element set already stored for the object and removing the element sets of decayed objects
+   */
+  private int applyElementSets(List<CompactElementSet> results) {
+
+    int changeCount = 0;
+
+    for (CompactElementSet elementSet : results) {
+
+      int catalogNumber = elementSet.getCatalogNumber();
+
+      if (catalogNumber == CompactElementSet.MISSING_INT) {
+
+        continue;
+      }
+
+      SatCat satCat = satCats.get(catalogNumber);
+
+      if (elementSet.isDecayed() || (satCat != null && satCat.getDecayDate().isPresent())) {
+
+        changeCount += remove(catalogNumber, false);
+        continue;
+      }
+
+      CompactElementSet current = elementSets.get(catalogNumber);
+
+      if (current == null || supersedes(elementSet, current)) {
+
+        elementSets.put(catalogNumber, elementSet);
+        notifyListeners(new ChangeEvent(ChangeType.ELEMENT_SET, catalogNumber, Optional.empty(), Optional.of(elementSet)));
+        changeCount++;
+      }
+    }
+
+    return changeCount;
+  }
+
+
+  /**
+   * Checks whether an element set supersedes another one for the same object: it was published in a later file (so corrections that keep the epoch are applied), or, if either file number is
+   * missing, it has a later epoch
+   */
+  private static boolean supersedes(CompactElementSet elementSet, CompactElementSet current) {
+
+    if (elementSet.getFileNumber() != CompactElementSet.MISSING_INT && current.getFileNumber() != CompactElementSet.MISSING_INT) {
+
+      return (elementSet.getFileNumber() > current.getFileNumber());
+    }
+
+    return (elementSet.getEpochMicros() > current.getEpochMicros());
+  }
+
+
+  /**
+   * Removes an object's element set and, if it is no longer in the satellite catalog, its satellite catalog record
+   *
+   * @return The number of events sent (1 if anything was removed, otherwise 0)
+   */
+  private int remove(int catalogNumber, boolean removeSatCat) {
+
+    boolean removed = (elementSets.remove(catalogNumber) != null);
+
+    if (removeSatCat) {
+
+      removed |= (satCats.remove(catalogNumber) != null);
+    }
+
+    if (removed == false) {
+
+      return 0;
+    }
+
+    notifyListeners(new ChangeEvent(ChangeType.REMOVED, catalogNumber, Optional.empty(), Optional.empty()));
+
+
+    return 1;
+  }
+
+
+  private void notifyListeners(ChangeEvent event) {
+
+    for (Consumer<ChangeEvent> listener : listeners) {
+
+      try {
+
+        listener.accept(event);
+
+      } catch (RuntimeException e) {
+
+        log.error("A catalog change listener threw an exception", e);
+      }
+    }
+  }
+
+
+  private UtcInstant lookBack(UtcInstant highWaterMark) {
+
+    return UtcInstant.of(highWaterMark.toInstant().minus(overlap));
+  }
+
+
+  private static Optional<UtcInstant> later(Optional<UtcInstant> a, Optional<UtcInstant> b) {
+
+    if (a.isPresent() == false) {
+
+      return b;
+
+    } else if (b.isPresent() == false) {
+
+      return a;
+
+    } else {
+
+      return (b.get().isAfter(a.get()) ? b : a);
+    }
+  }
+
+
+  /**
+   * A record that was added to, replaced in, or removed from the local catalog
+   */
+  @Getter
+  public static class ChangeEvent {
+
+    private final ChangeType type;
+    private final int catalogNumber;
+
+    /**
+     * The new satellite catalog record, if {@link #getType()} is {@link ChangeType#SATCAT}
+     */
+    private final Optional<SatCat> satCat;
+
+    /**
+     * The new element set, if {@link #getType()} is {@link ChangeType#ELEMENT_SET}
+     */
+    private final Optional<CompactElementSet> elementSet;
+
+
+    private ChangeEvent(ChangeType type, int catalogNumber, Optional<SatCat> satCat, Optional<CompactElementSet> elementSet) {
+
+      this.type = type;
+      this.catalogNumber = catalogNumber;
+      this.satCat = satCat;
+      this.elementSet = elementSet;
+    }
+  }
+}
@@ -0,0 +1,675 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.catalog;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.CompactElementSetQuery;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A catalog of element sets (typically the latest element set of every object, from {@link com.stevenpaligo.spacetrack.client.LatestTleQuery}) stored outside the Java heap, so that a
+ * catalog kept resident for the life of an application adds nothing for the garbage collector to trace or copy.
+ * 
+ * <p>
+ * Each element set is a fixed-width record in a direct {@link ByteBuffer}, sorted by catalog number so lookups are a binary search. Strings (names, designators, object types, and TLE lines)
+ * are stored once each, as UTF-8, in a string table in the same buffer; repeated strings such as object types and common names share a single entry. The strings of an element set that is
+ * replaced by a later one for the same catalog number during a refresh are left in the string table.
+ * </p>
+ * 
+ * <p>
+ * The catalog is read through {@link Snapshot}s. {@link #refresh(Collection)} builds a complete new snapshot and then swaps it in atomically, so readers never block and never see a partially
+ * refreshed catalog. A reader that holds on to a snapshot keeps seeing the same data; the memory of a replaced snapshot is released once it is no longer referenced.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+public class OffHeapElementCatalog {
+
+  private static final Charset charsetUtf8 = Charset.forName("UTF-8");
+
+
+  // record layout
+  private static final int CATALOG_NUMBER_OFFSET = 0;
+  private static final int EPHEMERIS_TYPE_OFFSET = 4;
+  private static final int EPOCH_MICROS_OFFSET = 8;
+  private static final int MEAN_MOTION_OFFSET = 16;
+  private static final int ECCENTRICITY_OFFSET = 24;
+  private static final int INCLINATION_OFFSET = 32;
+  private static final int RIGHT_ASC_OF_NODE_OFFSET = 40;
+  private static final int ARG_OF_PERIGEE_OFFSET = 48;
+  private static final int MEAN_ANOMALY_OFFSET = 56;
+  private static final int BSTAR_OFFSET = 64;
+  private static final int MEAN_MOTION_DOT_OFFSET = 72;
+  private static final int MEAN_MOTION_DOUBLE_DOT_OFFSET = 80;
+  private static final int SEMI_MAJOR_AXIS_OFFSET = 88;
+  private static final int PERIOD_OFFSET = 96;
+  private static final int APOGEE_HEIGHT_OFFSET = 104;
+  private static final int PERIGEE_HEIGHT_OFFSET = 112;
+  private static final int ELEMENT_SET_NUMBER_OFFSET = 120;
+  private static final int REV_NUMBER_OFFSET = 124;
+  private static final int OBJECT_NAME_OFFSET = 128;
+  private static final int OBJECT_ID_OFFSET = 132;
+  private static final int OBJECT_TYPE_OFFSET = 136;
+  private static final int TLE_LINE_1_OFFSET = 140;
+  private static final int TLE_LINE_2_OFFSET = 144;
+  private static final int CLASSIFICATION_OFFSET = 148;
+  private static final int DECAYED_OFFSET = 150;
+
+  /**
+   * The size of a record in bytes (a multiple of 8 so the doubles stay aligned)
+   */
+  static final int RECORD_SIZE = 152;
+
+  /**
+   * The string reference stored for null strings
+   */
+  private static final int NULL_STRING = -1;
+
+  private static final int[] STRING_REFERENCE_OFFSETS = {OBJECT_NAME_OFFSET, OBJECT_ID_OFFSET, OBJECT_TYPE_OFFSET, TLE_LINE_1_OFFSET, TLE_LINE_2_OFFSET};
+
+
+  private volatile Snapshot snapshot = new Snapshot(ByteBuffer.allocateDirect(0), 0, Collections.emptyMap());
+
+
+  /**
+   * Gets the current contents of the catalog. Never blocks.
+   * 
+   * @return The most recent snapshot (empty until the first refresh)
+   */
+  public Snapshot snapshot() {
+
+    return snapshot;
+  }
+
+
+  /**
+   * Replaces the contents of the catalog with the results of a query. See {@link #refresh(Collection)}. The results are streamed (see
+   * {@link CompactElementSetQuery#forEach(java.util.function.Consumer)}) and each element set is written outside the heap as it is read, so the catalog never exists as a list of objects.
+   * 
+   * @param query A non-null query for the element sets to store (e.g. <code>new LatestTleQuery().addPredicate(new Equal&lt;&gt;(LatestTleQueryField.ORDINAL, 1)).asCompact()</code>)
+   * @return The new snapshot
+   * @throws IOException An error occurred while executing the query
+   */
+  public Snapshot refresh(@NonNull CompactElementSetQuery<?> query) throws IOException {
+
+    SnapshotBuilder builder = new SnapshotBuilder();
+    query.forEach(builder::add);
+
+
+    return swap(builder.build());
+  }
+
+
+  /**
+   * Replaces the contents of the catalog. The new snapshot is built completely before it is swapped in, so readers keep using the previous snapshot until the swap and never block. Element sets
+   * without a catalog number are ignored; if there is more than one element set for a catalog number, the one with the latest epoch is kept.
+   * 
+   * @param elementSets The non-null element sets to store
+   * @return The new snapshot
+   */
+  public Snapshot refresh(@NonNull Collection<CompactElementSet> elementSets) {
+
+    SnapshotBuilder builder = new SnapshotBuilder();
+    elementSets.forEach(builder::add);
+
+
+    return swap(builder.build());
+  }
+
+
+  private Snapshot swap(Snapshot newSnapshot) {
+
+    snapshot = newSnapshot;
+
+    log.debug("Refreshed the off-heap element catalog ({} element sets, {} bytes)", newSnapshot.size(), newSnapshot.getOffHeapBytes());
+
+
+    return newSnapshot;
+  }
+
+
+  /**
+   * Gets a view of part of a buffer, positioned at the start of the part (through {@link Buffer}, whose methods return a {@link Buffer} on Java 8)
+   */
+  private static ByteBuffer range(ByteBuffer buffer, int offset, int length) {
+
+    ByteBuffer range = buffer.duplicate();
+    ((Buffer) range).limit(offset + length).position(offset);
+
+    return range;
+  }
+
+
+  /**
+   * Copies a buffer into a new direct buffer with at least the given capacity
+   */
+  private static ByteBuffer grow(ByteBuffer buffer, int usedBytes, int minCapacity) {
+
+    ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(minCapacity, buffer.capacity() * 2)).order(ByteOrder.nativeOrder());
+    range(grown, 0, usedBytes).put(range(buffer, 0, usedBytes));
+
+    return grown;
+  }
+
+
+  /**
+   * An immutable view of the catalog at one point in time. Rows are numbered from zero in ascending order of catalog number. Snapshots are thread-safe.
+   */
+  public static class Snapshot {
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final Map<Integer, String> objectTypes; // decoded once, by offset in the string table
+
+
+    private Snapshot(ByteBuffer buffer, int size, Map<Integer, String> objectTypes) {
+
+      this.buffer = buffer;
+      this.size = size;
+      this.objectTypes = objectTypes;
+    }
+
+
+    /**
+     * Gets the number of element sets in the snapshot
+     * 
+     * @return The number of rows
+     */
+    public int size() {
+
+      return size;
+    }
+
+
+    /**
+     * Gets the number of bytes of off-heap memory used by the snapshot
+     * 
+     * @return The size of the records and the string table
+     */
+    public long getOffHeapBytes() {
+
+      return buffer.capacity();
+    }
+
+
+    /**
+     * Finds the row of the element set for a catalog number
+     * 
+     * @param catalogNumber The catalog number to look for
+     * @return The row, or -1 if the snapshot does not have an element set for the catalog number
+     */
+    public int indexOf(int catalogNumber) {
+
+      int low = 0;
+      int high = size - 1;
+
+      while (low <= high) {
+
+        int middle = (low + high) >>> 1;
+        int middleCatalogNumber = buffer.getInt(middle * RECORD_SIZE + CATALOG_NUMBER_OFFSET);
+
+        if (middleCatalogNumber < catalogNumber) {
+
+          low = middle + 1;
+
+        } else if (middleCatalogNumber > catalogNumber) {
+
+          high = middle - 1;
+
+        } else {
+
+          return middle;
+        }
+      }
+
+      return -1;
+    }
+
+
+    public boolean contains(int catalogNumber) {
+
+      return (indexOf(catalogNumber) >= 0);
+    }
+
+
+    public int getCatalogNumber(int row) {
+
+      return buffer.getInt(record(row) + CATALOG_NUMBER_OFFSET);
+    }
+
+
+    /**
+     * Gets the epoch of an element set in microseconds since 1970-01-01T00:00:00Z
+     * 
+     * @param row The row of the element set
+     * @return The epoch, or {@link CompactElementSet#MISSING_EPOCH}
+     */
+    public long getEpochMicros(int row) {
+
+      return buffer.getLong(record(row) + EPOCH_MICROS_OFFSET);
+    }
+
+
+    /**
+     * Gets the epoch of an element set
+     * 
+     * @param row The row of the element set
+     * @return The epoch, or null if it is missing
+     */
+    public Instant getEpoch(int row) {
+
+      long micros = getEpochMicros(row);
+
+      return (micros == CompactElementSet.MISSING_EPOCH ? null : Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L));
+    }
+
+
+    public double getMeanMotionRevsPerDay(int row) {
+
+      return buffer.getDouble(record(row) + MEAN_MOTION_OFFSET);
+    }
+
+
+    public double getEccentricity(int row) {
+
+      return buffer.getDouble(record(row) + ECCENTRICITY_OFFSET);
+    }
+
+
+    public double getInclinationDegrees(int row) {
+
+      return buffer.getDouble(record(row) + INCLINATION_OFFSET);
+    }
+
+
+    public double getRightAscOfNodeDegrees(int row) {
+
+      return buffer.getDouble(record(row) + RIGHT_ASC_OF_NODE_OFFSET);
+    }
+
+
+    public double getArgOfPerigeeDegrees(int row) {
+
+      return buffer.getDouble(record(row) + ARG_OF_PERIGEE_OFFSET);
+    }
+
+
+    public double getMeanAnomalyDegrees(int row) {
+
+      return buffer.getDouble(record(row) + MEAN_ANOMALY_OFFSET);
+    }
+
+
+    public int getEphemerisType(int row) {
+
+      return buffer.getInt(record(row) + EPHEMERIS_TYPE_OFFSET);
+    }
+
+
+    public int getElementSetNumber(int row) {
+
+      return buffer.getInt(record(row) + ELEMENT_SET_NUMBER_OFFSET);
+    }
+
+
+    public int getRevNumber(int row) {
+
+      return buffer.getInt(record(row) + REV_NUMBER_OFFSET);
+    }
+
+
+    public double getBstar(int row) {
+
+      return buffer.getDouble(record(row) + BSTAR_OFFSET);
+    }
+
+
+    public double getMeanMotionDot(int row) {
+
+      return buffer.getDouble(record(row) + MEAN_MOTION_DOT_OFFSET);
+    }
+
+
+    public double getMeanMotionDoubleDot(int row) {
+
+      return buffer.getDouble(record(row) + MEAN_MOTION_DOUBLE_DOT_OFFSET);
+    }
+
+
+    public double getSemiMajorAxisKilometers(int row) {
+
+      return buffer.getDouble(record(row) + SEMI_MAJOR_AXIS_OFFSET);
+    }
+
+
+    public double getPeriodMinutes(int row) {
+
+      return buffer.getDouble(record(row) + PERIOD_OFFSET);
+    }
+
+
+    public double getApogeeHeightKilometers(int row) {
+
+      return buffer.getDouble(record(row) + APOGEE_HEIGHT_OFFSET);
+    }
+
+
+    public double getPerigeeHeightKilometers(int row) {
+
+      return buffer.getDouble(record(row) + PERIGEE_HEIGHT_OFFSET);
+    }
+
+
+    public char getClassification(int row) {
+
+      return buffer.getChar(record(row) + CLASSIFICATION_OFFSET);
+    }
+
+
+    public boolean isDecayed(int row) {
+
+      return (buffer.get(record(row) + DECAYED_OFFSET) != 0);
+    }
+
+
+    public String getObjectName(int row) {
+
+      return readString(buffer.getInt(record(row) + OBJECT_NAME_OFFSET));
+    }
+
+
+    /**
+     * Gets the international designator of an element set (e.g. "1998-067A")
+     * 
+     * @param row The row of the element set
+     * @return The designator, or null if it is missing
+     */
+    public String getObjectId(int row) {
+
+      return readString(buffer.getInt(record(row) + OBJECT_ID_OFFSET));
+    }
+
+
+    public String getObjectType(int row) {
+
+      // there are only a handful of object types, so they are decoded when the snapshot is built
+      int offset = buffer.getInt(record(row) + OBJECT_TYPE_OFFSET);
+      String objectType = objectTypes.get(offset);
+
+      return (objectType != null ? objectType : readString(offset));
+    }
+
+
+    public String getTleLine1(int row) {
+
+      return readString(buffer.getInt(record(row) + TLE_LINE_1_OFFSET));
+    }
+
+
+    public String getTleLine2(int row) {
+
+      return readString(buffer.getInt(record(row) + TLE_LINE_2_OFFSET));
+    }
+
+
+    private int record(int row) {
+
+      if (row < 0 || row >= size) {
+
+        throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+      }
+
+      return row * RECORD_SIZE;
+    }
+
+
+    private String readString(int offset) {
+
+      if (offset == NULL_STRING) {
+
+        return null;
+      }
+
+      byte[] bytes = new byte[buffer.getInt(offset)];
+      range(buffer, offset + 4, bytes.length).get(bytes);
+
+      return new String(bytes, charsetUtf8);
+    }
+  }
+
+
+  /**
+   * Writes element sets outside the heap as they arrive, in arrival order, and then builds a snapshot from the latest element set of each catalog number
+   */
+  private static class SnapshotBuilder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+
+    private ByteBuffer records = ByteBuffer.allocateDirect(INITIAL_CAPACITY * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    private int[] catalogNumbers = new int[INITIAL_CAPACITY];
+    private long[] epochs = new long[INITIAL_CAPACITY];
+    private int count;
+    private final StringTable strings = new StringTable();
+    private final Map<Integer, String> objectTypes = new HashMap<>();
+
+
+    /**
+     * Writes an element set, ignoring it if it has no catalog number
+     */
+    private void add(CompactElementSet elementSet) {
+
+      if (elementSet.getCatalogNumber() == CompactElementSet.MISSING_INT) {
+
+        return;
+      }
+
+      if (count == catalogNumbers.length) {
+
+        records = grow(records, count * RECORD_SIZE, (count + 1) * RECORD_SIZE);
+        catalogNumbers = Arrays.copyOf(catalogNumbers, records.capacity() / RECORD_SIZE);
+        epochs = Arrays.copyOf(epochs, catalogNumbers.length);
+      }
+
+      catalogNumbers[count] = elementSet.getCatalogNumber();
+      epochs[count] = elementSet.getEpochMicros();
+
+
+      // the string references are offsets in the string table until the snapshot is built
+      int objectType = strings.add(elementSet.getObjectType(), true);
+
+      if (objectType != NULL_STRING) {
+
+        objectTypes.putIfAbsent(objectType, elementSet.getObjectType());
+      }
+
+      int record = count * RECORD_SIZE;
+
+      records.putInt(record + CATALOG_NUMBER_OFFSET, elementSet.getCatalogNumber());
+      records.putInt(record + EPHEMERIS_TYPE_OFFSET, elementSet.getEphemerisType());
+      records.putLong(record + EPOCH_MICROS_OFFSET, elementSet.getEpochMicros());
+      records.putDouble(record + MEAN_MOTION_OFFSET, elementSet.getMeanMotionRevsPerDay());
+      records.putDouble(record + ECCENTRICITY_OFFSET, elementSet.getEccentricity());
+      records.putDouble(record + INCLINATION_OFFSET, elementSet.getInclinationDegrees());
+      records.putDouble(record + RIGHT_ASC_OF_NODE_OFFSET, elementSet.getRightAscOfNodeDegrees());
+      records.putDouble(record + ARG_OF_PERIGEE_OFFSET, elementSet.getArgOfPerigeeDegrees());
+      records.putDouble(record + MEAN_ANOMALY_OFFSET, elementSet.getMeanAnomalyDegrees());
+      records.putDouble(record + BSTAR_OFFSET, elementSet.getBstar());
+      records.putDouble(record + MEAN_MOTION_DOT_OFFSET, elementSet.getMeanMotionDot());
+      records.putDouble(record + MEAN_MOTION_DOUBLE_DOT_OFFSET, elementSet.getMeanMotionDoubleDot());
+      records.putDouble(record + SEMI_MAJOR_AXIS_OFFSET, elementSet.getSemiMajorAxisKilometers());
+      records.putDouble(record + PERIOD_OFFSET, elementSet.getPeriodMinutes());
+      records.putDouble(record + APOGEE_HEIGHT_OFFSET, elementSet.getApogeeHeightKilometers());
+      records.putDouble(record + PERIGEE_HEIGHT_OFFSET, elementSet.getPerigeeHeightKilometers());
+      records.putInt(record + ELEMENT_SET_NUMBER_OFFSET, elementSet.getElementSetNumber());
+      records.putInt(record + REV_NUMBER_OFFSET, elementSet.getRevNumber());
+      records.putInt(record + OBJECT_NAME_OFFSET, strings.add(elementSet.getObjectName(), true));
+      records.putInt(record + OBJECT_ID_OFFSET, strings.add(elementSet.getObjectId(), true));
+      records.putInt(record + OBJECT_TYPE_OFFSET, objectType);
+      records.putInt(record + TLE_LINE_1_OFFSET, strings.add(elementSet.getTleLine1(), false));
+      records.putInt(record + TLE_LINE_2_OFFSET, strings.add(elementSet.getTleLine2(), false));
+      records.putChar(record + CLASSIFICATION_OFFSET, elementSet.getClassification());
+      records.put(record + DECAYED_OFFSET, (byte) (elementSet.isDecayed() ? 1 : 0));
+
+      count++;
+    }
+
+
+    private Snapshot build() {
+
+      // pick one element set per catalog number (the latest epoch, or the first of equal epochs), in catalog number order
+      long[] keys = new long[count];
+
+      for (int i = 0; i < count; i++) {
+
+        keys[i] = ((long) catalogNumbers[i] << 32) | i;
+      }
+
+      Arrays.sort(keys);
+
+      int[] rows = new int[count];
+      int size = 0;
+
+      for (long key : keys) {
+
+        int index = (int) key;
+
+        if (size > 0 && catalogNumbers[rows[size - 1]] == catalogNumbers[index]) {
+
+          if (epochs[index] > epochs[rows[size - 1]]) {
+
+            rows[size - 1] = index;
+          }
+
+        } else {
+
+          rows[size++] = index;
+        }
+      }
+
+
+      // copy the records in order, followed by the string table, moving the string references to the string table's place in the buffer
+      int recordBytes = size * RECORD_SIZE;
+      ByteBuffer buffer = ByteBuffer.allocateDirect(recordBytes + strings.size()).order(ByteOrder.nativeOrder());
+
+      for (int row = 0; row < size; row++) {
+
+        int record = row * RECORD_SIZE;
+        range(buffer, record, RECORD_SIZE).put(range(records, rows[row] * RECORD_SIZE, RECORD_SIZE));
+
+        for (int referenceOffset : STRING_REFERENCE_OFFSETS) {
+
+          int reference = buffer.getInt(record + referenceOffset);
+
+          if (reference != NULL_STRING) {
+
+            buffer.putInt(record + referenceOffset, recordBytes + reference);
+          }
+        }
+      }
+
+      range(buffer, recordBytes, strings.size()).put(strings.bytes());
+
+      Map<Integer, String> snapshotObjectTypes = new HashMap<>();
+      objectTypes.forEach((offset, objectType) -> snapshotObjectTypes.put(recordBytes + offset, objectType));
+
+
+      return new Snapshot(buffer, size, snapshotObjectTypes);
+    }
+  }
+
+
+  /**
+   * Collects the strings of a catalog as length-prefixed UTF-8 outside the heap, storing each shared string once
+   */
+  private static class StringTable {
+
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+    private int size;
+    private final Map<String, Integer> offsets = new HashMap<>();
+
+
+    /**
+     * Adds a string to the table
+     * 
+     * @param string The string, which may be null
+     * @param shared Whether the string is likely to be repeated and should be stored only once
+     * @return The offset of the string in the table, or {@link OffHeapElementCatalog#NULL_STRING}
+     */
+    private int add(String string, boolean shared) {
+
+      if (string == null) {
+
+        return NULL_STRING;
+      }
+
+      if (shared) {
+
+        Integer offset = offsets.get(string);
+
+        if (offset != null) {
+
+          return offset;
+        }
+      }
+
+      int offset = size;
+      byte[] utf8 = string.getBytes(charsetUtf8);
+
+      if (bytes.capacity() < size + 4 + utf8.length) {
+
+        bytes = grow(bytes, size, size + 4 + utf8.length);
+      }
+
+      bytes.putInt(offset, utf8.length);
+      range(bytes, offset + 4, utf8.length).put(utf8);
+      size += 4 + utf8.length;
+
+      if (shared) {
+
+        offsets.put(string, offset);
+      }
+
+      return offset;
+    }
+
+
+    private int size() {
+
+      return size;
+    }
+
+
+    /**
+     * Gets the strings, positioned for reading
+     */
+    private ByteBuffer bytes() {
+
+      return range(bytes, 0, size);
+    }
+  }
+}
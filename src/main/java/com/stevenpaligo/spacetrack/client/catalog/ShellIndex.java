@@ -0,0 +1,620 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.catalog;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery.LatestTle;
+import com.stevenpaligo.spacetrack.client.OrbitMeanElementsMessageQuery.OrbitMeanElementsMessage;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+import com.stevenpaligo.spacetrack.client.catalog.CatalogSync.ChangeEvent;
+import com.stevenpaligo.spacetrack.client.catalog.CatalogSync.ChangeType;
+import lombok.NonNull;
+
+/**
+ * An in-memory index of the altitude shells of catalog objects (the range of heights from perigee to apogee), for answering questions such as "which objects pass through the 500-600 km
+ * shell?" without a query to Space-Track.org or a scan of the catalog. The shells can come from {@link SatCat}s, {@link LatestTle}s, {@link OrbitMeanElementsMessage}s, or
+ * {@link CompactElementSet}s, and each object has at most one shell: putting a newer record for an object replaces its shell.
+ * 
+ * <p>
+ * The index is a priority search tree: ordered by perigee height, with the object of highest apogee in each subtree at its root, and kept balanced by rebuilding subtrees that grow lopsided.
+ * Finding the <i>k</i> shells that overlap a range of heights takes O(log <i>n</i> + <i>k</i>) time, and putting or removing a shell takes amortized O(log <i>n</i>) time, so the index can be
+ * kept current as the catalog is refreshed (see {@link #listener(ChangeType)}). An index is thread-safe.
+ * </p>
+ * 
+ * <pre>
+ * ShellIndex index = new ShellIndex();
+ * new SatCatQuery().setSession(session).addPredicate(new Equal&lt;&gt;(SatCatQueryField.CURRENT_RECORD, "Y")).execute().forEach(index::put);
+ * int[] catalogNumbers = index.findOverlapping(500.0, 600.0);
+ * </pre>
+ * 
+ * @author Steven Paligo
+ */
+public class ShellIndex {
+
+  /**
+   * The largest fraction of a subtree's shells that either of its children may hold before the subtree is rebuilt when it's too deep
+   */
+  private static final double BALANCE = 0.7;
+
+  private static final Comparator<Shell> PERIGEE_ORDER = Comparator.<Shell> comparingDouble(shell -> shell.perigee).thenComparingInt(shell -> shell.catalogNumber);
+
+
+  private final Map<Integer, Shell> shells = new HashMap<>();
+  private Node root;
+  private int maxSize; // since the last time the whole tree was rebuilt
+
+
+  /**
+   * Puts an object's shell in the index, replacing its current shell if it has one
+   * 
+   * @param catalogNumber The object's catalog number
+   * @param perigeeHeightKilometers The object's perigee height
+   * @param apogeeHeightKilometers The object's apogee height, which must not be less than its perigee height
+   * @throws IllegalArgumentException A height is not finite or the apogee height is less than the perigee height
+   */
+  public synchronized void put(int catalogNumber, double perigeeHeightKilometers, double apogeeHeightKilometers) {
+
+    // validation
+    if (Double.isFinite(perigeeHeightKilometers) == false) {
+
+      throw new IllegalArgumentException("The perigee height is not finite: " + perigeeHeightKilometers);
+
+    } else if (Double.isFinite(apogeeHeightKilometers) == false) {
+
+      throw new IllegalArgumentException("The apogee height is not finite: " + apogeeHeightKilometers);
+
+    } else if (apogeeHeightKilometers < perigeeHeightKilometers) {
+
+      throw new IllegalArgumentException("The apogee height is less than the perigee height: " + apogeeHeightKilometers + " < " + perigeeHeightKilometers);
+    }
+
+
+    // replace the current shell
+    Shell current = shells.get(catalogNumber);
+
+    if (current != null) {
+
+      if (current.perigee == perigeeHeightKilometers && current.apogee == apogeeHeightKilometers) {
+
+        return;
+      }
+
+      remove(catalogNumber);
+    }
+
+    Shell shell = new Shell(catalogNumber, perigeeHeightKilometers, apogeeHeightKilometers);
+    shells.put(catalogNumber, shell);
+    insert(shell);
+  }
+
+
+  /**
+   * Puts the shell of a satellite catalog record in the index. Records of decayed objects, and records without a catalog number or without heights, remove the object's shell instead.
+   * 
+   * @param satCat The non-null record
+   */
+  public void put(@NonNull SatCat satCat) {
+
+    if (satCat.getCatalogNumber().isPresent()) {
+
+      boolean decayed = satCat.getDecayDate().isPresent();
+      put(satCat.getCatalogNumber().get(), decayed, toDouble(satCat.getPerigeeHeightKilometers().orElse(null)), toDouble(satCat.getApogeeHeightKilometers().orElse(null)));
+    }
+  }
+
+
+  /**
+   * Puts the shell of an element set in the index. Element sets of decayed objects, and element sets without heights, remove the object's shell instead.
+   * 
+   * @param latestTle The non-null element set
+   */
+  public void put(@NonNull LatestTle latestTle) {
+
+    if (latestTle.getCatalogNumber().isPresent()) {
+
+      boolean decayed = latestTle.getDecayed().orElse(false);
+      put(latestTle.getCatalogNumber().get(), decayed, toDouble(latestTle.getPerigeeHeightKilometers()), toDouble(latestTle.getApogeeHeightKilometers()));
+    }
+  }
+
+
+  /**
+   * Puts the shell of an element set in the index. Element sets of decayed objects, and element sets without heights, remove the object's shell instead.
+   * 
+   * @param message The non-null element set
+   */
+  public void put(@NonNull OrbitMeanElementsMessage message) {
+
+    if (message.getCatalogNumber().isPresent()) {
+
+      boolean decayed = Boolean.TRUE.equals(message.getDecayed());
+      put(message.getCatalogNumber().get(), decayed, toDouble(message.getPerigeeHeightKilometers()), toDouble(message.getApogeeHeightKilometers()));
+    }
+  }
+
+
+  /**
+   * Puts the shell of an element set in the index. Element sets of decayed objects, and element sets without heights, remove the object's shell instead.
+   * 
+   * @param elementSet The non-null element set
+   */
+  public void put(@NonNull CompactElementSet elementSet) {
+
+    if (elementSet.getCatalogNumber() != CompactElementSet.MISSING_INT) {
+
+      put(elementSet.getCatalogNumber(), elementSet.isDecayed(), elementSet.getPerigeeHeightKilometers(), elementSet.getApogeeHeightKilometers());
+    }
+  }
+
+
+  private void put(int catalogNumber, boolean decayed, double perigeeHeightKilometers, double apogeeHeightKilometers) {
+
+    if (decayed || Double.isFinite(perigeeHeightKilometers) == false || Double.isFinite(apogeeHeightKilometers) == false) {
+
+      remove(catalogNumber);
+
+    } else {
+
+      // rounded heights (e.g. in the satellite catalog) of near-circular orbits may cross
+      put(catalogNumber, Math.min(perigeeHeightKilometers, apogeeHeightKilometers), Math.max(perigeeHeightKilometers, apogeeHeightKilometers));
+    }
+  }
+
+
+  private static double toDouble(Number value) {
+
+    return (value == null ? Double.NaN : value.doubleValue());
+  }
+
+
+  /**
+   * Creates a listener that keeps the index current as a {@link CatalogSync} refreshes its catalogs. Because each object has one shell, an index should follow one type of record: the
+   * satellite catalog's heights are rounded and updated rarely, while element sets are published continuously. Objects that are removed from the catalogs ({@link ChangeType#REMOVED}) are
+   * removed from the index whichever type it follows.
+   * 
+   * @param type The non-null type of record to put in the index
+   * @return A listener to pass to {@link CatalogSync#addListener(Consumer)}
+   */
+  public Consumer<ChangeEvent> listener(@NonNull ChangeType type) {
+
+    return event -> {
+
+      if (event.getType() == ChangeType.REMOVED) {
+
+        remove(event.getCatalogNumber());
+
+      } else if (event.getType() == type) {
+
+        if (type == ChangeType.SATCAT) {
+
+          event.getSatCat().ifPresent(this::put);
+
+        } else {
+
+          event.getElementSet().ifPresent(this::put);
+        }
+      }
+    };
+  }
+
+
+  /**
+   * Removes an object's shell from the index
+   * 
+   * @param catalogNumber The object's catalog number
+   * @return True if the object had a shell in the index
+   */
+  public synchronized boolean remove(int catalogNumber) {
+
+    Shell shell = shells.remove(catalogNumber);
+
+    if (shell == null) {
+
+      return false;
+    }
+
+
+    // find the node holding the shell along the shell's search path
+    Node parent = null;
+    Node node = root;
+
+    while (node.shell != shell) {
+
+      node.size--;
+      parent = node;
+      node = (PERIGEE_ORDER.compare(shell, node.split) <= 0 ? node.left : node.right);
+    }
+
+
+    // pull the highest child up into the empty node until the empty node is a leaf, then remove the leaf
+    while (true) {
+
+      node.size--;
+      Node child = higherChild(node);
+
+      if (child == null) {
+
+        break;
+      }
+
+      node.shell = child.shell;
+      parent = node;
+      node = child;
+    }
+
+    if (parent == null) {
+
+      root = null;
+
+    } else if (parent.left == node) {
+
+      parent.left = null;
+
+    } else {
+
+      parent.right = null;
+    }
+
+
+    // rebuild the tree once enough shells have been removed that it may be too deep
+    if (shells.size() < BALANCE * maxSize) {
+
+      root = build(collect(root));
+      maxSize = shells.size();
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Removes every shell from the index
+   */
+  public synchronized void clear() {
+
+    shells.clear();
+    root = null;
+    maxSize = 0;
+  }
+
+
+  /**
+   * Gets the number of objects in the index
+   * 
+   * @return The number of objects
+   */
+  public synchronized int size() {
+
+    return shells.size();
+  }
+
+
+  /**
+   * Finds the objects whose shells reach a height
+   * 
+   * @param heightKilometers The height
+   * @return The non-null catalog numbers of the objects whose perigee height is at or below the height and whose apogee height is at or above it, in no particular order
+   * @throws IllegalArgumentException The height is NaN
+   */
+  public int[] findCrossing(double heightKilometers) {
+
+    return findOverlapping(heightKilometers, heightKilometers);
+  }
+
+
+  /**
+   * Finds the objects whose shells overlap a range of heights (i.e. that pass through the range at some point in their orbits)
+   * 
+   * @param minHeightKilometers The bottom of the range
+   * @param maxHeightKilometers The top of the range, which must not be less than the bottom
+   * @return The non-null catalog numbers of the objects whose perigee height is at or below the top of the range and whose apogee height is at or above the bottom, in no particular order
+   * @throws IllegalArgumentException A height is NaN or the top of the range is less than the bottom
+   */
+  public synchronized int[] findOverlapping(double minHeightKilometers, double maxHeightKilometers) {
+
+    // validation
+    if (Double.isNaN(minHeightKilometers) || Double.isNaN(maxHeightKilometers)) {
+
+      throw new IllegalArgumentException("A height is NaN: " + minHeightKilometers + " to " + maxHeightKilometers);
+
+    } else if (maxHeightKilometers < minHeightKilometers) {
+
+      throw new IllegalArgumentException("The top of the range is less than the bottom: " + minHeightKilometers + " to " + maxHeightKilometers);
+    }
+
+
+    Results results = new Results();
+    findOverlapping(root, minHeightKilometers, maxHeightKilometers, results);
+
+    return Arrays.copyOf(results.catalogNumbers, results.count);
+  }
+
+
+  /**
+   * Reports the shells of a subtree that overlap a range. Subtrees whose highest apogee is below the range are skipped, and right subtrees whose perigees are all above the range are skipped,
+   * so every node visited is either reported or on the search path of the top of the range or a child of one of those.
+   */
+  private static void findOverlapping(Node node, double min, double max, Results results) {
+
+    if (node == null || node.shell.apogee < min) {
+
+      return;
+    }
+
+    if (node.shell.perigee <= max) {
+
+      results.add(node.shell.catalogNumber);
+    }
+
+    findOverlapping(node.left, min, max, results);
+
+    if (node.split.perigee <= max) {
+
+      findOverlapping(node.right, min, max, results);
+    }
+  }
+
+
+  /**
+   * Inserts a shell, pushing lower shells down its search path, and rebuilds the highest subtree that is too lopsided if the new leaf is too deep
+   */
+  private void insert(Shell shell) {
+
+    maxSize = Math.max(maxSize, shells.size());
+
+    if (root == null) {
+
+      root = new Node(shell);
+      return;
+    }
+
+    Node[] path = new Node[maxDepth(shells.size()) + 2];
+    int depth = 0;
+    Node node = root;
+
+    while (true) {
+
+      if (depth < path.length) {
+
+        path[depth] = node;
+      }
+
+      depth++;
+      node.size++;
+
+
+      // the higher shell stays and the lower one continues down
+      if (isHigher(shell, node.shell)) {
+
+        Shell lower = node.shell;
+        node.shell = shell;
+        shell = lower;
+      }
+
+      boolean left = (PERIGEE_ORDER.compare(shell, node.split) <= 0);
+      Node child = (left ? node.left : node.right);
+
+      if (child == null) {
+
+        if (left) {
+
+          node.left = new Node(shell);
+
+        } else {
+
+          node.right = new Node(shell);
+        }
+
+        break;
+      }
+
+      node = child;
+    }
+
+
+    // find the scapegoat (the new leaf is below the last node on the path)
+    if (depth + 1 > maxDepth(shells.size())) {
+
+      for (int index = Math.min(depth, path.length) - 1; index >= 0; index--) {
+
+        Node ancestor = path[index];
+
+        if (Math.max(size(ancestor.left), size(ancestor.right)) > BALANCE * ancestor.size) {
+
+          Node rebuilt = build(collect(ancestor));
+
+          if (index == 0) {
+
+            root = rebuilt;
+
+          } else if (path[index - 1].left == ancestor) {
+
+            path[index - 1].left = rebuilt;
+
+          } else {
+
+            path[index - 1].right = rebuilt;
+          }
+
+          break;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * The depth (counting the root as 1) that a tree of a size is rebuilt beyond
+   */
+  private static int maxDepth(int size) {
+
+    return (int) (Math.log(Math.max(size, 1)) / Math.log(1.0 / BALANCE)) + 1;
+  }
+
+
+  private static int size(Node node) {
+
+    return (node == null ? 0 : node.size);
+  }
+
+
+  private static boolean isHigher(Shell shell1, Shell shell2) {
+
+    return (shell1.apogee > shell2.apogee || (shell1.apogee == shell2.apogee && shell1.catalogNumber < shell2.catalogNumber));
+  }
+
+
+  private static Node higherChild(Node node) {
+
+    if (node.left == null) {
+
+      return node.right;
+
+    } else if (node.right == null) {
+
+      return node.left;
+
+    } else {
+
+      return (isHigher(node.left.shell, node.right.shell) ? node.left : node.right);
+    }
+  }
+
+
+  /**
+   * Collects the shells of a subtree in order of perigee
+   */
+  private static Shell[] collect(Node node) {
+
+    Shell[] collected = new Shell[size(node)];
+    collect(node, collected, 0);
+    Arrays.sort(collected, PERIGEE_ORDER);
+
+    return collected;
+  }
+
+
+  private static int collect(Node node, Shell[] collected, int index) {
+
+    if (node == null) {
+
+      return index;
+    }
+
+    collected[index++] = node.shell;
+    index = collect(node.left, collected, index);
+
+    return collect(node.right, collected, index);
+  }
+
+
+  /**
+   * Builds a balanced subtree from shells in order of perigee
+   */
+  private static Node build(Shell[] sorted) {
+
+    return build(sorted, 0, sorted.length);
+  }
+
+
+  private static Node build(Shell[] sorted, int start, int end) {
+
+    if (start == end) {
+
+      return null;
+    }
+
+
+    // the highest shell is the root, and the rest are split at their median
+    int highest = start;
+
+    for (int index = start + 1; index < end; index++) {
+
+      highest = (isHigher(sorted[index], sorted[highest]) ? index : highest);
+    }
+
+    Shell shell = sorted[highest];
+    System.arraycopy(sorted, highest + 1, sorted, highest, end - highest - 1);
+    end--;
+
+    Node node = new Node(shell);
+    node.size = end - start + 1;
+
+    if (start < end) {
+
+      int middle = (start + end - 1) >>> 1;
+      node.split = sorted[middle];
+      node.left = build(sorted, start, middle + 1);
+      node.right = build(sorted, middle + 1, end);
+    }
+
+    return node;
+  }
+
+
+  private static class Shell {
+
+    private final int catalogNumber;
+    private final double perigee;
+    private final double apogee;
+
+
+    private Shell(int catalogNumber, double perigee, double apogee) {
+
+      this.catalogNumber = catalogNumber;
+      this.perigee = perigee;
+      this.apogee = apogee;
+    }
+  }
+
+
+  private static class Node {
+
+    private Shell shell;
+    private Shell split; // the shells of the left subtree are at or before the split in order of perigee, and the shells of the right subtree are after it
+    private Node left;
+    private Node right;
+    private int size = 1; // the number of shells in the subtree
+
+
+    private Node(Shell shell) {
+
+      this.shell = shell;
+      this.split = shell;
+    }
+  }
+
+
+  private static class Results {
+
+    private int[] catalogNumbers = new int[16];
+    private int count;
+
+
+    private void add(int catalogNumber) {
+
+      if (count == catalogNumbers.length) {
+
+        catalogNumbers = Arrays.copyOf(catalogNumbers, 2 * count);
+      }
+
+      catalogNumbers[count++] = catalogNumber;
+    }
+  }
+}
@@ -13,13 +13,21 @@
  */
 package com.stevenpaligo.spacetrack.client.predicate;
 
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.threeten.extra.scale.TaiInstant;
 import org.threeten.extra.scale.UtcInstant;
@@ -98,9 +106,26 @@ public class In<T extends QueryField> implements Predicate<T> {
    * {@link TaiInstant} objects if possible.
    * </p>
    */
-  @SuppressWarnings("unchecked")
   public <V> In(@NonNull T field, @NonNull Collection<V> values, @NonNull Class<V> valueType) {
 
+    this(field, values, valueType, false);
+  }
+
+
+  /**
+   * Create the predicate from a collection of values, optionally compacting numeric values into ranges. When <code>compactRanges</code> is true and the values are integers, they are sorted, and
+   * runs of three or more consecutive integers are written with Space-Track.org's inclusive range syntax (e.g. "25000--30000" instead of every value from 25000 to 30000). This can shorten the
+   * query URL dramatically for values such as catalog numbers. Negative integers are always written as single values because the range syntax cannot express them (e.g. "-5--3"). Other numbers are
+   * written as they are.
+   * 
+   * <p>
+   * <strong>Note:</strong> If the values are {@link Date} or {@link Instant} objects, the conversion from UTC-SLS to UTC will not be completely accurate near a leap second. Use {@link UtcInstant} or
+   * {@link TaiInstant} objects if possible.
+   * </p>
+   */
+  @SuppressWarnings("unchecked")
+  public <V> In(@NonNull T field, @NonNull Collection<V> values, @NonNull Class<V> valueType, boolean compactRanges) {
+
     // more validation
     if (valueType != String.class && valueType != Date.class && valueType != Instant.class && valueType != UtcInstant.class && valueType != TaiInstant.class && Number.class.isAssignableFrom(valueType) == false) {
 
@@ -144,6 +169,10 @@ public class In<T extends QueryField> implements Predicate<T> {
 
       this.values = uniqueValues.stream().map(v -> SpaceTrackDateTimeFormatter.format((TaiInstant) v)).collect(Collectors.joining(","));
 
+    } else if (Number.class.isAssignableFrom(valueType) && compactRanges) {
+
+      this.values = compactRanges((Set<Number>) uniqueValues);
+
     } else if (Number.class.isAssignableFrom(valueType)) {
 
       this.values = uniqueValues.stream().map(v -> ((Number) v).toString()).collect(Collectors.joining(","));
@@ -155,6 +184,143 @@ public class In<T extends QueryField> implements Predicate<T> {
   }
 
 
+  /**
+   * Joins numbers, sorting integers and replacing runs of three or more consecutive non-negative integers with a range
+   */
+  private static String compactRanges(Set<Number> values) {
+
+    // only integers can be compacted (other numbers, such as NaN, may not even be comparable)
+    if (values.stream().allMatch(In::isIntegral) == false) {
+
+      return values.stream().map(Number::toString).collect(Collectors.joining(","));
+    }
+
+
+    // sort the values numerically
+    List<Number> sortedValues = new ArrayList<>(values);
+    sortedValues.sort(Comparator.comparing(In::toBigInteger));
+
+
+    // find the runs of consecutive integers
+    List<String> terms = new ArrayList<>();
+    int runStart = 0;
+
+    for (int i = 1; i <= sortedValues.size(); i++) {
+
+      // negative numbers are never part of a range because "-5--3" cannot be parsed unambiguously
+      BigInteger previous = toBigInteger(sortedValues.get(i - 1));
+      boolean runContinues = (i < sortedValues.size() && previous.signum() >= 0 && toBigInteger(sortedValues.get(i)).subtract(previous).equals(BigInteger.ONE));
+
+      if (runContinues == false) {
+
+        if (i - runStart >= 3) {
+
+          terms.add(sortedValues.get(runStart) + "--" + sortedValues.get(i - 1));
+
+        } else {
+
+          for (int j = runStart; j < i; j++) {
+
+            terms.add(sortedValues.get(j).toString());
+          }
+        }
+
+        runStart = i;
+      }
+    }
+
+    return String.join(",", terms);
+  }
+
+
+  private static boolean isIntegral(Number value) {
+
+    return (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte || value instanceof BigInteger || value instanceof AtomicInteger
+        || value instanceof AtomicLong);
+  }
+
+
+  private static BigInteger toBigInteger(Number value) {
+
+    return (value instanceof BigInteger ? (BigInteger) value : BigInteger.valueOf(value.longValue()));
+  }
+
+
+  /**
+   * Gets the length of the predicate's values once they are percent-encoded in a query URL (e.g. a space is sent as "%20")
+   * 
+   * @return The encoded length of the values
+   */
+  public int getEncodedValuesLength() {
+
+    return encodedLength(values);
+  }
+
+
+  /**
+   * Splits the predicate into several predicates on the same field whose values together are the values of this predicate. Results matching any of the split predicates are exactly the results
+   * matching this predicate, so a query with too many values to fit in a URL can be run as several shorter queries. Lengths are measured after percent-encoding, as the values are sent in the URL.
+   * 
+   * @param maxValuesLength The maximum encoded length of the values of each split predicate (the part of the query parameter after the field name)
+   * @return The split predicates, or a list containing only this predicate if it is short enough already
+   * @throws IllegalArgumentException A single value is longer than <code>maxValuesLength</code> once encoded
+   */
+  public List<In<T>> split(int maxValuesLength) {
+
+    if (getEncodedValuesLength() <= maxValuesLength) {
+
+      return Collections.singletonList(this);
+    }
+
+    int separatorLength = encodedLength(",");
+    List<In<T>> predicates = new ArrayList<>();
+    List<String> chunk = new ArrayList<>();
+    int chunkLength = -separatorLength; // no comma before the first value
+
+    for (String value : values.split(",")) {
+
+      int valueLength = encodedLength(value);
+
+      if (valueLength > maxValuesLength) {
+
+        throw new IllegalArgumentException("A value is longer than the maximum length (" + maxValuesLength + ") once encoded: " + value);
+      }
+
+      if (chunkLength + separatorLength + valueLength > maxValuesLength) {
+
+        predicates.add(new In<>(field, chunk.toArray(new String[chunk.size()])));
+        chunk.clear();
+        chunkLength = -separatorLength;
+      }
+
+      chunk.add(value);
+      chunkLength += separatorLength + valueLength;
+    }
+
+    predicates.add(new In<>(field, chunk.toArray(new String[chunk.size()])));
+
+
+    return predicates;
+  }
+
+
+  /**
+   * Gets the length of a string once it is percent-encoded the way a query path is encoded (see {@link com.stevenpaligo.spacetrack.client.SpaceTrackEndpoint#getQueryUri(String)})
+   */
+  private static int encodedLength(String value) {
+
+    try {
+
+      // the leading slash makes the value an absolute path and is not counted
+      return new URI(null, null, "/" + value, null, null).toASCIIString().length() - 1;
+
+    } catch (URISyntaxException e) {
+
+      throw new IllegalArgumentException("The value cannot be encoded in a URL: " + value, e);
+    }
+  }
+
+
   public String toQueryParameter() {
 
     return field.getQueryFieldName() + "/" + values;
@@ -0,0 +1,210 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.propagation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Propagates many satellites to a grid of times, splitting the satellites across the cores of a fork-join pool. Each satellite is initialized once and then propagated to every time, and the
+ * results are written to the primitive arrays of an {@link EphemerisGrid}, so a batch of N satellites and M times allocates a constant number of objects beyond the grid itself.
+ * 
+ * <pre>
+ * ElementSetColumns columns = new LatestTleQuery().setSession(session).addPredicate(new Equal&lt;&gt;(LatestTleQueryField.ORDINAL, 1)).asCompact().executeColumns();
+ * EphemerisGrid grid = new BatchPropagator().propagate(columns, epochMicros);
+ * </pre>
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+public class BatchPropagator {
+
+  /**
+   * The default number of satellite-time entries below which a task is not split
+   */
+  public static final int DEFAULT_ENTRIES_PER_TASK = 4096;
+
+
+  private final ForkJoinPool pool;
+  private final int entriesPerTask;
+
+
+  /**
+   * Creates a propagator that uses the common fork-join pool
+   */
+  public BatchPropagator() {
+
+    this(ForkJoinPool.commonPool(), DEFAULT_ENTRIES_PER_TASK);
+  }
+
+
+  /**
+   * Creates a propagator
+   * 
+   * @param pool The non-null pool to run on
+   * @param entriesPerTask The number of satellite-time entries below which a task is not split
+   * @throws IllegalArgumentException The number of entries per task is not positive
+   */
+  public BatchPropagator(@NonNull ForkJoinPool pool, int entriesPerTask) {
+
+    // validation
+    if (entriesPerTask <= 0) {
+
+      throw new IllegalArgumentException("The number of entries per task is not positive: " + entriesPerTask);
+    }
+
+
+    this.pool = pool;
+    this.entriesPerTask = entriesPerTask;
+  }
+
+
+  /**
+   * Propagates every row of a set of element set columns. Rows that can't be initialized (e.g. because they're missing an element) are logged and left unpropagated in the grid.
+   * 
+   * @param columns The non-null columns, which must not be modified during the call
+   * @param epochMicros The non-null times in microseconds since 1970-01-01T00:00:00Z
+   * @return The states, with one satellite per row in the order of the rows
+   */
+  public EphemerisGrid propagate(@NonNull ElementSetColumns columns, @NonNull long[] epochMicros) {
+
+    Sgp4Propagator[] satellites = new Sgp4Propagator[columns.size()];
+    int[] catalogNumbers = Arrays.copyOf(columns.getCatalogNumber(), satellites.length);
+    EphemerisGrid grid = new EphemerisGrid(catalogNumbers, epochMicros.clone());
+
+    pool.invoke(new PropagationTask(columns, satellites, grid, 0, satellites.length));
+
+    return grid;
+  }
+
+
+  /**
+   * Propagates a list of initialized satellites
+   * 
+   * @param satellites The non-null satellites, none of which may be null
+   * @param epochMicros The non-null times in microseconds since 1970-01-01T00:00:00Z
+   * @return The states, with one satellite per row in the order of the list
+   * @throws IllegalArgumentException A satellite is null
+   */
+  public EphemerisGrid propagate(@NonNull List<Sgp4Propagator> satellites, @NonNull long[] epochMicros) {
+
+    Sgp4Propagator[] satelliteArray = satellites.toArray(new Sgp4Propagator[0]);
+    int[] catalogNumbers = new int[satelliteArray.length];
+
+    for (int index = 0; index < satelliteArray.length; index++) {
+
+      if (satelliteArray[index] == null) {
+
+        throw new IllegalArgumentException("Satellite " + index + " is null");
+      }
+
+      catalogNumbers[index] = satelliteArray[index].getCatalogNumber();
+    }
+
+    EphemerisGrid grid = new EphemerisGrid(catalogNumbers, epochMicros.clone());
+
+    pool.invoke(new PropagationTask(null, satelliteArray, grid, 0, satelliteArray.length));
+
+    return grid;
+  }
+
+
+  /**
+   * Propagates a range of satellites, splitting the range in half until it's small enough
+   */
+  private class PropagationTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ElementSetColumns columns;
+    private final Sgp4Propagator[] satellites;
+    private final EphemerisGrid grid;
+    private final int start;
+    private final int end;
+
+
+    private PropagationTask(ElementSetColumns columns, Sgp4Propagator[] satellites, EphemerisGrid grid, int start, int end) {
+
+      this.columns = columns;
+      this.satellites = satellites;
+      this.grid = grid;
+      this.start = start;
+      this.end = end;
+    }
+
+
+    @Override
+    protected void compute() {
+
+      // split the range if it has too many entries
+      long entryCount = (long) (end - start) * grid.getTimeCount();
+
+      if (end - start > 1 && entryCount > entriesPerTask) {
+
+        int middle = (start + end) >>> 1;
+        invokeAll(new PropagationTask(columns, satellites, grid, start, middle), new PropagationTask(columns, satellites, grid, middle, end));
+        return;
+      }
+
+
+      // propagate each satellite to every time
+      long[] epochMicros = grid.getEpochMicros();
+      double[] state = new double[Sgp4Propagator.STATE_SIZE];
+
+      for (int satellite = start; satellite < end; satellite++) {
+
+        Sgp4Propagator propagator = initialize(satellite);
+        int entry = satellite * epochMicros.length;
+
+        if (propagator == null) {
+
+          Arrays.fill(state, Double.NaN);
+        }
+
+        for (int time = 0; time < epochMicros.length; time++, entry++) {
+
+          if (propagator != null) {
+
+            propagator.propagate(epochMicros[time], state, 0);
+          }
+
+          grid.set(entry, state);
+        }
+      }
+    }
+
+
+    private Sgp4Propagator initialize(int satellite) {
+
+      if (satellites[satellite] == null) {
+
+        try {
+
+          satellites[satellite] = Sgp4Propagator.of(columns, satellite);
+
+        } catch (IllegalArgumentException e) {
+
+          log.debug("Satellite {} can't be propagated: {}", grid.getCatalogNumbers()[satellite], e.getMessage());
+        }
+      }
+
+      return satellites[satellite];
+    }
+  }
+}
@@ -0,0 +1,488 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.propagation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Propagates a whole catalog to a single time, such as the current time for a snapshot of every object. The SGP4 constants of every near-earth element set are initialized once and packed
+ * into one primitive array, and each snapshot runs a tight loop down the array, split into chunks across the cores of a fork-join pool. Deep-space element sets, which are a small part of a
+ * typical catalog, are propagated with {@link Sgp4Propagator}.
+ * 
+ * <p>
+ * The near-earth loop replaces some of the reference implementation's operations with cheaper equivalents (e.g. small-angle rotations instead of trigonometric functions for the short-period
+ * corrections), so its results can differ from {@link Sgp4Propagator} in the last few bits: well under a millimeter in position. A propagator is immutable and thread-safe.
+ * </p>
+ * 
+ * <pre>
+ * CatalogPropagator catalog = new CatalogPropagator(columns);
+ * EphemerisGrid snapshot = catalog.propagate(System.currentTimeMillis() * 1000L);
+ * </pre>
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+public class CatalogPropagator {
+
+  /**
+   * The default number of element sets below which a chunk is not split
+   */
+  public static final int DEFAULT_ROWS_PER_TASK = 2048;
+
+
+  private static final byte INVALID = 0;
+  private static final byte NEAR_EARTH = 1;
+  private static final byte DEEP_SPACE = 2;
+  private static final byte SIMPLIFIED_NEAR_EARTH = 3;
+
+  // the offsets of the near-earth constants within a row
+  private static final int MO = 0;
+  private static final int MDOT = 1;
+  private static final int ARGPO = 2;
+  private static final int ARGPDOT = 3;
+  private static final int NODEO = 4;
+  private static final int NODEDOT = 5;
+  private static final int NODECF = 6;
+  private static final int CC1 = 7;
+  private static final int BSTAR_CC4 = 8;
+  private static final int BSTAR_CC5 = 9;
+  private static final int T2COF = 10;
+  private static final int OMGCOF = 11;
+  private static final int ETA = 12;
+  private static final int XMCOF = 13;
+  private static final int DELMO = 14;
+  private static final int D2 = 15;
+  private static final int D3 = 16;
+  private static final int D4 = 17;
+  private static final int SINMAO = 18;
+  private static final int T3COF = 19;
+  private static final int T4COF = 20;
+  private static final int T5COF = 21;
+  private static final int NO_UNKOZAI = 22;
+  private static final int ECCO = 23;
+  private static final int AO_POW = 24;
+  private static final int SINIO = 25;
+  private static final int COSIO = 26;
+  private static final int AYCOF = 27;
+  private static final int XLCOF = 28;
+  private static final int CON41 = 29;
+  private static final int X1MTH2 = 30;
+  private static final int X7THM1 = 31;
+  private static final int STRIDE = 32;
+
+
+  private final ForkJoinPool pool;
+  private final int rowsPerTask;
+  private final int size;
+  private final int[] catalogNumbers;
+  private final byte[] kinds;
+  private final Sgp4Propagator[] deepSpacePropagators;
+
+  // the near-earth constants, packed row by row so that each element set's constants are contiguous
+  private final long[] epochMicros;
+  private final double[] constants;
+
+
+  /**
+   * Initializes every element set of a set of columns, using the common fork-join pool. Element sets that can't be initialized (e.g. because they're missing an element) are logged and never
+   * propagated.
+   * 
+   * @param columns The non-null columns, which are read only during the call
+   */
+  public CatalogPropagator(@NonNull ElementSetColumns columns) {
+
+    this(columns, ForkJoinPool.commonPool(), DEFAULT_ROWS_PER_TASK);
+  }
+
+
+  /**
+   * Initializes every element set of a set of columns. Element sets that can't be initialized (e.g. because they're missing an element) are logged and never propagated.
+   * 
+   * @param columns The non-null columns, which are read only during the call
+   * @param pool The non-null pool to propagate on
+   * @param rowsPerTask The number of element sets below which a chunk is not split
+   * @throws IllegalArgumentException The number of rows per task is not positive
+   */
+  public CatalogPropagator(@NonNull ElementSetColumns columns, @NonNull ForkJoinPool pool, int rowsPerTask) {
+
+    // validation
+    if (rowsPerTask <= 0) {
+
+      throw new IllegalArgumentException("The number of rows per task is not positive: " + rowsPerTask);
+    }
+
+
+    this.pool = pool;
+    this.rowsPerTask = rowsPerTask;
+    this.size = columns.size();
+    this.catalogNumbers = Arrays.copyOf(columns.getCatalogNumber(), size);
+    this.kinds = new byte[size];
+    this.deepSpacePropagators = new Sgp4Propagator[size];
+    this.epochMicros = new long[size];
+    this.constants = new double[Math.multiplyExact(size, STRIDE)];
+
+
+    // initialize each element set, copying the constants of near-earth ones into the columns
+    for (int row = 0; row < size; row++) {
+
+      Sgp4Propagator propagator;
+
+      try {
+
+        propagator = Sgp4Propagator.of(columns, row);
+
+      } catch (IllegalArgumentException e) {
+
+        log.debug("Satellite {} can't be propagated: {}", catalogNumbers[row], e.getMessage());
+        continue;
+      }
+
+      if (propagator.isDeepSpace()) {
+
+        kinds[row] = DEEP_SPACE;
+        deepSpacePropagators[row] = propagator;
+        continue;
+      }
+
+      kinds[row] = (propagator.isimp ? SIMPLIFIED_NEAR_EARTH : NEAR_EARTH);
+      epochMicros[row] = propagator.getEpochMicros();
+      int base = row * STRIDE;
+      constants[base + MO] = propagator.mo;
+      constants[base + MDOT] = propagator.mdot;
+      constants[base + ARGPO] = propagator.argpo;
+      constants[base + ARGPDOT] = propagator.argpdot;
+      constants[base + NODEO] = propagator.nodeo;
+      constants[base + NODEDOT] = propagator.nodedot;
+      constants[base + NODECF] = propagator.nodecf;
+      constants[base + CC1] = propagator.cc1;
+      constants[base + BSTAR_CC4] = propagator.bstar * propagator.cc4;
+      constants[base + BSTAR_CC5] = propagator.bstar * propagator.cc5;
+      constants[base + T2COF] = propagator.t2cof;
+      constants[base + OMGCOF] = propagator.omgcof;
+      constants[base + ETA] = propagator.eta;
+      constants[base + XMCOF] = propagator.xmcof;
+      constants[base + DELMO] = propagator.delmo;
+      constants[base + D2] = propagator.d2;
+      constants[base + D3] = propagator.d3;
+      constants[base + D4] = propagator.d4;
+      constants[base + SINMAO] = propagator.sinmao;
+      constants[base + T3COF] = propagator.t3cof;
+      constants[base + T4COF] = propagator.t4cof;
+      constants[base + T5COF] = propagator.t5cof;
+      constants[base + NO_UNKOZAI] = propagator.noUnkozai;
+      constants[base + ECCO] = propagator.ecco;
+      constants[base + AO_POW] = Math.pow(Sgp4Propagator.XKE / propagator.noUnkozai, Sgp4Propagator.X2O3);
+      constants[base + SINIO] = Math.sin(propagator.inclo);
+      constants[base + COSIO] = Math.cos(propagator.inclo);
+      constants[base + AYCOF] = propagator.aycof;
+      constants[base + XLCOF] = propagator.xlcof;
+      constants[base + CON41] = propagator.con41;
+      constants[base + X1MTH2] = propagator.x1mth2;
+      constants[base + X7THM1] = propagator.x7thm1;
+    }
+  }
+
+
+  /**
+   * Gets the number of element sets, including those that can't be propagated
+   * 
+   * @return The number of element sets
+   */
+  public int size() {
+
+    return size;
+  }
+
+
+  /**
+   * Propagates every element set to a time
+   * 
+   * @param epochMicros The time in microseconds since 1970-01-01T00:00:00Z
+   * @return The states, with one satellite per row in the order of the columns the propagator was created with
+   */
+  public EphemerisGrid propagate(long epochMicros) {
+
+    EphemerisGrid grid = new EphemerisGrid(catalogNumbers, new long[] {epochMicros});
+
+    if (size <= rowsPerTask || pool.getParallelism() == 1) {
+
+      // a single chunk runs on the calling thread rather than being handed to the pool
+      propagateRows(grid, epochMicros, 0, size);
+
+    } else {
+
+      pool.invoke(new ChunkTask(grid, epochMicros, 0, size));
+    }
+
+    return grid;
+  }
+
+
+  /**
+   * Propagates a chunk of the element sets, with the near-earth part of {@link Sgp4Propagator#propagate(double, double[], int)} inlined
+   */
+  private void propagateRows(EphemerisGrid grid, long time, int start, int end) {
+
+    double[] state = new double[Sgp4Propagator.STATE_SIZE];
+
+    for (int row = start; row < end; row++) {
+
+      if (kinds[row] == INVALID || kinds[row] == DEEP_SPACE) {
+
+        if (kinds[row] == DEEP_SPACE) {
+
+          deepSpacePropagators[row].propagate(time, state, 0);
+
+        } else {
+
+          Arrays.fill(state, Double.NaN);
+        }
+
+        grid.set(row, state);
+        continue;
+      }
+
+
+      // secular gravity and atmospheric drag
+      int base = row * STRIDE;
+      double tsince = (time - epochMicros[row]) / Sgp4Propagator.MICROS_PER_MINUTE;
+      double xmdf = constants[base + MO] + constants[base + MDOT] * tsince;
+      double argpm = constants[base + ARGPO] + constants[base + ARGPDOT] * tsince;
+      double mm = xmdf;
+      double t2 = tsince * tsince;
+      double nodem = constants[base + NODEO] + constants[base + NODEDOT] * tsince + constants[base + NODECF] * t2;
+      double tempa = 1.0 - constants[base + CC1] * tsince;
+      double tempe = constants[base + BSTAR_CC4] * tsince;
+      double templ = constants[base + T2COF] * t2;
+
+      if (kinds[row] == NEAR_EARTH) {
+
+        double delomg = constants[base + OMGCOF] * tsince;
+        double delmtemp = 1.0 + constants[base + ETA] * Math.cos(xmdf);
+        double delm = constants[base + XMCOF] * (delmtemp * delmtemp * delmtemp - constants[base + DELMO]);
+        double temp = delomg + delm;
+        mm = xmdf + temp;
+        argpm = argpm - temp;
+        double t3 = t2 * tsince;
+        double t4 = t3 * tsince;
+        tempa = tempa - constants[base + D2] * t2 - constants[base + D3] * t3 - constants[base + D4] * t4;
+        tempe = tempe + constants[base + BSTAR_CC5] * (Math.sin(mm) - constants[base + SINMAO]);
+        templ = templ + constants[base + T3COF] * t3 + t4 * (constants[base + T4COF] + tsince * constants[base + T5COF]);
+      }
+
+      double am = constants[base + AO_POW] * tempa * tempa;
+      double nm = Sgp4Propagator.XKE / (am * Math.sqrt(am));
+      double em = constants[base + ECCO] - tempe;
+
+      if (em >= 1.0 || em < -0.001) {
+
+        fail(grid, row, state);
+        continue;
+      }
+
+      if (em < 1.0e-6) {
+
+        em = 1.0e-6;
+      }
+
+      mm = mm + constants[base + NO_UNKOZAI] * templ;
+      double xlm = (mm + argpm + nodem) % Sgp4Propagator.TWO_PI;
+      nodem = nodem % Sgp4Propagator.TWO_PI;
+      argpm = argpm % Sgp4Propagator.TWO_PI;
+      mm = (xlm - argpm - nodem) % Sgp4Propagator.TWO_PI;
+
+
+      // long-period periodics
+      double axnl = em * Math.cos(argpm);
+      double temp = 1.0 / (am * (1.0 - em * em));
+      double aynl = em * Math.sin(argpm) + temp * constants[base + AYCOF];
+      double xl = mm + argpm + nodem + temp * constants[base + XLCOF] * axnl;
+
+
+      // solve Kepler's equation
+      double u = (xl - nodem) % Sgp4Propagator.TWO_PI;
+      double eo1 = u;
+      double tem5 = 9999.9;
+      double sineo1 = 0.0;
+      double coseo1 = 0.0;
+
+      for (int iteration = 1; Math.abs(tem5) >= 1.0e-12 && iteration <= 10; iteration++) {
+
+        sineo1 = Math.sin(eo1);
+        coseo1 = Math.cos(eo1);
+        tem5 = 1.0 - coseo1 * axnl - sineo1 * aynl;
+        tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+
+        if (Math.abs(tem5) >= 0.95) {
+
+          tem5 = (tem5 > 0.0 ? 0.95 : -0.95);
+        }
+
+        eo1 = eo1 + tem5;
+      }
+
+
+      // short-period preliminary quantities
+      double ecose = axnl * coseo1 + aynl * sineo1;
+      double esine = axnl * sineo1 - aynl * coseo1;
+      double el2 = axnl * axnl + aynl * aynl;
+      double pl = am * (1.0 - el2);
+
+      if (pl < 0.0) {
+
+        fail(grid, row, state);
+        continue;
+      }
+
+      double rl = am * (1.0 - ecose);
+      double rdotl = Math.sqrt(am) * esine / rl;
+      double rvdotl = Math.sqrt(pl) / rl;
+      double betal = Math.sqrt(1.0 - el2);
+      temp = esine / (1.0 + betal);
+      double sinu = am / rl * (sineo1 - aynl - axnl * temp);
+      double cosu = am / rl * (coseo1 - axnl + aynl * temp);
+      double sin2u = (cosu + cosu) * sinu;
+      double cos2u = 1.0 - 2.0 * sinu * sinu;
+      double norm = 1.0 / Math.sqrt(sinu * sinu + cosu * cosu);
+      sinu = sinu * norm;
+      cosu = cosu * norm;
+      temp = 1.0 / pl;
+      double temp1 = 0.5 * Sgp4Propagator.J2 * temp;
+      double temp2 = temp1 * temp;
+
+
+      // short-period periodics, applied to the argument of latitude, node, and inclination as small rotations
+      double mrt = rl * (1.0 - 1.5 * temp2 * betal * constants[base + CON41]) + 0.5 * temp1 * constants[base + X1MTH2] * cos2u;
+      double mvt = rdotl - nm * temp1 * constants[base + X1MTH2] * sin2u / Sgp4Propagator.XKE;
+      double rvdot = rvdotl + nm * temp1 * (constants[base + X1MTH2] * cos2u + 1.5 * constants[base + CON41]) / Sgp4Propagator.XKE;
+
+      double delta = -0.25 * temp2 * constants[base + X7THM1] * sin2u;
+      double sinDelta = smallSin(delta);
+      double cosDelta = smallCos(delta);
+      double sinsu = sinu * cosDelta + cosu * sinDelta;
+      double cossu = cosu * cosDelta - sinu * sinDelta;
+
+      delta = 1.5 * temp2 * constants[base + COSIO] * sin2u;
+      sinDelta = smallSin(delta);
+      cosDelta = smallCos(delta);
+      double sinNode = Math.sin(nodem);
+      double cosNode = Math.cos(nodem);
+      double snod = sinNode * cosDelta + cosNode * sinDelta;
+      double cnod = cosNode * cosDelta - sinNode * sinDelta;
+
+      delta = 1.5 * temp2 * constants[base + COSIO] * constants[base + SINIO] * cos2u;
+      sinDelta = smallSin(delta);
+      cosDelta = smallCos(delta);
+      double sini = constants[base + SINIO] * cosDelta + constants[base + COSIO] * sinDelta;
+      double cosi = constants[base + COSIO] * cosDelta - constants[base + SINIO] * sinDelta;
+
+
+      // orientation vectors
+      double xmx = -snod * cosi;
+      double xmy = cnod * cosi;
+      double ux = xmx * sinsu + cnod * cossu;
+      double uy = xmy * sinsu + snod * cossu;
+      double uz = sini * sinsu;
+      double vx = xmx * cossu - cnod * sinsu;
+      double vy = xmy * cossu - snod * sinsu;
+      double vz = sini * cossu;
+
+
+      // position and velocity, failing if the satellite has decayed
+      if (mrt < 1.0) {
+
+        fail(grid, row, state);
+        continue;
+      }
+
+      state[0] = mrt * ux * Sgp4Propagator.EARTH_RADIUS_KILOMETERS;
+      state[1] = mrt * uy * Sgp4Propagator.EARTH_RADIUS_KILOMETERS;
+      state[2] = mrt * uz * Sgp4Propagator.EARTH_RADIUS_KILOMETERS;
+      state[3] = (mvt * ux + rvdot * vx) * Sgp4Propagator.VELOCITY_KILOMETERS_PER_SECOND;
+      state[4] = (mvt * uy + rvdot * vy) * Sgp4Propagator.VELOCITY_KILOMETERS_PER_SECOND;
+      state[5] = (mvt * uz + rvdot * vz) * Sgp4Propagator.VELOCITY_KILOMETERS_PER_SECOND;
+      grid.set(row, state);
+    }
+  }
+
+
+  private static void fail(EphemerisGrid grid, int row, double[] state) {
+
+    Arrays.fill(state, Double.NaN);
+    grid.set(row, state);
+  }
+
+
+  /**
+   * The sine of an angle of at most a few milliradians, to within a rounding error (the short-period corrections are of order J2)
+   */
+  private static double smallSin(double angle) {
+
+    double angleSquared = angle * angle;
+    return angle * (1.0 - angleSquared / 6.0 * (1.0 - angleSquared / 20.0));
+  }
+
+
+  /**
+   * The cosine of an angle of at most a few milliradians, to within a rounding error
+   */
+  private static double smallCos(double angle) {
+
+    double angleSquared = angle * angle;
+    return 1.0 - angleSquared / 2.0 * (1.0 - angleSquared / 12.0 * (1.0 - angleSquared / 30.0));
+  }
+
+
+  /**
+   * Propagates a range of rows, splitting the range in half until it's small enough
+   */
+  private class ChunkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final EphemerisGrid grid;
+    private final long time;
+    private final int start;
+    private final int end;
+
+
+    private ChunkTask(EphemerisGrid grid, long time, int start, int end) {
+
+      this.grid = grid;
+      this.time = time;
+      this.start = start;
+      this.end = end;
+    }
+
+
+    @Override
+    protected void compute() {
+
+      if (end - start > rowsPerTask) {
+
+        int middle = (start + end) >>> 1;
+        invokeAll(new ChunkTask(grid, time, start, middle), new ChunkTask(grid, time, middle, end));
+
+      } else {
+
+        propagateRows(grid, time, start, end);
+      }
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.propagation;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * The states of a set of satellites at a grid of times, computed by a {@link BatchPropagator}. The states are held in primitive arrays with three values per entry, ordered by satellite and then
+ * by time, so the position of satellite <code>s</code> at time <code>t</code> starts at index <code>3 * (s * getTimeCount() + t)</code> of {@link #getPositions()}. The values of an entry that
+ * couldn't be propagated (e.g. because the satellite decayed) are NaN.
+ * 
+ * <p>
+ * The arrays are returned without copying, for speed, and must not be modified.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+@Getter
+public class EphemerisGrid {
+
+  /**
+   * The catalog number of each satellite
+   */
+  private final int[] catalogNumbers;
+
+  /**
+   * The times in microseconds since 1970-01-01T00:00:00Z
+   */
+  private final long[] epochMicros;
+
+  /**
+   * The positions in kilometers in the TEME frame
+   */
+  private final double[] positions;
+
+  /**
+   * The velocities in kilometers per second in the TEME frame
+   */
+  private final double[] velocities;
+
+  @Getter(AccessLevel.NONE)
+  private final boolean[] propagated;
+
+
+  EphemerisGrid(int[] catalogNumbers, long[] epochMicros) {
+
+    int entryCount = Math.multiplyExact(catalogNumbers.length, epochMicros.length);
+
+    this.catalogNumbers = catalogNumbers;
+    this.epochMicros = epochMicros;
+    this.positions = new double[Math.multiplyExact(entryCount, 3)];
+    this.velocities = new double[positions.length];
+    this.propagated = new boolean[entryCount];
+  }
+
+
+  public int getSatelliteCount() {
+
+    return catalogNumbers.length;
+  }
+
+
+  public int getTimeCount() {
+
+    return epochMicros.length;
+  }
+
+
+  /**
+   * Gets the index of an entry's first value in {@link #getPositions()} and {@link #getVelocities()}
+   * 
+   * @param satellite The index of the satellite
+   * @param time The index of the time
+   * @return The index of the entry's x value
+   * @throws IndexOutOfBoundsException The satellite or time is out of range
+   */
+  public int indexOf(int satellite, int time) {
+
+    // validation
+    if (satellite < 0 || satellite >= catalogNumbers.length) {
+
+      throw new IndexOutOfBoundsException("Satellite: " + satellite + ", count: " + catalogNumbers.length);
+
+    } else if (time < 0 || time >= epochMicros.length) {
+
+      throw new IndexOutOfBoundsException("Time: " + time + ", count: " + epochMicros.length);
+    }
+
+
+    return 3 * (satellite * epochMicros.length + time);
+  }
+
+
+  /**
+   * Determines if an entry was propagated
+   * 
+   * @param satellite The index of the satellite
+   * @param time The index of the time
+   * @return True if the entry has a state, or false if the satellite couldn't be initialized or propagated to that time
+   * @throws IndexOutOfBoundsException The satellite or time is out of range
+   */
+  public boolean isPropagated(int satellite, int time) {
+
+    return propagated[indexOf(satellite, time) / 3];
+  }
+
+
+  /**
+   * Counts the entries that were propagated
+   * 
+   * @return The number of entries that have a state
+   */
+  public int getPropagatedCount() {
+
+    int count = 0;
+
+    for (boolean entry : propagated) {
+
+      if (entry) {
+
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+
+  /**
+   * Stores the state of an entry
+   */
+  void set(int entry, double[] state) {
+
+    int index = 3 * entry;
+
+    positions[index] = state[0];
+    positions[index + 1] = state[1];
+    positions[index + 2] = state[2];
+    velocities[index] = state[3];
+    velocities[index + 1] = state[4];
+    velocities[index + 2] = state[5];
+    propagated[entry] = (Double.isNaN(state[0]) == false);
+  }
+
+
+  @Override
+  public String toString() {
+
+    return "EphemerisGrid(satelliteCount=" + getSatelliteCount() + ", timeCount=" + getTimeCount() + ")";
+  }
+}
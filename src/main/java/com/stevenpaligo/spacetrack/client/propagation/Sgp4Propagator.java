@@ -0,0 +1,1154 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.propagation;
+
+import java.time.Instant;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Propagates an element set with the SGP4 model (or SDP4, its deep-space extension, for orbits with periods of 225 minutes or more), following the revised reference implementation by Vallado
+ * et al. ("Revisiting Spacetrack Report #3", AIAA 2006-6753) with the WGS-72 constants that element sets are fitted with. Positions and velocities are in the true equator, mean equinox (TEME)
+ * frame, in kilometers and kilometers per second.
+ * 
+ * <p>
+ * All of the per-satellite constants are computed once, when the propagator is created; propagating only evaluates the time-dependent terms. A propagator is immutable and thread-safe, and
+ * propagating allocates nothing, so one propagator can be shared by any number of threads (see {@link BatchPropagator}).
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+public class Sgp4Propagator {
+
+  /**
+   * The radius of the Earth in kilometers (WGS-72)
+   */
+  public static final double EARTH_RADIUS_KILOMETERS = 6378.135;
+
+  /**
+   * The gravitational parameter of the Earth in km<sup>3</sup>/s<sup>2</sup> (WGS-72)
+   */
+  public static final double EARTH_GRAVITATIONAL_PARAMETER = 398600.8;
+
+  /**
+   * The number of values written per state: the x, y, and z position followed by the x, y, and z velocity
+   */
+  public static final int STATE_SIZE = 6;
+
+
+  static final double TWO_PI = 2.0 * Math.PI;
+  static final double X2O3 = 2.0 / 3.0;
+  static final double XKE = 60.0 / Math.sqrt(EARTH_RADIUS_KILOMETERS * EARTH_RADIUS_KILOMETERS * EARTH_RADIUS_KILOMETERS / EARTH_GRAVITATIONAL_PARAMETER);
+  static final double J2 = 0.001082616;
+  static final double J3 = -0.00000253881;
+  static final double J4 = -0.00000165597;
+  static final double J3OJ2 = J3 / J2;
+  static final double VELOCITY_KILOMETERS_PER_SECOND = EARTH_RADIUS_KILOMETERS * XKE / 60.0;
+  static final double MICROS_PER_MINUTE = 60_000_000.0;
+
+  private static final double MICROS_PER_DAY = 86_400_000_000.0;
+  private static final double DAYS_FROM_1949_TO_1970 = 7306.0; // from 1949-12-31T00:00:00Z, the epoch of the SGP4 theory
+  private static final double DEGREES_TO_RADIANS = Math.PI / 180.0;
+  private static final double REVS_PER_DAY_TO_RADIANS_PER_MINUTE = TWO_PI / 1440.0;
+  private static final double TEMP4 = 1.5e-12;
+
+  // deep-space constants
+  private static final double ZNS = 1.19459e-5;
+  private static final double ZES = 0.01675;
+  private static final double ZNL = 1.5835218e-4;
+  private static final double ZEL = 0.05490;
+  private static final double RPTIM = 4.37526908801129966e-3; // the rotation of the Earth in radians per minute
+  private static final double FASX2 = 0.13130908;
+  private static final double FASX4 = 2.8843198;
+  private static final double FASX6 = 0.37448087;
+  private static final double G22 = 5.7686396;
+  private static final double G32 = 0.95240898;
+  private static final double G44 = 1.8014998;
+  private static final double G52 = 1.0508330;
+  private static final double G54 = 4.4108898;
+  private static final double STEPP = 720.0;
+  private static final double STEPN = -720.0;
+  private static final double STEP2 = 259200.0;
+
+
+  @Getter
+  private final int catalogNumber;
+
+  /**
+   * The epoch of the element set in microseconds since 1970-01-01T00:00:00Z
+   */
+  @Getter
+  private final long epochMicros;
+
+  /**
+   * True if the element set is propagated with the deep-space (SDP4) terms
+   */
+  @Getter
+  private final boolean deepSpace;
+
+  // the mean elements at epoch (angles in radians, mean motion in radians per minute)
+  final double ecco;
+  final double inclo;
+  final double nodeo;
+  final double argpo;
+  final double mo;
+  final double noUnkozai;
+  final double bstar;
+
+  // near-earth secular and drag terms
+  final boolean isimp;
+  final double aycof;
+  final double con41;
+  final double cc1;
+  final double cc4;
+  final double cc5;
+  final double d2;
+  final double d3;
+  final double d4;
+  final double delmo;
+  final double eta;
+  final double argpdot;
+  final double omgcof;
+  final double sinmao;
+  final double t2cof;
+  final double t3cof;
+  final double t4cof;
+  final double t5cof;
+  final double x1mth2;
+  final double x7thm1;
+  final double mdot;
+  final double nodedot;
+  final double xlcof;
+  final double xmcof;
+  final double nodecf;
+
+  // deep-space terms
+  private final double gsto;
+  private final int irez;
+  private final double e3, ee2, peo, pgho, pho, pinco, plo, se2, se3, sgh2, sgh3, sgh4, sh2, sh3, si2, si3, sl2, sl3, sl4;
+  private final double xgh2, xgh3, xgh4, xh2, xh3, xi2, xi3, xl2, xl3, xl4, zmol, zmos;
+  private final double d2201, d2211, d3210, d3222, d4410, d4422, d5220, d5232, d5421, d5433;
+  private final double dedt, didt, dmdt, dnodt, domdt, del1, del2, del3, xfact, xlamo;
+
+
+  /**
+   * Initializes the model for a compact element set
+   * 
+   * @param elementSet The non-null element set
+   * @return The propagator
+   * @throws IllegalArgumentException The element set is missing a value that SGP4 needs or has elements that can't be propagated (e.g. an eccentricity of 1 or more)
+   */
+  public static Sgp4Propagator of(@NonNull CompactElementSet elementSet) {
+
+    return new Sgp4Propagator(elementSet.getCatalogNumber(), elementSet.getEpochMicros(), elementSet.getMeanMotionRevsPerDay(), elementSet.getEccentricity(),
+        elementSet.getInclinationDegrees(), elementSet.getRightAscOfNodeDegrees(), elementSet.getArgOfPerigeeDegrees(), elementSet.getMeanAnomalyDegrees(), elementSet.getBstar());
+  }
+
+
+  /**
+   * Initializes the model for a row of element set columns
+   * 
+   * @param columns The non-null columns
+   * @param row The row of the element set
+   * @return The propagator
+   * @throws IndexOutOfBoundsException The row is negative or not less than the number of rows
+   * @throws IllegalArgumentException The element set is missing a value that SGP4 needs or has elements that can't be propagated (e.g. an eccentricity of 1 or more)
+   */
+  public static Sgp4Propagator of(@NonNull ElementSetColumns columns, int row) {
+
+    // validation
+    if (row < 0 || row >= columns.size()) {
+
+      throw new IndexOutOfBoundsException("Row: " + row + ", size: " + columns.size());
+    }
+
+
+    return new Sgp4Propagator(columns.getCatalogNumber()[row], columns.getEpochMicros()[row], columns.getMeanMotionRevsPerDay()[row], columns.getEccentricity()[row],
+        columns.getInclinationDegrees()[row], columns.getRightAscOfNodeDegrees()[row], columns.getArgOfPerigeeDegrees()[row], columns.getMeanAnomalyDegrees()[row],
+        columns.getBstar()[row]);
+  }
+
+
+  /**
+   * Initializes the model (the "sgp4init" routine of the reference implementation)
+   */
+  Sgp4Propagator(int catalogNumber, long epochMicros, double meanMotionRevsPerDay, double eccentricity, double inclinationDegrees, double rightAscOfNodeDegrees,
+      double argOfPerigeeDegrees, double meanAnomalyDegrees, double bstar) {
+
+    // validation
+    if (epochMicros == CompactElementSet.MISSING_EPOCH) {
+
+      throw new IllegalArgumentException("The element set has no epoch: " + catalogNumber);
+
+    } else if (Double.isNaN(meanMotionRevsPerDay) || Double.isNaN(eccentricity) || Double.isNaN(inclinationDegrees) || Double.isNaN(rightAscOfNodeDegrees)
+        || Double.isNaN(argOfPerigeeDegrees) || Double.isNaN(meanAnomalyDegrees)) {
+
+      throw new IllegalArgumentException("The element set is missing a mean element: " + catalogNumber);
+
+    } else if (meanMotionRevsPerDay <= 0.0) {
+
+      throw new IllegalArgumentException("The mean motion is not positive: " + meanMotionRevsPerDay);
+
+    } else if (eccentricity < 0.0 || eccentricity >= 1.0) {
+
+      throw new IllegalArgumentException("The eccentricity is not between 0 and 1: " + eccentricity);
+    }
+
+
+    this.catalogNumber = catalogNumber;
+    this.epochMicros = epochMicros;
+    this.ecco = eccentricity;
+    this.inclo = inclinationDegrees * DEGREES_TO_RADIANS;
+    this.nodeo = rightAscOfNodeDegrees * DEGREES_TO_RADIANS;
+    this.argpo = argOfPerigeeDegrees * DEGREES_TO_RADIANS;
+    this.mo = meanAnomalyDegrees * DEGREES_TO_RADIANS;
+    this.bstar = (Double.isNaN(bstar) ? 0.0 : bstar);
+
+    double epoch = epochMicros / MICROS_PER_DAY + DAYS_FROM_1949_TO_1970;
+    double noKozai = meanMotionRevsPerDay * REVS_PER_DAY_TO_RADIANS_PER_MINUTE;
+
+
+    // un-Kozai the mean motion (the "initl" routine)
+    double eccsq = ecco * ecco;
+    double omeosq = 1.0 - eccsq;
+    double rteosq = Math.sqrt(omeosq);
+    double cosio = Math.cos(inclo);
+    double cosio2 = cosio * cosio;
+
+    double ak = Math.pow(XKE / noKozai, X2O3);
+    double d1 = 0.75 * J2 * (3.0 * cosio2 - 1.0) / (rteosq * omeosq);
+    double del = d1 / (ak * ak);
+    double adel = ak * (1.0 - del * del - del * (1.0 / 3.0 + 134.0 * del * del / 81.0));
+    del = d1 / (adel * adel);
+    this.noUnkozai = noKozai / (1.0 + del);
+
+    double ao = Math.pow(XKE / noUnkozai, X2O3);
+    double sinio = Math.sin(inclo);
+    double po = ao * omeosq;
+    double con42 = 1.0 - 5.0 * cosio2;
+    this.con41 = -con42 - cosio2 - cosio2;
+    double posq = po * po;
+    double rp = ao * (1.0 - ecco);
+    this.gsto = greenwichSiderealTime(epoch + 2433281.5);
+
+
+    // secular and drag terms
+    double ss = 78.0 / EARTH_RADIUS_KILOMETERS + 1.0;
+    double qzms2ttemp = (120.0 - 78.0) / EARTH_RADIUS_KILOMETERS;
+    double qzms2t = qzms2ttemp * qzms2ttemp * qzms2ttemp * qzms2ttemp;
+
+    boolean simplified = (rp < (220.0 / EARTH_RADIUS_KILOMETERS + 1.0));
+    double sfour = ss;
+    double qzms24 = qzms2t;
+    double perige = (rp - 1.0) * EARTH_RADIUS_KILOMETERS;
+
+    if (perige < 156.0) {
+
+      // perigees below 156 km use a different atmosphere
+      sfour = perige - 78.0;
+
+      if (perige < 98.0) {
+
+        sfour = 20.0;
+      }
+
+      double qzms24temp = (120.0 - sfour) / EARTH_RADIUS_KILOMETERS;
+      qzms24 = qzms24temp * qzms24temp * qzms24temp * qzms24temp;
+      sfour = sfour / EARTH_RADIUS_KILOMETERS + 1.0;
+    }
+
+    double pinvsq = 1.0 / posq;
+    double tsi = 1.0 / (ao - sfour);
+    this.eta = ao * ecco * tsi;
+    double etasq = eta * eta;
+    double eeta = ecco * eta;
+    double psisq = Math.abs(1.0 - etasq);
+    double coef = qzms24 * Math.pow(tsi, 4.0);
+    double coef1 = coef / Math.pow(psisq, 3.5);
+    double cc2 = coef1 * noUnkozai * (ao * (1.0 + 1.5 * etasq + eeta * (4.0 + etasq)) + 0.375 * J2 * tsi / psisq * con41 * (8.0 + 3.0 * etasq * (8.0 + etasq)));
+    this.cc1 = this.bstar * cc2;
+    double cc3 = 0.0;
+
+    if (ecco > 1.0e-4) {
+
+      cc3 = -2.0 * coef * tsi * J3OJ2 * noUnkozai * sinio / ecco;
+    }
+
+    this.x1mth2 = 1.0 - cosio2;
+    this.cc4 = 2.0 * noUnkozai * coef1 * ao * omeosq * (eta * (2.0 + 0.5 * etasq) + ecco * (0.5 + 2.0 * etasq) - J2 * tsi / (ao * psisq)
+        * (-3.0 * con41 * (1.0 - 2.0 * eeta + etasq * (1.5 - 0.5 * eeta)) + 0.75 * x1mth2 * (2.0 * etasq - eeta * (1.0 + etasq)) * Math.cos(2.0 * argpo)));
+    this.cc5 = 2.0 * coef1 * ao * omeosq * (1.0 + 2.75 * (etasq + eeta) + eeta * etasq);
+    double cosio4 = cosio2 * cosio2;
+    double temp1 = 1.5 * J2 * pinvsq * noUnkozai;
+    double temp2 = 0.5 * temp1 * J2 * pinvsq;
+    double temp3 = -0.46875 * J4 * pinvsq * pinvsq * noUnkozai;
+    this.mdot = noUnkozai + 0.5 * temp1 * rteosq * con41 + 0.0625 * temp2 * rteosq * (13.0 - 78.0 * cosio2 + 137.0 * cosio4);
+    this.argpdot = -0.5 * temp1 * con42 + 0.0625 * temp2 * (7.0 - 114.0 * cosio2 + 395.0 * cosio4) + temp3 * (3.0 - 36.0 * cosio2 + 49.0 * cosio4);
+    double xhdot1 = -temp1 * cosio;
+    this.nodedot = xhdot1 + (0.5 * temp2 * (4.0 - 19.0 * cosio2) + 2.0 * temp3 * (3.0 - 7.0 * cosio2)) * cosio;
+    double xpidot = argpdot + nodedot;
+    this.omgcof = this.bstar * cc3 * Math.cos(argpo);
+    this.xmcof = (ecco > 1.0e-4 ? -X2O3 * coef * this.bstar / eeta : 0.0);
+    this.nodecf = 3.5 * omeosq * xhdot1 * cc1;
+    this.t2cof = 1.5 * cc1;
+    this.xlcof = -0.25 * J3OJ2 * sinio * (3.0 + 5.0 * cosio) / (Math.abs(cosio + 1.0) > TEMP4 ? 1.0 + cosio : TEMP4);
+    this.aycof = -0.5 * J3OJ2 * sinio;
+    double delmotemp = 1.0 + eta * Math.cos(mo);
+    this.delmo = delmotemp * delmotemp * delmotemp;
+    this.sinmao = Math.sin(mo);
+    this.x7thm1 = 7.0 * cosio2 - 1.0;
+
+
+    // deep-space terms for periods of 225 minutes or more
+    this.deepSpace = (TWO_PI / noUnkozai >= 225.0);
+
+    if (deepSpace) {
+
+      simplified = true;
+      DeepSpaceTerms terms = new DeepSpaceTerms(epoch, this, eccsq, xpidot);
+
+      this.irez = terms.irez;
+      this.e3 = terms.e3;
+      this.ee2 = terms.ee2;
+      this.peo = terms.peo;
+      this.pgho = terms.pgho;
+      this.pho = terms.pho;
+      this.pinco = terms.pinco;
+      this.plo = terms.plo;
+      this.se2 = terms.se2;
+      this.se3 = terms.se3;
+      this.sgh2 = terms.sgh2;
+      this.sgh3 = terms.sgh3;
+      this.sgh4 = terms.sgh4;
+      this.sh2 = terms.sh2;
+      this.sh3 = terms.sh3;
+      this.si2 = terms.si2;
+      this.si3 = terms.si3;
+      this.sl2 = terms.sl2;
+      this.sl3 = terms.sl3;
+      this.sl4 = terms.sl4;
+      this.xgh2 = terms.xgh2;
+      this.xgh3 = terms.xgh3;
+      this.xgh4 = terms.xgh4;
+      this.xh2 = terms.xh2;
+      this.xh3 = terms.xh3;
+      this.xi2 = terms.xi2;
+      this.xi3 = terms.xi3;
+      this.xl2 = terms.xl2;
+      this.xl3 = terms.xl3;
+      this.xl4 = terms.xl4;
+      this.zmol = terms.zmol;
+      this.zmos = terms.zmos;
+      this.d2201 = terms.d2201;
+      this.d2211 = terms.d2211;
+      this.d3210 = terms.d3210;
+      this.d3222 = terms.d3222;
+      this.d4410 = terms.d4410;
+      this.d4422 = terms.d4422;
+      this.d5220 = terms.d5220;
+      this.d5232 = terms.d5232;
+      this.d5421 = terms.d5421;
+      this.d5433 = terms.d5433;
+      this.dedt = terms.dedt;
+      this.didt = terms.didt;
+      this.dmdt = terms.dmdt;
+      this.dnodt = terms.dnodt;
+      this.domdt = terms.domdt;
+      this.del1 = terms.del1;
+      this.del2 = terms.del2;
+      this.del3 = terms.del3;
+      this.xfact = terms.xfact;
+      this.xlamo = terms.xlamo;
+
+    } else {
+
+      this.irez = 0;
+      this.e3 = this.ee2 = this.peo = this.pgho = this.pho = this.pinco = this.plo = this.se2 = this.se3 = this.sgh2 = this.sgh3 = this.sgh4 = this.sh2 = this.sh3 = 0.0;
+      this.si2 = this.si3 = this.sl2 = this.sl3 = this.sl4 = 0.0;
+      this.xgh2 = this.xgh3 = this.xgh4 = this.xh2 = this.xh3 = this.xi2 = this.xi3 = this.xl2 = this.xl3 = this.xl4 = this.zmol = this.zmos = 0.0;
+      this.d2201 = this.d2211 = this.d3210 = this.d3222 = this.d4410 = this.d4422 = this.d5220 = this.d5232 = this.d5421 = this.d5433 = 0.0;
+      this.dedt = this.didt = this.dmdt = this.dnodt = this.domdt = this.del1 = this.del2 = this.del3 = this.xfact = this.xlamo = 0.0;
+    }
+
+
+    // higher-order drag terms, which aren't used for low perigees and deep space
+    this.isimp = simplified;
+
+    if (simplified == false) {
+
+      double cc1sq = cc1 * cc1;
+      this.d2 = 4.0 * ao * tsi * cc1sq;
+      double temp = d2 * tsi * cc1 / 3.0;
+      this.d3 = (17.0 * ao + sfour) * temp;
+      this.d4 = 0.5 * temp * ao * tsi * (221.0 * ao + 31.0 * sfour) * cc1;
+      this.t3cof = d2 + 2.0 * cc1sq;
+      this.t4cof = 0.25 * (3.0 * d3 + cc1 * (12.0 * d2 + 10.0 * cc1sq));
+      this.t5cof = 0.2 * (3.0 * d4 + 12.0 * cc1 * d3 + 6.0 * d2 * d2 + 15.0 * cc1sq * (2.0 * d2 + cc1sq));
+
+    } else {
+
+      this.d2 = this.d3 = this.d4 = this.t3cof = this.t4cof = this.t5cof = 0.0;
+    }
+
+
+    // reject elements that can't be propagated even at epoch
+    double[] state = new double[STATE_SIZE];
+
+    if (propagate(0.0, state, 0) == false) {
+
+      throw new IllegalArgumentException("The element set can't be propagated: " + catalogNumber);
+    }
+  }
+
+
+  /**
+   * Propagates the element set to a time
+   * 
+   * @param epochMicros The time in microseconds since 1970-01-01T00:00:00Z
+   * @param state A non-null array to write the position (km) and velocity (km/s) to
+   * @param offset The index in the array to write the {@link #STATE_SIZE} values at
+   * @return True if the state was computed, or false if the orbit has decayed or the elements diverged at that time (in which case NaNs are written)
+   */
+  public boolean propagate(long epochMicros, @NonNull double[] state, int offset) {
+
+    return propagate((epochMicros - this.epochMicros) / MICROS_PER_MINUTE, state, offset);
+  }
+
+
+  /**
+   * Propagates the element set to a time
+   * 
+   * @param time The non-null time
+   * @param state A non-null array to write the position (km) and velocity (km/s) to
+   * @param offset The index in the array to write the {@link #STATE_SIZE} values at
+   * @return True if the state was computed, or false if the orbit has decayed or the elements diverged at that time (in which case NaNs are written)
+   */
+  public boolean propagate(@NonNull Instant time, @NonNull double[] state, int offset) {
+
+    long micros = Math.addExact(Math.multiplyExact(time.getEpochSecond(), 1_000_000L), time.getNano() / 1_000);
+    return propagate(micros, state, offset);
+  }
+
+
+  /**
+   * Propagates the element set (the "sgp4" routine of the reference implementation)
+   * 
+   * @param tsince The time since the epoch in minutes
+   * @param state A non-null array to write the position (km) and velocity (km/s) to
+   * @param offset The index in the array to write the {@link #STATE_SIZE} values at
+   * @return True if the state was computed, or false if the orbit has decayed or the elements diverged at that time (in which case NaNs are written)
+   */
+  public boolean propagate(double tsince, @NonNull double[] state, int offset) {
+
+    // secular gravity and atmospheric drag
+    double xmdf = mo + mdot * tsince;
+    double argpdf = argpo + argpdot * tsince;
+    double nodedf = nodeo + nodedot * tsince;
+    double argpm = argpdf;
+    double mm = xmdf;
+    double t2 = tsince * tsince;
+    double nodem = nodedf + nodecf * t2;
+    double tempa = 1.0 - cc1 * tsince;
+    double tempe = bstar * cc4 * tsince;
+    double templ = t2cof * t2;
+
+    if (isimp == false) {
+
+      double delomg = omgcof * tsince;
+      double delmtemp = 1.0 + eta * Math.cos(xmdf);
+      double delm = xmcof * (delmtemp * delmtemp * delmtemp - delmo);
+      double temp = delomg + delm;
+      mm = xmdf + temp;
+      argpm = argpdf - temp;
+      double t3 = t2 * tsince;
+      double t4 = t3 * tsince;
+      tempa = tempa - d2 * t2 - d3 * t3 - d4 * t4;
+      tempe = tempe + bstar * cc5 * (Math.sin(mm) - sinmao);
+      templ = templ + t3cof * t3 + t4 * (t4cof + tsince * t5cof);
+    }
+
+    double nm = noUnkozai;
+    double em = ecco;
+    double inclm = inclo;
+
+    if (deepSpace) {
+
+      // deep-space secular effects and resonances (the "dspace" routine), integrated from the epoch every time so that the propagator stays immutable
+      double theta = (gsto + tsince * RPTIM) % TWO_PI;
+      em = em + dedt * tsince;
+      inclm = inclm + didt * tsince;
+      argpm = argpm + domdt * tsince;
+      nodem = nodem + dnodt * tsince;
+      mm = mm + dmdt * tsince;
+
+      if (irez != 0) {
+
+        double atime = 0.0;
+        double xni = noUnkozai;
+        double xli = xlamo;
+        double delt = (tsince > 0.0 ? STEPP : STEPN);
+        double ft;
+        double xndt;
+        double xldot;
+        double xnddt;
+
+        while (true) {
+
+          if (irez != 2) {
+
+            // near-synchronous resonance
+            xndt = del1 * Math.sin(xli - FASX2) + del2 * Math.sin(2.0 * (xli - FASX4)) + del3 * Math.sin(3.0 * (xli - FASX6));
+            xldot = xni + xfact;
+            xnddt = del1 * Math.cos(xli - FASX2) + 2.0 * del2 * Math.cos(2.0 * (xli - FASX4)) + 3.0 * del3 * Math.cos(3.0 * (xli - FASX6));
+            xnddt = xnddt * xldot;
+
+          } else {
+
+            // near half-day resonance
+            double xomi = argpo + argpdot * atime;
+            double x2omi = xomi + xomi;
+            double x2li = xli + xli;
+            xndt = d2201 * Math.sin(x2omi + xli - G22) + d2211 * Math.sin(xli - G22) + d3210 * Math.sin(xomi + xli - G32) + d3222 * Math.sin(-xomi + xli - G32)
+                + d4410 * Math.sin(x2omi + x2li - G44) + d4422 * Math.sin(x2li - G44) + d5220 * Math.sin(xomi + xli - G52) + d5232 * Math.sin(-xomi + xli - G52)
+                + d5421 * Math.sin(xomi + x2li - G54) + d5433 * Math.sin(-xomi + x2li - G54);
+            xldot = xni + xfact;
+            xnddt = d2201 * Math.cos(x2omi + xli - G22) + d2211 * Math.cos(xli - G22) + d3210 * Math.cos(xomi + xli - G32) + d3222 * Math.cos(-xomi + xli - G32)
+                + d5220 * Math.cos(xomi + xli - G52) + d5232 * Math.cos(-xomi + xli - G52)
+                + 2.0 * (d4410 * Math.cos(x2omi + x2li - G44) + d4422 * Math.cos(x2li - G44) + d5421 * Math.cos(xomi + x2li - G54) + d5433 * Math.cos(-xomi + x2li - G54));
+            xnddt = xnddt * xldot;
+          }
+
+          if (Math.abs(tsince - atime) < STEPP) {
+
+            ft = tsince - atime;
+            break;
+          }
+
+          xli = xli + xldot * delt + xndt * STEP2;
+          xni = xni + xndt * delt + xnddt * STEP2;
+          atime = atime + delt;
+        }
+
+        nm = xni + xndt * ft + xnddt * ft * ft * 0.5;
+        double xl = xli + xldot * ft + xndt * ft * ft * 0.5;
+        mm = (irez != 1 ? xl - 2.0 * nodem + 2.0 * theta : xl - nodem - argpm + theta);
+      }
+    }
+
+    if (nm <= 0.0) {
+
+      return fail(state, offset);
+    }
+
+    double am = Math.pow(XKE / nm, X2O3) * tempa * tempa;
+    nm = XKE / Math.pow(am, 1.5);
+    em = em - tempe;
+
+    if (em >= 1.0 || em < -0.001) {
+
+      return fail(state, offset);
+    }
+
+    if (em < 1.0e-6) {
+
+      em = 1.0e-6;
+    }
+
+    mm = mm + noUnkozai * templ;
+    double xlm = mm + argpm + nodem;
+
+    nodem = nodem % TWO_PI;
+    argpm = argpm % TWO_PI;
+    xlm = xlm % TWO_PI;
+    mm = (xlm - argpm - nodem) % TWO_PI;
+
+
+    // lunar-solar periodics
+    double sinim = Math.sin(inclm);
+    double cosim = Math.cos(inclm);
+    double ep = em;
+    double xincp = inclm;
+    double argpp = argpm;
+    double nodep = nodem;
+    double mp = mm;
+    double sinip = sinim;
+    double cosip = cosim;
+    double aycof = this.aycof;
+    double xlcof = this.xlcof;
+    double con41 = this.con41;
+    double x1mth2 = this.x1mth2;
+    double x7thm1 = this.x7thm1;
+
+    if (deepSpace) {
+
+      // the "dpper" routine
+      double zm = zmos + ZNS * tsince;
+      double zf = zm + 2.0 * ZES * Math.sin(zm);
+      double sinzf = Math.sin(zf);
+      double f2 = 0.5 * sinzf * sinzf - 0.25;
+      double f3 = -0.5 * sinzf * Math.cos(zf);
+      double ses = se2 * f2 + se3 * f3;
+      double sis = si2 * f2 + si3 * f3;
+      double sls = sl2 * f2 + sl3 * f3 + sl4 * sinzf;
+      double sghs = sgh2 * f2 + sgh3 * f3 + sgh4 * sinzf;
+      double shs = sh2 * f2 + sh3 * f3;
+      zm = zmol + ZNL * tsince;
+      zf = zm + 2.0 * ZEL * Math.sin(zm);
+      sinzf = Math.sin(zf);
+      f2 = 0.5 * sinzf * sinzf - 0.25;
+      f3 = -0.5 * sinzf * Math.cos(zf);
+      double sel = ee2 * f2 + e3 * f3;
+      double sil = xi2 * f2 + xi3 * f3;
+      double sll = xl2 * f2 + xl3 * f3 + xl4 * sinzf;
+      double sghl = xgh2 * f2 + xgh3 * f3 + xgh4 * sinzf;
+      double shll = xh2 * f2 + xh3 * f3;
+      double pe = ses + sel - peo;
+      double pinc = sis + sil - pinco;
+      double pl = sls + sll - plo;
+      double pgh = sghs + sghl - pgho;
+      double ph = shs + shll - pho;
+
+      xincp = xincp + pinc;
+      ep = ep + pe;
+      sinip = Math.sin(xincp);
+      cosip = Math.cos(xincp);
+
+      if (xincp >= 0.2) {
+
+        // apply the periodics directly
+        ph = ph / sinip;
+        pgh = pgh - cosip * ph;
+        argpp = argpp + pgh;
+        nodep = nodep + ph;
+        mp = mp + pl;
+
+      } else {
+
+        // apply the periodics with the Lyddane modification
+        double sinop = Math.sin(nodep);
+        double cosop = Math.cos(nodep);
+        double alfdp = sinip * sinop;
+        double betdp = sinip * cosop;
+        double dalf = ph * cosop + pinc * cosip * sinop;
+        double dbet = -ph * sinop + pinc * cosip * cosop;
+        alfdp = alfdp + dalf;
+        betdp = betdp + dbet;
+        nodep = nodep % TWO_PI;
+        double xls = mp + argpp + cosip * nodep;
+        double dls = pl + pgh - pinc * nodep * sinip;
+        xls = xls + dls;
+        double xnoh = nodep;
+        nodep = Math.atan2(alfdp, betdp);
+
+        if (Math.abs(xnoh - nodep) > Math.PI) {
+
+          nodep = (nodep < xnoh ? nodep + TWO_PI : nodep - TWO_PI);
+        }
+
+        mp = mp + pl;
+        argpp = xls - mp - cosip * nodep;
+      }
+
+      if (xincp < 0.0) {
+
+        xincp = -xincp;
+        nodep = nodep + Math.PI;
+        argpp = argpp - Math.PI;
+      }
+
+      if (ep < 0.0 || ep > 1.0) {
+
+        return fail(state, offset);
+      }
+
+
+      // long-period periodics that depend on the perturbed inclination
+      sinip = Math.sin(xincp);
+      cosip = Math.cos(xincp);
+      aycof = -0.5 * J3OJ2 * sinip;
+      xlcof = -0.25 * J3OJ2 * sinip * (3.0 + 5.0 * cosip) / (Math.abs(cosip + 1.0) > TEMP4 ? 1.0 + cosip : TEMP4);
+    }
+
+
+    // long-period periodics
+    double axnl = ep * Math.cos(argpp);
+    double temp = 1.0 / (am * (1.0 - ep * ep));
+    double aynl = ep * Math.sin(argpp) + temp * aycof;
+    double xl = mp + argpp + nodep + temp * xlcof * axnl;
+
+
+    // solve Kepler's equation
+    double u = (xl - nodep) % TWO_PI;
+    double eo1 = u;
+    double tem5 = 9999.9;
+    double sineo1 = 0.0;
+    double coseo1 = 0.0;
+
+    for (int iteration = 1; Math.abs(tem5) >= 1.0e-12 && iteration <= 10; iteration++) {
+
+      sineo1 = Math.sin(eo1);
+      coseo1 = Math.cos(eo1);
+      tem5 = 1.0 - coseo1 * axnl - sineo1 * aynl;
+      tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+
+      if (Math.abs(tem5) >= 0.95) {
+
+        tem5 = (tem5 > 0.0 ? 0.95 : -0.95);
+      }
+
+      eo1 = eo1 + tem5;
+    }
+
+
+    // short-period preliminary quantities
+    double ecose = axnl * coseo1 + aynl * sineo1;
+    double esine = axnl * sineo1 - aynl * coseo1;
+    double el2 = axnl * axnl + aynl * aynl;
+    double pl = am * (1.0 - el2);
+
+    if (pl < 0.0) {
+
+      return fail(state, offset);
+    }
+
+    double rl = am * (1.0 - ecose);
+    double rdotl = Math.sqrt(am) * esine / rl;
+    double rvdotl = Math.sqrt(pl) / rl;
+    double betal = Math.sqrt(1.0 - el2);
+    temp = esine / (1.0 + betal);
+    double sinu = am / rl * (sineo1 - aynl - axnl * temp);
+    double cosu = am / rl * (coseo1 - axnl + aynl * temp);
+    double su = Math.atan2(sinu, cosu);
+    double sin2u = (cosu + cosu) * sinu;
+    double cos2u = 1.0 - 2.0 * sinu * sinu;
+    temp = 1.0 / pl;
+    double temp1 = 0.5 * J2 * temp;
+    double temp2 = temp1 * temp;
+
+
+    // short-period periodics
+    if (deepSpace) {
+
+      double cosisq = cosip * cosip;
+      con41 = 3.0 * cosisq - 1.0;
+      x1mth2 = 1.0 - cosisq;
+      x7thm1 = 7.0 * cosisq - 1.0;
+    }
+
+    double mrt = rl * (1.0 - 1.5 * temp2 * betal * con41) + 0.5 * temp1 * x1mth2 * cos2u;
+    su = su - 0.25 * temp2 * x7thm1 * sin2u;
+    double xnode = nodep + 1.5 * temp2 * cosip * sin2u;
+    double xinc = xincp + 1.5 * temp2 * cosip * sinip * cos2u;
+    double mvt = rdotl - nm * temp1 * x1mth2 * sin2u / XKE;
+    double rvdot = rvdotl + nm * temp1 * (x1mth2 * cos2u + 1.5 * con41) / XKE;
+
+
+    // orientation vectors
+    double sinsu = Math.sin(su);
+    double cossu = Math.cos(su);
+    double snod = Math.sin(xnode);
+    double cnod = Math.cos(xnode);
+    double sini = Math.sin(xinc);
+    double cosi = Math.cos(xinc);
+    double xmx = -snod * cosi;
+    double xmy = cnod * cosi;
+    double ux = xmx * sinsu + cnod * cossu;
+    double uy = xmy * sinsu + snod * cossu;
+    double uz = sini * sinsu;
+    double vx = xmx * cossu - cnod * sinsu;
+    double vy = xmy * cossu - snod * sinsu;
+    double vz = sini * cossu;
+
+
+    // position and velocity, failing if the satellite has decayed
+    if (mrt < 1.0) {
+
+      return fail(state, offset);
+    }
+
+    state[offset] = mrt * ux * EARTH_RADIUS_KILOMETERS;
+    state[offset + 1] = mrt * uy * EARTH_RADIUS_KILOMETERS;
+    state[offset + 2] = mrt * uz * EARTH_RADIUS_KILOMETERS;
+    state[offset + 3] = (mvt * ux + rvdot * vx) * VELOCITY_KILOMETERS_PER_SECOND;
+    state[offset + 4] = (mvt * uy + rvdot * vy) * VELOCITY_KILOMETERS_PER_SECOND;
+    state[offset + 5] = (mvt * uz + rvdot * vz) * VELOCITY_KILOMETERS_PER_SECOND;
+
+    return true;
+  }
+
+
+  @Override
+  public String toString() {
+
+    return "Sgp4Propagator(catalogNumber=" + catalogNumber + ", deepSpace=" + deepSpace + ")";
+  }
+
+
+  private static boolean fail(double[] state, int offset) {
+
+    for (int index = offset; index < offset + STATE_SIZE; index++) {
+
+      state[index] = Double.NaN;
+    }
+
+    return false;
+  }
+
+
+  /**
+   * Computes the Greenwich mean sidereal time in radians (IAU-82)
+   */
+  private static double greenwichSiderealTime(double julianDate) {
+
+    double tut1 = (julianDate - 2451545.0) / 36525.0;
+    double temp = -6.2e-6 * tut1 * tut1 * tut1 + 0.093104 * tut1 * tut1 + (876600.0 * 3600 + 8640184.812866) * tut1 + 67310.54841; // seconds
+    temp = (temp * DEGREES_TO_RADIANS / 240.0) % TWO_PI;
+
+    return (temp < 0.0 ? temp + TWO_PI : temp);
+  }
+
+
+  /**
+   * The deep-space constants of an element set (the "dscom" and "dsinit" routines of the reference implementation)
+   */
+  private static class DeepSpaceTerms {
+
+    private static final double ZSINIS = 0.39785416;
+    private static final double ZCOSIS = 0.91744867;
+    private static final double ZCOSGS = 0.1945905;
+    private static final double ZSINGS = -0.98088458;
+    private static final double C1SS = 2.9864797e-6;
+    private static final double C1L = 4.7968065e-7;
+    private static final double Q22 = 1.7891679e-6;
+    private static final double Q31 = 2.1460748e-6;
+    private static final double Q33 = 2.2123015e-7;
+    private static final double ROOT22 = 1.7891679e-6;
+    private static final double ROOT44 = 7.3636953e-9;
+    private static final double ROOT54 = 2.1765803e-9;
+    private static final double ROOT32 = 3.7393792e-7;
+    private static final double ROOT52 = 1.1428639e-7;
+
+    private int irez;
+    private double e3, ee2, peo, pgho, pho, pinco, plo, se2, se3, sgh2, sgh3, sgh4, sh2, sh3, si2, si3, sl2, sl3, sl4;
+    private double xgh2, xgh3, xgh4, xh2, xh3, xi2, xi3, xl2, xl3, xl4, zmol, zmos;
+    private double d2201, d2211, d3210, d3222, d4410, d4422, d5220, d5232, d5421, d5433;
+    private double dedt, didt, dmdt, dnodt, domdt, del1, del2, del3, xfact, xlamo;
+
+
+    private DeepSpaceTerms(double epoch, Sgp4Propagator satellite, double eccsq, double xpidot) {
+
+      // the "dscom" routine, at the epoch
+      double np = satellite.noUnkozai;
+      double em = satellite.ecco;
+      double snodm = Math.sin(satellite.nodeo);
+      double cnodm = Math.cos(satellite.nodeo);
+      double sinomm = Math.sin(satellite.argpo);
+      double cosomm = Math.cos(satellite.argpo);
+      double sinim = Math.sin(satellite.inclo);
+      double cosim = Math.cos(satellite.inclo);
+      double emsq = em * em;
+      double betasq = 1.0 - emsq;
+      double rtemsq = Math.sqrt(betasq);
+
+      double day = epoch + 18261.5;
+      double xnodce = (4.5236020 - 9.2422029e-4 * day) % TWO_PI;
+      double stem = Math.sin(xnodce);
+      double ctem = Math.cos(xnodce);
+      double zcosil = 0.91375164 - 0.03568096 * ctem;
+      double zsinil = Math.sqrt(1.0 - zcosil * zcosil);
+      double zsinhl = 0.089683511 * stem / zsinil;
+      double zcoshl = Math.sqrt(1.0 - zsinhl * zsinhl);
+      double gam = 5.8351514 + 0.0019443680 * day;
+      double zx = 0.39785416 * stem / zsinil;
+      double zy = zcoshl * ctem + 0.91744867 * zsinhl * stem;
+      zx = Math.atan2(zx, zy);
+      zx = gam + zx - xnodce;
+      double zcosgl = Math.cos(zx);
+      double zsingl = Math.sin(zx);
+
+      double zcosg = ZCOSGS;
+      double zsing = ZSINGS;
+      double zcosi = ZCOSIS;
+      double zsini = ZSINIS;
+      double zcosh = cnodm;
+      double zsinh = snodm;
+      double cc = C1SS;
+      double xnoi = 1.0 / np;
+
+      double s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+      double ss1 = 0, ss2 = 0, ss3 = 0, ss4 = 0, ss5 = 0, ss6 = 0, ss7 = 0;
+      double z1 = 0, z2 = 0, z3 = 0, z11 = 0, z12 = 0, z13 = 0, z21 = 0, z22 = 0, z23 = 0, z31 = 0, z32 = 0, z33 = 0;
+      double sz1 = 0, sz2 = 0, sz3 = 0, sz11 = 0, sz12 = 0, sz13 = 0, sz21 = 0, sz22 = 0, sz23 = 0, sz31 = 0, sz32 = 0, sz33 = 0;
+
+      for (int lsflg = 1; lsflg <= 2; lsflg++) {
+
+        // the solar terms, then the lunar terms
+        double a1 = zcosg * zcosh + zsing * zcosi * zsinh;
+        double a3 = -zsing * zcosh + zcosg * zcosi * zsinh;
+        double a7 = -zcosg * zsinh + zsing * zcosi * zcosh;
+        double a8 = zsing * zsini;
+        double a9 = zsing * zsinh + zcosg * zcosi * zcosh;
+        double a10 = zcosg * zsini;
+        double a2 = cosim * a7 + sinim * a8;
+        double a4 = cosim * a9 + sinim * a10;
+        double a5 = -sinim * a7 + cosim * a8;
+        double a6 = -sinim * a9 + cosim * a10;
+
+        double x1 = a1 * cosomm + a2 * sinomm;
+        double x2 = a3 * cosomm + a4 * sinomm;
+        double x3 = -a1 * sinomm + a2 * cosomm;
+        double x4 = -a3 * sinomm + a4 * cosomm;
+        double x5 = a5 * sinomm;
+        double x6 = a6 * sinomm;
+        double x7 = a5 * cosomm;
+        double x8 = a6 * cosomm;
+
+        z31 = 12.0 * x1 * x1 - 3.0 * x3 * x3;
+        z32 = 24.0 * x1 * x2 - 6.0 * x3 * x4;
+        z33 = 12.0 * x2 * x2 - 3.0 * x4 * x4;
+        z1 = 3.0 * (a1 * a1 + a2 * a2) + z31 * emsq;
+        z2 = 6.0 * (a1 * a3 + a2 * a4) + z32 * emsq;
+        z3 = 3.0 * (a3 * a3 + a4 * a4) + z33 * emsq;
+        z11 = -6.0 * a1 * a5 + emsq * (-24.0 * x1 * x7 - 6.0 * x3 * x5);
+        z12 = -6.0 * (a1 * a6 + a3 * a5) + emsq * (-24.0 * (x2 * x7 + x1 * x8) - 6.0 * (x3 * x6 + x4 * x5));
+        z13 = -6.0 * a3 * a6 + emsq * (-24.0 * x2 * x8 - 6.0 * x4 * x6);
+        z21 = 6.0 * a2 * a5 + emsq * (24.0 * x1 * x5 - 6.0 * x3 * x7);
+        z22 = 6.0 * (a4 * a5 + a2 * a6) + emsq * (24.0 * (x2 * x5 + x1 * x6) - 6.0 * (x4 * x7 + x3 * x8));
+        z23 = 6.0 * a4 * a6 + emsq * (24.0 * x2 * x6 - 6.0 * x4 * x8);
+        z1 = z1 + z1 + betasq * z31;
+        z2 = z2 + z2 + betasq * z32;
+        z3 = z3 + z3 + betasq * z33;
+        s3 = cc * xnoi;
+        s2 = -0.5 * s3 / rtemsq;
+        s4 = s3 * rtemsq;
+        s1 = -15.0 * em * s4;
+        s5 = x1 * x3 + x2 * x4;
+        s6 = x2 * x3 + x1 * x4;
+        s7 = x2 * x4 - x1 * x3;
+
+        if (lsflg == 1) {
+
+          ss1 = s1;
+          ss2 = s2;
+          ss3 = s3;
+          ss4 = s4;
+          ss5 = s5;
+          ss6 = s6;
+          ss7 = s7;
+          sz1 = z1;
+          sz2 = z2;
+          sz3 = z3;
+          sz11 = z11;
+          sz12 = z12;
+          sz13 = z13;
+          sz21 = z21;
+          sz22 = z22;
+          sz23 = z23;
+          sz31 = z31;
+          sz32 = z32;
+          sz33 = z33;
+          zcosg = zcosgl;
+          zsing = zsingl;
+          zcosi = zcosil;
+          zsini = zsinil;
+          zcosh = zcoshl * cnodm + zsinhl * snodm;
+          zsinh = snodm * zcoshl - cnodm * zsinhl;
+          cc = C1L;
+        }
+      }
+
+      zmol = (4.7199672 + 0.22997150 * day - gam) % TWO_PI;
+      zmos = (6.2565837 + 0.017201977 * day) % TWO_PI;
+
+      se2 = 2.0 * ss1 * ss6;
+      se3 = 2.0 * ss1 * ss7;
+      si2 = 2.0 * ss2 * sz12;
+      si3 = 2.0 * ss2 * (sz13 - sz11);
+      sl2 = -2.0 * ss3 * sz2;
+      sl3 = -2.0 * ss3 * (sz3 - sz1);
+      sl4 = -2.0 * ss3 * (-21.0 - 9.0 * emsq) * ZES;
+      sgh2 = 2.0 * ss4 * sz32;
+      sgh3 = 2.0 * ss4 * (sz33 - sz31);
+      sgh4 = -18.0 * ss4 * ZES;
+      sh2 = -2.0 * ss2 * sz22;
+      sh3 = -2.0 * ss2 * (sz23 - sz21);
+
+      ee2 = 2.0 * s1 * s6;
+      e3 = 2.0 * s1 * s7;
+      xi2 = 2.0 * s2 * z12;
+      xi3 = 2.0 * s2 * (z13 - z11);
+      xl2 = -2.0 * s3 * z2;
+      xl3 = -2.0 * s3 * (z3 - z1);
+      xl4 = -2.0 * s3 * (-21.0 - 9.0 * emsq) * ZEL;
+      xgh2 = 2.0 * s4 * z32;
+      xgh3 = 2.0 * s4 * (z33 - z31);
+      xgh4 = -18.0 * s4 * ZEL;
+      xh2 = -2.0 * s2 * z22;
+      xh3 = -2.0 * s2 * (z23 - z21);
+
+
+      // the "dsinit" routine, at the epoch
+      double nm = np;
+      double inclm = satellite.inclo;
+
+      if (nm < 0.0052359877 && nm > 0.0034906585) {
+
+        irez = 1;
+
+      } else if (nm >= 8.26e-3 && nm <= 9.24e-3 && em >= 0.5) {
+
+        irez = 2;
+      }
+
+      double ses = ss1 * ZNS * ss5;
+      double sis = ss2 * ZNS * (sz11 + sz13);
+      double sls = -ZNS * ss3 * (sz1 + sz3 - 14.0 - 6.0 * emsq);
+      double sghs = ss4 * ZNS * (sz31 + sz33 - 6.0);
+      double shs = -ZNS * ss2 * (sz21 + sz23);
+
+      if (inclm < 5.2359877e-2 || inclm > Math.PI - 5.2359877e-2) {
+
+        shs = 0.0;
+      }
+
+      if (sinim != 0.0) {
+
+        shs = shs / sinim;
+      }
+
+      double sgs = sghs - cosim * shs;
+
+      dedt = ses + s1 * ZNL * s5;
+      didt = sis + s2 * ZNL * (z11 + z13);
+      dmdt = sls - ZNL * s3 * (z1 + z3 - 14.0 - 6.0 * emsq);
+      double sghl = s4 * ZNL * (z31 + z33 - 6.0);
+      double shll = -ZNL * s2 * (z21 + z23);
+
+      if (inclm < 5.2359877e-2 || inclm > Math.PI - 5.2359877e-2) {
+
+        shll = 0.0;
+      }
+
+      domdt = sgs + sghl;
+      dnodt = shs;
+
+      if (sinim != 0.0) {
+
+        domdt = domdt - cosim / sinim * shll;
+        dnodt = dnodt + shll / sinim;
+      }
+
+      if (irez != 0) {
+
+        double theta = satellite.gsto % TWO_PI;
+        double aonv = Math.pow(nm / XKE, X2O3);
+
+        if (irez == 2) {
+
+          // geopotential resonance for 12-hour orbits
+          double cosisq = cosim * cosim;
+          double eoc = em * emsq;
+          double g201 = -0.306 - (em - 0.64) * 0.440;
+          double g211, g310, g322, g410, g422, g520, g521, g532, g533;
+
+          if (em <= 0.65) {
+
+            g211 = 3.616 - 13.2470 * em + 16.2900 * emsq;
+            g310 = -19.302 + 117.3900 * em - 228.4190 * emsq + 156.5910 * eoc;
+            g322 = -18.9068 + 109.7927 * em - 214.6334 * emsq + 146.5816 * eoc;
+            g410 = -41.122 + 242.6940 * em - 471.0940 * emsq + 313.9530 * eoc;
+            g422 = -146.407 + 841.8800 * em - 1629.014 * emsq + 1083.4350 * eoc;
+            g520 = -532.114 + 3017.977 * em - 5740.032 * emsq + 3708.2760 * eoc;
+
+          } else {
+
+            g211 = -72.099 + 331.819 * em - 508.738 * emsq + 266.724 * eoc;
+            g310 = -346.844 + 1582.851 * em - 2415.925 * emsq + 1246.113 * eoc;
+            g322 = -342.585 + 1554.908 * em - 2366.899 * emsq + 1215.972 * eoc;
+            g410 = -1052.797 + 4758.686 * em - 7193.992 * emsq + 3651.957 * eoc;
+            g422 = -3581.690 + 16178.110 * em - 24462.770 * emsq + 12422.520 * eoc;
+            g520 = (em > 0.715 ? -5149.66 + 29936.92 * em - 54087.36 * emsq + 31324.56 * eoc : 1464.74 - 4664.75 * em + 3763.64 * emsq);
+          }
+
+          if (em < 0.7) {
+
+            g533 = -919.22770 + 4988.6100 * em - 9064.7700 * emsq + 5542.21 * eoc;
+            g521 = -822.71072 + 4568.6173 * em - 8491.4146 * emsq + 5337.524 * eoc;
+            g532 = -853.66600 + 4690.2500 * em - 8624.7700 * emsq + 5341.4 * eoc;
+
+          } else {
+
+            g533 = -37995.780 + 161616.52 * em - 229838.20 * emsq + 109377.94 * eoc;
+            g521 = -51752.104 + 218913.95 * em - 309468.16 * emsq + 146349.42 * eoc;
+            g532 = -40023.880 + 170470.89 * em - 242699.48 * emsq + 115605.82 * eoc;
+          }
+
+          double sini2 = sinim * sinim;
+          double f220 = 0.75 * (1.0 + 2.0 * cosim + cosisq);
+          double f221 = 1.5 * sini2;
+          double f321 = 1.875 * sinim * (1.0 - 2.0 * cosim - 3.0 * cosisq);
+          double f322 = -1.875 * sinim * (1.0 + 2.0 * cosim - 3.0 * cosisq);
+          double f441 = 35.0 * sini2 * f220;
+          double f442 = 39.3750 * sini2 * sini2;
+          double f522 = 9.84375 * sinim * (sini2 * (1.0 - 2.0 * cosim - 5.0 * cosisq) + 0.33333333 * (-2.0 + 4.0 * cosim + 6.0 * cosisq));
+          double f523 = sinim * (4.92187512 * sini2 * (-2.0 - 4.0 * cosim + 10.0 * cosisq) + 6.56250012 * (1.0 + 2.0 * cosim - 3.0 * cosisq));
+          double f542 = 29.53125 * sinim * (2.0 - 8.0 * cosim + cosisq * (-12.0 + 8.0 * cosim + 10.0 * cosisq));
+          double f543 = 29.53125 * sinim * (-2.0 - 8.0 * cosim + cosisq * (12.0 + 8.0 * cosim - 10.0 * cosisq));
+          double xno2 = nm * nm;
+          double ainv2 = aonv * aonv;
+          double temp1 = 3.0 * xno2 * ainv2;
+          double temp = temp1 * ROOT22;
+          d2201 = temp * f220 * g201;
+          d2211 = temp * f221 * g211;
+          temp1 = temp1 * aonv;
+          temp = temp1 * ROOT32;
+          d3210 = temp * f321 * g310;
+          d3222 = temp * f322 * g322;
+          temp1 = temp1 * aonv;
+          temp = 2.0 * temp1 * ROOT44;
+          d4410 = temp * f441 * g410;
+          d4422 = temp * f442 * g422;
+          temp1 = temp1 * aonv;
+          temp = temp1 * ROOT52;
+          d5220 = temp * f522 * g520;
+          d5232 = temp * f523 * g532;
+          temp = 2.0 * temp1 * ROOT54;
+          d5421 = temp * f542 * g521;
+          d5433 = temp * f543 * g533;
+          xlamo = (satellite.mo + satellite.nodeo + satellite.nodeo - theta - theta) % TWO_PI;
+          xfact = satellite.mdot + dmdt + 2.0 * (satellite.nodedot + dnodt - RPTIM) - satellite.noUnkozai;
+
+        } else {
+
+          // synchronous resonance
+          double g200 = 1.0 + emsq * (-2.5 + 0.8125 * emsq);
+          double g310 = 1.0 + 2.0 * emsq;
+          double g300 = 1.0 + emsq * (-6.0 + 6.60937 * emsq);
+          double f220 = 0.75 * (1.0 + cosim) * (1.0 + cosim);
+          double f311 = 0.9375 * sinim * sinim * (1.0 + 3.0 * cosim) - 0.75 * (1.0 + cosim);
+          double f330 = 1.0 + cosim;
+          f330 = 1.875 * f330 * f330 * f330;
+          del1 = 3.0 * nm * nm * aonv * aonv;
+          del2 = 2.0 * del1 * f220 * g200 * Q22;
+          del3 = 3.0 * del1 * f330 * g300 * Q33 * aonv;
+          del1 = del1 * f311 * g310 * Q31 * aonv;
+          xlamo = (satellite.mo + satellite.nodeo + satellite.argpo - theta) % TWO_PI;
+          xfact = satellite.mdot + xpidot - RPTIM + dmdt + domdt + dnodt - satellite.noUnkozai;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.screening;
+
+import java.util.Arrays;
+import com.stevenpaligo.spacetrack.client.propagation.EphemerisGrid;
+
+/**
+ * A uniform grid of cubic cells over the positions of a set of objects at one time, for finding the pairs of objects that are near each other without comparing every pair. The cells are kept
+ * in an open-addressing hash table, with the objects in each cell linked through an array, and the arrays are reused when the grid is rebuilt.
+ * 
+ * @author Steven Paligo
+ */
+class CellGrid {
+
+  private static final int OFFSET = 1 << 20; // cell coordinates are stored in 21 bits each
+  private static final long EMPTY = -1L;
+
+  // the 13 neighboring cells that follow a cell, so that each pair of neighboring cells is visited once
+  private static final int[][] FORWARD_NEIGHBORS = { {1, 0, 0}, {-1, 1, 0}, {0, 1, 0}, {1, 1, 0}, {-1, -1, 1}, {0, -1, 1}, {1, -1, 1}, {-1, 0, 1}, {0, 0, 1}, {1, 0, 1}, {-1, 1, 1},
+      {0, 1, 1}, {1, 1, 1}};
+
+
+  /**
+   * Receives a pair of objects that are in the same or neighboring cells
+   */
+  interface PairVisitor {
+
+    void visit(int object1, int object2);
+  }
+
+
+  private long[] keys = new long[0];
+  private int[] heads = new int[0];
+  private int[] next = new int[0];
+  private long[] objectKeys = new long[0];
+  private int mask;
+
+
+  /**
+   * Places the propagated objects of a grid into cells
+   * 
+   * @param states The states at one time
+   * @param cellSize The size of a cell in kilometers, which must be at least the largest distance of interest
+   */
+  void build(EphemerisGrid states, double cellSize) {
+
+    int count = states.getSatelliteCount();
+    int capacity = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+
+    if (keys.length < capacity) {
+
+      keys = new long[capacity];
+      heads = new int[capacity];
+    }
+
+    if (next.length < count) {
+
+      next = new int[count];
+      objectKeys = new long[count];
+    }
+
+    mask = capacity - 1;
+    Arrays.fill(keys, 0, capacity, EMPTY);
+
+    double[] positions = states.getPositions();
+    double scale = 1.0 / cellSize;
+
+    for (int object = 0; object < count; object++) {
+
+      int index = 3 * object;
+
+      if (Double.isNaN(positions[index])) {
+
+        objectKeys[object] = EMPTY;
+        continue;
+      }
+
+      long key = key(cell(positions[index] * scale), cell(positions[index + 1] * scale), cell(positions[index + 2] * scale));
+      int slot = find(key);
+
+      if (keys[slot] == EMPTY) {
+
+        keys[slot] = key;
+        heads[slot] = -1;
+      }
+
+      objectKeys[object] = key;
+      next[object] = heads[slot];
+      heads[slot] = object;
+    }
+  }
+
+
+  /**
+   * Visits every pair of objects in the same or neighboring cells once
+   * 
+   * @param count The number of objects the grid was built with
+   */
+  void visitPairs(int count, PairVisitor visitor) {
+
+    for (int object = 0; object < count; object++) {
+
+      long key = objectKeys[object];
+
+      if (key == EMPTY) {
+
+        continue;
+      }
+
+
+      // the objects after this one in its own cell
+      for (int other = next[object]; other != -1; other = next[other]) {
+
+        visitor.visit(object, other);
+      }
+
+
+      // every object in the following neighbors, if this object heads its cell's list
+      if (heads[find(key)] != object) {
+
+        continue;
+      }
+
+      int x = (int) (key >>> 42) - OFFSET;
+      int y = (int) ((key >>> 21) & 0x1FFFFF) - OFFSET;
+      int z = (int) (key & 0x1FFFFF) - OFFSET;
+
+      for (int[] offset : FORWARD_NEIGHBORS) {
+
+        long neighborKey = key(x + offset[0], y + offset[1], z + offset[2]);
+        int slot = find(neighborKey);
+
+        if (keys[slot] == EMPTY) {
+
+          continue;
+        }
+
+        for (int mine = object; mine != -1; mine = next[mine]) {
+
+          for (int other = heads[slot]; other != -1; other = next[other]) {
+
+            visitor.visit(mine, other);
+          }
+        }
+      }
+    }
+  }
+
+
+  private static int cell(double coordinate) {
+
+    return (int) Math.max(-OFFSET + 1, Math.min(OFFSET - 2, Math.floor(coordinate)));
+  }
+
+
+  private static long key(int x, int y, int z) {
+
+    return ((long) (x + OFFSET) << 42) | ((long) (y + OFFSET) << 21) | (z + OFFSET);
+  }
+
+
+  /**
+   * Finds the slot of a key, or the empty slot where it belongs
+   */
+  private int find(long key) {
+
+    int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+
+    while (keys[slot] != EMPTY && keys[slot] != key) {
+
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.screening;
+
+import java.time.Instant;
+import lombok.Getter;
+
+/**
+ * A close approach between two catalog objects found by a {@link ConjunctionScreener}
+ * 
+ * @author Steven Paligo
+ */
+@Getter
+public class Conjunction {
+
+  /**
+   * The catalog number of the first object: the primary object when screening primaries, otherwise the lower catalog number
+   */
+  private final int catalogNumber1;
+
+  private final int catalogNumber2;
+
+  /**
+   * The time of closest approach in microseconds since 1970-01-01T00:00:00Z
+   */
+  private final long timeOfClosestApproachMicros;
+
+  private final double missDistanceKilometers;
+
+  private final double relativeSpeedKilometersPerSecond;
+
+
+  Conjunction(int catalogNumber1, int catalogNumber2, long timeOfClosestApproachMicros, double missDistanceKilometers, double relativeSpeedKilometersPerSecond) {
+
+    this.catalogNumber1 = catalogNumber1;
+    this.catalogNumber2 = catalogNumber2;
+    this.timeOfClosestApproachMicros = timeOfClosestApproachMicros;
+    this.missDistanceKilometers = missDistanceKilometers;
+    this.relativeSpeedKilometersPerSecond = relativeSpeedKilometersPerSecond;
+  }
+
+
+  public Instant getTimeOfClosestApproach() {
+
+    return Instant.ofEpochSecond(Math.floorDiv(timeOfClosestApproachMicros, 1_000_000L), Math.floorMod(timeOfClosestApproachMicros, 1_000_000L) * 1_000L);
+  }
+
+
+  @Override
+  public String toString() {
+
+    return "Conjunction(catalogNumber1=" + catalogNumber1 + ", catalogNumber2=" + catalogNumber2 + ", timeOfClosestApproach=" + getTimeOfClosestApproach()
+        + ", missDistanceKilometers=" + missDistanceKilometers + ", relativeSpeedKilometersPerSecond=" + relativeSpeedKilometersPerSecond + ")";
+  }
+}
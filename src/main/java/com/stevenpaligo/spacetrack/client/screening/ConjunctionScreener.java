@@ -0,0 +1,627 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.screening;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import com.stevenpaligo.spacetrack.client.propagation.CatalogPropagator;
+import com.stevenpaligo.spacetrack.client.propagation.EphemerisGrid;
+import com.stevenpaligo.spacetrack.client.propagation.Sgp4Propagator;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Screens a catalog of element sets (e.g. the results of a {@link com.stevenpaligo.spacetrack.client.LatestTleQuery}) for close approaches between its objects over a window of time, without
+ * comparing every pair of objects at every time:
+ * 
+ * <ol>
+ * <li>Objects whose apogee/perigee shells, padded by the threshold, don't overlap the shell of any object they're screened against are dropped before anything is propagated.</li>
+ * <li>At each time step, the remaining objects are propagated and placed in a uniform grid whose cells are as large as the distance two objects can close within half a step, so only objects in
+ * the same or neighboring cells are compared.</li>
+ * <li>Nearby pairs are checked against the apogee/perigee filter and an orbital-plane filter (the orbits must pass within the threshold where their planes intersect) before the time of closest
+ * approach is found by searching for the zero of their range rate within the step.</li>
+ * </ol>
+ * 
+ * <p>
+ * The time steps are screened in parallel on a fork-join pool. Each close approach is reported once, by the step nearest its time of closest approach, and the results are sorted by time.
+ * </p>
+ * 
+ * <pre>
+ * ElementSetColumns catalog = new LatestTleQuery().setSession(session).addPredicate(new Equal&lt;&gt;(LatestTleQueryField.ORDINAL, 1)).asCompact().executeColumns();
+ * List&lt;Conjunction&gt; conjunctions = new ConjunctionScreener().setThresholdKilometers(5.0).screen(catalog, start, start.plus(Duration.ofDays(1)));
+ * </pre>
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+@Getter
+public class ConjunctionScreener {
+
+  public static final double DEFAULT_THRESHOLD_KILOMETERS = 5.0;
+
+  public static final double DEFAULT_PAD_KILOMETERS = 10.0;
+
+  public static final Duration DEFAULT_STEP = Duration.ofSeconds(30);
+
+  public static final Duration MAX_STEP = Duration.ofMinutes(10);
+
+
+  private static final int STEPS_PER_TASK = 4;
+  private static final long TIME_TOLERANCE_MICROS = 1_000L;
+  private static final int MAX_ITERATIONS = 60;
+
+
+  /**
+   * The miss distance at or below which close approaches are reported
+   */
+  private double thresholdKilometers = DEFAULT_THRESHOLD_KILOMETERS;
+
+  /**
+   * The margin added to the filters and the grid for the differences between the mean elements they use and the propagated positions, and for the curvature of relative motion within a step
+   */
+  private double padKilometers = DEFAULT_PAD_KILOMETERS;
+
+  private Duration step = DEFAULT_STEP;
+
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+
+  /**
+   * Sets the miss distance at or below which close approaches are reported (the default is {@link #DEFAULT_THRESHOLD_KILOMETERS})
+   * 
+   * @param thresholdKilometers A positive distance
+   * @return This screener, for use in the builder pattern
+   * @throws IllegalArgumentException The threshold is not positive
+   */
+  public ConjunctionScreener setThresholdKilometers(double thresholdKilometers) {
+
+    // validation
+    if ((thresholdKilometers > 0.0 && Double.isFinite(thresholdKilometers)) == false) {
+
+      throw new IllegalArgumentException("The threshold is not positive: " + thresholdKilometers);
+    }
+
+
+    this.thresholdKilometers = thresholdKilometers;
+
+    return this;
+  }
+
+
+  /**
+   * Sets the margin added to the filters and the grid (the default is {@link #DEFAULT_PAD_KILOMETERS})
+   * 
+   * @param padKilometers A non-negative distance
+   * @return This screener, for use in the builder pattern
+   * @throws IllegalArgumentException The pad is negative
+   */
+  public ConjunctionScreener setPadKilometers(double padKilometers) {
+
+    // validation
+    if ((padKilometers >= 0.0 && Double.isFinite(padKilometers)) == false) {
+
+      throw new IllegalArgumentException("The pad is negative: " + padKilometers);
+    }
+
+
+    this.padKilometers = padKilometers;
+
+    return this;
+  }
+
+
+  /**
+   * Sets the time between the steps at which the catalog is propagated (the default is {@link #DEFAULT_STEP}). Shorter steps make smaller grid cells, and so fewer pairs to compare per step.
+   * 
+   * @param step A non-null, positive duration of at most {@link #MAX_STEP}
+   * @return This screener, for use in the builder pattern
+   * @throws IllegalArgumentException The step is not positive or is longer than the maximum
+   */
+  public ConjunctionScreener setStep(@NonNull Duration step) {
+
+    // validation
+    if (step.isNegative() || step.isZero() || step.toNanos() < 1_000L) {
+
+      throw new IllegalArgumentException("The step is not positive: " + step);
+
+    } else if (step.compareTo(MAX_STEP) > 0) {
+
+      throw new IllegalArgumentException("The step is longer than " + MAX_STEP + ": " + step);
+    }
+
+
+    this.step = step;
+
+    return this;
+  }
+
+
+  /**
+   * Sets the pool that the time steps are screened on (the default is the common pool)
+   * 
+   * @param pool The non-null pool
+   * @return This screener, for use in the builder pattern
+   */
+  public ConjunctionScreener setPool(@NonNull ForkJoinPool pool) {
+
+    this.pool = pool;
+
+    return this;
+  }
+
+
+  /**
+   * Screens every object in a catalog against every other object
+   * 
+   * @param catalog The non-null catalog, which is read only during the call
+   * @param start The non-null start of the window
+   * @param end The non-null end of the window
+   * @return The close approaches within the window, sorted by time
+   * @throws IllegalArgumentException The end is before the start
+   */
+  public List<Conjunction> screen(@NonNull ElementSetColumns catalog, @NonNull Instant start, @NonNull Instant end) {
+
+    return screenPrimaries(catalog, null, start, end);
+  }
+
+
+  /**
+   * Screens a set of primary objects (e.g. active satellites) against every object in a catalog, including each other
+   * 
+   * @param catalog The non-null catalog, which is read only during the call
+   * @param primaryCatalogNumbers The non-null catalog numbers of the primary objects, each of which must be in the catalog
+   * @param start The non-null start of the window
+   * @param end The non-null end of the window
+   * @return The close approaches within the window, sorted by time
+   * @throws IllegalArgumentException The end is before the start or a primary object is not in the catalog
+   */
+  public List<Conjunction> screen(@NonNull ElementSetColumns catalog, @NonNull int[] primaryCatalogNumbers, @NonNull Instant start, @NonNull Instant end) {
+
+    return screenPrimaries(catalog, primaryCatalogNumbers, start, end);
+  }
+
+
+  /**
+   * Screens the catalog against the primary objects, or every object against every other object if the primary objects are null
+   */
+  private List<Conjunction> screenPrimaries(ElementSetColumns catalog, int[] primaryCatalogNumbers, Instant start, Instant end) {
+
+    // validation
+    if (end.isBefore(start)) {
+
+      throw new IllegalArgumentException("The end is before the start: " + start + " to " + end);
+    }
+
+
+    // find the primary rows
+    boolean[] primaryRows = null;
+
+    if (primaryCatalogNumbers != null) {
+
+      int[] sorted = IntStream.of(primaryCatalogNumbers).distinct().sorted().toArray();
+      boolean[] found = new boolean[sorted.length];
+      primaryRows = new boolean[catalog.size()];
+
+      for (int row = 0; row < catalog.size(); row++) {
+
+        int index = Arrays.binarySearch(sorted, catalog.getCatalogNumber()[row]);
+
+        if (index >= 0) {
+
+          primaryRows[row] = true;
+          found[index] = true;
+        }
+      }
+
+      for (int index = 0; index < sorted.length; index++) {
+
+        if (found[index] == false) {
+
+          throw new IllegalArgumentException("The primary object is not in the catalog: " + sorted[index]);
+        }
+      }
+    }
+
+
+    // select and initialize the objects that pass the apogee/perigee filter
+    Screening screening = new Screening(catalog, primaryRows, toMicros(start), toMicros(end));
+
+    if (screening.size() < 2) {
+
+      return Collections.emptyList();
+    }
+
+
+    // screen the steps in parallel
+    int stepCount = (int) Math.min(Integer.MAX_VALUE - 1L, (screening.endMicros - screening.startMicros + screening.stepMicros - 1) / screening.stepMicros) + 1;
+    List<Conjunction> conjunctions = pool.invoke(new StepTask(screening, 0, stepCount));
+
+    conjunctions.sort(Comparator.comparingLong(Conjunction::getTimeOfClosestApproachMicros).thenComparingInt(Conjunction::getCatalogNumber1)
+        .thenComparingInt(Conjunction::getCatalogNumber2));
+
+    log.debug("Screened {} of {} objects over {} steps and found {} conjunctions", screening.size(), catalog.size(), stepCount, conjunctions.size());
+
+    return conjunctions;
+  }
+
+
+  private static long toMicros(Instant time) {
+
+    return Math.addExact(Math.multiplyExact(time.getEpochSecond(), 1_000_000L), time.getNano() / 1_000);
+  }
+
+
+  /**
+   * The objects of one screening and the settings it started with
+   */
+  private class Screening {
+
+    private final long startMicros;
+    private final long endMicros;
+    private final long stepMicros = step.toNanos() / 1_000L;
+    private final double threshold = thresholdKilometers;
+    private final double margin = thresholdKilometers + padKilometers;
+
+    private final ElementSetColumns columns = new ElementSetColumns(0);
+    private final boolean[] primary;
+    private final Sgp4Propagator[] propagators;
+    private final OrbitGeometry geometry;
+    private final CatalogPropagator catalogPropagator;
+
+
+    private Screening(ElementSetColumns catalog, boolean[] primaryRows, long startMicros, long endMicros) {
+
+      this.startMicros = startMicros;
+      this.endMicros = endMicros;
+
+
+      // drop objects that can't be propagated
+      ElementSetColumns propagatable = new ElementSetColumns(catalog.size());
+      List<Sgp4Propagator> propagatableList = new ArrayList<>(catalog.size());
+      List<Boolean> propagatablePrimaries = new ArrayList<>(catalog.size());
+
+      for (int row = 0; row < catalog.size(); row++) {
+
+        try {
+
+          propagatableList.add(Sgp4Propagator.of(catalog, row));
+          propagatable.addRow(catalog, row);
+          propagatablePrimaries.add(primaryRows != null && primaryRows[row]);
+
+        } catch (IllegalArgumentException e) {
+
+          log.debug("Satellite {} can't be propagated: {}", catalog.getCatalogNumber()[row], e.getMessage());
+        }
+      }
+
+
+      // drop objects whose shells don't overlap the shell of any object they're screened against
+      boolean[] keep = selectByShell(propagatable, (primaryRows == null ? null : propagatablePrimaries));
+      List<Sgp4Propagator> kept = new ArrayList<>();
+      List<Boolean> keptPrimaries = new ArrayList<>();
+
+      for (int row = 0; row < propagatable.size(); row++) {
+
+        if (keep[row]) {
+
+          columns.addRow(propagatable, row);
+          kept.add(propagatableList.get(row));
+          keptPrimaries.add(propagatablePrimaries.get(row));
+        }
+      }
+
+      this.propagators = kept.toArray(new Sgp4Propagator[0]);
+      this.primary = (primaryRows == null ? null : new boolean[propagators.length]);
+
+      for (int row = 0; primary != null && row < primary.length; row++) {
+
+        primary[row] = keptPrimaries.get(row);
+      }
+
+      this.geometry = new OrbitGeometry(columns);
+      this.catalogPropagator = new CatalogPropagator(columns, pool, Integer.MAX_VALUE);
+    }
+
+
+    private int size() {
+
+      return propagators.length;
+    }
+
+
+    /**
+     * Applies the apogee/perigee filter to whole objects, sweeping the objects in order of perigee
+     */
+    private boolean[] selectByShell(ElementSetColumns candidates, List<Boolean> primaries) {
+
+      OrbitGeometry shells = new OrbitGeometry(candidates);
+      int size = candidates.size();
+      boolean[] keep = new boolean[size];
+      Integer[] order = new Integer[size];
+
+      for (int row = 0; row < size; row++) {
+
+        order[row] = row;
+        keep[row] = shells.isUnfiltered(row) || (primaries != null && primaries.get(row));
+
+
+        // an object without a shell could approach any other object
+        if (shells.isUnfiltered(row) && (primaries == null || primaries.get(row))) {
+
+          Arrays.fill(keep, true);
+          return keep;
+        }
+      }
+
+      Arrays.sort(order, Comparator.comparingDouble(shells::getPerigeeRadius));
+
+
+      // an object is kept if it overlaps an object it's screened against
+      double maxApogee = Double.NEGATIVE_INFINITY; // of the earlier objects that others are screened against
+      double maxPrimaryApogee = Double.NEGATIVE_INFINITY;
+
+      for (int index = 0; index < size; index++) {
+
+        int row = order[index];
+        double perigee = shells.getPerigeeRadius(row) - margin;
+
+        if (primaries == null) {
+
+          keep[row] |= (perigee <= maxApogee);
+          maxApogee = Math.max(maxApogee, shells.getApogeeRadius(row));
+
+          if (index + 1 < size && shells.getPerigeeRadius(order[index + 1]) - margin <= shells.getApogeeRadius(row)) {
+
+            keep[row] = true;
+          }
+
+        } else {
+
+          keep[row] |= (perigee <= maxPrimaryApogee);
+
+          if (primaries.get(row)) {
+
+            maxPrimaryApogee = Math.max(maxPrimaryApogee, shells.getApogeeRadius(row));
+          }
+        }
+      }
+
+
+      // with primaries, also keep objects that overlap a later primary
+      if (primaries != null) {
+
+        double minPrimaryPerigee = Double.POSITIVE_INFINITY;
+
+        for (int index = size - 1; index >= 0; index--) {
+
+          int row = order[index];
+          keep[row] |= (minPrimaryPerigee - margin <= shells.getApogeeRadius(row));
+
+          if (primaries.get(row)) {
+
+            minPrimaryPerigee = Math.min(minPrimaryPerigee, shells.getPerigeeRadius(row));
+          }
+        }
+      }
+
+      return keep;
+    }
+
+
+    /**
+     * Screens one step: the time of the step, covering the half step on either side of it
+     */
+    private void screenStep(long time, CellGrid grid, List<Conjunction> conjunctions) {
+
+      EphemerisGrid states = catalogPropagator.propagate(time);
+      double[] positions = states.getPositions();
+      double[] velocities = states.getVelocities();
+      double stepSeconds = stepMicros / 1_000_000.0;
+
+
+      // size the cells by the distance the fastest pair could close within half a step
+      double maxSpeed = 0.0;
+
+      for (int index = 0; index < velocities.length; index += 3) {
+
+        double speed = Math.sqrt(velocities[index] * velocities[index] + velocities[index + 1] * velocities[index + 1] + velocities[index + 2] * velocities[index + 2]);
+        maxSpeed = (speed > maxSpeed ? speed : maxSpeed); // false for NaN
+      }
+
+      grid.build(states, margin + maxSpeed * stepSeconds);
+
+
+      // compare the objects in neighboring cells
+      double[] scratch = new double[4 * Sgp4Propagator.STATE_SIZE];
+
+      grid.visitPairs(size(), (object1, object2) -> {
+
+        if (primary != null && primary[object1] == false && primary[object2] == false) {
+
+          return;
+        }
+
+        int index1 = 3 * object1;
+        int index2 = 3 * object2;
+        double dx = positions[index1] - positions[index2];
+        double dy = positions[index1 + 1] - positions[index2 + 1];
+        double dz = positions[index1 + 2] - positions[index2 + 2];
+        double dvx = velocities[index1] - velocities[index2];
+        double dvy = velocities[index1 + 1] - velocities[index2 + 1];
+        double dvz = velocities[index1 + 2] - velocities[index2 + 2];
+        double reach = margin + 0.5 * stepSeconds * Math.sqrt(dvx * dvx + dvy * dvy + dvz * dvz);
+
+        if (dx * dx + dy * dy + dz * dz > reach * reach || geometry.shellsOverlap(object1, object2, margin) == false
+            || geometry.orbitPathsApproach(object1, object2, time, margin) == false) {
+
+          return;
+        }
+
+        Conjunction conjunction = findClosestApproach(object1, object2, time, scratch);
+
+        if (conjunction != null) {
+
+          conjunctions.add(conjunction);
+        }
+      });
+    }
+
+
+    /**
+     * Finds the time of closest approach of two objects within a step, where their range rate crosses from negative to positive
+     */
+    private Conjunction findClosestApproach(int object1, int object2, long time, double[] scratch) {
+
+      long lower = Math.max(time - stepMicros / 2, startMicros);
+      long upper = Math.min(time - stepMicros / 2 + stepMicros, endMicros);
+
+      if (upper <= lower) {
+
+        return null;
+      }
+
+      double lowerRate = rangeRate(object1, object2, lower, scratch);
+      double upperRate = rangeRate(object1, object2, upper, scratch);
+
+      if ((lowerRate < 0.0 && upperRate >= 0.0) == false) {
+
+        return null;
+      }
+
+
+      // regula falsi with the Illinois modification
+      int side = 0;
+
+      for (int iteration = 0; iteration < MAX_ITERATIONS && upper - lower > TIME_TOLERANCE_MICROS; iteration++) {
+
+        long middle = lower + (long) ((upper - lower) * (lowerRate / (lowerRate - upperRate)));
+        middle = Math.max(lower + 1, Math.min(upper - 1, middle));
+        double middleRate = rangeRate(object1, object2, middle, scratch);
+
+        if (Double.isNaN(middleRate)) {
+
+          return null;
+
+        } else if (middleRate < 0.0) {
+
+          lower = middle;
+          lowerRate = middleRate;
+          upperRate = (side == -1 ? 0.5 * upperRate : upperRate);
+          side = -1;
+
+        } else {
+
+          upper = middle;
+          upperRate = middleRate;
+          lowerRate = (side == 1 ? 0.5 * lowerRate : lowerRate);
+          side = 1;
+        }
+      }
+
+
+      // report the approach if it's within the threshold
+      long closest = lower + (long) ((upper - lower) * (lowerRate / (lowerRate - upperRate)));
+      rangeRate(object1, object2, closest, scratch);
+      double distance = Math.sqrt(scratch[18] * scratch[18] + scratch[19] * scratch[19] + scratch[20] * scratch[20]);
+
+      if ((distance <= threshold) == false) {
+
+        return null;
+      }
+
+      double speed = Math.sqrt(scratch[21] * scratch[21] + scratch[22] * scratch[22] + scratch[23] * scratch[23]);
+      int catalogNumber1 = columns.getCatalogNumber()[object1];
+      int catalogNumber2 = columns.getCatalogNumber()[object2];
+      boolean swap = (primary == null || primary[object1] == primary[object2] ? catalogNumber2 < catalogNumber1 : primary[object2]);
+
+      return (swap ? new Conjunction(catalogNumber2, catalogNumber1, closest, distance, speed) : new Conjunction(catalogNumber1, catalogNumber2, closest, distance, speed));
+    }
+
+
+    /**
+     * Computes the rate at which two objects are separating, leaving their relative state in the last quarter of the scratch array
+     */
+    private double rangeRate(int object1, int object2, long time, double[] scratch) {
+
+      propagators[object1].propagate(time, scratch, 0);
+      propagators[object2].propagate(time, scratch, Sgp4Propagator.STATE_SIZE);
+
+      for (int index = 0; index < Sgp4Propagator.STATE_SIZE; index++) {
+
+        scratch[18 + index] = scratch[index] - scratch[Sgp4Propagator.STATE_SIZE + index];
+      }
+
+      return scratch[18] * scratch[21] + scratch[19] * scratch[22] + scratch[20] * scratch[23];
+    }
+  }
+
+
+  /**
+   * Screens a range of steps, splitting the range in half until it's small enough
+   */
+  private static class StepTask extends RecursiveTask<List<Conjunction>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Screening screening;
+    private final int start;
+    private final int end;
+
+
+    private StepTask(Screening screening, int start, int end) {
+
+      this.screening = screening;
+      this.start = start;
+      this.end = end;
+    }
+
+
+    @Override
+    protected List<Conjunction> compute() {
+
+      if (end - start > STEPS_PER_TASK) {
+
+        int middle = (start + end) >>> 1;
+        StepTask second = new StepTask(screening, middle, end);
+        second.fork();
+
+        List<Conjunction> conjunctions = new StepTask(screening, start, middle).compute();
+        conjunctions.addAll(second.join());
+
+        return conjunctions;
+      }
+
+
+      List<Conjunction> conjunctions = new ArrayList<>();
+      CellGrid grid = new CellGrid();
+
+      for (int step = start; step < end; step++) {
+
+        screening.screenStep(screening.startMicros + step * screening.stepMicros, grid, conjunctions);
+      }
+
+      return conjunctions;
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.screening;
+
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import com.stevenpaligo.spacetrack.client.propagation.Sgp4Propagator;
+
+/**
+ * The orbit shapes and orientations of a set of element sets, for the cheap filters that rule out pairs of objects before their close approaches are searched for. An object that is missing a
+ * value the filters need passes every filter.
+ * 
+ * @author Steven Paligo
+ */
+class OrbitGeometry {
+
+  /**
+   * The uncertainty in the orientation of an orbit, in radians, from the short-period terms that the secular rates of the filters leave out
+   */
+  static final double ANGLE_MARGIN = 0.005;
+
+  private static final double J2 = 0.001082616; // WGS-72
+  private static final double TWO_PI = 2.0 * Math.PI;
+  private static final double DEGREES_TO_RADIANS = Math.PI / 180.0;
+
+
+  private final boolean[] unfiltered;
+  private final long[] epochMicros;
+  private final double[] perigeeRadius;
+  private final double[] apogeeRadius;
+  private final double[] semiLatusRectum;
+  private final double[] eccentricity;
+  private final double[] sinInclination;
+  private final double[] cosInclination;
+  private final double[] node;
+  private final double[] nodeRate; // radians per second
+  private final double[] argOfPerigee;
+  private final double[] argOfPerigeeRate; // radians per second
+
+
+  OrbitGeometry(ElementSetColumns columns) {
+
+    int size = columns.size();
+
+    this.unfiltered = new boolean[size];
+    this.epochMicros = new long[size];
+    this.perigeeRadius = new double[size];
+    this.apogeeRadius = new double[size];
+    this.semiLatusRectum = new double[size];
+    this.eccentricity = new double[size];
+    this.sinInclination = new double[size];
+    this.cosInclination = new double[size];
+    this.node = new double[size];
+    this.nodeRate = new double[size];
+    this.argOfPerigee = new double[size];
+    this.argOfPerigeeRate = new double[size];
+
+    for (int row = 0; row < size; row++) {
+
+      // the shape of the orbit, preferring the heights in the element set
+      double meanMotion = columns.getMeanMotionRevsPerDay()[row] * TWO_PI / 86_400.0;
+      double e = columns.getEccentricity()[row];
+      double a = columns.getSemiMajorAxisKilometers()[row];
+
+      if (Double.isFinite(a) == false || a <= 0.0) {
+
+        a = Math.cbrt(Sgp4Propagator.EARTH_GRAVITATIONAL_PARAMETER / (meanMotion * meanMotion));
+      }
+
+      double perigeeHeight = columns.getPerigeeHeightKilometers()[row];
+      double apogeeHeight = columns.getApogeeHeightKilometers()[row];
+
+      perigeeRadius[row] = (Double.isFinite(perigeeHeight) ? Sgp4Propagator.EARTH_RADIUS_KILOMETERS + perigeeHeight : a * (1.0 - e));
+      apogeeRadius[row] = (Double.isFinite(apogeeHeight) ? Sgp4Propagator.EARTH_RADIUS_KILOMETERS + apogeeHeight : a * (1.0 + e));
+      semiLatusRectum[row] = a * (1.0 - e * e);
+      eccentricity[row] = e;
+
+
+      // the orientation of the orbit and its secular drift from J2
+      double inclination = columns.getInclinationDegrees()[row] * DEGREES_TO_RADIANS;
+      double ratio = Sgp4Propagator.EARTH_RADIUS_KILOMETERS / semiLatusRectum[row];
+      double rate = 1.5 * J2 * ratio * ratio * meanMotion;
+
+      epochMicros[row] = columns.getEpochMicros()[row];
+      sinInclination[row] = Math.sin(inclination);
+      cosInclination[row] = Math.cos(inclination);
+      node[row] = columns.getRightAscOfNodeDegrees()[row] * DEGREES_TO_RADIANS;
+      nodeRate[row] = -rate * cosInclination[row];
+      argOfPerigee[row] = columns.getArgOfPerigeeDegrees()[row] * DEGREES_TO_RADIANS;
+      argOfPerigeeRate[row] = 0.5 * rate * (5.0 * cosInclination[row] * cosInclination[row] - 1.0);
+
+      unfiltered[row] = (Double.isFinite(perigeeRadius[row]) == false || Double.isFinite(apogeeRadius[row]) == false || Double.isFinite(semiLatusRectum[row]) == false
+          || Double.isFinite(node[row]) == false || Double.isFinite(argOfPerigee[row]) == false || Double.isFinite(nodeRate[row]) == false);
+    }
+  }
+
+
+  double getPerigeeRadius(int row) {
+
+    return perigeeRadius[row];
+  }
+
+
+  double getApogeeRadius(int row) {
+
+    return apogeeRadius[row];
+  }
+
+
+  boolean isUnfiltered(int row) {
+
+    return unfiltered[row];
+  }
+
+
+  /**
+   * The apogee/perigee filter: two objects can only approach within a distance if the ranges of their distances from the center of the Earth do
+   *
+   * @param margin The distance in kilometers
+   */
+  boolean shellsOverlap(int row1, int row2, double margin) {
+
+    if (unfiltered[row1] || unfiltered[row2]) {
+
+      return true;
+    }
+
+    return (Math.max(perigeeRadius[row1], perigeeRadius[row2]) - Math.min(apogeeRadius[row1], apogeeRadius[row2]) <= margin);
+  }
+
+
+  /**
+   * The orbital-plane filter: two objects in different planes can only approach within a distance near the line where their planes intersect, so the distances of the two orbits from the center
+   * of the Earth where they cross that line must be within the distance of each other. The planes are oriented at a time using their secular drift, and the filter passes orbits that are too
+   * close to coplanar for the line to be well defined.
+   *
+   * @param margin The distance in kilometers
+   */
+  boolean orbitPathsApproach(int row1, int row2, long timeMicros, double margin) {
+
+    if (unfiltered[row1] || unfiltered[row2]) {
+
+      return true;
+    }
+
+
+    // orient both orbits at the time
+    double[] frame1 = new double[9];
+    double[] frame2 = new double[9];
+    orient(row1, timeMicros, frame1);
+    orient(row2, timeMicros, frame2);
+
+
+    // the line of nodes of the two planes
+    double kx = frame1[7] * frame2[8] - frame1[8] * frame2[7];
+    double ky = frame1[8] * frame2[6] - frame1[6] * frame2[8];
+    double kz = frame1[6] * frame2[7] - frame1[7] * frame2[6];
+    double sinAngle = Math.sqrt(kx * kx + ky * ky + kz * kz);
+    double uncertainty = ANGLE_MARGIN / sinAngle + ANGLE_MARGIN;
+
+    if (uncertainty >= 0.5 * Math.PI) {
+
+      return true;
+    }
+
+
+    // compare the radii where each orbit crosses the line, in both directions
+    double anomaly1 = Math.atan2(kx * frame1[3] + ky * frame1[4] + kz * frame1[5], kx * frame1[0] + ky * frame1[1] + kz * frame1[2]);
+    double anomaly2 = Math.atan2(kx * frame2[3] + ky * frame2[4] + kz * frame2[5], kx * frame2[0] + ky * frame2[1] + kz * frame2[2]);
+
+    return (radiiApproach(row1, anomaly1, row2, anomaly2, uncertainty, margin) || radiiApproach(row1, anomaly1 + Math.PI, row2, anomaly2 + Math.PI, uncertainty, margin));
+  }
+
+
+  /**
+   * Computes the unit vectors toward perigee, 90 degrees ahead of perigee, and along the orbit normal (in that order) at a time
+   */
+  private void orient(int row, long timeMicros, double[] frame) {
+
+    double seconds = (timeMicros - epochMicros[row]) / 1_000_000.0;
+    double nodeAtTime = node[row] + nodeRate[row] * seconds;
+    double argOfPerigeeAtTime = argOfPerigee[row] + argOfPerigeeRate[row] * seconds;
+    double sinNode = Math.sin(nodeAtTime);
+    double cosNode = Math.cos(nodeAtTime);
+    double sinArg = Math.sin(argOfPerigeeAtTime);
+    double cosArg = Math.cos(argOfPerigeeAtTime);
+    double sinInc = sinInclination[row];
+    double cosInc = cosInclination[row];
+
+    frame[0] = cosNode * cosArg - sinNode * sinArg * cosInc;
+    frame[1] = sinNode * cosArg + cosNode * sinArg * cosInc;
+    frame[2] = sinArg * sinInc;
+    frame[3] = -cosNode * sinArg - sinNode * cosArg * cosInc;
+    frame[4] = -sinNode * sinArg + cosNode * cosArg * cosInc;
+    frame[5] = cosArg * sinInc;
+    frame[6] = sinNode * sinInc;
+    frame[7] = -cosNode * sinInc;
+    frame[8] = cosInc;
+  }
+
+
+  private boolean radiiApproach(int row1, double anomaly1, int row2, double anomaly2, double uncertainty, double margin) {
+
+    double min1 = radius(row1, anomaly1, uncertainty, false);
+    double max1 = radius(row1, anomaly1, uncertainty, true);
+    double min2 = radius(row2, anomaly2, uncertainty, false);
+    double max2 = radius(row2, anomaly2, uncertainty, true);
+
+    return (Math.max(min1, min2) - Math.min(max1, max2) <= margin);
+  }
+
+
+  /**
+   * Finds the smallest or largest radius of an orbit within an uncertainty of a true anomaly
+   */
+  private double radius(int row, double anomaly, double uncertainty, boolean largest) {
+
+    double p = semiLatusRectum[row];
+    double e = eccentricity[row];
+    double fromPerigee = Math.abs(Math.IEEEremainder(anomaly, TWO_PI));
+
+    if (largest && Math.PI - fromPerigee <= uncertainty) {
+
+      return p / (1.0 - e);
+
+    } else if (largest == false && fromPerigee <= uncertainty) {
+
+      return p / (1.0 + e);
+    }
+
+    double radius1 = p / (1.0 + e * Math.cos(anomaly - uncertainty));
+    double radius2 = p / (1.0 + e * Math.cos(anomaly + uncertainty));
+
+    return (largest ? Math.max(radius1, radius2) : Math.min(radius1, radius2));
+  }
+}
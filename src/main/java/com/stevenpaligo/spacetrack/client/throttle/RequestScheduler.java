@@ -0,0 +1,405 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.throttle;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Schedules requests so they stay within <a href="https://www.space-track.org/">Space-Track.org</a>'s published rate limits. Each limit is enforced with a sliding window: the send times of
+ * the most recent requests are kept, and a request that would put more than a limit's number of requests within any one of its periods waits (rather than fails) until the oldest of them
+ * leaves the window. Waiting requests are served in the order they arrived.
+ * 
+ * <p>
+ * Space-Track.org's limits apply per account, so one scheduler should be shared by every session that uses the same account. By default, all sessions share {@link #getDefault()}.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+public class RequestScheduler {
+
+  private static final RequestScheduler defaultScheduler = new RequestScheduler(new RateLimit(30, Duration.ofMinutes(1)), new RateLimit(300, Duration.ofHours(1)));
+
+
+  private final List<SendLog> logs;
+  private final LongSupplier nanoClock;
+  private final Sleeper sleeper;
+  private final AtomicInteger waitingCount = new AtomicInteger();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private long lastSendNanos = Long.MIN_VALUE;
+
+
+  /**
+   * Creates a scheduler that enforces all of the given limits at once
+   * 
+   * @param limits The rate limits to enforce (none means requests are never delayed)
+   */
+  public RequestScheduler(RateLimit... limits) {
+
+    this(Arrays.asList(validate(limits)), System::nanoTime);
+  }
+
+
+  RequestScheduler(List<RateLimit> limits, LongSupplier nanoClock) {
+
+    this(limits, nanoClock, TimeUnit.NANOSECONDS::sleep);
+  }
+
+
+  RequestScheduler(List<RateLimit> limits, LongSupplier nanoClock, Sleeper sleeper) {
+
+    this.nanoClock = nanoClock;
+    this.sleeper = sleeper;
+
+    List<SendLog> logs = new ArrayList<>();
+
+    for (RateLimit limit : limits) {
+
+      logs.add(new SendLog(limit));
+    }
+
+    this.logs = Collections.unmodifiableList(logs);
+  }
+
+
+  private static RateLimit[] validate(RateLimit[] limits) {
+
+    if (limits == null) {
+
+      throw new IllegalArgumentException("The limits are null");
+    }
+
+    for (RateLimit limit : limits) {
+
+      if (limit == null) {
+
+        throw new IllegalArgumentException("A limit is null");
+      }
+    }
+
+    return limits;
+  }
+
+
+  /**
+   * Gets the scheduler shared by all sessions by default. It enforces Space-Track.org's published limits of 30 requests per minute and 300 requests per hour.
+   * 
+   * @return The non-null default scheduler
+   */
+  public static RequestScheduler getDefault() {
+
+    return defaultScheduler;
+  }
+
+
+  /**
+   * Creates a scheduler that never delays requests (e.g. for a local stand-in of the API)
+   * 
+   * @return A new scheduler without limits
+   */
+  public static RequestScheduler unlimited() {
+
+    return new RequestScheduler();
+  }
+
+
+  /**
+   * Gets the rate limits enforced by this scheduler
+   * 
+   * @return The non-null limits
+   */
+  public List<RateLimit> getLimits() {
+
+    List<RateLimit> limits = new ArrayList<>();
+
+    for (SendLog log : logs) {
+
+      limits.add(log.limit);
+    }
+
+    return limits;
+  }
+
+
+  /**
+   * Waits until a request may be sent without exceeding any of the rate limits. The request is counted against the limits as soon as this method is called.
+   * 
+   * @return How long the request waited in the queue
+   * @throws InterruptedIOException The thread was interrupted while waiting
+   */
+  public Duration acquire() throws InterruptedIOException {
+
+    long now = nanoClock.getAsLong();
+    long sendNanos = reserve(now);
+    long waitNanos = sendNanos - now;
+    requestCount.incrementAndGet();
+
+    if (waitNanos > 0) {
+
+      waitingCount.incrementAndGet();
+
+      try {
+
+        long remaining = waitNanos;
+
+        while (remaining > 0) {
+
+          sleeper.sleep(remaining);
+          remaining = sendNanos - nanoClock.getAsLong();
+        }
+
+      } catch (InterruptedException e) {
+
+        // give the reservation back so it doesn't count against the requests that are still waiting
+        cancel(sendNanos);
+
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to send a SpaceTrack request");
+
+      } finally {
+
+        waitingCount.decrementAndGet();
+      }
+
+      log.debug("SpaceTrack request waited {} ms for the rate limit", TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+
+    // record the wait
+    totalWaitNanos.addAndGet(waitNanos);
+    maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+
+    return Duration.ofNanos(waitNanos);
+  }
+
+
+  /**
+   * Gets a snapshot of the scheduler's statistics
+   * 
+   * @return The non-null statistics
+   */
+  public Statistics getStatistics() {
+
+    return new Statistics(requestCount.get(), waitingCount.get(), Duration.ofNanos(totalWaitNanos.get()), Duration.ofNanos(maxWaitNanos.get()));
+  }
+
+
+  /**
+   * Reserves the earliest send time that keeps every limit's window within its number of requests, and records it in every window. Reservations are handed out in arrival order, which keeps
+   * the queue fair.
+   */
+  synchronized long reserve(long now) {
+
+    long sendNanos = Math.max(now, lastSendNanos);
+
+    for (SendLog log : logs) {
+
+      sendNanos = Math.max(sendNanos, log.earliestSend(now));
+    }
+
+    for (SendLog log : logs) {
+
+      log.add(sendNanos);
+    }
+
+    lastSendNanos = sendNanos;
+
+    return sendNanos;
+  }
+
+
+  /**
+   * Removes a reservation that won't be sent from every window
+   */
+  synchronized void cancel(long sendNanos) {
+
+    lastSendNanos = Long.MIN_VALUE;
+
+    for (SendLog log : logs) {
+
+      log.remove(sendNanos);
+      lastSendNanos = Math.max(lastSendNanos, log.last());
+    }
+  }
+
+
+  /**
+   * A limit of a number of requests per period of time
+   * 
+   * @author Steven Paligo
+   */
+  @Getter
+  public static class RateLimit {
+
+    private int requests;
+    private Duration period;
+
+
+    public RateLimit(int requests, @NonNull Duration period) {
+
+      // more validation
+      if (requests <= 0) {
+
+        throw new IllegalArgumentException("The number of requests is not positive: " + requests);
+
+      } else if (period.isNegative() || period.isZero()) {
+
+        throw new IllegalArgumentException("The period is not positive: " + period);
+      }
+
+
+      this.requests = requests;
+      this.period = period;
+    }
+
+
+    @Override
+    public String toString() {
+
+      return requests + " requests per " + period;
+    }
+  }
+
+
+  /**
+   * A snapshot of a scheduler's statistics
+   * 
+   * @author Steven Paligo
+   */
+  @Getter
+  public static class Statistics {
+
+    private long requestCount;
+    private int waitingCount;
+    private Duration totalWait;
+    private Duration maxWait;
+
+
+    Statistics(long requestCount, int waitingCount, @NonNull Duration totalWait, @NonNull Duration maxWait) {
+
+      this.requestCount = requestCount;
+      this.waitingCount = waitingCount;
+      this.totalWait = totalWait;
+      this.maxWait = maxWait;
+    }
+
+
+    /**
+     * Gets the average time requests have waited in the queue
+     * 
+     * @return The non-null average wait
+     */
+    public Duration getAverageWait() {
+
+      return (requestCount == 0 ? Duration.ZERO : totalWait.dividedBy(requestCount));
+    }
+  }
+
+
+  /**
+   * Sleeps for a number of nanoseconds (replaced in tests so that waiting follows a simulated clock)
+   */
+  @FunctionalInterface
+  static interface Sleeper {
+
+    void sleep(long nanos) throws InterruptedException;
+  }
+
+
+  /**
+   * The send times, in order, of the requests within one limit's window: the past period, plus the reservations that haven't been sent yet
+   */
+  private static class SendLog {
+
+    private final RateLimit limit;
+    private final long periodNanos;
+    private long[] sendNanos;
+    private int start;
+    private int end;
+
+
+    private SendLog(RateLimit limit) {
+
+      this.limit = limit;
+      this.periodNanos = limit.getPeriod().toNanos();
+      this.sendNanos = new long[2 * limit.getRequests()];
+    }
+
+
+    /**
+     * Forgets the sends that have left the window and returns the earliest time the next request can be sent: once the send that would be the limit's number of requests back has left the
+     * window
+     */
+    private long earliestSend(long now) {
+
+      while (start < end && sendNanos[start] + periodNanos <= now) {
+
+        start++;
+      }
+
+      return (end - start < limit.getRequests() ? now : sendNanos[end - limit.getRequests()] + periodNanos);
+    }
+
+
+    private void add(long send) {
+
+      if (end == sendNanos.length) {
+
+        // shift the window to the front of the array, growing it if it's mostly full
+        long[] target = (end - start > sendNanos.length / 2 ? new long[2 * sendNanos.length] : sendNanos);
+        System.arraycopy(sendNanos, start, target, 0, end - start);
+        sendNanos = target;
+        end -= start;
+        start = 0;
+      }
+
+      sendNanos[end++] = send;
+    }
+
+
+    private long last() {
+
+      return (start < end ? sendNanos[end - 1] : Long.MIN_VALUE);
+    }
+
+
+    private void remove(long send) {
+
+      for (int index = end - 1; index >= start; index--) {
+
+        if (sendNanos[index] == send) {
+
+          System.arraycopy(sendNanos, index + 1, sendNanos, index, end - index - 1);
+          end--;
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The HTTP content encodings (compression formats) that responses from <a href="https://www.space-track.org/">Space-Track.org</a> are decoded from
+ * 
+ * @author Steven Paligo
+ */
+public enum ContentEncoding {
+
+  IDENTITY("identity"), GZIP("gzip"), DEFLATE("deflate");
+
+
+  /**
+   * The value of the "Accept-Encoding" request header that asks for a compressed response
+   */
+  public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+
+  @Getter
+  private String headerValue;
+
+
+  private ContentEncoding(String headerValue) {
+
+    this.headerValue = headerValue;
+  }
+
+
+  /**
+   * Looks up the encoding of a response
+   * 
+   * @param contentEncoding The non-null value of the "Content-Encoding" response header, if present
+   * @return The non-null encoding ({@link #IDENTITY} if the header is not present)
+   * @throws IOException The encoding is not supported
+   */
+  public static ContentEncoding forHeaderValue(@NonNull Optional<String> contentEncoding) throws IOException {
+
+    if (contentEncoding.isPresent() == false || contentEncoding.get().trim().isEmpty()) {
+
+      return IDENTITY;
+    }
+
+    for (ContentEncoding encoding : values()) {
+
+      if (encoding.headerValue.equalsIgnoreCase(contentEncoding.get().trim()) || (encoding == GZIP && "x-gzip".equalsIgnoreCase(contentEncoding.get().trim()))) {
+
+        return encoding;
+      }
+    }
+
+    throw new IOException("SpaceTrack returned an unsupported content encoding: " + contentEncoding.get());
+  }
+
+
+  /**
+   * Wraps an encoded response body in a stream that decodes it as it is read. An empty body is returned as an empty stream, whatever the encoding.
+   * 
+   * @param body The non-null encoded body
+   * @return The non-null decoded body
+   * @throws IOException The body was unable to be read
+   */
+  public InputStream decode(@NonNull InputStream body) throws IOException {
+
+    switch (this) {
+
+      case GZIP:
+
+        // an empty body (e.g. a 204 response) has no gzip header to read
+        PushbackInputStream gzipBody = new PushbackInputStream(body, 1);
+        int gzipFirstByte = gzipBody.read();
+
+        if (gzipFirstByte < 0) {
+
+          return gzipBody;
+        }
+
+        gzipBody.unread(gzipFirstByte);
+        return new GZIPInputStream(gzipBody, BUFFER_SIZE);
+
+      case DEFLATE:
+
+        // "deflate" should be zlib-wrapped, but some servers send raw deflate data
+        PushbackInputStream pushbackBody = new PushbackInputStream(body, 2);
+        int firstByte = pushbackBody.read();
+
+        if (firstByte < 0) {
+
+          return pushbackBody; // an empty body
+        }
+
+        int secondByte = pushbackBody.read();
+
+        if (secondByte >= 0) {
+
+          pushbackBody.unread(secondByte);
+        }
+
+        pushbackBody.unread(firstByte);
+
+        boolean zlibWrapped = (secondByte >= 0 && (firstByte & 0x0F) == 8 && ((firstByte << 8) | secondByte) % 31 == 0);
+        Inflater inflater = new Inflater(zlibWrapped == false);
+
+        return new InflaterInputStream(pushbackBody, inflater, BUFFER_SIZE) {
+
+          @Override
+          public void close() throws IOException {
+
+            try {
+
+              super.close();
+
+            } finally {
+
+              inflater.end();
+            }
+          }
+        };
+
+      default:
+        return body;
+    }
+  }
+}
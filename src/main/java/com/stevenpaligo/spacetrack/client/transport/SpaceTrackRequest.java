@@ -0,0 +1,95 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An HTTP request sent through a {@link SpaceTrackTransport}
+ * 
+ * @author Steven Paligo
+ */
+@Getter
+public class SpaceTrackRequest {
+
+  public static enum Method {
+
+    GET, POST
+  }
+
+
+  private Method method;
+  private URI uri;
+  private Optional<byte[]> body;
+  private Map<String, String> headers = new LinkedHashMap<>();
+
+
+  private SpaceTrackRequest(@NonNull Method method, @NonNull URI uri, @NonNull Optional<byte[]> body) {
+
+    this.method = method;
+    this.uri = uri;
+    this.body = body;
+  }
+
+
+  /**
+   * Creates a GET request
+   * 
+   * @param uri The non-null URI to request
+   * @return The new request
+   */
+  public static SpaceTrackRequest get(@NonNull URI uri) {
+
+    return new SpaceTrackRequest(Method.GET, uri, Optional.empty());
+  }
+
+
+  /**
+   * Creates a POST request with a form-encoded body
+   * 
+   * @param uri The non-null URI to post to
+   * @param formBody The non-null, already URL-encoded form body
+   * @return The new request
+   */
+  public static SpaceTrackRequest postForm(@NonNull URI uri, @NonNull byte[] formBody) {
+
+    return new SpaceTrackRequest(Method.POST, uri, Optional.of(formBody)).setHeader("Content-Type", "application/x-www-form-urlencoded");
+  }
+
+
+  /**
+   * Sets a request header, replacing any previous value
+   * 
+   * @param name The non-null header name
+   * @param value The non-null header value
+   * @return This request, for use in the builder pattern
+   */
+  public SpaceTrackRequest setHeader(@NonNull String name, @NonNull String value) {
+
+    headers.put(name, value);
+    return this;
+  }
+
+
+  public Map<String, String> getHeaders() {
+
+    return Collections.unmodifiableMap(headers);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An HTTP response received through a {@link SpaceTrackTransport}. Closing the response closes its body, which allows the transport to reuse the underlying connection.
+ * 
+ * @author Steven Paligo
+ */
+@Getter
+public class SpaceTrackResponse implements Closeable {
+
+  private int statusCode;
+  private String statusMessage;
+  private Map<String, List<String>> headers;
+  private InputStream body;
+
+
+  /**
+   * Creates a response
+   * 
+   * @param statusCode The HTTP status code
+   * @param statusMessage The non-null HTTP status message (may be empty)
+   * @param headers The non-null response headers, which are looked up case-insensitively
+   * @param body The non-null response body (empty if the response has no body)
+   */
+  public SpaceTrackResponse(int statusCode, @NonNull String statusMessage, @NonNull Map<String, List<String>> headers, @NonNull InputStream body) {
+
+    this.statusCode = statusCode;
+    this.statusMessage = statusMessage;
+    this.body = body;
+
+
+    // index the headers case-insensitively (HttpURLConnection uses a null key for the status line)
+    Map<String, List<String>> caseInsensitiveHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+
+      if (header.getKey() != null) {
+
+        caseInsensitiveHeaders.put(header.getKey(), Collections.unmodifiableList(header.getValue()));
+      }
+    }
+
+    this.headers = Collections.unmodifiableMap(caseInsensitiveHeaders);
+  }
+
+
+  /**
+   * Gets all values of a header
+   * 
+   * @param name The non-null, case-insensitive header name
+   * @return The header values, or an empty list if the header is not present
+   */
+  public List<String> getHeaderValues(@NonNull String name) {
+
+    return headers.getOrDefault(name, Collections.emptyList());
+  }
+
+
+  /**
+   * Gets the first value of a header
+   * 
+   * @param name The non-null, case-insensitive header name
+   * @return The first header value, if the header is present
+   */
+  public Optional<String> getHeaderValue(@NonNull String name) {
+
+    List<String> values = getHeaderValues(name);
+    return (values.isEmpty() ? Optional.empty() : Optional.of(values.get(0)));
+  }
+
+
+  @Override
+  public void close() throws IOException {
+
+    body.close();
+  }
+}
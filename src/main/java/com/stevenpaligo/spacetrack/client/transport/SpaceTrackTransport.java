@@ -0,0 +1,39 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import java.io.IOException;
+
+/**
+ * The HTTP layer used to talk to <a href="https://www.space-track.org/">Space-Track.org</a>. Implement this interface to replace the default {@link UrlConnectionTransport}, e.g. with a
+ * different HTTP client or with an in-process fake for tests.
+ * 
+ * <p>
+ * Implementations must be thread-safe: a single transport is shared by every query that runs in a session.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+public interface SpaceTrackTransport {
+
+  /**
+   * Sends a request and returns the response once the status line and headers have been received. Responses with any status code (including errors) are returned rather than thrown.
+   * 
+   * @param request A non-null request
+   * @return A non-null response whose body must be closed by the caller
+   * @throws IOException The request was unable to be sent or the response was unable to be received
+   */
+  public SpaceTrackResponse send(SpaceTrackRequest request) throws IOException;
+
+}
@@ -0,0 +1,67 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The number of bytes transferred for one query response, before and after decompression
+ * 
+ * @author Steven Paligo
+ * @see com.stevenpaligo.spacetrack.client.SpaceTrackSession#setTransferListener(java.util.function.Consumer)
+ */
+@Getter
+public class TransferStatistics {
+
+  private String queryUrl;
+  private ContentEncoding contentEncoding;
+  private long compressedBytes;
+  private long uncompressedBytes;
+
+
+  /**
+   * Creates the statistics
+   * 
+   * @param queryUrl The non-null URL of the query
+   * @param contentEncoding The non-null encoding of the response
+   * @param compressedBytes The number of bytes received (i.e. before decompression)
+   * @param uncompressedBytes The number of bytes read from the decompressed response
+   */
+  public TransferStatistics(@NonNull String queryUrl, @NonNull ContentEncoding contentEncoding, long compressedBytes, long uncompressedBytes) {
+
+    this.queryUrl = queryUrl;
+    this.contentEncoding = contentEncoding;
+    this.compressedBytes = compressedBytes;
+    this.uncompressedBytes = uncompressedBytes;
+  }
+
+
+  /**
+   * Gets the ratio of the uncompressed size to the compressed size of the response
+   * 
+   * @return The compression ratio (1 if the response was not compressed or was empty)
+   */
+  public double getCompressionRatio() {
+
+    return (compressedBytes == 0 ? 1 : (double) uncompressedBytes / compressedBytes);
+  }
+
+
+  @Override
+  public String toString() {
+
+    return "compressed bytes: " + compressedBytes + ", uncompressed bytes: " + uncompressedBytes + ", content encoding: " + contentEncoding.getHeaderValue() + ", query: " + queryUrl;
+  }
+}
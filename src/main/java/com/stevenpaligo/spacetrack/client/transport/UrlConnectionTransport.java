@@ -0,0 +1,145 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.Map;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The default {@link SpaceTrackTransport}, built on {@link HttpURLConnection}. Connections are never forcibly disconnected: once a response body has been read and closed, the JDK returns the
+ * connection to its keep-alive pool and the next request to the same host reuses it. The size of that pool is controlled by the standard <code>http.maxConnections</code> system property.
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+public class UrlConnectionTransport implements SpaceTrackTransport {
+
+  /**
+   * The default timeout for establishing a connection
+   */
+  public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+  /**
+   * The default timeout for waiting on data from an established connection (large catalog queries can take a while before the first byte arrives)
+   */
+  public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofMinutes(5);
+
+
+  @Getter
+  private volatile Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+  @Getter
+  private volatile Duration readTimeout = DEFAULT_READ_TIMEOUT;
+
+
+  /**
+   * Sets the timeout for establishing a connection
+   * 
+   * @param connectTimeout A non-null, non-negative timeout (zero means no timeout)
+   * @return This transport, for use in the builder pattern
+   */
+  public UrlConnectionTransport setConnectTimeout(@NonNull Duration connectTimeout) {
+
+    this.connectTimeout = validateTimeout(connectTimeout);
+    return this;
+  }
+
+
+  /**
+   * Sets the timeout for waiting on data from an established connection
+   * 
+   * @param readTimeout A non-null, non-negative timeout (zero means no timeout)
+   * @return This transport, for use in the builder pattern
+   */
+  public UrlConnectionTransport setReadTimeout(@NonNull Duration readTimeout) {
+
+    this.readTimeout = validateTimeout(readTimeout);
+    return this;
+  }
+
+
+  @Override
+  public SpaceTrackResponse send(@NonNull SpaceTrackRequest request) throws IOException {
+
+    HttpURLConnection connection = (HttpURLConnection) request.getUri().toURL().openConnection();
+
+    try {
+
+      connection.setConnectTimeout((int) Math.min(connectTimeout.toMillis(), Integer.MAX_VALUE));
+      connection.setReadTimeout((int) Math.min(readTimeout.toMillis(), Integer.MAX_VALUE));
+      connection.setRequestMethod(request.getMethod().name());
+      connection.setInstanceFollowRedirects(false);
+
+      for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+
+
+      // send the body
+      if (request.getBody().isPresent()) {
+
+        byte[] body = request.getBody().get();
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+
+        try (OutputStream outputStream = connection.getOutputStream()) {
+
+          outputStream.write(body);
+        }
+      }
+
+
+      // receive the response (error responses have their body in the error stream; reading it keeps the connection reusable)
+      int statusCode = connection.getResponseCode();
+      InputStream body = (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream());
+
+      if (body == null) {
+
+        body = new ByteArrayInputStream(new byte[0]);
+      }
+
+      String statusMessage = connection.getResponseMessage();
+
+
+      return new SpaceTrackResponse(statusCode, (statusMessage != null ? statusMessage : ""), connection.getHeaderFields(), body);
+
+
+    } catch (IOException | RuntimeException e) {
+
+      // the connection is in an unknown state, so don't let it be reused
+      connection.disconnect();
+      throw e;
+    }
+  }
+
+
+  private static Duration validateTimeout(Duration timeout) {
+
+    if (timeout.isNegative()) {
+
+      throw new IllegalArgumentException("The timeout is negative: " + timeout);
+    }
+
+    return timeout;
+  }
+}
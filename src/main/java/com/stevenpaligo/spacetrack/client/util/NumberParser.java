@@ -0,0 +1,258 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.util;
+
+/**
+ * Parses decimal numbers directly from character buffers, without creating intermediate strings. Used where large numbers of values are read in a tight loop (e.g. columnar query results).
+ * 
+ * <p>
+ * Doubles with at most 15 significant digits and small exponents, which covers every value Space-Track.org returns, are computed exactly from an integer mantissa and a power of ten; anything
+ * else falls back to {@link Double#parseDouble(String)}, so the results always match {@link Double#parseDouble(String)}.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+public class NumberParser {
+
+  /**
+   * Powers of ten that are exactly representable as doubles
+   */
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * The largest mantissa that is exactly representable as a double (2^53)
+   */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  /**
+   * The most digits that can be accumulated into a long without overflowing
+   */
+  private static final int MAX_LONG_DIGITS = 18;
+
+
+  private NumberParser() {
+
+    // static methods only
+  }
+
+
+  /**
+   * Parses an integer in the same format as {@link Integer#parseInt(String)}
+   * 
+   * @param chars The characters containing the integer
+   * @param offset The index of the first character of the integer
+   * @param length The number of characters in the integer
+   * @return The parsed integer
+   * @throws NumberFormatException The characters are not an integer or the integer is out of range
+   */
+  public static int parseInt(char[] chars, int offset, int length) {
+
+    long value = parseLong(chars, offset, length);
+
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+
+      throw invalidNumber(chars, offset, length);
+    }
+
+    return (int) value;
+  }
+
+
+  /**
+   * Parses a long in the same format as {@link Long#parseLong(String)}, but limited to 18 digits
+   * 
+   * @param chars The characters containing the long
+   * @param offset The index of the first character of the long
+   * @param length The number of characters in the long
+   * @return The parsed long
+   * @throws NumberFormatException The characters are not a long or the long has more than 18 digits
+   */
+  public static long parseLong(char[] chars, int offset, int length) {
+
+    int end = offset + length;
+    int index = offset;
+    boolean negative = false;
+
+    if (index < end && (chars[index] == '-' || chars[index] == '+')) {
+
+      negative = (chars[index] == '-');
+      index++;
+    }
+
+    if (index == end || end - index > MAX_LONG_DIGITS) {
+
+      throw invalidNumber(chars, offset, length);
+    }
+
+    long value = 0;
+
+    for (; index < end; index++) {
+
+      int digit = chars[index] - '0';
+
+      if (digit < 0 || digit > 9) {
+
+        throw invalidNumber(chars, offset, length);
+      }
+
+      value = value * 10 + digit;
+    }
+
+    return (negative ? -value : value);
+  }
+
+
+  /**
+   * Parses a double in plain (e.g. "-0.000123") or scientific (e.g. "-1.23e-4") notation
+   * 
+   * @param chars The characters containing the double
+   * @param offset The index of the first character of the double
+   * @param length The number of characters in the double
+   * @return The parsed double
+   * @throws NumberFormatException The characters are not a double
+   */
+  public static double parseDouble(char[] chars, int offset, int length) {
+
+    int end = offset + length;
+    int index = offset;
+    boolean negative = false;
+
+    if (index < end && (chars[index] == '-' || chars[index] == '+')) {
+
+      negative = (chars[index] == '-');
+      index++;
+    }
+
+
+    // accumulate the digits of the mantissa, remembering where the decimal point was
+    long mantissa = 0;
+    int digitCount = 0;
+    int significantDigitCount = 0;
+    int exponent = 0;
+    boolean decimalPoint = false;
+
+    for (; index < end; index++) {
+
+      char c = chars[index];
+
+      if (c >= '0' && c <= '9') {
+
+        digitCount++;
+
+        if (mantissa != 0 || c != '0') {
+
+          significantDigitCount++;
+        }
+
+        if (significantDigitCount > MAX_LONG_DIGITS) {
+
+          return slowParseDouble(chars, offset, length);
+        }
+
+        mantissa = mantissa * 10 + (c - '0');
+
+        if (decimalPoint) {
+
+          exponent--;
+        }
+
+      } else if (c == '.' && decimalPoint == false) {
+
+        decimalPoint = true;
+
+      } else {
+
+        break;
+      }
+    }
+
+    if (digitCount == 0) {
+
+      throw invalidNumber(chars, offset, length);
+    }
+
+
+    // read the exponent, if any
+    if (index < end) {
+
+      if (chars[index] != 'e' && chars[index] != 'E') {
+
+        throw invalidNumber(chars, offset, length);
+      }
+
+      index++;
+
+      if (index == end || end - index > 6) {
+
+        return slowParseDouble(chars, offset, length);
+      }
+
+      exponent += parseInt(chars, index, end - index);
+    }
+
+
+    // use exact arithmetic if possible
+    double value;
+
+    if (mantissa == 0) {
+
+      value = 0.0;
+
+    } else if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+
+      value = (exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent]);
+
+    } else {
+
+      return slowParseDouble(chars, offset, length);
+    }
+
+    return (negative ? -value : value);
+  }
+
+
+  /**
+   * Computes <code>mantissa &times; 10<sup>exponent</sup></code> as the nearest double, for numbers stored as digits with an implied decimal point (e.g. the "12345-4" exponent fields of
+   * TLEs)
+   * 
+   * @param mantissa The digits of the number
+   * @param exponent The power of ten to scale the digits by
+   * @return The scaled number
+   */
+  public static double scale(long mantissa, int exponent) {
+
+    if (mantissa == 0) {
+
+      return 0.0;
+
+    } else if (mantissa >= -MAX_EXACT_MANTISSA && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+
+      return (exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent]);
+    }
+
+    return Double.parseDouble(mantissa + "E" + exponent);
+  }
+
+
+  private static double slowParseDouble(char[] chars, int offset, int length) {
+
+    return Double.parseDouble(new String(chars, offset, length));
+  }
+
+
+  private static NumberFormatException invalidNumber(char[] chars, int offset, int length) {
+
+    return new NumberFormatException("For input string: \"" + new String(chars, offset, length) + "\"");
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.NonNull;
+
+/**
+ * Copies query results so that results shared between callers (e.g. by a cache) can't be changed by one caller under another. The result classes are mutable beans whose fields hold only
+ * immutable values (strings, boxed numbers, dates, {@link java.util.Optional}s of those, etc.), so copying their fields makes an independent copy.
+ * 
+ * @author Steven Paligo
+ */
+public class ResultCopier {
+
+  private static final ClassValue<Copier> copiers = new ClassValue<Copier>() {
+
+    @Override
+    protected Copier computeValue(Class<?> type) {
+
+      return new Copier(type);
+    }
+  };
+
+
+  private ResultCopier() {
+
+    // static methods only
+  }
+
+
+  /**
+   * Copies a result
+   * 
+   * @param result The result to copy, which may be null
+   * @return A copy of the result, or the result itself if it's null, immutable, or of a type that can't be copied
+   */
+  @SuppressWarnings("unchecked")
+  public static <R> R copy(R result) {
+
+    return (result == null ? null : (R) copiers.get(result.getClass()).copy(result));
+  }
+
+
+  /**
+   * Copies a list of results
+   * 
+   * @param results The non-null results to copy
+   * @return A new, unmodifiable list of copies of the results
+   */
+  public static <R> List<R> copyAll(@NonNull List<? extends R> results) {
+
+    List<R> copies = new ArrayList<>(results.size());
+
+    for (R result : results) {
+
+      copies.add(copy(result));
+    }
+
+    return Collections.unmodifiableList(copies);
+  }
+
+
+  private static class Copier {
+
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+
+
+    private Copier(Class<?> type) {
+
+      // immutable values, and types without a no-argument constructor, are shared rather than copied
+      Constructor<?> constructor = null;
+
+      if (type.isEnum() == false && type.isArray() == false && type.getName().startsWith("java.") == false) {
+
+        try {
+
+          constructor = type.getDeclaredConstructor();
+          constructor.setAccessible(true);
+
+        } catch (NoSuchMethodException | RuntimeException e) {
+
+          constructor = null;
+        }
+      }
+
+      this.constructor = constructor;
+
+
+      // the instance fields of the class and its superclasses
+      List<Field> fields = new ArrayList<>();
+
+      for (Class<?> current = type; constructor != null && current != Object.class; current = current.getSuperclass()) {
+
+        for (Field field : current.getDeclaredFields()) {
+
+          if (Modifier.isStatic(field.getModifiers()) == false) {
+
+            field.setAccessible(true);
+            fields.add(field);
+          }
+        }
+      }
+
+      this.fields = fields.toArray(new Field[0]);
+    }
+
+
+    private Object copy(Object result) {
+
+      if (constructor == null) {
+
+        return result;
+      }
+
+      try {
+
+        Object copy = constructor.newInstance();
+
+        for (Field field : fields) {
+
+          field.set(copy, field.get(result));
+        }
+
+        return copy;
+
+      } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+
+        throw new IllegalStateException("Unable to copy a " + result.getClass().getName(), e);
+      }
+    }
+  }
+}
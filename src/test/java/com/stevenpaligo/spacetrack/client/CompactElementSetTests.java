@@ -0,0 +1,142 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.TleQuery.Tle;
+import com.stevenpaligo.spacetrack.client.TleQuery.TleQueryField;
+import com.stevenpaligo.spacetrack.client.cache.QueryCache;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+
+public class CompactElementSetTests {
+
+  private static final String TLE_PATH = "/class/tle/NORAD_CAT_ID/25544/limit/1/format/json/emptyresult/show";
+  private static final String TLE_JSON = "[{\"COMMENT\":\"GENERATED VIA SPACETRACK.ORG API\",\"ORIGINATOR\":\"18 SPCS\",\"NORAD_CAT_ID\":\"25544\",\"OBJECT_NAME\":\"ISS (ZARYA)\","
+      + "\"OBJECT_TYPE\":\"PAYLOAD\",\"CLASSIFICATION_TYPE\":\"U\",\"INTLDES\":\"98067A\",\"EPOCH\":\"2021-11-01 12:00:00\",\"EPOCH_MICROSECONDS\":\"500000\",\"MEAN_MOTION\":\"15.48601496\","
+      + "\"ECCENTRICITY\":\"0.0004234\",\"INCLINATION\":\"51.6440\",\"RA_OF_ASC_NODE\":\"238.1473\",\"ARG_OF_PERICENTER\":\"180.5036\",\"MEAN_ANOMALY\":\"273.2391\",\"EPHEMERIS_TYPE\":\"0\","
+      + "\"ELEMENT_SET_NO\":\"999\",\"REV_AT_EPOCH\":\"30972\",\"BSTAR\":\"0.00004132\",\"MEAN_MOTION_DOT\":\"0.00002189\",\"MEAN_MOTION_DDOT\":\"0\",\"FILE\":\"3230745\","
+      + "\"TLE_LINE0\":\"0 ISS (ZARYA)\",\"TLE_LINE1\":\"1 25544U 98067A   21305.50000000  .00002189  00000-0  41320-4 0  9999\","
+      + "\"TLE_LINE2\":\"2 25544  51.6440 238.1473 0004234 180.5036 273.2391 15.48601496309727\",\"OBJECT_ID\":\"1998-067A\",\"OBJECT_NUMBER\":\"25544\",\"SEMIMAJOR_AXIS\":\"6795.983\","
+      + "\"PERIOD\":\"92.985\",\"APOGEE\":\"420.726\",\"PERIGEE\":\"414.971\",\"DECAYED\":\"0\"}]";
+  private static final String OMM_PATH = "/class/omm/format/json/emptyresult/show";
+  private static final String OMM_JSON = "[{\"CCSDS_OMM_VERS\":\"2.0\",\"OBJECT_NAME\":\"ISS (ZARYA)\",\"OBJECT_ID\":\"1998-067A\",\"EPOCH\":\"2021-11-01T12:00:00.500000\","
+      + "\"MEAN_MOTION\":\"15.48601496\",\"ECCENTRICITY\":\"0.0004234\",\"NORAD_CAT_ID\":\"25544\",\"OBJECT_TYPE\":\"PAYLOAD\",\"CLASSIFICATION_TYPE\":\"U\",\"APOAPSIS\":\"420.726\","
+      + "\"PERIAPSIS\":\"414.971\",\"PERIOD\":null,\"DECAYED\":\"1\"}]";
+
+
+  private static SpaceTrackSession newSession() {
+
+    FakeTransport transport = new FakeTransport().addResponse(TLE_PATH, TLE_JSON).addResponse(OMM_PATH, OMM_JSON);
+    return new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport).setRequestScheduler(RequestScheduler.unlimited());
+  }
+
+
+  @Test
+  @DisplayName("CompactElementSet: TLE results")
+  public void test1() throws Exception {
+
+    TleQuery query = new TleQuery().setSession(newSession()).addPredicate(new Equal<>(TleQueryField.CATALOG_NUMBER, 25544)).setLimit(Limit.ONE);
+    CompactElementSetQuery<TleQueryField> compactQuery = query.asCompact();
+
+    assertEquals(query.getQueryString(), compactQuery.getQueryString());
+
+
+    // the compact query is a copy
+    query.clearPredicates();
+    assertFalse(query.getQueryString().equals(compactQuery.getQueryString()));
+
+
+    CompactElementSet elementSet = compactQuery.execute().get(0);
+
+    assertEquals(25544, elementSet.getCatalogNumber());
+    assertEquals("ISS (ZARYA)", elementSet.getObjectName());
+    assertEquals("1998-067A", elementSet.getObjectId());
+    assertSame("PAYLOAD", elementSet.getObjectType());
+    assertEquals('U', elementSet.getClassification());
+    assertEquals(Instant.parse("2021-11-01T12:00:00.500Z"), elementSet.getEpoch());
+    assertEquals(15.48601496, elementSet.getMeanMotionRevsPerDay());
+    assertEquals(0.0004234, elementSet.getEccentricity());
+    assertEquals(51.6440, elementSet.getInclinationDegrees());
+    assertEquals(238.1473, elementSet.getRightAscOfNodeDegrees());
+    assertEquals(180.5036, elementSet.getArgOfPerigeeDegrees());
+    assertEquals(273.2391, elementSet.getMeanAnomalyDegrees());
+    assertEquals(0, elementSet.getEphemerisType());
+    assertEquals(999, elementSet.getElementSetNumber());
+    assertEquals(30972, elementSet.getRevNumber());
+    assertEquals(0.00004132, elementSet.getBstar());
+    assertEquals(0.00002189, elementSet.getMeanMotionDot());
+    assertEquals(0, elementSet.getMeanMotionDoubleDot());
+    assertEquals("1 25544U 98067A   21305.50000000  .00002189  00000-0  41320-4 0  9999", elementSet.getTleLine1());
+    assertEquals("2 25544  51.6440 238.1473 0004234 180.5036 273.2391 15.48601496309727", elementSet.getTleLine2());
+    assertEquals(6795.983, elementSet.getSemiMajorAxisKilometers());
+    assertEquals(92.985, elementSet.getPeriodMinutes());
+    assertEquals(420.726, elementSet.getApogeeHeightKilometers());
+    assertEquals(414.971, elementSet.getPerigeeHeightKilometers());
+    assertFalse(elementSet.isDecayed());
+  }
+
+
+  @Test
+  @DisplayName("CompactElementSet: OMM results and missing values")
+  public void test2() throws Exception {
+
+    CompactElementSet elementSet = new OrbitMeanElementsMessageQuery().setSession(newSession()).asCompact().execute().get(0);
+
+    assertEquals(Instant.parse("2021-11-01T12:00:00.500Z"), elementSet.getEpoch());
+    assertEquals(420.726, elementSet.getApogeeHeightKilometers());
+    assertEquals(414.971, elementSet.getPerigeeHeightKilometers());
+    assertTrue(elementSet.isDecayed());
+
+
+    // missing values
+    assertTrue(Double.isNaN(elementSet.getPeriodMinutes()));
+    assertTrue(Double.isNaN(elementSet.getBstar()));
+    assertEquals(CompactElementSet.MISSING_INT, elementSet.getElementSetNumber());
+    assertNull(elementSet.getTleLine1());
+
+    CompactElementSet empty = new CompactElementSet();
+    assertEquals(CompactElementSet.MISSING_EPOCH, empty.getEpochMicros());
+    assertNull(empty.getEpoch());
+    assertEquals('\0', empty.getClassification());
+  }
+
+
+  @Test
+  @DisplayName("CompactElementSet: Compact and regular results are cached separately")
+  public void test3() throws Exception {
+
+    QueryCache cache = new QueryCache(100);
+    SpaceTrackSession session = newSession().setCache(cache);
+    TleQuery query = new TleQuery().setSession(session).addPredicate(new Equal<>(TleQueryField.CATALOG_NUMBER, 25544)).setLimit(Limit.ONE);
+
+    List<Tle> tles = query.execute();
+    List<CompactElementSet> elementSets = query.asCompact().execute();
+
+    assertEquals(tles.get(0).getCatalogNumber().get(), elementSets.get(0).getCatalogNumber());
+    assertEquals(2, cache.getStatistics().getResponseCount());
+    assertEquals(1, query.asCompact().execute().size());
+    assertEquals(1, cache.getStatistics().getHitCount());
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.stevenpaligo.spacetrack.client.OrbitMeanElementsMessageQuery.OrbitMeanElementsMessageQueryField;
+import com.stevenpaligo.spacetrack.client.TleQuery.TleQueryField;
+import com.stevenpaligo.spacetrack.client.cache.DiskQueryCache;
+import com.stevenpaligo.spacetrack.client.cache.QueryCache;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.predicate.In;
+import com.stevenpaligo.spacetrack.client.predicate.Predicate;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+
+public class ElementSetColumnsTests {
+
+  private static final String TLE_PATH = "/class/tle/NORAD_CAT_ID/25544/limit/1/format/json/emptyresult/show";
+  private static final String TLE_JSON = "[{\"COMMENT\":\"GENERATED VIA SPACETRACK.ORG API\",\"NORAD_CAT_ID\":\"25544\",\"OBJECT_NAME\":\"ISS (ZARYA)\",\"EPOCH_MICROSECONDS\":\"500000\","
+      + "\"EPOCH\":\"2021-11-01 12:00:00\",\"MEAN_MOTION\":\"15.48601496\",\"ECCENTRICITY\":\"0.0004234\",\"INCLINATION\":\"51.6440\",\"RA_OF_ASC_NODE\":\"238.1473\","
+      + "\"ARG_OF_PERICENTER\":\"180.5036\",\"MEAN_ANOMALY\":\"273.2391\",\"EPHEMERIS_TYPE\":\"0\",\"ELEMENT_SET_NO\":\"999\",\"REV_AT_EPOCH\":\"30972\",\"BSTAR\":\"-1.1606e-5\","
+      + "\"MEAN_MOTION_DOT\":\"0.00002189\",\"MEAN_MOTION_DDOT\":\"0\",\"SEMIMAJOR_AXIS\":\"6795.983\",\"PERIOD\":\"92.985\",\"APOGEE\":\"420.726\",\"PERIGEE\":\"414.971\"}]";
+  private static final String OMM_PATH = "/class/omm/format/json/emptyresult/show";
+
+
+  private static SpaceTrackSession newSession(String ommJson) {
+
+    FakeTransport transport = new FakeTransport().addResponse(TLE_PATH, TLE_JSON).addResponse(OMM_PATH, ommJson);
+    return new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport).setRequestScheduler(RequestScheduler.unlimited());
+  }
+
+
+  @Test
+  @DisplayName("ElementSetColumns: Constructor")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> new ElementSetColumns(-1));
+    assertThrows(IllegalArgumentException.class, () -> new OrbitMeanElementsMessageQuery().asCompact().executeColumns(null));
+
+
+    // allowed values
+    assertDoesNotThrow(() -> new ElementSetColumns(0));
+    assertDoesNotThrow(() -> new ElementSetColumns());
+  }
+
+
+  @Test
+  @DisplayName("ElementSetColumns: TLE results match the compact results")
+  public void test2() throws Exception {
+
+    TleQuery query = new TleQuery().setSession(newSession("[]")).addPredicate(new Equal<>(TleQueryField.CATALOG_NUMBER, 25544)).setLimit(Limit.ONE);
+    CompactElementSet elementSet = query.asCompact().execute().get(0);
+    ElementSetColumns columns = query.asCompact().executeColumns();
+
+    assertEquals(1, columns.size());
+    assertEquals(0, columns.indexOf(25544));
+    assertEquals(-1, columns.indexOf(1));
+    assertEquals(Instant.parse("2021-11-01T12:00:00.500Z"), columns.getEpoch(0));
+    assertEquals(elementSet.getCatalogNumber(), columns.getCatalogNumber()[0]);
+    assertEquals(elementSet.getEpochMicros(), columns.getEpochMicros()[0]);
+    assertEquals(elementSet.getMeanMotionRevsPerDay(), columns.getMeanMotionRevsPerDay()[0]);
+    assertEquals(elementSet.getEccentricity(), columns.getEccentricity()[0]);
+    assertEquals(elementSet.getInclinationDegrees(), columns.getInclinationDegrees()[0]);
+    assertEquals(elementSet.getRightAscOfNodeDegrees(), columns.getRightAscOfNodeDegrees()[0]);
+    assertEquals(elementSet.getArgOfPerigeeDegrees(), columns.getArgOfPerigeeDegrees()[0]);
+    assertEquals(elementSet.getMeanAnomalyDegrees(), columns.getMeanAnomalyDegrees()[0]);
+    assertEquals(elementSet.getEphemerisType(), columns.getEphemerisType()[0]);
+    assertEquals(elementSet.getElementSetNumber(), columns.getElementSetNumber()[0]);
+    assertEquals(elementSet.getRevNumber(), columns.getRevNumber()[0]);
+    assertEquals(elementSet.getBstar(), columns.getBstar()[0]);
+    assertEquals(elementSet.getMeanMotionDot(), columns.getMeanMotionDot()[0]);
+    assertEquals(elementSet.getMeanMotionDoubleDot(), columns.getMeanMotionDoubleDot()[0]);
+    assertEquals(elementSet.getSemiMajorAxisKilometers(), columns.getSemiMajorAxisKilometers()[0]);
+    assertEquals(elementSet.getPeriodMinutes(), columns.getPeriodMinutes()[0]);
+    assertEquals(elementSet.getApogeeHeightKilometers(), columns.getApogeeHeightKilometers()[0]);
+    assertEquals(elementSet.getPerigeeHeightKilometers(), columns.getPerigeeHeightKilometers()[0]);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> columns.getEpoch(1));
+  }
+
+
+  @Test
+  @DisplayName("ElementSetColumns: OMM results, growth, and missing values")
+  public void test3() throws Exception {
+
+    StringBuilder json = new StringBuilder("[");
+
+    for (int i = 0; i < 100; i++) {
+
+      json.append(i == 0 ? "" : ",").append("{\"NORAD_CAT_ID\":\"").append(i).append("\",\"EPOCH\":\"2021-11-01T12:00:00.").append(i % 10).append("\",\"APOAPSIS\":\"").append(i)
+          .append(".5\",\"PERIOD\":null,\"PERIAPSIS\":\"\",\"EXTRA\":{\"A\":[1,2]}}");
+    }
+
+    json.append("]");
+
+    ElementSetColumns columns = new ElementSetColumns(4);
+    CompactElementSetQuery<?> query = new OrbitMeanElementsMessageQuery().setSession(newSession(json.toString())).asCompact();
+
+    assertSame(columns, query.executeColumns(columns));
+    assertEquals(100, columns.size());
+    assertTrue(columns.getCatalogNumber().length >= 100);
+
+    for (int row = 0; row < 100; row++) {
+
+      assertEquals(row, columns.getCatalogNumber()[row]);
+      assertEquals(Instant.parse("2021-11-01T12:00:00." + (row % 10) + "Z"), columns.getEpoch(row));
+      assertEquals(row + 0.5, columns.getApogeeHeightKilometers()[row]);
+      assertTrue(Double.isNaN(columns.getPeriodMinutes()[row]));
+      assertTrue(Double.isNaN(columns.getPerigeeHeightKilometers()[row]));
+      assertEquals(CompactElementSet.MISSING_INT, columns.getRevNumber()[row]);
+    }
+
+
+    // results are appended, and clearing keeps the arrays
+    query.executeColumns(columns);
+    assertEquals(200, columns.size());
+
+    double[] apogees = columns.getApogeeHeightKilometers();
+    columns.clear();
+    query.executeColumns(columns);
+    assertEquals(100, columns.size());
+    assertSame(apogees, columns.getApogeeHeightKilometers());
+
+
+    // rows are copied from other columns
+    ElementSetColumns copy = new ElementSetColumns(0);
+    assertThrows(IllegalArgumentException.class, () -> copy.addRow(null, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> copy.addRow(columns, 100));
+    assertEquals(0, copy.addRow(columns, 42));
+    assertEquals(1, copy.addRow(columns, 7));
+    assertEquals(2, copy.size());
+    assertEquals(42, copy.getCatalogNumber()[0]);
+    assertEquals(columns.getEpoch(42), copy.getEpoch(0));
+    assertEquals(42.5, copy.getApogeeHeightKilometers()[0]);
+    assertTrue(Double.isNaN(copy.getPerigeeHeightKilometers()[0]));
+    assertEquals(CompactElementSet.MISSING_INT, copy.getRevNumber()[0]);
+    assertEquals(7, copy.getCatalogNumber()[1]);
+
+
+    // a missing epoch
+    ElementSetColumns noEpoch = new OrbitMeanElementsMessageQuery().setSession(newSession("[{\"NORAD_CAT_ID\":\"1\"}]")).asCompact().executeColumns();
+    assertNull(noEpoch.getEpoch(0));
+
+
+    // malformed responses
+    assertThrows(IOException.class, () -> new OrbitMeanElementsMessageQuery().setSession(newSession("{\"error\":\"x\"}")).asCompact().executeColumns());
+    assertThrows(IOException.class, () -> new OrbitMeanElementsMessageQuery().setSession(newSession("[{\"NORAD_CAT_ID\":\"1\"},2]")).asCompact().executeColumns());
+  }
+
+
+  @Test
+  @DisplayName("ElementSetColumns: Queries are split and cached like other queries")
+  public void test4(@TempDir Path directory) throws Exception {
+
+    // answer any OMM query with the catalog numbers it asked for
+    Pattern catalogNumbersPattern = Pattern.compile("/NORAD_CAT_ID/([0-9,]+)");
+    FakeTransport transport = new FakeTransport().setResponder(queryPath -> {
+
+      Matcher matcher = catalogNumbersPattern.matcher(queryPath);
+      Stream<String> catalogNumbers = (matcher.find() ? Arrays.stream(matcher.group(1).split(",")) : Stream.empty());
+
+      return catalogNumbers.map(catalogNumber -> "{\"NORAD_CAT_ID\":\"" + catalogNumber + "\",\"MEAN_MOTION\":\"15.5\"}").collect(Collectors.joining(",", "[", "]"));
+    });
+
+    Supplier<SpaceTrackSession> newSession = () -> new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport)
+        .setRequestScheduler(RequestScheduler.unlimited());
+    List<Integer> catalogNumbers = IntStream.rangeClosed(10000, 10999).boxed().collect(Collectors.toList());
+    Predicate<OrbitMeanElementsMessageQueryField> in = new In<>(OrbitMeanElementsMessageQueryField.CATALOG_NUMBER, catalogNumbers, Integer.class);
+
+
+    // long queries are split
+    ElementSetColumns columns = new OrbitMeanElementsMessageQuery().setSession(newSession.get().setMaxQueryUrlLength(500)).addPredicate(in).asCompact().executeColumns();
+
+    assertTrue(transport.getRequests().stream().filter(request -> request.getUri().getPath().contains("/class/omm/")).count() > 1);
+    assertEquals(1000, columns.size());
+
+    assertEquals(catalogNumbers, IntStream.of(Arrays.copyOf(columns.getCatalogNumber(), columns.size())).sorted().boxed().collect(Collectors.toList()));
+    assertTrue(DoubleStream.of(Arrays.copyOf(columns.getMeanMotionRevsPerDay(), columns.size())).allMatch(meanMotion -> meanMotion == 15.5));
+
+
+    // repeated queries are answered from the cache
+    SpaceTrackSession cachedSession = newSession.get().setCache(new QueryCache(100));
+    CompactElementSetQuery<OrbitMeanElementsMessageQueryField> query = new OrbitMeanElementsMessageQuery().setSession(cachedSession)
+        .addPredicate(new In<>(OrbitMeanElementsMessageQueryField.CATALOG_NUMBER, 1, 2, 3)).asCompact();
+
+    assertEquals(3, query.executeColumns().size());
+
+    int requestCount = transport.getRequests().size();
+
+    assertEquals(3, query.executeColumns().size());
+    assertEquals(requestCount, transport.getRequests().size());
+
+
+    // responses are added to the persistent cache
+    SpaceTrackSession diskCachedSession = newSession.get().setDiskCache(new DiskQueryCache(directory, 1_000_000));
+    query = new OrbitMeanElementsMessageQuery().setSession(diskCachedSession).addPredicate(new In<>(OrbitMeanElementsMessageQueryField.CATALOG_NUMBER, 4, 5)).asCompact();
+
+    assertEquals(2, query.executeColumns().size());
+
+    requestCount = transport.getRequests().size();
+
+    assertEquals(5, query.executeColumns().getCatalogNumber()[1]);
+    assertEquals(requestCount, transport.getRequests().size());
+  }
+
+
+  @Test
+  @DisplayName("ElementSetColumns: Malformed values")
+  public void test5() throws Exception {
+
+    String malformedNumber = "[{\"NORAD_CAT_ID\":\"1\"},{\"NORAD_CAT_ID\":\"2\",\"MEAN_MOTION\":\"15.x\"}]";
+    JsonParseException e = assertThrows(JsonParseException.class, () -> new OrbitMeanElementsMessageQuery().setSession(newSession(malformedNumber)).asCompact().executeColumns());
+
+    assertTrue(e.getMessage().contains("field: MEAN_MOTION, result: 1, value: 15.x"));
+    assertTrue(e.getCause() instanceof NumberFormatException);
+
+    String malformedEpoch = "[{\"NORAD_CAT_ID\":\"1\",\"EPOCH\":\"yesterday\"}]";
+    e = assertThrows(JsonParseException.class, () -> new OrbitMeanElementsMessageQuery().setSession(newSession(malformedEpoch)).asCompact().executeColumns());
+
+    assertTrue(e.getMessage().contains("field: EPOCH, result: 0"));
+
+
+    // out-of-range fields are rejected whichever way the epoch is parsed
+    for (String epoch : new String[] {"2024-13-45 25:61:00", "2024-00-01 00:00:00", "2023-02-29 00:00:00", "2024-04-31T00:00:00.000000", "2024-01-01 24:00:00", "2024-01-01 00:60:00",
+        "2024-01-01 00:00:60", "2024-13-01 00:00"}) {
+
+      String outOfRangeEpoch = "[{\"NORAD_CAT_ID\":\"1\",\"EPOCH\":\"" + epoch + "\"}]";
+      assertThrows(JsonParseException.class, () -> new OrbitMeanElementsMessageQuery().setSession(newSession(outOfRangeEpoch)).asCompact().executeColumns(), epoch);
+    }
+
+    for (String epoch : new String[] {"2024-02-29 23:59:59", "2000-02-29T00:00:00.5", "2021-12-31 12:00:00", "2021-12-31 12:00"}) {
+
+      ElementSetColumns columns = new OrbitMeanElementsMessageQuery().setSession(newSession("[{\"NORAD_CAT_ID\":\"1\",\"EPOCH\":\"" + epoch + "\"}]")).asCompact().executeColumns();
+      assertEquals(ChronoUnit.MICROS.between(Instant.EPOCH, LocalDateTime.parse(epoch.replace(' ', 'T')).toInstant(ZoneOffset.UTC)), columns.getEpochMicros()[0], epoch);
+    }
+  }
+
+
+  @Test
+  @DisplayName("ElementSetColumns: Malformed responses leave the columns unchanged")
+  public void test6() throws Exception {
+
+    ElementSetColumns columns = new ElementSetColumns();
+    new OrbitMeanElementsMessageQuery().setSession(newSession("[{\"NORAD_CAT_ID\":\"25544\"}]")).asCompact().executeColumns(columns);
+
+    assertEquals(1, columns.size());
+
+    for (String malformed : new String[] {"[{\"NORAD_CAT_ID\":\"1\"},{\"NORAD_CAT_ID\":\"2\",\"MEAN_MOTION\":\"15.x\"}]", "[{\"NORAD_CAT_ID\":\"1\"},{\"NORAD_CAT_ID\":\"2\",",
+        "[{\"NORAD_CAT_ID\":\"1\"},[]]"}) {
+
+      assertThrows(IOException.class, () -> new OrbitMeanElementsMessageQuery().setSession(newSession(malformed)).asCompact().executeColumns(columns));
+      assertEquals(1, columns.size());
+      assertEquals(25544, columns.getCatalogNumber()[0]);
+    }
+
+
+    // new rows are appended after the existing ones
+    new OrbitMeanElementsMessageQuery().setSession(newSession("[{\"NORAD_CAT_ID\":\"1\"}]")).asCompact().executeColumns(columns);
+
+    assertEquals(2, columns.size());
+    assertEquals(1, columns.getCatalogNumber()[1]);
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.IOUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.stevenpaligo.spacetrack.client.transport.ContentEncoding;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackRequest;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackRequest.Method;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackResponse;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackTransport;
+
+/**
+ * An in-process stand-in for Space-Track.org that answers login and query requests from a map of canned query responses
+ */
+public class FakeTransport implements SpaceTrackTransport {
+
+  public static final String USER_NAME = "user";
+  public static final String PASSWORD = "password";
+
+  private static final String QUERY_PATH = "/basicspacedata/query";
+  private static final Pattern LIMIT_PATTERN = Pattern.compile("/limit/(\\d+)(?:,(\\d+))?");
+  private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+
+  private final Map<String, String> responsesByQueryPath = new HashMap<>();
+  private final List<SpaceTrackRequest> requests = new CopyOnWriteArrayList<>();
+  private volatile String validCookie = "chocolatechip=1";
+  private volatile long latencyMillis;
+  private volatile ContentEncoding contentEncoding = ContentEncoding.IDENTITY;
+  private volatile Function<String, String> responder = queryPath -> "[]";
+
+
+  /**
+   * Registers the response for a query path (e.g. "/class/satcat/NORAD_CAT_ID/25544/format/json/emptyresult/show")
+   */
+  public FakeTransport addResponse(String queryPath, String json) {
+
+    responsesByQueryPath.put(queryPath, json);
+    return this;
+  }
+
+
+  /**
+   * Sets the function that answers query paths (without a limit) that have no registered response. By default, they are answered with an empty array.
+   */
+  public FakeTransport setResponder(Function<String, String> responder) {
+
+    this.responder = responder;
+    return this;
+  }
+
+
+  /**
+   * Compresses successful responses with the given encoding when the request accepts it
+   */
+  public FakeTransport setContentEncoding(ContentEncoding contentEncoding) {
+
+    this.contentEncoding = contentEncoding;
+    return this;
+  }
+
+
+  /**
+   * Delays every response by a fixed amount of time
+   */
+  public FakeTransport setLatencyMillis(long latencyMillis) {
+
+    this.latencyMillis = latencyMillis;
+    return this;
+  }
+
+
+  /**
+   * Simulates the server expiring all sessions
+   */
+  public void expireSessions() {
+
+    validCookie = "chocolatechip=" + (Integer.parseInt(validCookie.substring(validCookie.indexOf('=') + 1)) + 1);
+  }
+
+
+  public List<SpaceTrackRequest> getRequests() {
+
+    return requests;
+  }
+
+
+  public long countRequests(Method method) {
+
+    return requests.stream().filter(r -> r.getMethod() == method).count();
+  }
+
+
+  @Override
+  public SpaceTrackResponse send(SpaceTrackRequest request) throws IOException {
+
+    requests.add(request);
+
+    if (latencyMillis > 0) {
+
+      try {
+
+        Thread.sleep(latencyMillis);
+
+      } catch (InterruptedException e) {
+
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+
+    SpaceTrackResponse response = answer(request);
+
+
+    // compress the response if the client accepts it
+    if (contentEncoding != ContentEncoding.IDENTITY && response.getStatusCode() == 200 && request.getHeaders().getOrDefault("Accept-Encoding", "").contains(contentEncoding.getHeaderValue())) {
+
+      ByteArrayOutputStream compressedBody = new ByteArrayOutputStream();
+
+      try (OutputStream compressor = (contentEncoding == ContentEncoding.GZIP ? new GZIPOutputStream(compressedBody) : new DeflaterOutputStream(compressedBody))) {
+
+        IOUtils.copy(response.getBody(), compressor);
+      }
+
+      Map<String, List<String>> headers = new HashMap<>(response.getHeaders());
+      headers.put("Content-Encoding", Collections.singletonList(contentEncoding.getHeaderValue()));
+
+      return new SpaceTrackResponse(response.getStatusCode(), response.getStatusMessage(), headers, new ByteArrayInputStream(compressedBody.toByteArray()));
+    }
+
+    return response;
+  }
+
+
+  private SpaceTrackResponse answer(SpaceTrackRequest request) throws IOException {
+
+    String path = request.getUri().getPath();
+
+    if (request.getMethod() == Method.POST && path.endsWith("/ajaxauth/login")) {
+
+      // parse the form
+      Map<String, String> form = new HashMap<>();
+
+      for (String parameter : new String(request.getBody().get(), StandardCharsets.UTF_8).split("&")) {
+
+        String[] pair = parameter.split("=", 2);
+        form.put(pair[0], URLDecoder.decode(pair[1], "UTF-8"));
+      }
+
+      if (USER_NAME.equals(form.get("identity")) == false || PASSWORD.equals(form.get("password")) == false) {
+
+        return respond(200, "{\"Login\":\"Failed\"}", Collections.emptyMap());
+      }
+
+      Map<String, List<String>> headers = Collections.singletonMap("Set-Cookie", Collections.singletonList(validCookie + "; path=/"));
+
+      if (form.containsKey("query")) {
+
+        String query = form.get("query");
+        String queryPath = query.substring(query.indexOf(QUERY_PATH) + QUERY_PATH.length());
+        return respond(200, getResponse(queryPath), headers);
+      }
+
+      return respond(200, "\"\"", headers);
+
+    } else if (request.getMethod() == Method.GET && path.contains(QUERY_PATH + "/")) {
+
+      if (validCookie.equals(request.getHeaders().get("Cookie")) == false) {
+
+        return respond(401, "", Collections.emptyMap());
+      }
+
+      return respond(200, getResponse(path.substring(path.indexOf(QUERY_PATH) + QUERY_PATH.length())), Collections.emptyMap());
+
+    } else if (path.endsWith("/ajaxauth/logout")) {
+
+      return respond(200, "\"Successfully logged out\"", Collections.emptyMap());
+    }
+
+    return respond(404, "", Collections.emptyMap());
+  }
+
+
+  /**
+   * Gets the response for a query path, applying the query's limit (if any) to the response registered for the path without the limit
+   */
+  private String getResponse(String queryPath) throws IOException {
+
+    Matcher matcher = LIMIT_PATTERN.matcher(queryPath);
+
+    if (responsesByQueryPath.containsKey(queryPath)) {
+
+      return responsesByQueryPath.get(queryPath);
+
+    } else if (matcher.find() == false) {
+
+      return responder.apply(queryPath);
+    }
+
+    String pathWithoutLimit = matcher.replaceFirst("");
+    JsonNode results = JSON_MAPPER.readTree(responsesByQueryPath.containsKey(pathWithoutLimit) ? responsesByQueryPath.get(pathWithoutLimit) : responder.apply(pathWithoutLimit));
+    int maxResults = Integer.parseInt(matcher.group(1));
+    int offset = (matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2)));
+    ArrayNode page = JSON_MAPPER.createArrayNode();
+
+    for (int i = offset; i < offset + maxResults && i < results.size(); i++) {
+
+      page.add(results.get(i));
+    }
+
+    return page.toString();
+  }
+
+
+  private static SpaceTrackResponse respond(int statusCode, String body, Map<String, List<String>> headers) {
+
+    return new SpaceTrackResponse(statusCode, (statusCode == 200 ? "OK" : "Error"), headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+  }
+}
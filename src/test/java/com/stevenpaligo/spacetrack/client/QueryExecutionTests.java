@@ -0,0 +1,497 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.stevenpaligo.spacetrack.client.DecayQuery.Decay;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCatQueryField;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession.SanitizationPolicy;
+import com.stevenpaligo.spacetrack.client.TleQuery.Tle;
+import com.stevenpaligo.spacetrack.client.cache.DiskQueryCache;
+import com.stevenpaligo.spacetrack.client.cache.QueryCache;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.predicate.In;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import com.stevenpaligo.spacetrack.client.query.Sort;
+import com.stevenpaligo.spacetrack.client.query.Sort.Direction;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+import com.stevenpaligo.spacetrack.client.transport.ContentEncoding;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackRequest;
+import com.stevenpaligo.spacetrack.client.transport.TransferStatistics;
+
+/**
+ * Tests of query execution against an in-process {@link FakeTransport} (no network access or credentials required)
+ */
+public class QueryExecutionTests {
+
+  private static final String SATCAT_PATH = "/class/satcat/NORAD_CAT_ID/25544/format/json/emptyresult/show";
+  private static final String SATCAT_JSON = "[{\"NORAD_CAT_ID\":\"25544\",\"SATNAME\":\"ISS (ZARYA)\"}]";
+  private static final String TLE_PATH = "/class/tle/format/json/emptyresult/show";
+  private static final String TLE_JSON = "[{\"NORAD_CAT_ID\":\"25544\"},{\"NORAD_CAT_ID\":\"20580\"}]";
+  private static final String DECAY_PATH = "/class/decay/format/json/emptyresult/show";
+
+
+  private static SpaceTrackSession newSession(FakeTransport transport) {
+
+    return new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport).setRequestScheduler(RequestScheduler.unlimited());
+  }
+
+
+  private static FakeTransport newTransport() {
+
+    return new FakeTransport().addResponse(SATCAT_PATH, SATCAT_JSON).addResponse(TLE_PATH, TLE_JSON).addResponse(DECAY_PATH, "[]");
+  }
+
+
+  @Test
+  @DisplayName("Asynchronous execution")
+  public void test1() throws Exception {
+
+    SpaceTrackSession session = newSession(newTransport());
+
+
+    // fan out several queries on the session's default executor
+    CompletableFuture<List<SatCat>> satCats = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).executeAsync();
+    CompletableFuture<List<Tle>> tles = new TleQuery().setSession(session).executeAsync();
+    CompletableFuture<List<Decay>> decays = new DecayQuery().setSession(session).executeAsync();
+
+    CompletableFuture.allOf(satCats, tles, decays).get();
+    assertEquals("ISS (ZARYA)", satCats.get().get(0).getSatName());
+    assertEquals(2, tles.get().size());
+    assertEquals(0, decays.get().size());
+
+
+    // the query is captured when the call is made
+    SatCatQuery query = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544));
+    CompletableFuture<List<SatCat>> future = query.executeAsync();
+    query.clearPredicates();
+    assertEquals(1, future.get().size());
+
+
+    // a caller-supplied executor
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+
+      assertEquals(2, new TleQuery().setSession(session).executeAsync(executor).get().size());
+
+      try (Stream<Tle> stream = new TleQuery().setSession(session).streamAsync(executor).get()) {
+
+        assertEquals(2, stream.collect(Collectors.toList()).size());
+      }
+
+    } finally {
+
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  @DisplayName("Asynchronous execution failures")
+  public void test2() {
+
+    // a call to set the credentials is required
+    assertThrows(IllegalStateException.class, () -> {
+      new SatCatQuery().executeAsync();
+    });
+
+
+    // failures complete the future exceptionally with the original exception
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, "wrong")).setTransport(newTransport());
+    ExecutionException exception = assertThrows(ExecutionException.class, () -> {
+      new SatCatQuery().setSession(session).executeAsync().get();
+    });
+
+    assertTrue(exception.getCause() instanceof IOException);
+  }
+
+
+  @Test
+  @DisplayName("Cached execution")
+  public void test3() throws Exception {
+
+    FakeTransport transport = newTransport();
+    QueryCache cache = new QueryCache(100).setTimeToLive(DecayQuery.class, Duration.ZERO);
+    SpaceTrackSession session = newSession(transport).setCache(cache);
+
+
+    // repeated queries are answered from the cache
+    List<SatCat> first = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    List<SatCat> second = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+
+    assertEquals(1, transport.countRequests(SpaceTrackRequest.Method.POST));
+    assertEquals(0, transport.countRequests(SpaceTrackRequest.Method.GET));
+    assertEquals("ISS (ZARYA)", second.get(0).getSatName());
+    assertNotSame(first.get(0), second.get(0));
+
+
+    // changing the results doesn't change what later queries get
+    first.get(0).setSatName("CHANGED");
+    second.get(0).setSatName("CHANGED");
+
+    assertEquals("ISS (ZARYA)", new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute().get(0).getSatName());
+
+
+    // each caller gets its own list
+    second.clear();
+    assertEquals(1, new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).executeAsync().get().size());
+
+
+    // other queries and query classes with a time-to-live of zero go to Space-Track
+    new TleQuery().setSession(session).execute();
+    new DecayQuery().setSession(session).execute();
+    new DecayQuery().setSession(session).execute();
+
+    assertEquals(3, transport.countRequests(SpaceTrackRequest.Method.GET));
+    assertEquals(3, cache.getStatistics().getHitCount());
+    assertEquals(4, cache.getStatistics().getMissCount());
+
+
+    // streaming bypasses the cache
+    try (Stream<Tle> stream = new TleQuery().setSession(session).stream()) {
+
+      assertEquals(2, stream.count());
+    }
+
+    assertEquals(4, transport.countRequests(SpaceTrackRequest.Method.GET));
+  }
+
+
+  @Test
+  @DisplayName("Persistently cached execution")
+  public void test4(@TempDir Path directory) throws Exception {
+
+    FakeTransport transport = newTransport();
+    new TleQuery().setSession(newSession(transport).setDiskCache(new DiskQueryCache(directory, 1_000_000))).execute();
+    assertEquals(1, transport.getRequests().size());
+
+
+    // a new session (e.g. after a restart) answers the query from disk
+    FakeTransport restartedTransport = newTransport();
+    QueryCache cache = new QueryCache(100);
+    SpaceTrackSession session = newSession(restartedTransport).setDiskCache(new DiskQueryCache(directory, 1_000_000)).setCache(cache);
+
+    try (Stream<Tle> stream = new TleQuery().setSession(session).stream()) {
+
+      assertEquals(2, stream.count());
+    }
+
+    assertEquals(2, new TleQuery().setSession(session).execute().size());
+    assertEquals(0, restartedTransport.getRequests().size());
+    assertEquals(1, cache.getStatistics().getResponseCount());
+
+
+    // a response that can't be written to disk is still returned
+    Path removedDirectory = directory.resolve("removed");
+    DiskQueryCache unwritableCache = new DiskQueryCache(removedDirectory, 1_000_000);
+    Files.delete(removedDirectory);
+
+    FakeTransport unwritableTransport = newTransport();
+
+    assertEquals(2, new TleQuery().setSession(newSession(unwritableTransport).setDiskCache(unwritableCache)).execute().size());
+    assertEquals(1, unwritableTransport.getRequests().size());
+  }
+
+
+  @Test
+  @DisplayName("Coalesced execution")
+  public void test5() throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+
+      for (boolean coalescing : new boolean[] {true, false}) {
+
+        FakeTransport transport = newTransport().setLatencyMillis(500);
+        SpaceTrackSession session = newSession(transport).setCoalescingQueries(coalescing);
+
+
+        // identical queries executed at the same moment
+        CyclicBarrier barrier = new CyclicBarrier(8);
+        List<CompletableFuture<List<SatCat>>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+
+          futures.add(CompletableFuture.supplyAsync(() -> {
+
+            try {
+
+              barrier.await();
+              return new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+
+            } catch (Exception e) {
+
+              throw new CompletionException(e);
+            }
+          }, executor));
+        }
+
+        Set<SatCat> distinctResults = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (CompletableFuture<List<SatCat>> future : futures) {
+
+          assertEquals("ISS (ZARYA)", future.get().get(0).getSatName());
+          distinctResults.add(future.get().get(0));
+        }
+
+        assertEquals((coalescing ? 1 : 8), transport.getRequests().size());
+        assertEquals(8, distinctResults.size()); // every caller gets its own result objects
+      }
+
+    } finally {
+
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  @DisplayName("Paged execution")
+  public void test6() throws Exception {
+
+    // 25 TLEs with catalog numbers 0-24
+    StringBuilder json = new StringBuilder("[");
+
+    for (int i = 0; i < 25; i++) {
+
+      json.append((i == 0 ? "" : ",")).append("{\"NORAD_CAT_ID\":\"").append(i).append("\"}");
+    }
+
+    FakeTransport transport = new FakeTransport().addResponse(TLE_PATH, json.append("]").toString());
+    SpaceTrackSession session = newSession(transport);
+
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new TleQuery().setSession(session).streamPages(0);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new TleQuery().setSession(session).streamPages(10, 0);
+    });
+
+
+    // all pages, in order
+    try (Stream<Tle> stream = new TleQuery().setSession(session).streamPages(10, 1)) {
+
+      assertEquals(IntStream.range(0, 25).boxed().collect(Collectors.toList()), stream.map(tle -> tle.getCatalogNumber().get()).collect(Collectors.toList()));
+    }
+
+    assertEquals(3, transport.getRequests().size());
+
+    try (Stream<Tle> stream = new TleQuery().setSession(session).streamPages(3, 4)) {
+
+      assertEquals(IntStream.range(0, 25).boxed().collect(Collectors.toList()), stream.map(tle -> tle.getCatalogNumber().get()).collect(Collectors.toList()));
+    }
+
+
+    // pages within the query's limit (on a new transport, since cancelled prefetches from the last stream may still be sent, and pages are requested concurrently)
+    FakeTransport limitedTransport = new FakeTransport().addResponse(TLE_PATH, json.toString());
+    SpaceTrackSession limitedSession = newSession(limitedTransport);
+    limitedSession.login();
+    limitedTransport.getRequests().clear();
+
+    try (Stream<Tle> stream = new TleQuery().setSession(limitedSession).setLimit(new Limit(12, 5)).streamPages(5)) {
+
+      assertEquals(IntStream.range(5, 17).boxed().collect(Collectors.toList()), stream.map(tle -> tle.getCatalogNumber().get()).collect(Collectors.toList()));
+    }
+
+    assertEquals(3, limitedTransport.getRequests().size());
+    assertTrue(limitedTransport.getRequests().stream().anyMatch(request -> request.getUri().getPath().contains("/limit/2,15/")));
+
+
+    // failures
+    SpaceTrackSession badSession = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, "wrong")).setTransport(transport);
+    assertThrows(IOException.class, () -> {
+      new TleQuery().setSession(badSession).streamPages(10);
+    });
+  }
+
+
+  @Test
+  @DisplayName("Compressed execution")
+  public void test7() throws Exception {
+
+    for (ContentEncoding contentEncoding : ContentEncoding.values()) {
+
+      List<TransferStatistics> transfers = new CopyOnWriteArrayList<>();
+      FakeTransport transport = newTransport().setContentEncoding(contentEncoding);
+      SpaceTrackSession session = newSession(transport).setTransferListener(transfers::add);
+
+
+      // the login (which carries the query) and plain queries are both decompressed
+      assertEquals("ISS (ZARYA)", new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute().get(0).getSatName());
+      assertEquals(2, new TleQuery().setSession(session).execute().size());
+
+      try (Stream<Tle> stream = new TleQuery().setSession(session).stream()) {
+
+        assertEquals(2, stream.count());
+      }
+
+      assertEquals(ContentEncoding.ACCEPT_ENCODING, transport.getRequests().get(0).getHeaders().get("Accept-Encoding"));
+
+
+      // the bytes are counted before and after decompression
+      assertEquals(3, transfers.size());
+      assertEquals(contentEncoding, transfers.get(0).getContentEncoding());
+      assertEquals(SATCAT_JSON.length(), transfers.get(0).getUncompressedBytes());
+      assertEquals(TLE_JSON.length(), transfers.get(1).getUncompressedBytes());
+      assertEquals(session.getEndpoint().getQueryUrl(TLE_PATH), transfers.get(1).getQueryUrl());
+
+      if (contentEncoding == ContentEncoding.IDENTITY) {
+
+        assertEquals(TLE_JSON.length(), transfers.get(1).getCompressedBytes());
+
+      } else {
+
+        assertNotEquals(TLE_JSON.length(), transfers.get(1).getCompressedBytes());
+      }
+    }
+
+
+    // compression can be turned off
+    FakeTransport transport = newTransport().setContentEncoding(ContentEncoding.GZIP);
+    new TleQuery().setSession(newSession(transport).setCompressionEnabled(false)).execute();
+
+    assertFalse(transport.getRequests().get(0).getHeaders().containsKey("Accept-Encoding"));
+  }
+
+
+  @Test
+  @DisplayName("Sanitization policies")
+  public void test8() throws Exception {
+
+    String malformedJson = "[{'NORAD_CAT_ID':'25544',\"SATNAME\":\"ISS (ZARYA)\",},]";
+
+    for (SanitizationPolicy sanitizationPolicy : SanitizationPolicy.values()) {
+
+      FakeTransport transport = newTransport().addResponse(DECAY_PATH, malformedJson);
+      SpaceTrackSession session = newSession(transport).setSanitizationPolicy(sanitizationPolicy);
+
+
+      // well-formed responses parse under every policy
+      assertEquals(2, new TleQuery().setSession(session).execute().size());
+      assertEquals("ISS (ZARYA)", new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute().get(0).getSatName());
+
+
+      // malformed responses only parse if they are sanitized
+      if (sanitizationPolicy == SanitizationPolicy.NEVER) {
+
+        assertThrows(JsonProcessingException.class, () -> {
+          new DecayQuery().setSession(session).execute();
+        });
+
+      } else {
+
+        assertEquals(1, new DecayQuery().setSession(session).execute().size());
+      }
+    }
+  }
+
+
+  @Test
+  @DisplayName("Split execution of queries with long In predicates")
+  public void test9() throws Exception {
+
+    // answer any satcat query with the catalog numbers it asked for, sorted the way the query asked
+    Pattern catalogNumbersPattern = Pattern.compile("/NORAD_CAT_ID/([0-9,]+)");
+    FakeTransport transport = new FakeTransport().setResponder(queryPath -> {
+
+      Matcher matcher = catalogNumbersPattern.matcher(queryPath);
+      Stream<Integer> catalogNumbers = (matcher.find() ? Arrays.stream(matcher.group(1).split(",")).map(Integer::valueOf) : Stream.empty());
+      Comparator<Integer> order = (queryPath.contains("/orderby/NORAD_CAT_ID desc") ? Comparator.reverseOrder() : Comparator.naturalOrder());
+
+      return catalogNumbers.sorted(order).map(catalogNumber -> "{\"NORAD_CAT_ID\":\"" + catalogNumber + "\"}").collect(Collectors.joining(",", "[", "]"));
+    });
+
+    SpaceTrackSession session = newSession(transport).setMaxQueryUrlLength(500);
+    List<Integer> catalogNumbers = IntStream.rangeClosed(10000, 10999).boxed().collect(Collectors.toList());
+    SatCatQuery query = new SatCatQuery().setSession(session).addPredicate(new In<>(SatCatQueryField.CATALOG_NUMBER, catalogNumbers, Integer.class))
+        .addSort(new Sort<>(SatCatQueryField.CATALOG_NUMBER, Direction.DESC));
+
+    assertThrows(IllegalArgumentException.class, () -> session.setMaxQueryUrlLength(0));
+    assertTrue(query.getQueryString().length() > 500);
+
+
+    // the results of the split queries are merged in order
+    List<SatCat> results = query.execute();
+    long queryCount = transport.getRequests().stream().filter(request -> request.getUri().getPath().contains("/class/satcat/")).count();
+
+    assertTrue(queryCount > 1);
+    assertTrue(transport.getRequests().stream().allMatch(request -> request.getUri().toString().length() <= 500));
+    assertEquals(1000, results.size());
+
+    for (int i = 0; i < results.size(); i++) {
+
+      assertEquals(10999 - i, results.get(i).getCatalogNumber().get());
+    }
+
+
+    // a limit applies to the merged results
+    List<SatCat> page = query.setLimit(new Limit(5, 10)).execute();
+
+    assertEquals(Arrays.asList(10989, 10988, 10987, 10986, 10985), page.stream().map(satCat -> satCat.getCatalogNumber().get()).collect(Collectors.toList()));
+
+
+    // paging works across split queries too
+    try (Stream<SatCat> pages = query.setLimit(Optional.empty()).streamPages(300)) {
+
+      assertEquals(catalogNumbers.size(), pages.map(satCat -> satCat.getCatalogNumber().get()).distinct().count());
+    }
+
+
+    // short queries are not split
+    int requestCount = transport.getRequests().size();
+
+    assertEquals(3, new SatCatQuery().setSession(session).addPredicate(new In<>(SatCatQueryField.CATALOG_NUMBER, 1, 2, 3)).execute().size());
+    assertEquals(requestCount + 1, transport.getRequests().size());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+
+public class QueryResultIteratorTests {
+
+  private static final ObjectReader satCatReader = new ObjectMapper().registerModule(new Jdk8Module()).registerModule(new JavaTimeModule()).readerFor(SatCat.class);
+
+
+  @Test
+  @DisplayName("QueryResultIterator: Results are bound one at a time")
+  public void test1() throws IOException {
+
+    String json = "[{\"NORAD_CAT_ID\":\"25544\",\"SATNAME\":\"ISS (ZARYA)\"},{\"NORAD_CAT_ID\":\"20580\",\"SATNAME\":\"HST\"}]";
+
+    try (QueryResultIterator<SatCat> iterator = new QueryResultIterator<>(satCatReader, toStream(json))) {
+
+      assertTrue(iterator.hasNext());
+      assertEquals((Integer) 25544, iterator.next().getCatalogNumber().get());
+      assertTrue(iterator.hasNext());
+      assertEquals("HST", iterator.next().getSatName());
+      assertFalse(iterator.hasNext());
+    }
+
+
+    // an empty array has no results
+    try (QueryResultIterator<SatCat> iterator = new QueryResultIterator<>(satCatReader, toStream("[]"))) {
+
+      assertFalse(iterator.hasNext());
+    }
+  }
+
+
+  @Test
+  @DisplayName("QueryResultIterator: Unexpected responses")
+  public void test2() {
+
+    // empty response
+    assertThrows(IOException.class, () -> {
+      new QueryResultIterator<>(satCatReader, toStream(""));
+    });
+
+
+    // error object instead of an array
+    assertThrows(IOException.class, () -> {
+      new QueryResultIterator<>(satCatReader, toStream("{\"error\":\"wrong\"}"));
+    });
+
+
+    // a malformed element is reported while iterating
+    assertThrows(UncheckedIOException.class, () -> {
+
+      try (QueryResultIterator<SatCat> iterator = new QueryResultIterator<>(satCatReader, toStream("[{\"NORAD_CAT_ID\":\"25544\"},\"wrong\"]"))) {
+
+        while (iterator.hasNext()) {
+
+          iterator.next();
+        }
+      }
+    });
+  }
+
+
+  private static InputStream toStream(String json) {
+
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+}
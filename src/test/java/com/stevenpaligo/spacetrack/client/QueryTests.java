@@ -20,8 +20,11 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import com.fasterxml.jackson.core.JsonParseException;
@@ -52,6 +55,13 @@ public class QueryTests {
     });
 
 
+    // the call to set the session will not accept a null
+    assertThrows(IllegalArgumentException.class, () -> {
+
+      new AnnouncementQuery().setSession(null);
+    });
+
+
     // the call to addPredicate(...) will not accept a null
     assertThrows(IllegalArgumentException.class, () -> {
 
@@ -217,6 +227,64 @@ public class QueryTests {
   }
 
 
+  @Test
+  @DisplayName("Query execution in a shared session")
+  public void test4() throws JsonParseException, JsonMappingException, IOException {
+
+    SpaceTrackSession session = new SpaceTrackSession(credentials);
+
+
+    // the first query logs in and the session is reused afterwards
+    List<SatCat> satellites = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    assertEquals(1, satellites.size());
+    assertTrue(session.isLoggedIn());
+
+    satellites = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    assertEquals(1, satellites.size());
+
+
+    // a session rejected by the server is renewed transparently
+    session.logout();
+    satellites = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    assertEquals(1, satellites.size());
+    assertTrue(session.isLoggedIn());
+
+
+    // incorrect credentials trigger an exception
+    assertThrows(IOException.class, () -> {
+
+      new SatCatQuery().setSession(new SpaceTrackSession(badCredentials)).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    });
+  }
+
+
+  @Test
+  @DisplayName("Query streaming tests")
+  public void test5() throws IOException {
+
+    // a call to set the credentials is required
+    assertThrows(IllegalStateException.class, () -> {
+
+      new AnnouncementQuery().stream();
+    });
+
+
+    // a successful call streams the same results as execute()
+    try (Stream<SatCat> satellites = new SatCatQuery().setCredentials(credentials).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).stream()) {
+
+      List<SatCat> results = satellites.collect(Collectors.toList());
+      assertEquals(1, results.size());
+      assertEquals((Integer) 25544, results.get(0).getCatalogNumber().get());
+    }
+
+
+    // forEach(...) passes each result to the consumer
+    List<SatCat> results = new LinkedList<>();
+    new SatCatQuery().setCredentials(credentials).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).forEach(results::add);
+    assertEquals(1, results.size());
+  }
+
+
   private static class IncorrectEqualPredicate<T extends QueryField> extends Equal<T> {
 
     public IncorrectEqualPredicate(@NonNull T field, @NonNull Number value) {
@@ -0,0 +1,251 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTests {
+
+  @Test
+  @DisplayName("SingleFlight: Concurrent calls share one outcome")
+  public void test1() throws Exception {
+
+    SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+    AtomicInteger callCount = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+
+    // the first call blocks until it is released
+    CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> {
+
+      try {
+
+        return singleFlight.execute("key", () -> {
+
+          callCount.incrementAndGet();
+          started.countDown();
+
+          try {
+
+            release.await();
+
+          } catch (InterruptedException e) {
+
+            throw new IllegalStateException(e);
+          }
+
+          return new Object();
+        });
+
+      } catch (IOException e) {
+
+        throw new IllegalStateException(e);
+      }
+    });
+
+    started.await();
+
+
+    // a second call with the same key waits for the first
+    CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> {
+
+      try {
+
+        return singleFlight.execute("key", () -> {
+
+          callCount.incrementAndGet();
+          return new Object();
+        });
+
+      } catch (IOException e) {
+
+        throw new IllegalStateException(e);
+      }
+    });
+
+
+    // a call with another key runs immediately
+    assertEquals("other", singleFlight.execute("other", () -> "other"));
+
+    while (singleFlight.size() != 1) {
+
+      Thread.sleep(1);
+    }
+
+    Thread.sleep(50);
+    release.countDown();
+
+    assertSame(first.get(), second.get());
+    assertEquals(1, callCount.get());
+    assertEquals(0, singleFlight.size());
+
+
+    // calls after the outcome is known run again
+    singleFlight.execute("key", () -> callCount.incrementAndGet());
+    assertEquals(2, callCount.get());
+  }
+
+
+  @Test
+  @DisplayName("SingleFlight: Exceptions are shared")
+  public void test2() throws Exception {
+
+    SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    IOException failure = new IOException("failure");
+
+    CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> {
+
+      try {
+
+        return singleFlight.execute("key", () -> {
+
+          started.countDown();
+
+          try {
+
+            release.await();
+
+          } catch (InterruptedException e) {
+
+            throw new IllegalStateException(e);
+          }
+
+          throw failure;
+        });
+
+      } catch (IOException e) {
+
+        throw new IllegalStateException(e);
+      }
+    });
+
+    started.await();
+
+    CompletableFuture<IOException> second = CompletableFuture.supplyAsync(() -> {
+
+      return assertThrows(IOException.class, () -> {
+        singleFlight.execute("key", () -> "unused");
+      });
+    });
+
+    Thread.sleep(50);
+    release.countDown();
+
+    assertSame(failure, second.get());
+    assertSame(failure, assertThrows(ExecutionException.class, first::get).getCause().getCause());
+    assertEquals(0, singleFlight.size());
+
+
+    // null values
+    assertThrows(IllegalArgumentException.class, () -> {
+      singleFlight.execute(null, () -> "unused");
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      singleFlight.execute("key", null);
+    });
+  }
+
+
+  @Test
+  @DisplayName("SingleFlight: Waiters get their own copies")
+  public void test3() throws Exception {
+
+    SingleFlight<String, List<String>> singleFlight = new SingleFlight<>(ArrayList::new);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b"));
+
+
+    // a lone caller gets the value itself
+    assertSame(value, singleFlight.execute("key", () -> value));
+
+
+    // the leader and a waiter get distinct, equal copies
+    CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(() -> {
+
+      try {
+
+        return singleFlight.execute("key", () -> {
+
+          started.countDown();
+
+          try {
+
+            release.await();
+
+          } catch (InterruptedException e) {
+
+            throw new IllegalStateException(e);
+          }
+
+          return value;
+        });
+
+      } catch (IOException e) {
+
+        throw new IllegalStateException(e);
+      }
+    });
+
+    started.await();
+
+    CompletableFuture<List<String>> second = CompletableFuture.supplyAsync(() -> {
+
+      try {
+
+        return singleFlight.execute("key", () -> new ArrayList<>());
+
+      } catch (IOException e) {
+
+        throw new IllegalStateException(e);
+      }
+    });
+
+    Thread.sleep(50);
+    release.countDown();
+
+    assertEquals(value, first.get());
+    assertEquals(value, second.get());
+    assertNotSame(first.get(), second.get());
+    assertNotSame(value, second.get());
+
+
+    // changing one caller's copy doesn't change another's
+    second.get().add("c");
+    assertEquals(Arrays.asList("a", "b"), first.get());
+
+
+    // null values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SingleFlight<String, Object>(null);
+    });
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.net.URI;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SpaceTrackEndpointTests {
+
+  @Test
+  @DisplayName("SpaceTrackEndpoint: Constructor parameter validation")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackEndpoint(null, "localhost", 8080);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackEndpoint("ftp", "localhost", 8080);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackEndpoint("http", null, 8080);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackEndpoint("http", "localhost", 70000);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackEndpoint((URI) null);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackEndpoint(URI.create("file:///tmp"));
+    });
+
+
+    // allowed values
+    assertDoesNotThrow(() -> {
+      new SpaceTrackEndpoint("http", "localhost", 8080);
+    });
+
+    assertDoesNotThrow(() -> {
+      new SpaceTrackEndpoint("https", "www.space-track.org", -1);
+    });
+
+    assertDoesNotThrow(() -> {
+      new SpaceTrackEndpoint(URI.create("http://127.0.0.1:9000/prefix/"));
+    });
+  }
+
+
+  @Test
+  @DisplayName("SpaceTrackEndpoint: URIs")
+  public void test2() {
+
+    // default endpoint
+    assertEquals("https://www.space-track.org/ajaxauth/login", SpaceTrackEndpoint.DEFAULT.getLoginUri().toString());
+    assertEquals("https://www.space-track.org/ajaxauth/logout", SpaceTrackEndpoint.DEFAULT.getLogoutUri().toString());
+    assertEquals("https://www.space-track.org/basicspacedata/query/class/satcat", SpaceTrackEndpoint.DEFAULT.getQueryUrl("/class/satcat"));
+
+
+    // query URIs are URL-encoded, query URLs are not
+    assertEquals("https://www.space-track.org/basicspacedata/query/class/satcat/orderby/COUNTRY%20asc", SpaceTrackEndpoint.DEFAULT.getQueryUri("/class/satcat/orderby/COUNTRY asc").toString());
+    assertEquals("https://www.space-track.org/basicspacedata/query/class/tle/EPOCH/%3Enow-5", SpaceTrackEndpoint.DEFAULT.getQueryUri("/class/tle/EPOCH/>now-5").toString());
+    assertEquals("https://www.space-track.org/basicspacedata/query/class/tle/EPOCH/>now-5", SpaceTrackEndpoint.DEFAULT.getQueryUrl("/class/tle/EPOCH/>now-5"));
+
+
+    // custom endpoints
+    SpaceTrackEndpoint endpoint = new SpaceTrackEndpoint(URI.create("http://localhost:8080/prefix/"));
+    assertEquals("http://localhost:8080/prefix/ajaxauth/login", endpoint.getLoginUri().toString());
+    assertEquals("http://localhost:8080/prefix/basicspacedata/query/class/satcat", endpoint.getQueryUrl("/class/satcat"));
+    assertEquals("http://localhost:8080/prefix", endpoint.toString());
+    assertEquals(new SpaceTrackEndpoint("http", "localhost", 9000), new SpaceTrackEndpoint(URI.create("http://localhost:9000")));
+  }
+}
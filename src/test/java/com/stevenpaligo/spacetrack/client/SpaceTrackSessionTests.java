@@ -0,0 +1,141 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCatQueryField;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.transport.SpaceTrackRequest.Method;
+
+public class SpaceTrackSessionTests {
+
+  @Test
+  @DisplayName("SpaceTrackSession: Parameter validation")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackSession(null);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackSession(new DefaultCredentialProvider("user", "password")).setMaxSessionAge(null);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new SpaceTrackSession(new DefaultCredentialProvider("user", "password")).setMaxSessionAge(Duration.ZERO);
+    });
+
+
+    // allowed values
+    assertDoesNotThrow(() -> {
+      new SpaceTrackSession(new DefaultCredentialProvider("user", "password")).setMaxSessionAge(Duration.ofMinutes(5));
+    });
+  }
+
+
+  @Test
+  @DisplayName("SpaceTrackSession: Initial state")
+  public void test2() {
+
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider("user", "password"));
+
+    assertFalse(session.isLoggedIn());
+    assertEquals(SpaceTrackEndpoint.DEFAULT, session.getEndpoint());
+  }
+
+
+  @Test
+  @DisplayName("SpaceTrackSession: Logging in once and reusing the session")
+  public void test3() throws IOException {
+
+    FakeTransport transport = new FakeTransport().addResponse("/class/satcat/NORAD_CAT_ID/25544/format/json/emptyresult/show", "[{\"NORAD_CAT_ID\":\"25544\"}]");
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport);
+
+
+    // the first query logs in and runs in the same request
+    List<SatCat> satellites = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    assertEquals(1, satellites.size());
+    assertTrue(session.isLoggedIn());
+    assertEquals(1, transport.countRequests(Method.POST));
+    assertEquals(0, transport.countRequests(Method.GET));
+
+
+    // later queries are sent as GET requests with the session cookie
+    satellites = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    assertEquals(1, satellites.size());
+    assertEquals(1, transport.countRequests(Method.POST));
+    assertEquals(1, transport.countRequests(Method.GET));
+
+
+    // a session expired by the server is renewed transparently
+    transport.expireSessions();
+    satellites = new SatCatQuery().setSession(session).addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544)).execute();
+    assertEquals(1, satellites.size());
+    assertEquals(2, transport.countRequests(Method.POST));
+    assertEquals(2, transport.countRequests(Method.GET));
+  }
+
+
+  @Test
+  @DisplayName("SpaceTrackSession: Failed login")
+  public void test4() {
+
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, "wrong")).setTransport(new FakeTransport());
+
+    assertThrows(IOException.class, () -> {
+      session.login();
+    });
+
+    assertThrows(IOException.class, () -> {
+      new SatCatQuery().setSession(session).execute();
+    });
+
+    assertFalse(session.isLoggedIn());
+  }
+
+
+  @Test
+  @DisplayName("SpaceTrackSession: Custom endpoint")
+  public void test5() throws IOException {
+
+    FakeTransport transport = new FakeTransport().addResponse("/class/satcat/format/json/emptyresult/show", "[{\"NORAD_CAT_ID\":\"25544\"}]");
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport)
+        .setEndpoint(new SpaceTrackEndpoint(URI.create("http://localhost:8080/stand-in")));
+
+
+    // the query string reflects the endpoint
+    assertEquals("http://localhost:8080/stand-in/basicspacedata/query/class/satcat/format/json/emptyresult/show", new SatCatQuery().setSession(session).getQueryString());
+
+
+    // all requests go to the endpoint
+    assertEquals(1, new SatCatQuery().setSession(session).execute().size());
+    assertEquals(1, new SatCatQuery().setSession(session).execute().size());
+
+    assertEquals("http://localhost:8080/stand-in/ajaxauth/login", transport.getRequests().get(0).getUri().toString());
+    assertEquals("http://localhost:8080/stand-in/basicspacedata/query/class/satcat/format/json/emptyresult/show", transport.getRequests().get(1).getUri().toString());
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Instant;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TleParserTests {
+
+  private static final String LINE_1 = "1 25544U 98067A   08264.51782528 -.00002182  00000-0 -11606-4 0  2927";
+  private static final String LINE_2 = "2 25544  51.6416 247.4627 0006703 130.5360 325.0288 15.72125391563537";
+
+
+  /**
+   * Replaces the checksum of a line with the correct one
+   */
+  private static String withChecksum(String line) {
+
+    int sum = 0;
+
+    for (char c : line.substring(0, 68).toCharArray()) {
+
+      sum += (Character.isDigit(c) ? c - '0' : (c == '-' ? 1 : 0));
+    }
+
+    return line.substring(0, 68) + (sum % 10);
+  }
+
+
+  @Test
+  @DisplayName("TleParser: Checksums and catalog numbers")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> TleParser.isChecksumValid(null));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseCatalogNumber("1 255"));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseCatalogNumber("1 I0001U"));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseCatalogNumber("1 O0001U"));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseCatalogNumber("1      U"));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseCatalogNumber("1 2x544U"));
+
+
+    // allowed values
+    assertTrue(TleParser.isChecksumValid(LINE_1));
+    assertTrue(TleParser.isChecksumValid(LINE_2 + "\r"));
+    assertFalse(TleParser.isChecksumValid(LINE_1.substring(0, 68) + "8"));
+    assertFalse(TleParser.isChecksumValid(LINE_1.substring(0, 68)));
+
+    assertEquals(25544, TleParser.parseCatalogNumber(LINE_1));
+    assertEquals(5, TleParser.parseCatalogNumber("1 00005U"));
+    assertEquals(5, TleParser.parseCatalogNumber("1     5U"));
+    assertEquals(0, TleParser.parseCatalogNumber("1 00000U"));
+    assertEquals(100001, TleParser.parseCatalogNumber("1 A0001U"));
+    assertEquals(179999, TleParser.parseCatalogNumber("1 H9999U"));
+    assertEquals(180000, TleParser.parseCatalogNumber("1 J0000U"));
+    assertEquals(339999, TleParser.parseCatalogNumber("1 Z9999U"));
+  }
+
+
+  @Test
+  @DisplayName("TleParser: Parsing a TLE")
+  public void test2() {
+
+    ElementSetColumns columns = new ElementSetColumns(0);
+
+    assertEquals(0, TleParser.parse(LINE_1, LINE_2, columns));
+    assertEquals(1, columns.size());
+    assertEquals(25544, columns.getCatalogNumber()[0]);
+    assertEquals(Instant.parse("2008-09-20T12:25:40.104192Z"), columns.getEpoch(0));
+    assertEquals(-0.00002182, columns.getMeanMotionDot()[0]);
+    assertEquals(0.0, columns.getMeanMotionDoubleDot()[0]);
+    assertEquals(-0.11606e-4, columns.getBstar()[0]);
+    assertEquals(0, columns.getEphemerisType()[0]);
+    assertEquals(292, columns.getElementSetNumber()[0]);
+    assertEquals(51.6416, columns.getInclinationDegrees()[0]);
+    assertEquals(247.4627, columns.getRightAscOfNodeDegrees()[0]);
+    assertEquals(0.0006703, columns.getEccentricity()[0]);
+    assertEquals(130.5360, columns.getArgOfPerigeeDegrees()[0]);
+    assertEquals(325.0288, columns.getMeanAnomalyDegrees()[0]);
+    assertEquals(15.72125391, columns.getMeanMotionRevsPerDay()[0]);
+    assertEquals(56353, columns.getRevNumber()[0]);
+    assertEquals(1440.0 / 15.72125391, columns.getPeriodMinutes()[0]);
+    assertEquals(6730.0, columns.getSemiMajorAxisKilometers()[0], 1.0);
+    assertEquals(columns.getSemiMajorAxisKilometers()[0] * (1 + 0.0006703) - 6378.135, columns.getApogeeHeightKilometers()[0], 1e-9);
+    assertEquals(columns.getSemiMajorAxisKilometers()[0] * (1 - 0.0006703) - 6378.135, columns.getPerigeeHeightKilometers()[0], 1e-9);
+
+
+    // exponents, signs, blank fields, and Alpha-5 catalog numbers
+    String line1 = withChecksum("1 A0001U 21001A   21001.00000000  .00001234  12345-5  10270+1 0     0");
+    String line2 = withChecksum("2 A0001  98.0000   0.0000 1234567   0.0000   0.0000 14.00000000    10");
+
+    assertEquals(1, TleParser.parse(line1, line2, columns));
+    assertEquals(100001, columns.getCatalogNumber()[1]);
+    assertEquals(Instant.parse("2021-01-01T00:00:00Z"), columns.getEpoch(1));
+    assertEquals(0.00001234, columns.getMeanMotionDot()[1]);
+    assertEquals(0.12345e-5, columns.getMeanMotionDoubleDot()[1]);
+    assertEquals(1.0270, columns.getBstar()[1]);
+    assertEquals(0, columns.getElementSetNumber()[1]);
+    assertEquals(0.1234567, columns.getEccentricity()[1]);
+    assertEquals(1, columns.getRevNumber()[1]);
+  }
+
+
+  @Test
+  @DisplayName("TleParser: Invalid TLEs")
+  public void test3() {
+
+    ElementSetColumns columns = new ElementSetColumns();
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(null, LINE_2, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_1, LINE_2, null));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_1.substring(0, 68), LINE_2, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_2, LINE_1, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_1.substring(0, 68) + "0", LINE_2, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_1, withChecksum(LINE_2.replace("25544", "25545")), columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(withChecksum(LINE_1.replace("-11606-4", "-11606x4")), LINE_2, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(withChecksum(LINE_1.replace("08264.51782528", "08000.51782528")), LINE_2, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_1, withChecksum(LINE_2.replace("51.6416", "51.6.16")), columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_1, withChecksum(LINE_2.replace("15.72125391", " 0.00000000")), columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parse(LINE_1, withChecksum(LINE_2.replace("15.72125391", "-15.7212539")), columns));
+
+
+    // invalid TLEs don't leave partial rows behind
+    assertEquals(0, columns.size());
+  }
+
+
+  @Test
+  @DisplayName("TleParser: Parsing blocks of text")
+  public void test4() {
+
+    ElementSetColumns columns = new ElementSetColumns();
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseAll(null, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseAll(LINE_1, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseAll(LINE_2, columns));
+    assertThrows(IllegalArgumentException.class, () -> TleParser.parseAll(LINE_1 + "\n" + LINE_1 + "\n" + LINE_2, columns));
+
+
+    // allowed values
+    columns.clear();
+
+    assertEquals(0, TleParser.parseAll("", columns));
+    assertEquals(3, TleParser.parseAll(LINE_1 + "\n" + LINE_2 + "\r\n\r\nISS (ZARYA)\r\n" + LINE_1 + "\r\n" + LINE_2 + "\n0 ISS\n" + LINE_1 + "\n" + LINE_2, columns));
+    assertEquals(3, columns.size());
+    assertEquals(25544, columns.getCatalogNumber()[2]);
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.cache;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.stevenpaligo.spacetrack.client.LaunchSiteQuery;
+import com.stevenpaligo.spacetrack.client.SatCatQuery;
+import com.stevenpaligo.spacetrack.client.TleQuery;
+
+public class DiskQueryCacheTests {
+
+  @TempDir
+  Path directory;
+
+
+  private static String toString(ByteBuffer buffer) {
+
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  @Test
+  @DisplayName("DiskQueryCache: Parameter validation")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DiskQueryCache(null, 1000);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DiskQueryCache(directory, 0);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DiskQueryCache(directory, 1000).setTimeToLive(SatCatQuery.class, Duration.ofSeconds(-1));
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DiskQueryCache(directory, 1000).put(SatCatQuery.class, "query", null);
+    });
+
+
+    // allowed values
+    assertDoesNotThrow(() -> {
+      new DiskQueryCache(directory.resolve("a").resolve("b"), 1000).setDefaultTimeToLive(Duration.ZERO);
+    });
+  }
+
+
+  @Test
+  @DisplayName("DiskQueryCache: Persistence and time-to-live")
+  public void test2() throws Exception {
+
+    Instant now = Instant.parse("2021-11-01T00:00:00Z");
+    DiskQueryCache cache = new DiskQueryCache(directory, 10_000, Clock.fixed(now, ZoneOffset.UTC)).setTimeToLive(LaunchSiteQuery.class, Duration.ofDays(1))
+        .setTimeToLive(TleQuery.class, Duration.ZERO);
+
+    cache.put(SatCatQuery.class, "satcat", "[{\"NORAD_CAT_ID\":\"25544\"}]".getBytes(StandardCharsets.UTF_8));
+    cache.put(LaunchSiteQuery.class, "launchsite", "[]".getBytes(StandardCharsets.UTF_8));
+    cache.put(TleQuery.class, "tle", "[]".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("[{\"NORAD_CAT_ID\":\"25544\"}]", toString(cache.get("satcat").get()));
+    assertFalse(cache.get("tle").isPresent());
+
+
+    // a new cache in the same directory (e.g. after a restart) sees the responses until they expire
+    DiskQueryCache restarted = new DiskQueryCache(directory, 10_000, Clock.fixed(now.plus(DiskQueryCache.DEFAULT_TIME_TO_LIVE), ZoneOffset.UTC));
+
+    assertFalse(restarted.get("satcat").isPresent());
+    assertEquals("[]", toString(restarted.get("launchsite").get()));
+
+    try (Stream<Path> files = Files.list(directory)) {
+
+      assertEquals(1, files.count());
+    }
+
+
+    // replacement and invalidation
+    restarted.put(LaunchSiteQuery.class, "launchsite", "[{}]".getBytes(StandardCharsets.UTF_8));
+    assertEquals("[{}]", toString(restarted.get("launchsite").get()));
+
+    restarted.invalidate("launchsite");
+    assertFalse(restarted.get("launchsite").isPresent());
+    assertEquals(0, restarted.size());
+  }
+
+
+  @Test
+  @DisplayName("DiskQueryCache: Eviction, corruption, and statistics")
+  public void test3() throws Exception {
+
+    DiskQueryCache cache = new DiskQueryCache(directory, 150);
+    byte[] response = new byte[40];
+
+    cache.put(SatCatQuery.class, "1", response);
+
+    try (Stream<Path> files = Files.list(directory)) {
+
+      Files.setLastModifiedTime(files.findFirst().get(), FileTime.fromMillis(0));
+    }
+
+    cache.put(SatCatQuery.class, "2", response);
+
+
+    // the oldest response is deleted first
+    cache.put(SatCatQuery.class, "3", response);
+
+    assertFalse(cache.get("1").isPresent());
+    assertTrue(cache.get("2").isPresent());
+    assertTrue(cache.get("3").isPresent());
+    assertTrue(cache.size() <= 150);
+
+
+    // responses larger than the cache are not cached
+    cache.put(SatCatQuery.class, "4", new byte[150]);
+    assertFalse(cache.get("4").isPresent());
+
+
+    // corrupt files are treated as misses and deleted
+    cache.invalidateAll();
+    cache.put(SatCatQuery.class, "5", response);
+
+    try (Stream<Path> files = Files.list(directory)) {
+
+      Files.write(files.findFirst().get(), new byte[] {1, 2});
+    }
+
+    assertFalse(cache.get("5").isPresent());
+    assertEquals(0, cache.size());
+
+
+    DiskQueryCache.Statistics statistics = cache.getStatistics();
+    assertEquals(2, statistics.getHitCount());
+    assertEquals(3, statistics.getMissCount());
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(0.4, statistics.getHitRate(), 0.0001);
+  }
+
+
+  @Test
+  @DisplayName("DiskQueryCache: Running size through restarts, replacements, and deletions")
+  public void test4() throws Exception {
+
+    byte[] response = new byte[40]; // 57 bytes per file with a one-character query string
+
+    new DiskQueryCache(directory, 150).put(SatCatQuery.class, "1", response);
+
+    try (Stream<Path> files = Files.list(directory)) {
+
+      Files.setLastModifiedTime(files.findFirst().get(), FileTime.fromMillis(0));
+    }
+
+
+    // the size of the responses cached before the restart counts, and replacing a response doesn't grow the cache
+    DiskQueryCache cache = new DiskQueryCache(directory, 150);
+
+    for (int i = 0; i < 5; i++) {
+
+      cache.put(SatCatQuery.class, "2", response);
+    }
+
+    assertEquals(0, cache.getStatistics().getEvictionCount());
+    assertEquals(114, cache.size());
+
+    cache.put(SatCatQuery.class, "3", response);
+
+    assertEquals(1, cache.getStatistics().getEvictionCount());
+    assertFalse(cache.get("1").isPresent());
+    assertEquals(114, cache.size());
+
+
+    // deleted responses make room
+    cache.invalidate("2");
+    cache.put(SatCatQuery.class, "4", response);
+
+    assertEquals(1, cache.getStatistics().getEvictionCount());
+    assertTrue(cache.get("3").isPresent());
+    assertTrue(cache.get("4").isPresent());
+  }
+}
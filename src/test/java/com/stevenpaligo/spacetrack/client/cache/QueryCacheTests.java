@@ -0,0 +1,189 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.cache;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.LaunchSiteQuery;
+import com.stevenpaligo.spacetrack.client.SatCatQuery;
+import com.stevenpaligo.spacetrack.client.TleQuery;
+import com.stevenpaligo.spacetrack.client.TleQuery.Tle;
+
+public class QueryCacheTests {
+
+  @Test
+  @DisplayName("QueryCache: Parameter validation")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new QueryCache(0);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new QueryCache(10).setDefaultTimeToLive(null);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new QueryCache(10).setDefaultTimeToLive(Duration.ofSeconds(-1));
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new QueryCache(10).setTimeToLive(null, Duration.ofMinutes(1));
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new QueryCache(10).setTimeToLive(SatCatQuery.class, Duration.ofSeconds(-1));
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new QueryCache(10).get(null, String.class);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new QueryCache(10).put(SatCatQuery.class, "query", String.class, null);
+    });
+
+
+    // allowed values
+    assertDoesNotThrow(() -> {
+      new QueryCache(10).setDefaultTimeToLive(Duration.ZERO).setTimeToLive(SatCatQuery.class, Duration.ofHours(1));
+    });
+  }
+
+
+  @Test
+  @DisplayName("QueryCache: Time-to-live")
+  public void test2() {
+
+    AtomicLong clock = new AtomicLong();
+    QueryCache cache = new QueryCache(100, clock::get).setTimeToLive(LaunchSiteQuery.class, Duration.ofDays(1)).setTimeToLive(TleQuery.class, Duration.ZERO);
+
+    assertEquals(QueryCache.DEFAULT_TIME_TO_LIVE, cache.getTimeToLive(SatCatQuery.class));
+    assertEquals(Duration.ofDays(1), cache.getTimeToLive(LaunchSiteQuery.class));
+
+
+    // responses are cached for the time-to-live of their query class
+    cache.put(SatCatQuery.class, "satcat", String.class, Arrays.asList("a", "b"));
+    cache.put(LaunchSiteQuery.class, "launchsite", String.class, Arrays.asList("c"));
+    cache.put(TleQuery.class, "tle", String.class, Arrays.asList("d"));
+
+    assertEquals(Arrays.asList("a", "b"), cache.get("satcat", String.class).get());
+    assertEquals(Arrays.asList("c"), cache.get("launchsite", String.class).get());
+    assertFalse(cache.get("tle", String.class).isPresent());
+
+
+    // expired responses are removed
+    clock.addAndGet(QueryCache.DEFAULT_TIME_TO_LIVE.toNanos());
+
+    assertFalse(cache.get("satcat", String.class).isPresent());
+    assertTrue(cache.get("launchsite", String.class).isPresent());
+    assertEquals(1, cache.size());
+
+
+    // the same query with another result type is cached separately
+    assertFalse(cache.get("launchsite", Integer.class).isPresent());
+    cache.put(LaunchSiteQuery.class, "launchsite", Integer.class, Arrays.asList(1));
+    assertEquals(Arrays.asList(1), cache.get("launchsite", Integer.class).get());
+    assertEquals(Arrays.asList("c"), cache.get("launchsite", String.class).get());
+
+
+    // invalidation (of all result types)
+    cache.invalidate("launchsite");
+    assertFalse(cache.get("launchsite", String.class).isPresent());
+    assertFalse(cache.get("launchsite", Integer.class).isPresent());
+  }
+
+
+  @Test
+  @DisplayName("QueryCache: Eviction and statistics")
+  public void test3() {
+
+    QueryCache cache = new QueryCache(5);
+
+    cache.put(SatCatQuery.class, "1", String.class, Arrays.asList("a", "b"));
+    cache.put(SatCatQuery.class, "2", String.class, Arrays.asList("c", "d"));
+    assertTrue(cache.get("1", String.class).isPresent());
+
+
+    // the least recently used response is evicted first
+    cache.put(SatCatQuery.class, "3", String.class, Arrays.asList("e", "f"));
+
+    assertTrue(cache.get("1", String.class).isPresent());
+    assertFalse(cache.get("2", String.class).isPresent());
+    assertTrue(cache.get("3", String.class).isPresent());
+
+
+    // responses larger than the cache are not cached
+    cache.put(SatCatQuery.class, "4", String.class, Collections.nCopies(6, "g"));
+    assertFalse(cache.get("4", String.class).isPresent());
+
+
+    // replacing a response does not count it twice
+    cache.put(SatCatQuery.class, "3", String.class, Arrays.asList("h"));
+    assertEquals(3, cache.getStatistics().getResultCount());
+
+
+    QueryCache.Statistics statistics = cache.getStatistics();
+    assertEquals(3, statistics.getHitCount());
+    assertEquals(2, statistics.getMissCount());
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(2, statistics.getResponseCount());
+    assertEquals(0.6, statistics.getHitRate(), 0.0001);
+
+
+    // cached results are read-only
+    assertThrows(UnsupportedOperationException.class, () -> {
+      cache.get("1", String.class).get().clear();
+    });
+
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getStatistics().getResultCount());
+  }
+
+
+  @Test
+  @DisplayName("QueryCache: Changing results doesn't change the cache")
+  public void test4() {
+
+    QueryCache cache = new QueryCache(100);
+    Tle tle = new Tle();
+    tle.setObjectName("ISS (ZARYA)");
+
+    cache.put(TleQuery.class, "tle", Tle.class, Arrays.asList(tle));
+
+
+    // neither the results that were cached nor the results of a hit are shared with the cache
+    tle.setObjectName("CHANGED");
+    Tle hit = (Tle) cache.get("tle", Tle.class).get().get(0);
+
+    assertEquals("ISS (ZARYA)", hit.getObjectName());
+
+    hit.setObjectName("CHANGED");
+
+    assertEquals("ISS (ZARYA)", ((Tle) cache.get("tle", Tle.class).get().get(0)).getObjectName());
+    assertNotSame(cache.get("tle", Tle.class).get().get(0), cache.get("tle", Tle.class).get().get(0));
+  }
+}
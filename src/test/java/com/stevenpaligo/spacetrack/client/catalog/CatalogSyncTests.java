@@ -0,0 +1,251 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.threeten.extra.scale.UtcInstant;
+import com.stevenpaligo.spacetrack.client.FakeTransport;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery.LatestTleQueryField;
+import com.stevenpaligo.spacetrack.client.PublishedTleQuery;
+import com.stevenpaligo.spacetrack.client.PublishedTleQuery.PublishedTleQueryField;
+import com.stevenpaligo.spacetrack.client.Query;
+import com.stevenpaligo.spacetrack.client.SatCatChangeQuery;
+import com.stevenpaligo.spacetrack.client.SatCatChangeQuery.SatCatChangeQueryField;
+import com.stevenpaligo.spacetrack.client.SatCatQuery;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCatQueryField;
+import com.stevenpaligo.spacetrack.client.SpaceTrackEndpoint;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession;
+import com.stevenpaligo.spacetrack.client.catalog.CatalogSync.ChangeEvent;
+import com.stevenpaligo.spacetrack.client.catalog.CatalogSync.ChangeType;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.predicate.GreaterThan;
+import com.stevenpaligo.spacetrack.client.predicate.In;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import com.stevenpaligo.spacetrack.client.query.Sort;
+import com.stevenpaligo.spacetrack.client.query.Sort.Direction;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+
+public class CatalogSyncTests {
+
+  private static final String QUERY_URL = SpaceTrackEndpoint.DEFAULT.getQueryUrl("");
+
+
+  private static String path(Query<?, ?, ?> query) {
+
+    return query.getQueryString().substring(QUERY_URL.length());
+  }
+
+
+  private static String satCat(int catalogNumber, String name) {
+
+    return "{\"NORAD_CAT_ID\":\"" + catalogNumber + "\",\"SATNAME\":\"" + name + "\",\"INTLDES\":\"1998-067A\",\"COUNTRY\":\"ISS\"}";
+  }
+
+
+  private static String elementSet(int catalogNumber, String epoch) {
+
+    return "{\"NORAD_CAT_ID\":\"" + catalogNumber + "\",\"ORDINAL\":\"1\",\"EPOCH\":\"" + epoch + "\",\"EPOCH_MICROSECONDS\":\"0\"}";
+  }
+
+
+  private static String elementSet(int catalogNumber, String epoch, int fileNumber) {
+
+    return elementSet(catalogNumber, epoch).replace("}", ",\"FILE\":\"" + fileNumber + "\"}");
+  }
+
+
+  @Test
+  @DisplayName("CatalogSync: Constructor and setters")
+  public void test1() {
+
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD));
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> new CatalogSync(null));
+    assertThrows(IllegalArgumentException.class, () -> new CatalogSync(session).setOverlap(null));
+    assertThrows(IllegalArgumentException.class, () -> new CatalogSync(session).setOverlap(Duration.ofSeconds(-1)));
+    assertThrows(IllegalArgumentException.class, () -> new CatalogSync(session).addListener(null));
+
+
+    // allowed values
+    assertDoesNotThrow(() -> new CatalogSync(session).setOverlap(Duration.ZERO));
+    assertEquals(CatalogSync.DEFAULT_OVERLAP, new CatalogSync(session).getOverlap());
+  }
+
+
+  @Test
+  @DisplayName("CatalogSync: Full load, then deltas from the high-water marks")
+  public void test2() throws Exception {
+
+    UtcInstant firstMark = UtcInstant.of(Instant.parse("2021-11-01T00:00:00Z"));
+    UtcInstant secondMark = UtcInstant.of(Instant.parse("2021-11-02T00:00:00Z"));
+    UtcInstant firstLookBack = UtcInstant.of(Instant.parse("2021-10-31T23:59:00Z"));
+    UtcInstant secondLookBack = UtcInstant.of(Instant.parse("2021-11-01T23:59:00Z"));
+
+    FakeTransport transport = new FakeTransport();
+
+
+    // the full load
+    transport.addResponse(path(new SatCatChangeQuery().addSort(new Sort<>(SatCatChangeQueryField.UPDATE_TIME, Direction.DESC)).setLimit(Limit.ONE)),
+        "[{\"NORAD_CAT_ID\":\"1\",\"CHANGE_MADE\":\"2021-11-01 00:00:00\"}]");
+    transport.addResponse(path(new PublishedTleQuery().addSort(new Sort<>(PublishedTleQueryField.PUBLISH_TIME, Direction.DESC)).setLimit(Limit.ONE)),
+        "[{\"NORAD_CAT_ID\":\"1\",\"PUBLISH_EPOCH\":\"2021-11-01 00:00:00\"}]");
+    transport.addResponse(path(new SatCatQuery()), "[" + satCat(1, "ONE") + "," + satCat(2, "TWO") + "]");
+    transport.addResponse(path(new LatestTleQuery().addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1))),
+        "[" + elementSet(1, "2021-10-31 00:00:00") + "," + elementSet(2, "2021-10-31 00:00:00") + "]");
+
+
+    // the first delta
+    transport.addResponse(path(new SatCatChangeQuery().addPredicate(new GreaterThan<>(SatCatChangeQueryField.UPDATE_TIME, firstLookBack))),
+        "[{\"NORAD_CAT_ID\":\"2\",\"CHANGE_MADE\":\"2021-11-02 00:00:00\"}]");
+    transport.addResponse(path(new SatCatQuery().addPredicate(new In<>(SatCatQueryField.CATALOG_NUMBER, new TreeSet<>(Arrays.asList(2)), Integer.class, true))),
+        "[" + satCat(2, "TWO (RENAMED)") + "]");
+    transport.addResponse(path(new PublishedTleQuery().addPredicate(new GreaterThan<>(PublishedTleQueryField.PUBLISH_TIME, firstLookBack))),
+        "[{\"NORAD_CAT_ID\":\"1\",\"PUBLISH_EPOCH\":\"2021-11-02 00:00:00\"},{\"NORAD_CAT_ID\":\"2\",\"PUBLISH_EPOCH\":\"2021-11-01 12:00:00\"}]");
+    transport.addResponse(path(new LatestTleQuery().addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1))
+        .addPredicate(new In<>(LatestTleQueryField.CATALOG_NUMBER, new TreeSet<>(Arrays.asList(1, 2)), Integer.class, true))),
+        "[" + elementSet(1, "2021-11-01 18:00:00") + "," + elementSet(2, "2021-10-31 00:00:00") + "]");
+
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport)
+        .setRequestScheduler(RequestScheduler.unlimited());
+    List<ChangeEvent> events = new ArrayList<>();
+    CatalogSync sync = new CatalogSync(session).setOverlap(Duration.ofMinutes(1)).addListener(events::add).addListener(event -> {
+      throw new IllegalStateException("listener exceptions are logged, not thrown");
+    });
+
+    assertEquals(4, sync.sync());
+    assertEquals(4, events.size());
+    assertEquals(firstMark, sync.getSatCatHighWaterMark().get());
+    assertEquals(firstMark, sync.getElementSetHighWaterMark().get());
+    assertEquals("TWO", sync.getSatCat(2).get().getSatName());
+    assertEquals(2, sync.getElementSets().size());
+
+
+    // only the renamed satellite and the newer element set are replaced (element set 2 was republished without a newer epoch)
+    events.clear();
+
+    assertEquals(2, sync.sync());
+    assertEquals(2, events.size());
+    assertEquals(ChangeType.SATCAT, events.get(0).getType());
+    assertEquals(2, events.get(0).getCatalogNumber());
+    assertEquals("TWO (RENAMED)", events.get(0).getSatCat().get().getSatName());
+    assertEquals(ChangeType.ELEMENT_SET, events.get(1).getType());
+    assertEquals(1, events.get(1).getCatalogNumber());
+    assertFalse(events.get(1).getSatCat().isPresent());
+    assertEquals(Instant.parse("2021-11-01T18:00:00Z"), sync.getElementSet(1).get().getEpoch());
+    assertEquals(secondMark, sync.getSatCatHighWaterMark().get());
+    assertEquals(secondMark, sync.getElementSetHighWaterMark().get());
+
+
+    // nothing changed since the new marks
+    int requestCount = transport.getRequests().size();
+
+    assertEquals(0, sync.sync());
+    assertEquals(requestCount + 2, transport.getRequests().size());
+    assertTrue(transport.getRequests().get(requestCount).getUri().getPath().endsWith(path(new SatCatChangeQuery().addPredicate(new GreaterThan<>(SatCatChangeQueryField.UPDATE_TIME,
+        secondLookBack)))));
+  }
+
+
+  @Test
+  @DisplayName("CatalogSync: Corrections, removals, and changes seen again in the overlap")
+  public void test3() throws Exception {
+
+    UtcInstant firstLookBack = UtcInstant.of(Instant.parse("2021-10-31T23:59:00Z"));
+    UtcInstant secondLookBack = UtcInstant.of(Instant.parse("2021-11-01T23:59:00Z"));
+
+    FakeTransport transport = new FakeTransport();
+
+
+    // the full load (object 3 has decayed, so it has no element set)
+    transport.addResponse(path(new SatCatChangeQuery().addSort(new Sort<>(SatCatChangeQueryField.UPDATE_TIME, Direction.DESC)).setLimit(Limit.ONE)),
+        "[{\"NORAD_CAT_ID\":\"1\",\"CHANGE_MADE\":\"2021-11-01 00:00:00\"}]");
+    transport.addResponse(path(new PublishedTleQuery().addSort(new Sort<>(PublishedTleQueryField.PUBLISH_TIME, Direction.DESC)).setLimit(Limit.ONE)),
+        "[{\"NORAD_CAT_ID\":\"1\",\"PUBLISH_EPOCH\":\"2021-11-01 00:00:00\"}]");
+    transport.addResponse(path(new SatCatQuery()), "[" + satCat(1, "ONE") + "," + satCat(2, "TWO") + "," + satCat(3, "THREE").replace("}", ",\"DECAY\":\"2021-10-01\"}") + "]");
+    transport.addResponse(path(new LatestTleQuery().addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1))),
+        "[" + elementSet(1, "2021-10-31 00:00:00", 100) + "," + elementSet(2, "2021-10-31 00:00:00", 100) + "," + elementSet(3, "2021-09-30 00:00:00", 90) + "]");
+
+
+    // object 2 decays, object 3 leaves the catalog, and object 1's element set is corrected without changing its epoch
+    String changes = "[{\"NORAD_CAT_ID\":\"2\",\"CHANGE_MADE\":\"2021-11-02 00:00:00\"},{\"NORAD_CAT_ID\":\"3\",\"CHANGE_MADE\":\"2021-11-01 23:59:30\"}]";
+    String published = "[{\"NORAD_CAT_ID\":\"1\",\"PUBLISH_EPOCH\":\"2021-11-02 00:00:00\"}]";
+
+    transport.addResponse(path(new SatCatChangeQuery().addPredicate(new GreaterThan<>(SatCatChangeQueryField.UPDATE_TIME, firstLookBack))), changes);
+    transport.addResponse(path(new SatCatQuery().addPredicate(new In<>(SatCatQueryField.CATALOG_NUMBER, new TreeSet<>(Arrays.asList(2, 3)), Integer.class, true))),
+        "[" + satCat(2, "TWO").replace("}", ",\"DECAY\":\"2021-11-01\"}") + "]");
+    transport.addResponse(path(new PublishedTleQuery().addPredicate(new GreaterThan<>(PublishedTleQueryField.PUBLISH_TIME, firstLookBack))), published);
+    transport.addResponse(path(new LatestTleQuery().addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1))
+        .addPredicate(new In<>(LatestTleQueryField.CATALOG_NUMBER, new TreeSet<>(Arrays.asList(1)), Integer.class, true))), "[" + elementSet(1, "2021-10-31 00:00:00", 101) + "]");
+
+
+    // the same changes are seen again in the next overlap
+    transport.addResponse(path(new SatCatChangeQuery().addPredicate(new GreaterThan<>(SatCatChangeQueryField.UPDATE_TIME, secondLookBack))), changes);
+    transport.addResponse(path(new PublishedTleQuery().addPredicate(new GreaterThan<>(PublishedTleQueryField.PUBLISH_TIME, secondLookBack))), published);
+
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport)
+        .setRequestScheduler(RequestScheduler.unlimited());
+    List<ChangeEvent> events = new ArrayList<>();
+    CatalogSync sync = new CatalogSync(session).setOverlap(Duration.ofMinutes(1)).addListener(events::add);
+
+    assertEquals(5, sync.sync());
+    assertEquals(3, sync.getSatCats().size());
+    assertEquals(2, sync.getElementSets().size());
+    assertFalse(sync.getElementSet(3).isPresent());
+
+
+    // the decayed object's element set and the removed object's record are removed, and the correction is applied
+    events.clear();
+
+    assertEquals(4, sync.sync());
+    assertEquals(4, events.size());
+    assertEquals(ChangeType.SATCAT, events.get(0).getType());
+    assertEquals(2, events.get(0).getCatalogNumber());
+    assertEquals(ChangeType.REMOVED, events.get(1).getType());
+    assertEquals(2, events.get(1).getCatalogNumber());
+    assertEquals(ChangeType.REMOVED, events.get(2).getType());
+    assertEquals(3, events.get(2).getCatalogNumber());
+    assertFalse(events.get(2).getSatCat().isPresent());
+    assertFalse(events.get(2).getElementSet().isPresent());
+    assertEquals(ChangeType.ELEMENT_SET, events.get(3).getType());
+    assertEquals(1, events.get(3).getCatalogNumber());
+    assertEquals(101, sync.getElementSet(1).get().getFileNumber());
+    assertTrue(sync.getSatCat(2).get().getDecayDate().isPresent());
+    assertFalse(sync.getElementSet(2).isPresent());
+    assertFalse(sync.getSatCat(3).isPresent());
+
+
+    // changes seen again in the overlap are not reported again
+    events.clear();
+    int requestCount = transport.getRequests().size();
+
+    assertEquals(0, sync.sync());
+    assertEquals(0, events.size());
+    assertFalse(transport.getRequests().subList(requestCount, transport.getRequests().size()).stream().anyMatch(request -> request.getUri().getPath().contains("/class/satcat/")));
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.CompactElementSetQuery;
+import com.stevenpaligo.spacetrack.client.FakeTransport;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession;
+import com.stevenpaligo.spacetrack.client.catalog.OffHeapElementCatalog.Snapshot;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+
+public class OffHeapElementCatalogTests {
+
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+
+  private static CompactElementSet elementSet(int catalogNumber, String epoch, String objectName, String objectType) throws Exception {
+
+    return jsonMapper.readValue("{\"NORAD_CAT_ID\":\"" + catalogNumber + "\",\"EPOCH\":\"" + epoch + "\",\"OBJECT_NAME\":\"" + objectName + "\",\"OBJECT_TYPE\":\"" + objectType
+        + "\",\"OBJECT_ID\":\"1998-067A\",\"CLASSIFICATION_TYPE\":\"U\",\"MEAN_MOTION\":\"15.48601496\",\"ECCENTRICITY\":\"0.0004234\",\"REV_AT_EPOCH\":\"30972\",\"DECAYED\":\"1\","
+        + "\"TLE_LINE1\":\"1 25544U\",\"APOGEE\":\"420.726\"}", CompactElementSet.class);
+  }
+
+
+  @Test
+  @DisplayName("OffHeapElementCatalog: Refresh and lookup")
+  public void test1() throws Exception {
+
+    OffHeapElementCatalog catalog = new OffHeapElementCatalog();
+
+    assertEquals(0, catalog.snapshot().size());
+    assertEquals(-1, catalog.snapshot().indexOf(25544));
+
+
+    // element sets are sorted by catalog number, and the latest epoch wins
+    Snapshot snapshot = catalog.refresh(Arrays.asList(elementSet(25544, "2021-11-01 12:00:00", "ISS (ZARYA)", "PAYLOAD"), elementSet(5, "2021-11-01 00:00:00", "VANGUARD 1", "PAYLOAD"),
+        elementSet(25544, "2021-11-02 12:00:00", "ISS (ZARYA)", "PAYLOAD"), elementSet(25544, "2021-10-31 12:00:00", "OLD", "PAYLOAD"), new CompactElementSet()));
+
+    assertSame(snapshot, catalog.snapshot());
+    assertEquals(2, snapshot.size());
+    assertEquals(5, snapshot.getCatalogNumber(0));
+    assertEquals(0, snapshot.indexOf(5));
+    assertTrue(snapshot.contains(25544));
+    assertFalse(snapshot.contains(6));
+
+    int row = snapshot.indexOf(25544);
+
+    assertEquals(1, row);
+    assertEquals(Instant.parse("2021-11-02T12:00:00Z"), snapshot.getEpoch(row));
+    assertEquals("ISS (ZARYA)", snapshot.getObjectName(row));
+    assertEquals("1998-067A", snapshot.getObjectId(row));
+    assertSame("PAYLOAD", snapshot.getObjectType(row));
+    assertEquals("1 25544U", snapshot.getTleLine1(row));
+    assertNull(snapshot.getTleLine2(row));
+    assertEquals('U', snapshot.getClassification(row));
+    assertEquals(15.48601496, snapshot.getMeanMotionRevsPerDay(row));
+    assertEquals(0.0004234, snapshot.getEccentricity(row));
+    assertEquals(420.726, snapshot.getApogeeHeightKilometers(row));
+    assertTrue(Double.isNaN(snapshot.getPerigeeHeightKilometers(row)));
+    assertEquals(30972, snapshot.getRevNumber(row));
+    assertEquals(CompactElementSet.MISSING_INT, snapshot.getElementSetNumber(row));
+    assertTrue(snapshot.isDecayed(row));
+
+    assertThrows(IndexOutOfBoundsException.class, () -> snapshot.getCatalogNumber(2));
+    assertThrows(IllegalArgumentException.class, () -> catalog.refresh((List<CompactElementSet>) null));
+  }
+
+
+  @Test
+  @DisplayName("OffHeapElementCatalog: Shared strings and snapshot isolation")
+  public void test2() throws Exception {
+
+    OffHeapElementCatalog catalog = new OffHeapElementCatalog();
+    List<CompactElementSet> elementSets = new ArrayList<>();
+
+    for (int i = 1; i <= 1000; i++) {
+
+      elementSets.add(elementSet(i, "2021-11-01 12:00:00", "DEB", "DEBRIS"));
+    }
+
+    Snapshot first = catalog.refresh(elementSets);
+
+    // the records plus one copy of each shared string and one copy of the TLE line per element set
+    assertEquals(1000 * OffHeapElementCatalog.RECORD_SIZE + (4 + 3) + (4 + 6) + (4 + 9) + 1000 * (4 + 8), first.getOffHeapBytes());
+
+    for (int catalogNumber = 1; catalogNumber <= 1000; catalogNumber++) {
+
+      assertEquals(catalogNumber - 1, first.indexOf(catalogNumber));
+    }
+
+
+    // readers holding the old snapshot are unaffected by a refresh
+    Snapshot second = catalog.refresh(Arrays.asList(elementSet(7, "2021-11-03 12:00:00", "NEW", "PAYLOAD")));
+
+    assertEquals(1000, first.size());
+    assertEquals("DEB", first.getObjectName(6));
+    assertEquals(1, second.size());
+    assertEquals("NEW", catalog.snapshot().getObjectName(second.indexOf(7)));
+  }
+
+
+  @Test
+  @DisplayName("OffHeapElementCatalog: Refresh from a query")
+  public void test3() throws Exception {
+
+    // more element sets than the builder starts with room for, with a replaced duplicate and object types that are decoded once
+    StringBuilder json = new StringBuilder("[");
+
+    for (int i = 3000; i >= 1; i--) {
+
+      json.append("{\"NORAD_CAT_ID\":\"").append(i).append("\",\"EPOCH\":\"2021-11-01 12:00:00\",\"OBJECT_NAME\":\"OBJECT ").append(i).append("\",\"OBJECT_TYPE\":\"")
+          .append(i % 2 == 0 ? "DEBRIS" : "ROCKET BODY").append("\",\"TLE_LINE2\":\"2 ").append(i).append("\"},");
+    }
+
+    json.append("{\"NORAD_CAT_ID\":\"42\",\"EPOCH\":\"2021-11-02 12:00:00\",\"OBJECT_NAME\":\"LATER\"}]");
+
+    FakeTransport transport = new FakeTransport().addResponse("/class/tle_latest/format/json/emptyresult/show", json.toString());
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport)
+        .setRequestScheduler(RequestScheduler.unlimited());
+
+    OffHeapElementCatalog catalog = new OffHeapElementCatalog();
+    Snapshot snapshot = catalog.refresh(new LatestTleQuery().setSession(session).asCompact());
+
+    assertEquals(3000, snapshot.size());
+
+    for (int row = 0; row < snapshot.size(); row++) {
+
+      int catalogNumber = row + 1;
+
+      assertEquals(catalogNumber, snapshot.getCatalogNumber(row));
+
+      if (catalogNumber != 42) {
+
+        assertEquals("OBJECT " + catalogNumber, snapshot.getObjectName(row));
+        assertEquals("2 " + catalogNumber, snapshot.getTleLine2(row));
+        assertSame((catalogNumber % 2 == 0 ? "DEBRIS" : "ROCKET BODY"), snapshot.getObjectType(row));
+      }
+    }
+
+    int row = snapshot.indexOf(42);
+
+    assertEquals("LATER", snapshot.getObjectName(row));
+    assertEquals(Instant.parse("2021-11-02T12:00:00Z"), snapshot.getEpoch(row));
+    assertNull(snapshot.getObjectType(row));
+    assertNull(snapshot.getTleLine2(row));
+
+    assertThrows(IllegalArgumentException.class, () -> catalog.refresh((CompactElementSetQuery<?>) null));
+  }
+}
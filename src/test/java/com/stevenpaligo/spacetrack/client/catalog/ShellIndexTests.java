@@ -0,0 +1,285 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.threeten.extra.scale.UtcInstant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.FakeTransport;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery.LatestTle;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery.LatestTleQueryField;
+import com.stevenpaligo.spacetrack.client.OrbitMeanElementsMessageQuery.OrbitMeanElementsMessage;
+import com.stevenpaligo.spacetrack.client.PublishedTleQuery;
+import com.stevenpaligo.spacetrack.client.PublishedTleQuery.PublishedTleQueryField;
+import com.stevenpaligo.spacetrack.client.Query;
+import com.stevenpaligo.spacetrack.client.SatCatChangeQuery;
+import com.stevenpaligo.spacetrack.client.SatCatChangeQuery.SatCatChangeQueryField;
+import com.stevenpaligo.spacetrack.client.SatCatQuery;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCatQueryField;
+import com.stevenpaligo.spacetrack.client.SpaceTrackEndpoint;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession;
+import com.stevenpaligo.spacetrack.client.catalog.CatalogSync.ChangeType;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.predicate.GreaterThan;
+import com.stevenpaligo.spacetrack.client.predicate.In;
+import com.stevenpaligo.spacetrack.client.query.Limit;
+import com.stevenpaligo.spacetrack.client.query.Sort;
+import com.stevenpaligo.spacetrack.client.query.Sort.Direction;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+
+public class ShellIndexTests {
+
+  private static final ObjectMapper jsonMapper = new ObjectMapper().registerModule(new Jdk8Module()).registerModule(new JavaTimeModule());
+
+
+  private static int[] sorted(int[] catalogNumbers) {
+
+    int[] copy = catalogNumbers.clone();
+    Arrays.sort(copy);
+
+    return copy;
+  }
+
+
+  /**
+   * Finds the overlapping shells by scanning every shell
+   */
+  private static int[] scan(Map<Integer, double[]> shells, double min, double max) {
+
+    return shells.entrySet().stream().filter(entry -> entry.getValue()[0] <= max && entry.getValue()[1] >= min).mapToInt(Map.Entry::getKey).sorted().toArray();
+  }
+
+
+  @Test
+  @DisplayName("ShellIndex: Disallowed values")
+  public void test1() {
+
+    ShellIndex index = new ShellIndex();
+
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> index.put(1, Double.NaN, 600.0));
+    assertThrows(IllegalArgumentException.class, () -> index.put(1, 500.0, Double.POSITIVE_INFINITY));
+    assertThrows(IllegalArgumentException.class, () -> index.put(1, 600.0, 500.0));
+    assertThrows(IllegalArgumentException.class, () -> index.put((SatCat) null));
+    assertThrows(IllegalArgumentException.class, () -> index.put((LatestTle) null));
+    assertThrows(IllegalArgumentException.class, () -> index.put((OrbitMeanElementsMessage) null));
+    assertThrows(IllegalArgumentException.class, () -> index.put((CompactElementSet) null));
+    assertThrows(IllegalArgumentException.class, () -> index.listener(null));
+    assertThrows(IllegalArgumentException.class, () -> index.findCrossing(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> index.findOverlapping(600.0, 500.0));
+    assertThrows(IllegalArgumentException.class, () -> index.findOverlapping(Double.NaN, 500.0));
+
+
+    // allowed values
+    index.put(1, 500.0, 500.0);
+    index.put(2, 400.0, 36_000.0);
+    index.put(3, 700.0, 800.0);
+
+    assertEquals(3, index.size());
+    assertArrayEquals(new int[] {1, 2}, sorted(index.findCrossing(500.0)));
+    assertArrayEquals(new int[] {1, 2, 3}, sorted(index.findOverlapping(500.0, 700.0)));
+    assertArrayEquals(new int[] {2}, sorted(index.findOverlapping(Double.NEGATIVE_INFINITY, 450.0)));
+    assertArrayEquals(new int[0], index.findCrossing(40_000.0));
+
+    assertTrue(index.remove(2));
+    assertFalse(index.remove(2));
+    assertArrayEquals(new int[] {1}, index.findCrossing(500.0));
+
+    index.clear();
+
+    assertEquals(0, index.size());
+    assertArrayEquals(new int[0], index.findCrossing(500.0));
+  }
+
+
+  @Test
+  @DisplayName("ShellIndex: Queries match a scan through puts, replacements, and removals")
+  public void test2() {
+
+    ShellIndex index = new ShellIndex();
+    Map<Integer, double[]> shells = new HashMap<>();
+    Random random = new Random(1);
+
+
+    // shells in increasing order, which would unbalance a tree that isn't rebuilt
+    for (int catalogNumber = 1; catalogNumber <= 2_000; catalogNumber++) {
+
+      index.put(catalogNumber, catalogNumber, catalogNumber + 50.0);
+      shells.put(catalogNumber, new double[] {catalogNumber, catalogNumber + 50.0});
+    }
+
+    assertArrayEquals(scan(shells, 500.0, 600.0), sorted(index.findOverlapping(500.0, 600.0)));
+
+
+    // random changes, with rounded heights so that some are equal
+    for (int operation = 0; operation < 20_000; operation++) {
+
+      int catalogNumber = 1 + random.nextInt(3_000);
+
+      if (random.nextInt(3) == 0) {
+
+        assertEquals(shells.remove(catalogNumber) != null, index.remove(catalogNumber));
+
+      } else {
+
+        double perigee = Math.floor(2_000.0 * random.nextDouble() * random.nextDouble());
+        double apogee = perigee + Math.floor(500.0 * random.nextDouble() * random.nextDouble());
+
+        index.put(catalogNumber, perigee, apogee);
+        shells.put(catalogNumber, new double[] {perigee, apogee});
+      }
+
+      if (operation % 100 == 0) {
+
+        double min = Math.floor(2_000.0 * random.nextDouble());
+        double max = min + Math.floor(200.0 * random.nextDouble());
+
+        assertEquals(shells.size(), index.size());
+        assertArrayEquals(scan(shells, min, max), sorted(index.findOverlapping(min, max)));
+        assertArrayEquals(scan(shells, min, min), sorted(index.findCrossing(min)));
+      }
+    }
+
+
+    // removing most of the shells
+    for (int catalogNumber = 1; catalogNumber <= 2_900; catalogNumber++) {
+
+      assertEquals(shells.remove(catalogNumber) != null, index.remove(catalogNumber));
+    }
+
+    assertArrayEquals(scan(shells, 0.0, 2_500.0), sorted(index.findOverlapping(0.0, 2_500.0)));
+  }
+
+
+  @Test
+  @DisplayName("ShellIndex: Records and catalog sync")
+  public void test3() throws Exception {
+
+    ShellIndex index = new ShellIndex();
+
+
+    // each type of record, where decayed objects and missing heights remove the shell
+    index.put(jsonMapper.readValue("{\"NORAD_CAT_ID\":\"1\",\"APOGEE\":\"560\",\"PERIGEE\":\"561\"}", SatCat.class));
+    index.put(jsonMapper.readValue("{\"NORAD_CAT_ID\":\"2\",\"APOGEE\":\"420.5\",\"PERIGEE\":\"410.25\",\"DECAYED\":\"0\"}", LatestTle.class));
+    index.put(jsonMapper.readValue("{\"NORAD_CAT_ID\":\"3\",\"APOAPSIS\":\"35800\",\"PERIAPSIS\":\"300\"}", OrbitMeanElementsMessage.class));
+    index.put(jsonMapper.readValue("{\"NORAD_CAT_ID\":\"4\",\"APOGEE\":\"600\",\"PERIGEE\":\"590\"}", CompactElementSet.class));
+    index.put(jsonMapper.readValue("{\"APOGEE\":\"600\",\"PERIGEE\":\"590\"}", CompactElementSet.class));
+
+    assertEquals(4, index.size());
+    assertArrayEquals(new int[] {1, 3, 4}, sorted(index.findOverlapping(500.0, 600.0)));
+    assertArrayEquals(new int[] {2, 3}, sorted(index.findCrossing(420.5)));
+
+    index.put(jsonMapper.readValue("{\"NORAD_CAT_ID\":\"1\",\"APOGEE\":\"560\",\"PERIGEE\":\"561\",\"DECAY\":\"2021-11-01\"}", SatCat.class));
+    index.put(jsonMapper.readValue("{\"NORAD_CAT_ID\":\"2\",\"APOGEE\":\"420.5\",\"PERIGEE\":\"410.25\",\"DECAYED\":\"1\"}", LatestTle.class));
+    index.put(jsonMapper.readValue("{\"NORAD_CAT_ID\":\"4\"}", CompactElementSet.class));
+
+    assertEquals(1, index.size());
+    assertArrayEquals(new int[] {3}, index.findOverlapping(0.0, 1_000.0));
+
+
+    // element sets from a catalog sync
+    String queryUrl = SpaceTrackEndpoint.DEFAULT.getQueryUrl("");
+    FakeTransport transport = new FakeTransport();
+    Query<?, ?, ?>[] queries = {new SatCatChangeQuery().addSort(new Sort<>(SatCatChangeQueryField.UPDATE_TIME, Direction.DESC)).setLimit(Limit.ONE),
+        new PublishedTleQuery().addSort(new Sort<>(PublishedTleQueryField.PUBLISH_TIME, Direction.DESC)).setLimit(Limit.ONE), new SatCatQuery(),
+        new LatestTleQuery().addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1))};
+    String[] responses = {"[{\"NORAD_CAT_ID\":\"5\",\"CHANGE_MADE\":\"2021-11-01 00:00:00\"}]", "[{\"NORAD_CAT_ID\":\"5\",\"PUBLISH_EPOCH\":\"2021-11-01 00:00:00\"}]",
+        "[{\"NORAD_CAT_ID\":\"5\",\"APOGEE\":\"1000\",\"PERIGEE\":\"900\"}]", "[{\"NORAD_CAT_ID\":\"5\",\"EPOCH\":\"2021-11-01 00:00:00\",\"APOGEE\":\"550.5\",\"PERIGEE\":\"540.5\"}]"};
+
+    for (int query = 0; query < queries.length; query++) {
+
+      transport.addResponse(queries[query].getQueryString().substring(queryUrl.length()), responses[query]);
+    }
+
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport)
+        .setRequestScheduler(RequestScheduler.unlimited());
+    new CatalogSync(session).addListener(index.listener(ChangeType.ELEMENT_SET)).sync();
+
+    assertEquals(2, index.size());
+    assertArrayEquals(new int[] {3, 5}, sorted(index.findCrossing(545.0)));
+    assertArrayEquals(new int[] {3}, index.findCrossing(950.0));
+  }
+
+
+  @Test
+  @DisplayName("ShellIndex: Removals from a catalog sync")
+  public void test4() throws Exception {
+
+    String queryUrl = SpaceTrackEndpoint.DEFAULT.getQueryUrl("");
+    UtcInstant lookBack = UtcInstant.of(Instant.parse("2021-10-31T23:59:00Z"));
+    FakeTransport transport = new FakeTransport();
+
+
+    // the full load
+    Query<?, ?, ?>[] queries = {new SatCatChangeQuery().addSort(new Sort<>(SatCatChangeQueryField.UPDATE_TIME, Direction.DESC)).setLimit(Limit.ONE),
+        new PublishedTleQuery().addSort(new Sort<>(PublishedTleQueryField.PUBLISH_TIME, Direction.DESC)).setLimit(Limit.ONE), new SatCatQuery(),
+        new LatestTleQuery().addPredicate(new Equal<>(LatestTleQueryField.ORDINAL, 1)), new SatCatChangeQuery().addPredicate(new GreaterThan<>(SatCatChangeQueryField.UPDATE_TIME,
+            lookBack)), new SatCatQuery().addPredicate(new In<>(SatCatQueryField.CATALOG_NUMBER, new TreeSet<>(Arrays.asList(2, 3)), Integer.class, true)),
+        new PublishedTleQuery().addPredicate(new GreaterThan<>(PublishedTleQueryField.PUBLISH_TIME, lookBack))};
+    String[] responses = {"[{\"NORAD_CAT_ID\":\"1\",\"CHANGE_MADE\":\"2021-11-01 00:00:00\"}]", "[{\"NORAD_CAT_ID\":\"1\",\"PUBLISH_EPOCH\":\"2021-11-01 00:00:00\"}]",
+        "[{\"NORAD_CAT_ID\":\"1\",\"APOGEE\":\"510\",\"PERIGEE\":\"500\"},{\"NORAD_CAT_ID\":\"2\",\"APOGEE\":\"520\",\"PERIGEE\":\"510\"},"
+            + "{\"NORAD_CAT_ID\":\"3\",\"APOGEE\":\"530\",\"PERIGEE\":\"520\"}]",
+        "[{\"NORAD_CAT_ID\":\"1\",\"EPOCH\":\"2021-10-31 00:00:00\",\"APOGEE\":\"511\",\"PERIGEE\":\"501\"},"
+            + "{\"NORAD_CAT_ID\":\"2\",\"EPOCH\":\"2021-10-31 00:00:00\",\"APOGEE\":\"521\",\"PERIGEE\":\"511\"},"
+            + "{\"NORAD_CAT_ID\":\"3\",\"EPOCH\":\"2021-10-31 00:00:00\",\"APOGEE\":\"531\",\"PERIGEE\":\"521\"}]",
+
+        // object 2 decays and object 3 leaves the catalog
+        "[{\"NORAD_CAT_ID\":\"2\",\"CHANGE_MADE\":\"2021-11-02 00:00:00\"},{\"NORAD_CAT_ID\":\"3\",\"CHANGE_MADE\":\"2021-11-02 00:00:00\"}]",
+        "[{\"NORAD_CAT_ID\":\"2\",\"APOGEE\":\"520\",\"PERIGEE\":\"510\",\"DECAY\":\"2021-11-01\"}]", "[]"};
+
+    for (int query = 0; query < queries.length; query++) {
+
+      transport.addResponse(queries[query].getQueryString().substring(queryUrl.length()), responses[query]);
+    }
+
+    SpaceTrackSession session = new SpaceTrackSession(new DefaultCredentialProvider(FakeTransport.USER_NAME, FakeTransport.PASSWORD)).setTransport(transport)
+        .setRequestScheduler(RequestScheduler.unlimited());
+    ShellIndex satCatIndex = new ShellIndex();
+    ShellIndex elementSetIndex = new ShellIndex();
+    CatalogSync sync = new CatalogSync(session).setOverlap(Duration.ofMinutes(1)).addListener(satCatIndex.listener(ChangeType.SATCAT))
+        .addListener(elementSetIndex.listener(ChangeType.ELEMENT_SET));
+
+    sync.sync();
+
+    assertArrayEquals(new int[] {1, 2, 3}, sorted(satCatIndex.findOverlapping(0.0, 1_000.0)));
+    assertArrayEquals(new int[] {1, 2, 3}, sorted(elementSetIndex.findOverlapping(0.0, 1_000.0)));
+
+
+    // removed objects leave both indexes, whichever type of record they follow
+    sync.sync();
+
+    assertArrayEquals(new int[] {1}, satCatIndex.findOverlapping(0.0, 1_000.0));
+    assertArrayEquals(new int[] {1}, elementSetIndex.findOverlapping(0.0, 1_000.0));
+  }
+}
@@ -0,0 +1,694 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.fixture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.stevenpaligo.spacetrack.client.SpaceTrackEndpoint;
+import com.stevenpaligo.spacetrack.client.credential.CredentialProvider;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An embeddable, local stand-in for <a href="https://www.space-track.org/">Space-Track.org</a> that emulates the login, logout, and query controllers over HTTP, so that load, memory, and
+ * regression tests can run without credentials or network access. Point a session at the server with
+ * <code>new SpaceTrackSession(server.getCredentials()).setEndpoint(server.getEndpoint())</code>.
+ * 
+ * <p>
+ * Queries are answered from recorded responses (registered per query path, held in memory or streamed from a file) or from synthetic responses (a template record repeated any number of times
+ * with consecutive catalog numbers, generated as the response is written). The query's limit is applied to every response. Latency and errors can be injected, logins expire like real sessions,
+ * and responses are compressed when the client accepts gzip.
+ * </p>
+ * 
+ * @author Steven Paligo
+ */
+@Slf4j
+public class FixtureServer implements Closeable {
+
+  private static final Charset charsetUtf8 = Charset.forName("UTF-8");
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+  private static final String LOGIN_PATH = "/ajaxauth/login";
+  private static final String LOGOUT_PATH = "/ajaxauth/logout";
+  private static final String QUERY_PATH = "/basicspacedata/query";
+  private static final Pattern LIMIT_PATTERN = Pattern.compile("/limit/(\\d+)(?:,(\\d+))?");
+  private static final Pattern CLASS_PATTERN = Pattern.compile("^/class/([^/]+)/");
+  private static final AtomicInteger serverCount = new AtomicInteger();
+
+
+  /**
+   * The user name accepted by default
+   */
+  public static final String DEFAULT_USER_NAME = "fixture";
+
+  /**
+   * The password accepted by default
+   */
+  public static final String DEFAULT_PASSWORD = "fixture";
+
+  /**
+   * The status code of injected errors by default
+   */
+  public static final int DEFAULT_ERROR_STATUS_CODE = HttpURLConnection.HTTP_INTERNAL_ERROR;
+
+
+  private final Map<String, Recording> recordingsByQueryPath = new ConcurrentHashMap<>();
+  private final Map<String, Recording> syntheticRecordingsByQueryClass = new ConcurrentHashMap<>();
+  private final AtomicLong loginCount = new AtomicLong();
+  private final AtomicLong queryCount = new AtomicLong();
+  private final AtomicLong errorCount = new AtomicLong();
+  private final AtomicLong sessionNumber = new AtomicLong(1);
+
+  private volatile CredentialProvider credentials = new DefaultCredentialProvider(DEFAULT_USER_NAME, DEFAULT_PASSWORD);
+  private volatile Duration latency = Duration.ZERO;
+  private volatile double errorRate;
+  private volatile int errorStatusCode = DEFAULT_ERROR_STATUS_CODE;
+  private HttpServer server;
+  private ExecutorService executor;
+
+
+  /**
+   * Sets the user name and password that logins must present
+   * 
+   * @param userName The non-null user name
+   * @param password The non-null password
+   * @return This server, for use in the builder pattern
+   */
+  public FixtureServer setCredentials(@NonNull String userName, @NonNull String password) {
+
+    this.credentials = new DefaultCredentialProvider(userName, password);
+    return this;
+  }
+
+
+  /**
+   * Registers a recorded response for a query path. A query with a limit is answered from the response recorded for its path without the limit.
+   * 
+   * @param queryPath The non-null, human-readable query path relative to the "basicspacedata/query" controller (e.g. "/class/satcat/NORAD_CAT_ID/25544/format/json/emptyresult/show")
+   * @param json The non-null JSON response
+   * @return This server, for use in the builder pattern
+   */
+  public FixtureServer addRecording(@NonNull String queryPath, @NonNull String json) {
+
+    byte[] body = json.getBytes(charsetUtf8);
+    recordingsByQueryPath.put(queryPath, () -> new ByteArrayInputStream(body));
+    return this;
+  }
+
+
+  /**
+   * Registers a recorded response, stored in a file, for a query path. The file is read every time the query is answered, so large responses are never held in memory.
+   * 
+   * @param queryPath The non-null, human-readable query path relative to the "basicspacedata/query" controller
+   * @param file The non-null file containing the JSON response
+   * @return This server, for use in the builder pattern
+   * @throws IOException The file is not readable
+   */
+  public FixtureServer addRecording(@NonNull String queryPath, @NonNull Path file) throws IOException {
+
+    // validation
+    if (Files.isReadable(file) == false) {
+
+      throw new IOException("The recorded response is not readable: " + file);
+    }
+
+
+    recordingsByQueryPath.put(queryPath, () -> Files.newInputStream(file));
+    return this;
+  }
+
+
+  /**
+   * Answers every query of a query class (that has no recorded response) with a template record repeated a number of times. The "NORAD_CAT_ID" and "OBJECT_NUMBER" properties of the copies
+   * (where present) are set to consecutive catalog numbers starting at 1.
+   * 
+   * @param queryClass The non-null query class (e.g. "tle")
+   * @param templateJson The non-null JSON object to repeat
+   * @param resultCount The number of records in each response (must not be negative)
+   * @return This server, for use in the builder pattern
+   * @throws IOException The template is not a JSON object
+   */
+  public FixtureServer setSyntheticResults(@NonNull String queryClass, @NonNull String templateJson, int resultCount) throws IOException {
+
+    // validation
+    JsonNode template = jsonMapper.readTree(templateJson);
+
+    if (template == null || template.isObject() == false) {
+
+      throw new IOException("The template is not a JSON object: " + templateJson);
+
+    } else if (resultCount < 0) {
+
+      throw new IllegalArgumentException("The result count is negative: " + resultCount);
+    }
+
+
+    syntheticRecordingsByQueryClass.put(queryClass, new SyntheticRecording((ObjectNode) template, resultCount));
+    return this;
+  }
+
+
+  /**
+   * Delays every response by a fixed amount of time
+   * 
+   * @param latency A non-null, non-negative delay
+   * @return This server, for use in the builder pattern
+   */
+  public FixtureServer setLatency(@NonNull Duration latency) {
+
+    // validation
+    if (latency.isNegative()) {
+
+      throw new IllegalArgumentException("The latency is negative: " + latency);
+    }
+
+
+    this.latency = latency;
+    return this;
+  }
+
+
+  /**
+   * Sets the fraction of queries that fail with the error status code instead of being answered
+   * 
+   * @param errorRate The fraction, from 0 (no errors) to 1 (every query fails)
+   * @return This server, for use in the builder pattern
+   */
+  public FixtureServer setErrorRate(double errorRate) {
+
+    // validation
+    if ((errorRate >= 0.0 && errorRate <= 1.0) == false) {
+
+      throw new IllegalArgumentException("The error rate is not between 0 and 1: " + errorRate);
+    }
+
+
+    this.errorRate = errorRate;
+    return this;
+  }
+
+
+  /**
+   * Sets the status code of injected errors (e.g. 500 or 503)
+   * 
+   * @param errorStatusCode The status code (must not be a success code)
+   * @return This server, for use in the builder pattern
+   */
+  public FixtureServer setErrorStatusCode(int errorStatusCode) {
+
+    // validation
+    if (errorStatusCode < 300 || errorStatusCode > 599) {
+
+      throw new IllegalArgumentException("The error status code is not an HTTP error: " + errorStatusCode);
+    }
+
+
+    this.errorStatusCode = errorStatusCode;
+    return this;
+  }
+
+
+  /**
+   * Starts the server on an ephemeral port of the loopback address
+   * 
+   * @return This server, for use in the builder pattern
+   * @throws IOException The server was unable to be started
+   */
+  public FixtureServer start() throws IOException {
+
+    return start(0);
+  }
+
+
+  /**
+   * Starts the server on the loopback address
+   * 
+   * @param port The port to listen on, or 0 for an ephemeral port
+   * @return This server, for use in the builder pattern
+   * @throws IOException The server was unable to be started
+   */
+  public synchronized FixtureServer start(int port) throws IOException {
+
+    // validation
+    if (server != null) {
+
+      throw new IllegalStateException("The fixture server has already been started");
+    }
+
+
+    // every exchange gets its own thread so that injected latency doesn't serialize concurrent requests
+    int serverNumber = serverCount.incrementAndGet();
+    AtomicInteger threadCount = new AtomicInteger();
+
+    executor = Executors.newCachedThreadPool(runnable -> {
+
+      Thread thread = new Thread(runnable, "spacetrack-fixture-" + serverNumber + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+
+    log.debug("SpaceTrack fixture server listening on {}", getEndpoint());
+
+    return this;
+  }
+
+
+  /**
+   * Gets the endpoint to point sessions at
+   * 
+   * @return The non-null endpoint of the running server
+   */
+  public synchronized SpaceTrackEndpoint getEndpoint() {
+
+    // validation
+    if (server == null) {
+
+      throw new IllegalStateException("The fixture server has not been started");
+    }
+
+
+    return new SpaceTrackEndpoint("http", server.getAddress().getAddress().getHostAddress(), server.getAddress().getPort());
+  }
+
+
+  /**
+   * Gets credentials that the server accepts
+   * 
+   * @return The non-null credentials
+   */
+  public CredentialProvider getCredentials() {
+
+    return credentials;
+  }
+
+
+  /**
+   * Simulates the server expiring all sessions: queries presenting an earlier session cookie are answered with "401 Unauthorized"
+   */
+  public void expireSessions() {
+
+    sessionNumber.incrementAndGet();
+  }
+
+
+  /**
+   * Gets the number of successful logins
+   * 
+   * @return The number of logins
+   */
+  public long getLoginCount() {
+
+    return loginCount.get();
+  }
+
+
+  /**
+   * Gets the number of answered queries, including queries carried by logins
+   * 
+   * @return The number of queries
+   */
+  public long getQueryCount() {
+
+    return queryCount.get();
+  }
+
+
+  /**
+   * Gets the number of injected errors
+   * 
+   * @return The number of errors
+   */
+  public long getErrorCount() {
+
+    return errorCount.get();
+  }
+
+
+  /**
+   * Stops the server, waiting for in-flight exchanges for up to a second
+   */
+  @Override
+  public synchronized void close() {
+
+    if (server != null) {
+
+      server.stop(1);
+      executor.shutdownNow();
+      server = null;
+      executor = null;
+    }
+  }
+
+
+  private void handle(HttpExchange exchange) throws IOException {
+
+    try {
+
+      // inject latency
+      if (latency.isZero() == false) {
+
+        TimeUnit.NANOSECONDS.sleep(latency.toNanos());
+      }
+
+      String path = exchange.getRequestURI().getPath();
+
+      if (exchange.getRequestMethod().equalsIgnoreCase("POST") && path.endsWith(LOGIN_PATH)) {
+
+        handleLogin(exchange);
+
+      } else if (path.endsWith(LOGOUT_PATH)) {
+
+        respond(exchange, HttpURLConnection.HTTP_OK, "\"Successfully logged out\"");
+
+      } else if (exchange.getRequestMethod().equalsIgnoreCase("GET") && path.contains(QUERY_PATH + "/")) {
+
+        if (getSessionCookie().equals(exchange.getRequestHeaders().getFirst("Cookie")) == false) {
+
+          respond(exchange, HttpURLConnection.HTTP_UNAUTHORIZED, "");
+
+        } else {
+
+          handleQuery(exchange, path.substring(path.indexOf(QUERY_PATH) + QUERY_PATH.length()), Collections.emptyMap());
+        }
+
+      } else {
+
+        respond(exchange, HttpURLConnection.HTTP_NOT_FOUND, "");
+      }
+
+    } catch (InterruptedException e) {
+
+      Thread.currentThread().interrupt();
+
+    } catch (IOException | RuntimeException e) {
+
+      log.debug("The SpaceTrack fixture server failed to answer a request", e);
+      throw e;
+
+    } finally {
+
+      exchange.close();
+    }
+  }
+
+
+  private void handleLogin(HttpExchange exchange) throws IOException {
+
+    // parse the form
+    Map<String, String> form = new HashMap<>();
+    ByteArrayOutputStream formBytes = new ByteArrayOutputStream();
+
+    try (InputStream requestBody = exchange.getRequestBody()) {
+
+      byte[] buffer = new byte[4096];
+
+      for (int count = requestBody.read(buffer); count >= 0; count = requestBody.read(buffer)) {
+
+        formBytes.write(buffer, 0, count);
+      }
+    }
+
+    for (String parameter : new String(formBytes.toByteArray(), charsetUtf8).split("&")) {
+
+      String[] pair = parameter.split("=", 2);
+
+      if (pair.length == 2) {
+
+        form.put(URLDecoder.decode(pair[0], "UTF-8"), URLDecoder.decode(pair[1], "UTF-8"));
+      }
+    }
+
+
+    // check the credentials
+    CredentialProvider credentials = this.credentials;
+
+    if (credentials.getUserName().equals(form.get("identity")) == false || credentials.getPassword().equals(form.get("password")) == false) {
+
+      respond(exchange, HttpURLConnection.HTTP_OK, "{\"Login\":\"Failed\"}");
+      return;
+    }
+
+    loginCount.incrementAndGet();
+    Map<String, String> headers = Collections.singletonMap("Set-Cookie", getSessionCookie() + "; path=/");
+
+
+    // answer the query carried by the login (if any)
+    String query = form.get("query");
+
+    if (query != null && query.contains(QUERY_PATH + "/")) {
+
+      handleQuery(exchange, query.substring(query.indexOf(QUERY_PATH) + QUERY_PATH.length()), headers);
+
+    } else {
+
+      exchange.getResponseHeaders().add("Set-Cookie", headers.get("Set-Cookie"));
+      respond(exchange, HttpURLConnection.HTTP_OK, "\"\"");
+    }
+  }
+
+
+  private void handleQuery(HttpExchange exchange, String queryPath, Map<String, String> headers) throws IOException {
+
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+
+      exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+    }
+
+
+    // inject errors
+    double errorRate = this.errorRate;
+
+    if (errorRate > 0.0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+
+      errorCount.incrementAndGet();
+      respond(exchange, errorStatusCode, "{\"error\":\"Injected by the fixture server\"}");
+      return;
+    }
+
+
+    // find the recording, applying the limit (if any) to the recording without the limit
+    Matcher limitMatcher = LIMIT_PATTERN.matcher(queryPath);
+    Recording recording = recordingsByQueryPath.get(queryPath);
+    long maxResults = Long.MAX_VALUE;
+    long offset = 0;
+
+    if (recording == null && limitMatcher.find()) {
+
+      recording = recordingsByQueryPath.get(limitMatcher.replaceFirst(""));
+      maxResults = Long.parseLong(limitMatcher.group(1));
+      offset = (limitMatcher.group(2) == null ? 0 : Long.parseLong(limitMatcher.group(2)));
+    }
+
+    if (recording == null) {
+
+      Matcher classMatcher = CLASS_PATTERN.matcher(queryPath);
+      recording = (classMatcher.find() ? syntheticRecordingsByQueryClass.get(classMatcher.group(1)) : null);
+    }
+
+    if (recording == null) {
+
+      recording = () -> new ByteArrayInputStream("[]".getBytes(charsetUtf8));
+    }
+
+    queryCount.incrementAndGet();
+
+
+    // stream the response, compressing it if the client accepts gzip
+    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    boolean compressed = (acceptEncoding != null && acceptEncoding.contains("gzip"));
+
+    exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+
+    if (compressed) {
+
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+    }
+
+    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+
+    try (OutputStream responseBody = (compressed ? new GZIPOutputStream(exchange.getResponseBody(), 65536) : exchange.getResponseBody())) {
+
+      recording.write(responseBody, offset, maxResults);
+    }
+  }
+
+
+  private String getSessionCookie() {
+
+    return "chocolatechip=fixture" + sessionNumber.get();
+  }
+
+
+  private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+
+    byte[] bytes = body.getBytes(charsetUtf8);
+    exchange.sendResponseHeaders(statusCode, (bytes.length == 0 ? -1 : bytes.length));
+
+    if (bytes.length > 0) {
+
+      try (OutputStream responseBody = exchange.getResponseBody()) {
+
+        responseBody.write(bytes);
+      }
+    }
+  }
+
+
+  /**
+   * A JSON array of query results
+   */
+  @FunctionalInterface
+  private static interface Recording {
+
+    InputStream open() throws IOException;
+
+
+    /**
+     * Writes a window of the results as a JSON array
+     */
+    default void write(OutputStream out, long offset, long maxResults) throws IOException {
+
+      try (InputStream in = open()) {
+
+        if (offset == 0 && maxResults == Long.MAX_VALUE) {
+
+          // the whole recording, as is
+          byte[] buffer = new byte[65536];
+
+          for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+
+            out.write(buffer, 0, count);
+          }
+
+        } else {
+
+          // copy the window of results one at a time
+          try (JsonParser parser = jsonMapper.getFactory().createParser(in); JsonGenerator generator = jsonMapper.getFactory().createGenerator(out)) {
+
+            generator.writeStartArray();
+
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+
+              for (long index = 0; index < offset + maxResults && parser.nextToken() == JsonToken.START_OBJECT; index++) {
+
+                if (index < offset) {
+
+                  parser.skipChildren();
+
+                } else {
+
+                  generator.copyCurrentStructure(parser);
+                }
+              }
+            }
+
+            generator.writeEndArray();
+          }
+        }
+      }
+    }
+  }
+
+
+  /**
+   * A template record repeated with consecutive catalog numbers, generated as it is written
+   */
+  private static class SyntheticRecording implements Recording {
+
+    private final ObjectNode template;
+    private final int resultCount;
+
+
+    private SyntheticRecording(ObjectNode template, int resultCount) {
+
+      this.template = template;
+      this.resultCount = resultCount;
+    }
+
+
+    @Override
+    public InputStream open() throws IOException {
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      write(out, 0, Long.MAX_VALUE);
+      return new ByteArrayInputStream(out.toByteArray());
+    }
+
+
+    @Override
+    public void write(OutputStream out, long offset, long maxResults) throws IOException {
+
+      ObjectNode record = template.deepCopy();
+      long end = Math.min(resultCount, offset + Math.min(maxResults, Long.MAX_VALUE - offset));
+
+      try (JsonGenerator generator = jsonMapper.getFactory().createGenerator(out)) {
+
+        generator.writeStartArray();
+
+        for (long index = offset; index < end; index++) {
+
+          String catalogNumber = Long.toString(index + 1);
+          record.put("NORAD_CAT_ID", catalogNumber);
+
+          if (record.has("OBJECT_NUMBER")) {
+
+            record.put("OBJECT_NUMBER", catalogNumber);
+          }
+
+          jsonMapper.writeTree(generator, record);
+        }
+
+        generator.writeEndArray();
+      }
+    }
+  }
+}
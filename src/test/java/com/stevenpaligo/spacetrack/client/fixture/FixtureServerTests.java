@@ -0,0 +1,207 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.fixture;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import com.stevenpaligo.spacetrack.client.LatestTleQuery;
+import com.stevenpaligo.spacetrack.client.Query;
+import com.stevenpaligo.spacetrack.client.SatCatQuery;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCat;
+import com.stevenpaligo.spacetrack.client.SatCatQuery.SatCatQueryField;
+import com.stevenpaligo.spacetrack.client.SpaceTrackEndpoint;
+import com.stevenpaligo.spacetrack.client.SpaceTrackSession;
+import com.stevenpaligo.spacetrack.client.TleQuery;
+import com.stevenpaligo.spacetrack.client.TleQuery.Tle;
+import com.stevenpaligo.spacetrack.client.credential.DefaultCredentialProvider;
+import com.stevenpaligo.spacetrack.client.predicate.Equal;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler;
+
+public class FixtureServerTests {
+
+  private static final String ELEMENT_SET = "{\"NORAD_CAT_ID\":\"0\",\"OBJECT_NAME\":\"ISS (ZARYA)\",\"EPOCH\":\"2021-11-01 12:00:00\",\"EPOCH_MICROSECONDS\":\"0\",\"MEAN_MOTION\":\"15.48\","
+      + "\"ECCENTRICITY\":\"0.0004\",\"INCLINATION\":\"51.64\",\"ORDINAL\":\"1\"}";
+
+
+  private static final String QUERY_URL = SpaceTrackEndpoint.DEFAULT.getQueryUrl("");
+
+
+  private static String path(Query<?, ?, ?> query) {
+
+    return query.getQueryString().substring(QUERY_URL.length());
+  }
+
+
+  private static SpaceTrackSession newSession(FixtureServer server) {
+
+    return new SpaceTrackSession(server.getCredentials()).setEndpoint(server.getEndpoint()).setRequestScheduler(RequestScheduler.unlimited());
+  }
+
+
+  @Test
+  @DisplayName("FixtureServer: Setters")
+  public void test1() throws Exception {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().setCredentials(null, "password"));
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().addRecording(null, "[]"));
+    assertThrows(IOException.class, () -> new FixtureServer().addRecording("/class/tle/format/json", Paths.get("does-not-exist.json")));
+    assertThrows(IOException.class, () -> new FixtureServer().setSyntheticResults("tle", "[]", 1));
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().setSyntheticResults("tle", "{}", -1));
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().setLatency(Duration.ofMillis(-1)));
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().setErrorRate(-0.1));
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().setErrorRate(1.1));
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().setErrorRate(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> new FixtureServer().setErrorStatusCode(200));
+    assertThrows(IllegalStateException.class, () -> new FixtureServer().getEndpoint());
+
+    try (FixtureServer server = new FixtureServer().start()) {
+
+      assertThrows(IllegalStateException.class, () -> server.start());
+    }
+
+
+    // allowed values
+    assertDoesNotThrow(() -> new FixtureServer().setCredentials("user", "password").setSyntheticResults("tle", "{}", 0).setLatency(Duration.ZERO).setErrorRate(0.0).setErrorRate(1.0)
+        .setErrorStatusCode(503));
+  }
+
+
+  @Test
+  @DisplayName("FixtureServer: Recorded responses, limits, and expired sessions")
+  public void test2() throws Exception {
+
+    try (FixtureServer server = new FixtureServer().setCredentials("user", "password").start()) {
+
+      SatCatQuery issQuery = new SatCatQuery().addPredicate(new Equal<>(SatCatQueryField.CATALOG_NUMBER, 25544));
+      server.addRecording(path(issQuery), "[{\"NORAD_CAT_ID\":\"25544\",\"SATNAME\":\"ISS (ZARYA)\"}]");
+
+
+      // the first query is carried by the login
+      SpaceTrackSession session = newSession(server);
+      List<SatCat> satCats = issQuery.setSession(session).execute();
+
+      assertEquals(1, satCats.size());
+      assertEquals("ISS (ZARYA)", satCats.get(0).getSatName());
+      assertEquals(1, server.getLoginCount());
+      assertEquals(1, server.getQueryCount());
+
+
+      // unrecorded queries are empty
+      assertTrue(new SatCatQuery().setSession(session).execute().isEmpty());
+      assertEquals(1, server.getLoginCount());
+
+
+      // expired sessions log in again
+      server.expireSessions();
+      assertEquals(1, issQuery.execute().size());
+      assertEquals(2, server.getLoginCount());
+
+
+      // bad credentials
+      SpaceTrackSession badSession = new SpaceTrackSession(new DefaultCredentialProvider("user", "wrong")).setEndpoint(server.getEndpoint());
+      assertThrows(IOException.class, () -> new SatCatQuery().setSession(badSession).execute());
+
+
+      // the query's limit is applied to the recording without the limit
+      StringBuilder json = new StringBuilder("[");
+
+      for (int i = 0; i < 25; i++) {
+
+        json.append((i == 0 ? "" : ",")).append("{\"NORAD_CAT_ID\":\"").append(i).append("\"}");
+      }
+
+      server.addRecording(path(new TleQuery()), json.append("]").toString());
+
+      try (Stream<Tle> stream = new TleQuery().setSession(session).streamPages(10)) {
+
+        assertEquals(IntStream.range(0, 25).boxed().collect(Collectors.toList()), stream.map(tle -> tle.getCatalogNumber().get()).collect(Collectors.toList()));
+      }
+    }
+  }
+
+
+  @Test
+  @DisplayName("FixtureServer: Synthetic and file-based responses, compressed and not")
+  public void test3(@TempDir Path directory) throws Exception {
+
+    try (FixtureServer server = new FixtureServer().setSyntheticResults("tle_latest", ELEMENT_SET, 10000).start()) {
+
+      for (boolean compressionEnabled : new boolean[] {false, true}) {
+
+        SpaceTrackSession session = newSession(server).setCompressionEnabled(compressionEnabled);
+        ElementSetColumns columns = new LatestTleQuery().asCompact().setSession(session).executeColumns();
+
+        assertEquals(10000, columns.size());
+        assertEquals(1, columns.getCatalogNumber()[0]);
+        assertEquals(10000, columns.getCatalogNumber()[9999]);
+        assertEquals(15.48, columns.getMeanMotionRevsPerDay()[9999]);
+      }
+
+
+      // recordings are served from files
+      Path file = directory.resolve("tle.json");
+      Files.write(file, ("[" + ELEMENT_SET + "," + ELEMENT_SET + "]").getBytes(StandardCharsets.UTF_8));
+      server.addRecording(path(new TleQuery()), file);
+
+      assertEquals(2, new TleQuery().setSession(newSession(server)).execute().size());
+    }
+  }
+
+
+  @Test
+  @DisplayName("FixtureServer: Latency and errors")
+  public void test4() throws Exception {
+
+    try (FixtureServer server = new FixtureServer().setSyntheticResults("satcat", "{\"NORAD_CAT_ID\":\"0\"}", 3).setLatency(Duration.ofMillis(50)).start()) {
+
+      SpaceTrackSession session = newSession(server);
+      session.login();
+
+
+      // latency
+      long start = System.nanoTime();
+      assertEquals(3, new SatCatQuery().setSession(session).execute().size());
+      assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+
+
+      // every query fails
+      server.setErrorRate(1.0).setErrorStatusCode(503);
+      assertThrows(IOException.class, () -> new SatCatQuery().setSession(session).execute());
+      assertEquals(1, server.getErrorCount());
+
+
+      // no query fails
+      server.setErrorRate(0.0);
+      assertEquals(3, new SatCatQuery().setSession(session).execute().size());
+      assertEquals(1, server.getErrorCount());
+    }
+  }
+}
@@ -17,9 +17,14 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.math.BigInteger;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.threeten.extra.scale.TaiInstant;
@@ -164,6 +169,111 @@ public class InTests {
   }
 
 
+  @Test
+  @DisplayName("In: Splitting")
+  public void test5() {
+
+    In<TestQueryField> in = new In<>(new TestQueryField(), Arrays.asList(100, 200, 300, 400, 500), Integer.class);
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> in.split(2));
+
+
+    // allowed values
+    assertEquals(Arrays.asList(in), in.split(19));
+
+    List<In<TestQueryField>> splitIns = in.split(8);
+    Set<String> splitValues = new HashSet<>();
+
+    assertEquals(3, splitIns.size());
+
+    for (In<TestQueryField> splitIn : splitIns) {
+
+      assertTrue(splitIn.getValues().length() <= 8);
+      assertEquals(new TestQueryField(), splitIn.getField());
+      splitValues.addAll(Arrays.asList(splitIn.getValues().split(",")));
+    }
+
+    assertEquals(new HashSet<>(Arrays.asList("100", "200", "300", "400", "500")), splitValues);
+  }
+
+
+  @Test
+  @DisplayName("In: Range compaction")
+  public void test6() {
+
+    // integers are sorted and runs of three or more are compacted
+    Set<Integer> catalogNumbers = new HashSet<>(Arrays.asList(9, 5, 1, 2, 6, 4, 7));
+
+    for (int i = 25000; i <= 30000; i++) {
+
+      catalogNumbers.add(i);
+    }
+
+    assertEquals("NORAD_CAT_ID/1,2,4--7,9,25000--30000", new In<>(new TestQueryField(), catalogNumbers, Integer.class, true).toQueryParameter());
+    assertEquals("NORAD_CAT_ID/-1,0,1,18446744073709551616", new In<>(new TestQueryField(), Arrays.asList(BigInteger.ONE, BigInteger.ZERO, BigInteger.ONE.negate(),
+        BigInteger.ONE.shiftLeft(64)), BigInteger.class, true).toQueryParameter());
+
+
+    // other numbers, including ones that can't be compared, are written as they are
+    List<Double> doubles = Arrays.asList(4.0, 3.0, 2.0, 1.5, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+    In<TestQueryField> doubleIn = new In<>(new TestQueryField(), doubles, Double.class, true);
+
+    assertEquals(new In<>(new TestQueryField(), doubles, Double.class, false).getValues(), doubleIn.getValues());
+    assertEquals(new HashSet<>(Arrays.asList("4.0", "3.0", "2.0", "1.5", "NaN", "Infinity", "-Infinity")), new HashSet<>(Arrays.asList(doubleIn.getValues().split(","))));
+    assertEquals("NORAD_CAT_ID/1.5,2", new In<>(new TestQueryField(), new LinkedHashSet<Number>(Arrays.asList(1.5, 2)), Number.class, true).toQueryParameter());
+
+
+    // without the option, values are not compacted
+    assertEquals(3, new In<>(new TestQueryField(), Arrays.asList(1, 2, 3), Integer.class, false).getValues().split(",").length);
+    assertEquals("NORAD_CAT_ID/ABC", new In<>(new TestQueryField(), Arrays.asList("ABC"), String.class, true).toQueryParameter());
+  }
+
+
+  @Test
+  @DisplayName("In: Splitting by encoded length")
+  public void test7() {
+
+    // each value is longer once encoded in the URL ("A B" -> "A%20B", "100%" -> "100%25", "\u00e9t\u00e9" -> "%C3%A9t%C3%A9")
+    In<TestQueryField> in = new In<>(new TestQueryField(), "A B", "100%", "\u00e9t\u00e9", "C D");
+
+    assertEquals(5 + 1 + 6 + 1 + 13 + 1 + 5, in.getEncodedValuesLength());
+
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> in.split(12));
+
+
+    // allowed values
+    assertEquals(Arrays.asList(in), in.split(in.getEncodedValuesLength()));
+
+    List<In<TestQueryField>> splitIns = in.split(13); // the unencoded values (16 characters) would fit in two predicates
+    Set<String> splitValues = new HashSet<>();
+
+    assertTrue(splitIns.size() >= 3);
+
+    for (In<TestQueryField> splitIn : splitIns) {
+
+      assertTrue(splitIn.getEncodedValuesLength() <= 13);
+      splitValues.addAll(Arrays.asList(splitIn.getValues().split(",")));
+    }
+
+    assertEquals(new HashSet<>(Arrays.asList("A B", "100%", "\u00e9t\u00e9", "C D")), splitValues);
+  }
+
+
+  @Test
+  @DisplayName("In: Range compaction of negative numbers")
+  public void test8() {
+
+    // negative integers are written as single values
+    assertEquals("NORAD_CAT_ID/-5,-4,-3", new In<>(new TestQueryField(), Arrays.asList(-3, -4, -5), Integer.class, true).toQueryParameter());
+    assertEquals("NORAD_CAT_ID/-2,-1,0--3", new In<>(new TestQueryField(), Arrays.asList(3, 2, 1, 0, -1, -2), Integer.class, true).toQueryParameter());
+    assertEquals("NORAD_CAT_ID/-9223372036854775808,-9223372036854775807,-9223372036854775806", new In<>(new TestQueryField(), Arrays.asList(Long.MIN_VALUE, Long.MIN_VALUE + 1,
+        Long.MIN_VALUE + 2), Long.class, true).toQueryParameter());
+  }
+
+
   @EqualsAndHashCode
   private static class TestQueryField implements QueryField {
 
@@ -0,0 +1,129 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.propagation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+
+public class BatchPropagatorTests {
+
+  @Test
+  @DisplayName("BatchPropagator: Disallowed values")
+  public void test1() {
+
+    assertThrows(IllegalArgumentException.class, () -> new BatchPropagator(null, 1));
+    assertThrows(IllegalArgumentException.class, () -> new BatchPropagator(ForkJoinPool.commonPool(), 0));
+    assertThrows(IllegalArgumentException.class, () -> new BatchPropagator().propagate((ElementSetColumns) null, new long[1]));
+    assertThrows(IllegalArgumentException.class, () -> new BatchPropagator().propagate(new ElementSetColumns(), null));
+    assertThrows(IllegalArgumentException.class, () -> new BatchPropagator().propagate(Collections.singletonList((Sgp4Propagator) null), new long[1]));
+
+    EphemerisGrid grid = new BatchPropagator().propagate(new ElementSetColumns(), new long[2]);
+    assertThrows(IndexOutOfBoundsException.class, () -> grid.indexOf(0, 0));
+  }
+
+
+  @Test
+  @DisplayName("BatchPropagator: Grids match single propagations")
+  public void test2() {
+
+    // build a catalog of the verification element sets, repeated so that the work is split across tasks
+    ElementSetColumns columns = new ElementSetColumns();
+
+    for (int repeat = 0; repeat < 50; repeat++) {
+
+      Sgp4PropagatorTests.parse(columns, Sgp4PropagatorTests.NEAR_EARTH);
+      Sgp4PropagatorTests.parse(columns, Sgp4PropagatorTests.DRAG);
+      Sgp4PropagatorTests.parse(columns, Sgp4PropagatorTests.DEEP_SPACE);
+    }
+
+    long start = columns.getEpochMicros()[0];
+    long[] epochMicros = new long[40];
+
+    for (int time = 0; time < epochMicros.length; time++) {
+
+      epochMicros[time] = start + time * 3_600_000_000L;
+    }
+
+
+    // propagate the grid in small tasks and compare it to single propagations
+    ForkJoinPool pool = new ForkJoinPool(4);
+    EphemerisGrid grid;
+
+    try {
+
+      grid = new BatchPropagator(pool, 100).propagate(columns, epochMicros);
+
+    } finally {
+
+      pool.shutdown();
+    }
+
+    double[] state = new double[Sgp4Propagator.STATE_SIZE];
+    int propagatedCount = 0;
+
+    assertEquals(columns.size(), grid.getSatelliteCount());
+    assertEquals(epochMicros.length, grid.getTimeCount());
+
+    for (int satellite = 0; satellite < columns.size(); satellite++) {
+
+      Sgp4Propagator propagator = Sgp4Propagator.of(columns, satellite);
+      assertEquals(columns.getCatalogNumber()[satellite], grid.getCatalogNumbers()[satellite]);
+
+      for (int time = 0; time < epochMicros.length; time++) {
+
+        int index = grid.indexOf(satellite, time);
+        boolean propagated = propagator.propagate(epochMicros[time], state, 0);
+        propagatedCount += (propagated ? 1 : 0);
+
+        assertEquals(propagated, grid.isPropagated(satellite, time));
+        assertArrayEquals(Arrays.copyOfRange(state, 0, 3), Arrays.copyOfRange(grid.getPositions(), index, index + 3));
+        assertArrayEquals(Arrays.copyOfRange(state, 3, 6), Arrays.copyOfRange(grid.getVelocities(), index, index + 3));
+      }
+    }
+
+    assertEquals(propagatedCount, grid.getPropagatedCount());
+    assertTrue(propagatedCount > columns.size());
+
+
+    // a list of propagators gives the same grid
+    EphemerisGrid listGrid = new BatchPropagator().propagate(Arrays.asList(Sgp4Propagator.of(columns, 0), Sgp4Propagator.of(columns, 1)), epochMicros);
+    assertArrayEquals(Arrays.copyOfRange(grid.getPositions(), 0, 6 * epochMicros.length), listGrid.getPositions());
+  }
+
+
+  @Test
+  @DisplayName("BatchPropagator: Element sets that can't be propagated")
+  public void test3() {
+
+    ElementSetColumns columns = Sgp4PropagatorTests.parse(new ElementSetColumns(), Sgp4PropagatorTests.NEAR_EARTH);
+    Sgp4PropagatorTests.parse(columns, Sgp4PropagatorTests.DRAG);
+    columns.getEccentricity()[1] = Double.NaN;
+
+    EphemerisGrid grid = new BatchPropagator().propagate(columns, new long[] {columns.getEpochMicros()[0]});
+
+    assertEquals(1, grid.getPropagatedCount());
+    assertTrue(grid.isPropagated(0, 0));
+    assertFalse(grid.isPropagated(1, 0));
+    assertTrue(Double.isNaN(grid.getPositions()[grid.indexOf(1, 0)]));
+  }
+}
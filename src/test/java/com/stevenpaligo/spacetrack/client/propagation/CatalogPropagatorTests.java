@@ -0,0 +1,171 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.propagation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+
+public class CatalogPropagatorTests {
+
+  private static final double POSITION_TOLERANCE = 1.0e-6;
+  private static final double VELOCITY_TOLERANCE = 1.0e-9;
+
+
+  /**
+   * Builds a catalog of the verification element sets with randomized orientations and mean motions
+   */
+  private static ElementSetColumns catalog(int size) {
+
+    ElementSetColumns columns = new ElementSetColumns();
+    Random random = new Random(1);
+
+    for (int row = 0; row < size; row++) {
+
+      Sgp4PropagatorTests.parse(columns, (row % 10 == 0 ? Sgp4PropagatorTests.DEEP_SPACE : (row % 2 == 0 ? Sgp4PropagatorTests.DRAG : Sgp4PropagatorTests.NEAR_EARTH)));
+      columns.getEpochMicros()[row] = 1_600_000_000_000_000L - (long) (random.nextDouble() * 10.0 * 86_400_000_000.0);
+      columns.getMeanMotionRevsPerDay()[row] *= 0.9 + 0.2 * random.nextDouble();
+      columns.getInclinationDegrees()[row] = 180.0 * random.nextDouble();
+      columns.getRightAscOfNodeDegrees()[row] = 360.0 * random.nextDouble();
+      columns.getArgOfPerigeeDegrees()[row] = 360.0 * random.nextDouble();
+      columns.getMeanAnomalyDegrees()[row] = 360.0 * random.nextDouble();
+    }
+
+    return columns;
+  }
+
+
+  @Test
+  @DisplayName("CatalogPropagator: Disallowed values")
+  public void test1() {
+
+    assertThrows(IllegalArgumentException.class, () -> new CatalogPropagator(null));
+    assertThrows(IllegalArgumentException.class, () -> new CatalogPropagator(new ElementSetColumns(), null, 1));
+    assertThrows(IllegalArgumentException.class, () -> new CatalogPropagator(new ElementSetColumns(), ForkJoinPool.commonPool(), 0));
+  }
+
+
+  @Test
+  @DisplayName("CatalogPropagator: Snapshots match single propagations")
+  public void test2() {
+
+    ElementSetColumns columns = catalog(3000);
+    columns.getEccentricity()[7] = Double.NaN;
+
+    Sgp4Propagator[] propagators = new Sgp4Propagator[columns.size()];
+
+    for (int row = 0; row < columns.size(); row++) {
+
+      try {
+
+        propagators[row] = Sgp4Propagator.of(columns, row);
+
+      } catch (IllegalArgumentException e) {
+
+        // the row isn't propagated
+      }
+    }
+
+
+    // propagate in one chunk and in many chunks
+    CatalogPropagator single = new CatalogPropagator(columns);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    CatalogPropagator chunked = new CatalogPropagator(columns, pool, 100);
+    double[] state = new double[Sgp4Propagator.STATE_SIZE];
+
+    assertEquals(columns.size(), single.size());
+
+    try {
+
+      for (long time : new long[] {1_600_000_000_000_000L, 1_600_100_000_000_000L}) {
+
+        for (EphemerisGrid grid : new EphemerisGrid[] {single.propagate(time), chunked.propagate(time)}) {
+
+          int propagatedCount = 0;
+
+          assertEquals(columns.size(), grid.getSatelliteCount());
+          assertEquals(time, grid.getEpochMicros()[0]);
+
+          for (int row = 0; row < columns.size(); row++) {
+
+            Arrays.fill(state, Double.NaN);
+            boolean propagated = (propagators[row] != null && propagators[row].propagate(time, state, 0));
+            int index = grid.indexOf(row, 0);
+            propagatedCount += (propagated ? 1 : 0);
+
+            assertEquals(columns.getCatalogNumber()[row], grid.getCatalogNumbers()[row]);
+            assertEquals(propagated, grid.isPropagated(row, 0));
+
+            for (int axis = 0; axis < 3; axis++) {
+
+              assertEquals(state[axis], grid.getPositions()[index + axis], (propagated ? POSITION_TOLERANCE : 0.0));
+              assertEquals(state[axis + 3], grid.getVelocities()[index + axis], (propagated ? VELOCITY_TOLERANCE : 0.0));
+            }
+          }
+
+          assertEquals(propagatedCount, grid.getPropagatedCount());
+          assertTrue(propagatedCount > columns.size() / 2);
+        }
+      }
+
+    } finally {
+
+      pool.shutdown();
+    }
+  }
+
+
+  @Test
+  @DisplayName("CatalogPropagator: The verification element sets match single propagations")
+  public void test3() {
+
+    // a low-perigee orbit takes the simplified near-earth path
+    ElementSetColumns simplified = Sgp4PropagatorTests.parse(new ElementSetColumns(), Sgp4PropagatorTests.NEAR_EARTH);
+    simplified.getMeanMotionRevsPerDay()[0] = 16.2;
+    simplified.getEccentricity()[0] = 0.0005;
+    assertTrue(Sgp4Propagator.of(simplified, 0).isimp);
+
+    ElementSetColumns[] catalogs = {Sgp4PropagatorTests.parse(new ElementSetColumns(), Sgp4PropagatorTests.NEAR_EARTH), Sgp4PropagatorTests.parse(new ElementSetColumns(),
+        Sgp4PropagatorTests.DRAG), Sgp4PropagatorTests.parse(new ElementSetColumns(), Sgp4PropagatorTests.DEEP_SPACE), Sgp4PropagatorTests.parse(new ElementSetColumns(),
+            Sgp4PropagatorTests.RESONANT), simplified};
+    double[] state = new double[Sgp4Propagator.STATE_SIZE];
+
+    for (ElementSetColumns columns : catalogs) {
+
+      Sgp4Propagator propagator = Sgp4Propagator.of(columns, 0);
+      CatalogPropagator catalog = new CatalogPropagator(columns);
+
+      for (long minutes = -1440L; minutes <= 4320L; minutes += 120L) {
+
+        long time = columns.getEpochMicros()[0] + minutes * 60_000_000L;
+        boolean propagated = propagator.propagate(time, state, 0);
+        EphemerisGrid grid = catalog.propagate(time);
+
+        assertEquals(propagated, grid.isPropagated(0, 0), "Satellite " + columns.getCatalogNumber()[0] + " at " + minutes + " minutes");
+
+        for (int axis = 0; propagated && axis < 3; axis++) {
+
+          assertEquals(state[axis], grid.getPositions()[axis], POSITION_TOLERANCE);
+          assertEquals(state[axis + 3], grid.getVelocities()[axis], VELOCITY_TOLERANCE);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.propagation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Instant;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.CompactElementSet;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import com.stevenpaligo.spacetrack.client.TleParser;
+
+public class Sgp4PropagatorTests {
+
+  // verification element sets from "Revisiting Spacetrack Report #3"
+  static final String[] NEAR_EARTH = {"1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+      "2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667"};
+  static final String[] DRAG = {"1 06251U 62025E   06176.82412014  .00008885  00000-0  12808-3 0  3985",
+      "2 06251  58.0579  54.0425 0030035 139.1568 221.1854 15.56387291  6774"};
+  static final String[] DEEP_SPACE = {"1 11801U          80230.29629788  .01431103  00000-0  14311-1      13",
+      "2 11801  46.7916 230.4354 7318036  47.4722  10.4117  2.28537848    13"};
+  static final String[] RESONANT = {"1 08195U 75081A   06176.33215444  .00000099  00000-0  11873-3 0   813",
+      "2 08195  64.1586 279.0717 6877146 264.7651  20.2257  2.00491383225656"}; // 12-hour (Molniya) resonance
+
+  private static final double POSITION_TOLERANCE = 1.0e-6;
+  private static final double VELOCITY_TOLERANCE = 1.0e-9;
+  private static final double PROPAGATED_POSITION_TOLERANCE = 1.0e-4; // the reference values away from the epoch differ in the last digits
+  private static final double REPORT_3_POSITION_TOLERANCE = 0.05; // the original report's deep-space values predate the revised theory
+
+
+  /**
+   * Parses a TLE, replacing the checksums with the correct ones
+   */
+  static ElementSetColumns parse(ElementSetColumns columns, String[] lines) {
+
+    TleParser.parse(withChecksum(lines[0]), withChecksum(lines[1]), columns);
+    return columns;
+  }
+
+
+  private static String withChecksum(String line) {
+
+    int sum = 0;
+
+    for (char c : line.substring(0, 68).toCharArray()) {
+
+      sum += (Character.isDigit(c) ? c - '0' : (c == '-' ? 1 : 0));
+    }
+
+    return line.substring(0, 68) + (sum % 10);
+  }
+
+
+  private static Sgp4Propagator propagator(String[] lines) {
+
+    return Sgp4Propagator.of(parse(new ElementSetColumns(), lines), 0);
+  }
+
+
+  private static void assertState(double[] expected, double[] actual) {
+
+    for (int index = 0; index < 3; index++) {
+
+      assertEquals(expected[index], actual[index], POSITION_TOLERANCE);
+      assertEquals(expected[index + 3], actual[index + 3], VELOCITY_TOLERANCE);
+    }
+  }
+
+
+  private static void assertPosition(double[] expected, double[] actual, double tolerance) {
+
+    for (int index = 0; index < 3; index++) {
+
+      assertEquals(expected[index], actual[index], tolerance);
+    }
+  }
+
+
+  @Test
+  @DisplayName("Sgp4Propagator: Initialization")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> Sgp4Propagator.of(null));
+    assertThrows(IllegalArgumentException.class, () -> Sgp4Propagator.of(null, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> Sgp4Propagator.of(new ElementSetColumns(), 0));
+    assertThrows(IllegalArgumentException.class, () -> new Sgp4Propagator(1, CompactElementSet.MISSING_EPOCH, 15.5, 0.001, 51.6, 0.0, 0.0, 0.0, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> new Sgp4Propagator(1, 0L, Double.NaN, 0.001, 51.6, 0.0, 0.0, 0.0, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> new Sgp4Propagator(1, 0L, 0.0, 0.001, 51.6, 0.0, 0.0, 0.0, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> new Sgp4Propagator(1, 0L, 15.5, 1.0, 51.6, 0.0, 0.0, 0.0, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> new Sgp4Propagator(1, 0L, 15.5, -0.1, 51.6, 0.0, 0.0, 0.0, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> new Sgp4Propagator(1, 0L, 15.5, 0.9, 51.6, 0.0, 0.0, 0.0, 0.0)); // perigee below the surface
+
+
+    // allowed values
+    Sgp4Propagator nearEarth = propagator(NEAR_EARTH);
+    assertEquals(5, nearEarth.getCatalogNumber());
+    assertFalse(nearEarth.isDeepSpace());
+    assertTrue(propagator(DEEP_SPACE).isDeepSpace());
+    assertFalse(new Sgp4Propagator(1, 0L, 15.5, 0.001, 51.6, 0.0, 0.0, 0.0, Double.NaN).isDeepSpace()); // a missing B* is treated as no drag
+  }
+
+
+  @Test
+  @DisplayName("Sgp4Propagator: Near-earth verification vectors")
+  public void test2() {
+
+    double[] state = new double[Sgp4Propagator.STATE_SIZE];
+    Sgp4Propagator nearEarth = propagator(NEAR_EARTH);
+
+    assertTrue(nearEarth.propagate(0.0, state, 0));
+    assertState(new double[] {7022.46529266, -1400.08296755, 0.03995155, 1.893841015, 6.405893759, 4.534807250}, state);
+
+    assertTrue(nearEarth.propagate(360.0, state, 0));
+    assertState(new double[] {-7154.03120202, -3783.17682504, -3536.19412294, 4.741887409, -4.151817765, -2.093935425}, state);
+
+    assertTrue(propagator(DRAG).propagate(0.0, state, 0));
+    assertState(new double[] {3988.31022699, 5498.96657235, 0.90055879, -3.290032738, 2.357652820, 6.496623475}, state);
+  }
+
+
+  @Test
+  @DisplayName("Sgp4Propagator: Deep-space orbits")
+  public void test3() {
+
+    double[] state = new double[Sgp4Propagator.STATE_SIZE];
+
+    Sgp4Propagator deepSpace = propagator(DEEP_SPACE);
+
+    assertTrue(deepSpace.propagate(0.0, state, 0));
+    assertState(new double[] {7473.37102491, 428.94748312, 5828.74846783, 5.107155391, 6.444680305, -0.186133297}, state);
+
+    assertTrue(deepSpace.propagate(360.0, state, 0));
+    assertPosition(new double[] {-3305.22148694, 32410.84323359, -24697.16971260}, state, PROPAGATED_POSITION_TOLERANCE);
+    assertEquals(-1.301137319, state[3], VELOCITY_TOLERANCE);
+    assertEquals(-1.151315600, state[4], VELOCITY_TOLERANCE);
+    assertEquals(-0.283335823, state[5], VELOCITY_TOLERANCE);
+
+    assertTrue(deepSpace.propagate(720.0, state, 0));
+    assertState(new double[] {14271.29083858, 24110.44309009, -4725.76320143, -0.320504528, 2.679841539, -2.084054355}, state);
+
+    assertTrue(deepSpace.propagate(1440.0, state, 0));
+    assertPosition(new double[] {9787.86975268, 33753.34604187, -15030.81176165}, state, REPORT_3_POSITION_TOLERANCE);
+
+
+    // a 12-hour resonant orbit
+    Sgp4Propagator resonant = propagator(RESONANT);
+    assertTrue(resonant.isDeepSpace());
+
+    assertTrue(resonant.propagate(0.0, state, 0));
+    assertState(new double[] {2349.89483350, -14785.93811562, 0.02119378, 2.721488096, -3.256811655, 4.498416672}, state);
+
+    assertTrue(resonant.propagate(120.0, state, 0));
+    assertPosition(new double[] {15223.91713658, -17852.95881713, 25280.39558224}, state, PROPAGATED_POSITION_TOLERANCE);
+
+
+    // resonant orbits stay between their perigee and apogee for a week in each direction
+    Sgp4Propagator geosynchronous = new Sgp4Propagator(1, 0L, 1.00271, 0.0002, 0.05, 90.0, 120.0, 200.0, 0.0);
+    Sgp4Propagator molniya = new Sgp4Propagator(2, 0L, 2.00614, 0.72, 63.4, 30.0, 270.0, 10.0, 0.0001);
+
+    for (double minutes = -10080.0; minutes <= 10080.0; minutes += 97.0) {
+
+      assertTrue(geosynchronous.propagate(minutes, state, 0));
+      assertEquals(42164.0, Math.sqrt(state[0] * state[0] + state[1] * state[1] + state[2] * state[2]), 50.0);
+
+      assertTrue(molniya.propagate(minutes, state, 0));
+      double radius = Math.sqrt(state[0] * state[0] + state[1] * state[1] + state[2] * state[2]);
+      assertTrue(radius > 7300.0 && radius < 45800.0, "Radius: " + radius);
+    }
+  }
+
+
+  @Test
+  @DisplayName("Sgp4Propagator: Times and decay")
+  public void test4() {
+
+    // disallowed values
+    Sgp4Propagator nearEarth = propagator(NEAR_EARTH);
+    assertThrows(IllegalArgumentException.class, () -> nearEarth.propagate(0.0, null, 0));
+    assertThrows(IllegalArgumentException.class, () -> nearEarth.propagate((Instant) null, new double[6], 0));
+
+
+    // allowed values
+    double[] expected = new double[Sgp4Propagator.STATE_SIZE];
+    double[] actual = new double[2 * Sgp4Propagator.STATE_SIZE];
+    long epochMicros = nearEarth.getEpochMicros() + 360L * 60_000_000L;
+
+    nearEarth.propagate(360.0, expected, 0);
+    assertTrue(nearEarth.propagate(epochMicros, actual, 6));
+    assertArrayEquals(expected, java.util.Arrays.copyOfRange(actual, 6, 12));
+    assertTrue(nearEarth.propagate(Instant.ofEpochSecond(epochMicros / 1_000_000L, (epochMicros % 1_000_000L) * 1_000L), actual, 0));
+    assertArrayEquals(expected, java.util.Arrays.copyOfRange(actual, 0, 6));
+
+
+    // a satellite with heavy drag decays
+    Sgp4Propagator decaying = new Sgp4Propagator(3, 0L, 16.2, 0.0005, 51.6, 0.0, 0.0, 0.0, 0.05);
+    assertTrue(decaying.propagate(0.0, actual, 0));
+    assertFalse(decaying.propagate(60.0 * 24.0 * 365.0, actual, 0));
+
+    for (int index = 0; index < Sgp4Propagator.STATE_SIZE; index++) {
+
+      assertTrue(Double.isNaN(actual[index]));
+    }
+  }
+}
@@ -0,0 +1,328 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.screening;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.ElementSetColumns;
+import com.stevenpaligo.spacetrack.client.TleParser;
+import com.stevenpaligo.spacetrack.client.propagation.Sgp4Propagator;
+
+public class ConjunctionScreenerTests {
+
+  private static final String LINE_1 = "1 25544U 98067A   08264.51782528 -.00002182  00000-0 -11606-4 0  2927";
+  private static final String LINE_2 = "2 25544  51.6416 247.4627 0006703 130.5360 325.0288 15.72125391563537";
+  private static final Instant START = Instant.parse("2020-09-13T12:00:00Z");
+  private static final long START_MICROS = START.getEpochSecond() * 1_000_000L;
+
+
+  /**
+   * Appends an object with the given mean elements and no drag
+   */
+  private static void add(ElementSetColumns columns, int catalogNumber, double meanMotion, double eccentricity, double inclination, double node, double argOfPerigee, double meanAnomaly) {
+
+    ElementSetColumns template = new ElementSetColumns(1);
+    TleParser.parse(LINE_1, LINE_2, template);
+
+    int row = columns.addRow(template, 0);
+
+    columns.getCatalogNumber()[row] = catalogNumber;
+    columns.getEpochMicros()[row] = START_MICROS;
+    columns.getMeanMotionRevsPerDay()[row] = meanMotion;
+    columns.getEccentricity()[row] = eccentricity;
+    columns.getInclinationDegrees()[row] = inclination;
+    columns.getRightAscOfNodeDegrees()[row] = node;
+    columns.getArgOfPerigeeDegrees()[row] = argOfPerigee;
+    columns.getMeanAnomalyDegrees()[row] = meanAnomaly;
+    columns.getBstar()[row] = 0.0;
+    columns.getSemiMajorAxisKilometers()[row] = Double.NaN;
+    columns.getApogeeHeightKilometers()[row] = Double.NaN;
+    columns.getPerigeeHeightKilometers()[row] = Double.NaN;
+  }
+
+
+  /**
+   * Finds the close approaches by sampling every pair once a second, returning each local minimum of the sampled distance within the threshold as {catalog number 1, catalog number 2, time,
+   * distance}
+   */
+  private static List<double[]> sample(ElementSetColumns columns, long durationSeconds, double thresholdKilometers) {
+
+    int size = columns.size();
+    double[][] positions = new double[size][];
+
+    for (int row = 0; row < size; row++) {
+
+      Sgp4Propagator propagator = Sgp4Propagator.of(columns, row);
+      positions[row] = new double[3 * (int) (durationSeconds + 1)];
+      double[] state = new double[Sgp4Propagator.STATE_SIZE];
+
+      for (int second = 0; second <= durationSeconds; second++) {
+
+        propagator.propagate(START_MICROS + second * 1_000_000L, state, 0);
+        System.arraycopy(state, 0, positions[row], 3 * second, 3);
+      }
+    }
+
+    List<double[]> approaches = new ArrayList<>();
+
+    for (int row1 = 0; row1 < size; row1++) {
+
+      for (int row2 = row1 + 1; row2 < size; row2++) {
+
+        double[] distances = new double[(int) (durationSeconds + 1)];
+
+        for (int second = 0; second <= durationSeconds; second++) {
+
+          double dx = positions[row1][3 * second] - positions[row2][3 * second];
+          double dy = positions[row1][3 * second + 1] - positions[row2][3 * second + 1];
+          double dz = positions[row1][3 * second + 2] - positions[row2][3 * second + 2];
+          distances[second] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+
+        for (int second = 1; second < durationSeconds; second++) {
+
+          if (distances[second] < distances[second - 1] && distances[second] <= distances[second + 1] && distances[second] <= thresholdKilometers) {
+
+            int catalogNumber1 = columns.getCatalogNumber()[row1];
+            int catalogNumber2 = columns.getCatalogNumber()[row2];
+            approaches.add(new double[] {Math.min(catalogNumber1, catalogNumber2), Math.max(catalogNumber1, catalogNumber2), START_MICROS + second * 1_000_000L, distances[second]});
+          }
+        }
+      }
+    }
+
+    return approaches;
+  }
+
+
+  private static Conjunction find(List<Conjunction> conjunctions, int catalogNumber1, int catalogNumber2, double timeMicros, double toleranceMicros) {
+
+    for (Conjunction conjunction : conjunctions) {
+
+      int lower = Math.min(conjunction.getCatalogNumber1(), conjunction.getCatalogNumber2());
+      int upper = Math.max(conjunction.getCatalogNumber1(), conjunction.getCatalogNumber2());
+
+      if (lower == catalogNumber1 && upper == catalogNumber2 && Math.abs(conjunction.getTimeOfClosestApproachMicros() - timeMicros) <= toleranceMicros) {
+
+        return conjunction;
+      }
+    }
+
+    return null;
+  }
+
+
+  /**
+   * Checks that the screener finds every approach that sampling finds, and nothing that sampling doesn't
+   */
+  private static void assertMatchesSampling(ElementSetColumns columns, List<Conjunction> conjunctions, long durationSeconds, double thresholdKilometers) {
+
+    // sampled distances are at most half a second of relative motion (under 8 km) from the minimum
+    for (double[] approach : sample(columns, durationSeconds, thresholdKilometers)) {
+
+      Conjunction conjunction = find(conjunctions, (int) approach[0], (int) approach[1], approach[2], 1_000_000.0);
+
+      assertTrue(conjunction != null, () -> "Missed " + (int) approach[0] + "/" + (int) approach[1] + " at " + approach[2] + ": " + approach[3]);
+      assertTrue(conjunction.getMissDistanceKilometers() <= approach[3] + 1.0e-6);
+    }
+
+    List<double[]> nearby = sample(columns, durationSeconds, thresholdKilometers + 8.0);
+
+    for (Conjunction conjunction : conjunctions) {
+
+      assertTrue(conjunction.getMissDistanceKilometers() <= thresholdKilometers);
+      assertTrue(conjunction.getCatalogNumber1() < conjunction.getCatalogNumber2());
+      assertTrue(nearby.stream().anyMatch(approach -> approach[0] == conjunction.getCatalogNumber1() && approach[1] == conjunction.getCatalogNumber2()
+          && Math.abs(approach[2] - conjunction.getTimeOfClosestApproachMicros()) <= 1_000_000.0), () -> "Not sampled: " + conjunction);
+    }
+  }
+
+
+  @Test
+  @DisplayName("ConjunctionScreener: Disallowed values")
+  public void test1() {
+
+    ConjunctionScreener screener = new ConjunctionScreener();
+    ElementSetColumns columns = new ElementSetColumns();
+
+    add(columns, 1, 15.2, 0.0001, 51.6, 40.0, 0.0, 246.0);
+
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> screener.setThresholdKilometers(0.0));
+    assertThrows(IllegalArgumentException.class, () -> screener.setThresholdKilometers(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> screener.setPadKilometers(-1.0));
+    assertThrows(IllegalArgumentException.class, () -> screener.setPadKilometers(Double.POSITIVE_INFINITY));
+    assertThrows(IllegalArgumentException.class, () -> screener.setStep(null));
+    assertThrows(IllegalArgumentException.class, () -> screener.setStep(Duration.ZERO));
+    assertThrows(IllegalArgumentException.class, () -> screener.setStep(Duration.ofSeconds(-1)));
+    assertThrows(IllegalArgumentException.class, () -> screener.setStep(Duration.ofMinutes(11)));
+    assertThrows(IllegalArgumentException.class, () -> screener.setPool(null));
+    assertThrows(IllegalArgumentException.class, () -> screener.screen(null, START, START));
+    assertThrows(IllegalArgumentException.class, () -> screener.screen(columns, null, START));
+    assertThrows(IllegalArgumentException.class, () -> screener.screen(columns, START, null));
+    assertThrows(IllegalArgumentException.class, () -> screener.screen(columns, START, START.minusSeconds(1)));
+    assertThrows(IllegalArgumentException.class, () -> screener.screen(columns, (int[]) null, START, START));
+    assertThrows(IllegalArgumentException.class, () -> screener.screen(columns, new int[] {2}, START, START));
+
+
+    // allowed values
+    screener.setThresholdKilometers(1.0).setPadKilometers(0.0).setStep(Duration.ofMinutes(10)).setPool(ForkJoinPool.commonPool());
+
+    assertEquals(1.0, screener.getThresholdKilometers());
+    assertEquals(0.0, screener.getPadKilometers());
+    assertEquals(Duration.ofMinutes(10), screener.getStep());
+    assertTrue(screener.screen(columns, START, START).isEmpty());
+    assertTrue(screener.screen(columns, new int[] {1, 1}, START, START.plusSeconds(60)).isEmpty());
+  }
+
+
+  @Test
+  @DisplayName("ConjunctionScreener: Crossing orbits")
+  public void test2() {
+
+    // two orbits that reach the same node about 30 minutes in, and an object far above them
+    ElementSetColumns columns = new ElementSetColumns();
+
+    add(columns, 200, 15.2, 0.0001, 51.6, 40.0, 0.0, 246.0);
+    add(columns, 100, 15.2, 0.0001, 97.0, 40.0, 0.0, 246.0);
+    add(columns, 300, 1.0027, 0.0002, 0.1, 80.0, 0.0, 0.0);
+
+    long durationSeconds = 3_600L;
+    List<Conjunction> conjunctions = new ConjunctionScreener().setThresholdKilometers(50.0).screen(columns, START, START.plusSeconds(durationSeconds));
+
+    assertEquals(1, conjunctions.size());
+    assertEquals(100, conjunctions.get(0).getCatalogNumber1());
+    assertEquals(200, conjunctions.get(0).getCatalogNumber2());
+    assertTrue(conjunctions.get(0).getRelativeSpeedKilometersPerSecond() > 5.0);
+    assertEquals(START.plusNanos(1_000L * (conjunctions.get(0).getTimeOfClosestApproachMicros() - START_MICROS)), conjunctions.get(0).getTimeOfClosestApproach());
+    assertMatchesSampling(columns, conjunctions, durationSeconds, 50.0);
+
+
+    // the primary object is reported first
+    List<Conjunction> primary = new ConjunctionScreener().setThresholdKilometers(50.0).screen(columns, new int[] {200}, START, START.plusSeconds(durationSeconds));
+
+    assertEquals(1, primary.size());
+    assertEquals(200, primary.get(0).getCatalogNumber1());
+    assertEquals(100, primary.get(0).getCatalogNumber2());
+    assertEquals(conjunctions.get(0).getTimeOfClosestApproachMicros(), primary.get(0).getTimeOfClosestApproachMicros());
+    assertTrue(new ConjunctionScreener().setThresholdKilometers(50.0).screen(columns, new int[] {300}, START, START.plusSeconds(durationSeconds)).isEmpty());
+  }
+
+
+  @Test
+  @DisplayName("ConjunctionScreener: Random shell")
+  public void test3() {
+
+    // a crowded shell of objects in random planes
+    ElementSetColumns columns = new ElementSetColumns();
+    Random random = new Random(1);
+
+    for (int object = 1; object <= 40; object++) {
+
+      add(columns, object, 15.0 + 0.05 * random.nextDouble(), 0.001 * random.nextDouble(), 180.0 * random.nextDouble(), 360.0 * random.nextDouble(), 360.0 * random.nextDouble(),
+          360.0 * random.nextDouble());
+    }
+
+    long durationSeconds = 3L * 3_600L;
+    ForkJoinPool pool = new ForkJoinPool(4);
+    List<Conjunction> conjunctions;
+
+    try {
+
+      conjunctions = new ConjunctionScreener().setThresholdKilometers(50.0).setPool(pool).screen(columns, START, START.plusSeconds(durationSeconds));
+
+    } finally {
+
+      pool.shutdown();
+    }
+
+    assertFalse(conjunctions.isEmpty());
+    assertMatchesSampling(columns, conjunctions, durationSeconds, 50.0);
+
+    for (int index = 1; index < conjunctions.size(); index++) {
+
+      assertTrue(conjunctions.get(index - 1).getTimeOfClosestApproachMicros() <= conjunctions.get(index).getTimeOfClosestApproachMicros());
+    }
+
+
+    // screening primaries finds the same approaches
+    int[] primaries = {conjunctions.get(0).getCatalogNumber2(), 7};
+    List<Conjunction> primary = new ConjunctionScreener().setThresholdKilometers(50.0).screen(columns, primaries, START, START.plusSeconds(durationSeconds));
+    int expected = 0;
+
+    for (Conjunction conjunction : conjunctions) {
+
+      if (conjunction.getCatalogNumber1() == primaries[0] || conjunction.getCatalogNumber2() == primaries[0] || conjunction.getCatalogNumber1() == 7
+          || conjunction.getCatalogNumber2() == 7) {
+
+        expected++;
+        Conjunction match = find(primary, conjunction.getCatalogNumber1(), conjunction.getCatalogNumber2(), conjunction.getTimeOfClosestApproachMicros(), 0.0);
+
+        assertTrue(match != null);
+        assertTrue(match.getCatalogNumber1() == primaries[0] || match.getCatalogNumber1() == 7);
+      }
+    }
+
+    assertEquals(expected, primary.size());
+  }
+
+
+  @Test
+  @DisplayName("ConjunctionScreener: Orbit filters")
+  public void test4() {
+
+    ElementSetColumns columns = new ElementSetColumns();
+
+    add(columns, 1, 15.2, 0.0, 51.6, 40.0, 0.0, 0.0); // circular
+    add(columns, 2, 15.2, 0.0, 97.0, 40.0, 0.0, 0.0); // circular in another plane
+    add(columns, 3, 15.2, 0.03, 97.0, 40.0, 0.0, 0.0); // perigee and apogee at the nodes
+    add(columns, 4, 15.2, 0.03, 97.0, 40.0, 90.0, 0.0); // near the circular radius at the nodes
+    add(columns, 5, 1.0027, 0.0, 0.1, 40.0, 0.0, 0.0); // geosynchronous
+    add(columns, 6, Double.NaN, 0.0, 97.0, 40.0, 0.0, 0.0); // missing its mean motion
+
+    OrbitGeometry geometry = new OrbitGeometry(columns);
+    double circular = Math.cbrt(Sgp4Propagator.EARTH_GRAVITATIONAL_PARAMETER / Math.pow(15.2 * 2.0 * Math.PI / 86_400.0, 2.0));
+
+    assertEquals(circular, geometry.getPerigeeRadius(0), 1.0e-9);
+    assertEquals(circular, geometry.getApogeeRadius(0), 1.0e-9);
+    assertEquals(0.97 * circular, geometry.getPerigeeRadius(2), 1.0e-9);
+    assertEquals(1.03 * circular, geometry.getApogeeRadius(2), 1.0e-9);
+
+
+    // the apogee/perigee filter
+    assertTrue(geometry.shellsOverlap(0, 2, 15.0));
+    assertFalse(geometry.shellsOverlap(0, 4, 15.0));
+    assertTrue(geometry.isUnfiltered(5));
+    assertTrue(geometry.shellsOverlap(4, 5, 15.0));
+
+
+    // the orbital-plane filter
+    assertTrue(geometry.orbitPathsApproach(0, 1, START_MICROS, 15.0));
+    assertFalse(geometry.orbitPathsApproach(0, 2, START_MICROS, 15.0));
+    assertTrue(geometry.orbitPathsApproach(0, 3, START_MICROS, 15.0));
+    assertTrue(geometry.orbitPathsApproach(2, 2, START_MICROS, 15.0));
+    assertTrue(geometry.orbitPathsApproach(0, 5, START_MICROS, 15.0));
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.throttle;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.stevenpaligo.spacetrack.client.throttle.RequestScheduler.RateLimit;
+
+public class RequestSchedulerTests {
+
+  @Test
+  @DisplayName("RequestScheduler: Parameter validation")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new RateLimit(0, Duration.ofMinutes(1));
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new RateLimit(30, Duration.ZERO);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new RateLimit(30, null);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new RequestScheduler((RateLimit[]) null);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new RequestScheduler((RateLimit) null);
+    });
+
+
+    // allowed values
+    assertDoesNotThrow(() -> {
+      new RequestScheduler(new RateLimit(30, Duration.ofMinutes(1)));
+    });
+
+    assertDoesNotThrow(() -> {
+      RequestScheduler.unlimited();
+    });
+  }
+
+
+  @Test
+  @DisplayName("RequestScheduler: Default limits")
+  public void test2() {
+
+    assertEquals(2, RequestScheduler.getDefault().getLimits().size());
+    assertEquals(30, RequestScheduler.getDefault().getLimits().get(0).getRequests());
+    assertEquals(Duration.ofMinutes(1), RequestScheduler.getDefault().getLimits().get(0).getPeriod());
+    assertEquals(300, RequestScheduler.getDefault().getLimits().get(1).getRequests());
+    assertEquals(Duration.ofHours(1), RequestScheduler.getDefault().getLimits().get(1).getPeriod());
+  }
+
+
+  /**
+   * Reserves requests back to back, each sent as soon as it's allowed, and returns their send times
+   */
+  private static long[] sendTimes(RequestScheduler scheduler, AtomicLong clock, int count) {
+
+    long[] sendTimes = new long[count];
+
+    for (int i = 0; i < count; i++) {
+
+      sendTimes[i] = scheduler.reserve(clock.get());
+      clock.set(Math.max(clock.get(), sendTimes[i]));
+    }
+
+    return sendTimes;
+  }
+
+
+  /**
+   * Checks that no window of a period (including its start but not its end) holds more than a number of sends
+   */
+  private static void assertWithinLimit(long[] sendTimes, int requests, Duration period) {
+
+    for (int i = requests; i < sendTimes.length; i++) {
+
+      assertTrue(sendTimes[i] - sendTimes[i - requests] >= period.toNanos(), "Send " + i + " exceeds " + requests + " per " + period);
+    }
+  }
+
+
+  @Test
+  @DisplayName("RequestScheduler: Sliding windows")
+  public void test3() {
+
+    AtomicLong clock = new AtomicLong();
+    RequestScheduler scheduler = new RequestScheduler(Arrays.asList(new RateLimit(30, Duration.ofMinutes(1)), new RateLimit(300, Duration.ofHours(1))), clock::get);
+
+
+    // a burst up to the per-minute limit goes through immediately
+    for (int i = 0; i < 30; i++) {
+
+      assertEquals(0, scheduler.reserve(0));
+    }
+
+
+    // further requests wait until the first sends leave the window, in arrival order
+    assertEquals(Duration.ofMinutes(1).toNanos(), scheduler.reserve(0));
+    assertEquals(Duration.ofMinutes(1).toNanos(), scheduler.reserve(Duration.ofSeconds(30).toNanos()));
+
+
+    // no minute ever holds more than 30 sends, and no hour more than 300
+    clock.set(0);
+    scheduler = new RequestScheduler(Arrays.asList(new RateLimit(30, Duration.ofMinutes(1)), new RateLimit(300, Duration.ofHours(1))), clock::get);
+    long[] sendTimes = sendTimes(scheduler, clock, 1_000);
+
+    assertWithinLimit(sendTimes, 30, Duration.ofMinutes(1));
+    assertWithinLimit(sendTimes, 300, Duration.ofHours(1));
+    assertEquals(Duration.ofHours(3).toNanos(), sendTimes[900]);
+
+
+    // requests that arrive slowly are never delayed
+    clock.set(0);
+    scheduler = new RequestScheduler(Arrays.asList(new RateLimit(30, Duration.ofMinutes(1))), clock::get);
+
+    for (int i = 0; i < 100; i++) {
+
+      assertEquals(clock.get(), scheduler.reserve(clock.get()));
+      clock.addAndGet(Duration.ofSeconds(2).toNanos());
+    }
+  }
+
+
+  @Test
+  @DisplayName("RequestScheduler: Waiting and statistics")
+  public void test4() throws Exception {
+
+    AtomicLong clock = new AtomicLong();
+    RequestScheduler scheduler = new RequestScheduler(Arrays.asList(new RateLimit(2, Duration.ofMillis(200))), clock::get, clock::addAndGet);
+
+    assertEquals(Duration.ZERO, scheduler.acquire());
+    clock.addAndGet(Duration.ofMillis(50).toNanos());
+    assertEquals(Duration.ZERO, scheduler.acquire());
+
+    Duration wait = scheduler.acquire();
+
+    assertEquals(Duration.ofMillis(150), wait);
+    assertEquals(Duration.ofMillis(200).toNanos(), clock.get());
+
+
+    RequestScheduler.Statistics statistics = scheduler.getStatistics();
+    assertEquals(3, statistics.getRequestCount());
+    assertEquals(0, statistics.getWaitingCount());
+    assertEquals(wait, statistics.getTotalWait());
+    assertEquals(wait, statistics.getMaxWait());
+    assertEquals(wait.dividedBy(3), statistics.getAverageWait());
+  }
+
+
+  @Test
+  @DisplayName("RequestScheduler: Interrupted requests give back their reservations")
+  public void test5() throws Exception {
+
+    AtomicLong clock = new AtomicLong();
+    RequestScheduler scheduler = new RequestScheduler(Arrays.asList(new RateLimit(2, Duration.ofSeconds(1))), clock::get, nanos -> {
+      throw new InterruptedException();
+    });
+
+    scheduler.acquire();
+    scheduler.acquire();
+
+    assertThrows(InterruptedIOException.class, () -> scheduler.acquire());
+    assertTrue(Thread.interrupted());
+
+
+    // the next request has the interrupted request's place, not the one after it
+    assertEquals(Duration.ofSeconds(1).toNanos(), scheduler.reserve(0));
+  }
+}
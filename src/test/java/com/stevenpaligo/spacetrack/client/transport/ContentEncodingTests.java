@@ -0,0 +1,108 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ContentEncodingTests {
+
+  private static final String JSON = "[{\"NORAD_CAT_ID\":\"25544\",\"SATNAME\":\"ISS (ZARYA)\"}]";
+
+
+  private static String decode(ContentEncoding contentEncoding, byte[] body) throws IOException {
+
+    try (InputStream decodedBody = contentEncoding.decode(new ByteArrayInputStream(body))) {
+
+      return IOUtils.toString(decodedBody, StandardCharsets.UTF_8);
+    }
+  }
+
+
+  private static byte[] compress(OutputStreamFactory factory) throws IOException {
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    try (OutputStream compressor = factory.create(body)) {
+
+      compressor.write(JSON.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return body.toByteArray();
+  }
+
+
+  @Test
+  @DisplayName("ContentEncoding: Header values")
+  public void test1() throws Exception {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      ContentEncoding.forHeaderValue(null);
+    });
+
+    assertThrows(IOException.class, () -> {
+      ContentEncoding.forHeaderValue(Optional.of("br"));
+    });
+
+
+    // allowed values
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.forHeaderValue(Optional.empty()));
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.forHeaderValue(Optional.of("identity")));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.forHeaderValue(Optional.of("GZIP")));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.forHeaderValue(Optional.of("x-gzip")));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.forHeaderValue(Optional.of(" deflate ")));
+  }
+
+
+  @Test
+  @DisplayName("ContentEncoding: Decoding")
+  public void test2() throws Exception {
+
+    assertEquals(JSON, decode(ContentEncoding.IDENTITY, JSON.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(JSON, decode(ContentEncoding.GZIP, compress(GZIPOutputStream::new)));
+    assertEquals(JSON, decode(ContentEncoding.DEFLATE, compress(DeflaterOutputStream::new)));
+
+
+    // raw deflate data without the zlib wrapper
+    assertEquals(JSON, decode(ContentEncoding.DEFLATE, compress(body -> new DeflaterOutputStream(body, new Deflater(Deflater.DEFAULT_COMPRESSION, true)))));
+
+
+    // empty bodies (e.g. 204 responses) are empty whatever the encoding
+    for (ContentEncoding contentEncoding : ContentEncoding.values()) {
+
+      assertEquals("", decode(contentEncoding, new byte[0]));
+    }
+  }
+
+
+  @FunctionalInterface
+  private interface OutputStreamFactory {
+
+    OutputStream create(OutputStream body) throws IOException;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.transport;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.sun.net.httpserver.HttpServer;
+
+public class UrlConnectionTransportTests {
+
+  @Test
+  @DisplayName("UrlConnectionTransport: Parameter validation")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(IllegalArgumentException.class, () -> {
+      new UrlConnectionTransport().setConnectTimeout(null);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new UrlConnectionTransport().setReadTimeout(Duration.ofSeconds(-1));
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      new UrlConnectionTransport().send(null);
+    });
+
+
+    // allowed values
+    assertDoesNotThrow(() -> {
+      new UrlConnectionTransport().setConnectTimeout(Duration.ZERO).setReadTimeout(Duration.ofSeconds(10));
+    });
+  }
+
+
+  @Test
+  @DisplayName("UrlConnectionTransport: Requests and responses")
+  public void test2() throws IOException {
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+    server.createContext("/", exchange -> {
+
+      byte[] requestBody = IOUtils.toByteArray(exchange.getRequestBody());
+      String responseText = exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath() + " " + exchange.getRequestHeaders().getFirst("X-Test") + " " + new String(requestBody, StandardCharsets.UTF_8);
+      byte[] responseBody = responseText.getBytes(StandardCharsets.UTF_8);
+
+      exchange.getResponseHeaders().add("Set-Cookie", "chocolatechip=1");
+      exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/missing") ? 404 : 200, responseBody.length);
+
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+
+        outputStream.write(responseBody);
+      }
+    });
+
+    server.start();
+
+    try {
+
+      UrlConnectionTransport transport = new UrlConnectionTransport();
+      String baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+
+      // GET with a header
+      try (SpaceTrackResponse response = transport.send(SpaceTrackRequest.get(URI.create(baseUrl + "/a%20b")).setHeader("X-Test", "value"))) {
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("chocolatechip=1", response.getHeaderValue("set-cookie").get());
+        assertEquals("GET /a%20b value ", IOUtils.toString(response.getBody(), StandardCharsets.UTF_8));
+      }
+
+
+      // POST with a form body
+      try (SpaceTrackResponse response = transport.send(SpaceTrackRequest.postForm(URI.create(baseUrl + "/login"), "a=b".getBytes(StandardCharsets.UTF_8)))) {
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("POST /login null a=b", IOUtils.toString(response.getBody(), StandardCharsets.UTF_8));
+      }
+
+
+      // error responses are returned rather than thrown
+      try (SpaceTrackResponse response = transport.send(SpaceTrackRequest.get(URI.create(baseUrl + "/missing")))) {
+
+        assertEquals(404, response.getStatusCode());
+        assertEquals("GET /missing null ", IOUtils.toString(response.getBody(), StandardCharsets.UTF_8));
+      }
+
+
+    } finally {
+
+      server.stop(0);
+    }
+  }
+}
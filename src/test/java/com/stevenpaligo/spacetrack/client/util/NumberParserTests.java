@@ -0,0 +1,184 @@
+/*
+ * The author licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stevenpaligo.spacetrack.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class NumberParserTests {
+
+  private static double parseDouble(String value) {
+
+    char[] chars = ("xx" + value + "yy").toCharArray();
+    return NumberParser.parseDouble(chars, 2, value.length());
+  }
+
+
+  private static int parseInt(String value) {
+
+    char[] chars = ("xx" + value + "yy").toCharArray();
+    return NumberParser.parseInt(chars, 2, value.length());
+  }
+
+
+  /**
+   * Inserts, replaces, or removes one character at a random position
+   */
+  private static String corrupt(String value, Random random, String junk) {
+
+    int position = random.nextInt(value.length() + 1);
+    char c = junk.charAt(random.nextInt(junk.length()));
+
+    switch (random.nextInt(3)) {
+
+      case 0:
+        return value.substring(0, position) + c + value.substring(position);
+
+      case 1:
+        return (position == value.length() ? value : value.substring(0, position) + c + value.substring(position + 1));
+
+      default:
+        return (position == value.length() ? value.substring(0, position - 1) : value.substring(0, position) + value.substring(position + 1));
+    }
+  }
+
+
+  private static void assertSameOutcome(DoubleSupplier expected, DoubleSupplier actual, String value) {
+
+    double expectedValue;
+
+    try {
+
+      expectedValue = expected.getAsDouble();
+
+    } catch (NumberFormatException e) {
+
+      assertThrows(NumberFormatException.class, actual::getAsDouble, value);
+      return;
+    }
+
+    assertEquals(expectedValue, actual.getAsDouble(), value);
+  }
+
+
+  @Test
+  @DisplayName("NumberParser: Integers")
+  public void test1() {
+
+    // disallowed values
+    assertThrows(NumberFormatException.class, () -> parseInt(""));
+    assertThrows(NumberFormatException.class, () -> parseInt("-"));
+    assertThrows(NumberFormatException.class, () -> parseInt("1.0"));
+    assertThrows(NumberFormatException.class, () -> parseInt("2147483648"));
+    assertThrows(NumberFormatException.class, () -> parseInt("1234567890123456789"));
+
+
+    // allowed values
+    assertEquals(0, parseInt("0"));
+    assertEquals(25544, parseInt("25544"));
+    assertEquals(-42, parseInt("-42"));
+    assertEquals(7, parseInt("+007"));
+    assertEquals(Integer.MIN_VALUE, parseInt("-2147483648"));
+  }
+
+
+  @Test
+  @DisplayName("NumberParser: Doubles")
+  public void test2() {
+
+    // disallowed values
+    assertThrows(NumberFormatException.class, () -> parseDouble(""));
+    assertThrows(NumberFormatException.class, () -> parseDouble("."));
+    assertThrows(NumberFormatException.class, () -> parseDouble("1.2.3"));
+    assertThrows(NumberFormatException.class, () -> parseDouble("1e"));
+    assertThrows(NumberFormatException.class, () -> parseDouble("abc"));
+
+
+    // allowed values
+    String[] values = {"0", "-0", "0.0004234", "15.48601496", "-1.1606e-5", "1E10", ".5", "5.", "+3.25", "0.00000000000000000000000001", "123456789012345678901234567890", "1e-300",
+        "4.9e-324", "1.7976931348623157e308", "9007199254740993", "0.1", "-238.1473"};
+
+    for (String value : values) {
+
+      assertEquals(Double.parseDouble(value), parseDouble(value), value);
+    }
+
+
+    // random values must be parsed exactly like Double.parseDouble
+    Random random = new Random(1);
+
+    for (int i = 0; i < 100_000; i++) {
+
+      String value = (random.nextBoolean() ? Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10))
+          : String.format(Locale.ROOT, "%." + random.nextInt(12) + "f", (random.nextDouble() - 0.5) * 1000));
+
+      assertEquals(Double.parseDouble(value), parseDouble(value), value);
+    }
+  }
+
+
+  @Test
+  @DisplayName("NumberParser: Scaled digits")
+  public void test3() {
+
+    assertEquals(0.0, NumberParser.scale(0, -5));
+    assertEquals(0.0006703, NumberParser.scale(6703, -7));
+    assertEquals(-1.1606e-5, NumberParser.scale(-11606, -9));
+    assertEquals(15.72125391, NumberParser.scale(1572125391, -8));
+    assertEquals(1.5e25, NumberParser.scale(15, 24));
+    assertEquals(Double.parseDouble("9007199254740993e-30"), NumberParser.scale(9007199254740993L, -30));
+  }
+
+
+  @Test
+  @DisplayName("NumberParser: Malformed values are rejected like the JDK rejects them")
+  public void test4() {
+
+    // disallowed values
+    String[] malformedInts = {"", "-", "+", "--1", "+-1", "1-", "2147483648", "-2147483649", "99999999999", "12a", "1.", "0x10", "1e3"};
+
+    for (String value : malformedInts) {
+
+      assertThrows(NumberFormatException.class, () -> Integer.parseInt(value), value);
+      assertThrows(NumberFormatException.class, () -> parseInt(value), value);
+    }
+
+    String[] malformedDoubles = {"", "-", "+", ".", "-.", "1e", "1e+", "1e-", "-1e", "e5", ".e5", "1e5.5", "1e2e3", "1.5x", "15.486abc", "1e5x", "1..5", "1-", "--1", "1e--5"};
+
+    for (String value : malformedDoubles) {
+
+      assertThrows(NumberFormatException.class, () -> Double.parseDouble(value), value);
+      assertThrows(NumberFormatException.class, () -> parseDouble(value), value);
+    }
+
+
+    // random corruptions of valid values must be rejected or parsed exactly like the JDK does
+    Random random = new Random(1);
+    String junk = "0123456789.eE+-x";
+
+    for (int i = 0; i < 20_000; i++) {
+
+      String intValue = corrupt(Integer.toString(random.nextInt()), random, junk);
+      String doubleValue = corrupt(Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20)), random, junk);
+
+      assertSameOutcome(() -> (double) Integer.parseInt(intValue), () -> (double) parseInt(intValue), intValue);
+      assertSameOutcome(() -> Double.parseDouble(doubleValue), () -> parseDouble(doubleValue), doubleValue);
+    }
+  }
+}